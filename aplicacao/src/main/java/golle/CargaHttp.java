@@ -0,0 +1,197 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Teste de carga local da API HTTP (executado com --carga-http, contra um servidor já iniciado
+ * com --http): vários clientes, cada um em sua thread virtual e com uma conexão mantida aberta
+ * (keep-alive), repetem consultas pelo tempo indicado e, ao final, são exibidas a vazão e a
+ * distribuição das latências. A cada 10 requisições, 9 consultam um EPI pelo ID e 1 lista os EPIs.
+ * Os clientes falam HTTP/1.1 direto no socket, para que o custo medido seja o do servidor
+ */
+class CargaHttp {
+
+    /**
+     * Executa o teste e imprime o resultado
+     * @param porta Porta do servidor em localhost
+     * @param clientes Quantidade de clientes simultâneos
+     * @param segundos Duração da medição
+     * @return true se todas as requisições foram respondidas com sucesso
+     */
+    public static boolean executar(int porta, int clientes, int segundos) {
+        List<Integer> ids = new ArrayList<>();
+        try (Conexao conexao = new Conexao(porta)) {
+            ByteArrayOutputStream corpo = new ByteArrayOutputStream();
+            conexao.requisitar(requisicao("/api/epis"), corpo);
+            Matcher id = Pattern.compile("\\{\"id\":(\\d+)").matcher(corpo.toString(StandardCharsets.UTF_8));
+            while (id.find()) ids.add(Integer.parseInt(id.group(1)));
+        } catch (IOException e) {
+            System.out.println("Erro: Servidor indisponível na porta " + porta + ": " + e.getMessage());
+            return false;
+        }
+        if (ids.isEmpty()) {
+            System.out.println("Erro: Nenhum EPI cadastrado. Cadastre EPIs antes do teste de carga.");
+            return false;
+        }
+
+        System.out.println("Teste de carga da API HTTP: " + clientes + " clientes por " + segundos
+                + " s, " + ids.size() + " EPIs");
+        byte[] lista = requisicao("/api/epis");
+        byte[][] consultas = ids.stream().map(id -> requisicao("/api/epis/" + id)).toArray(byte[][]::new);
+        Metrica latencias = new Metrica("http.carga", "Teste de carga");
+        LongAdder erros = new LongAdder();
+        long fim = System.nanoTime() + segundos * 1_000_000_000L;
+
+        long inicio = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clientes; c++) {
+                long semente = 0x9E3779B97F4A7C15L * (c + 1);
+                threads.submit(() -> {
+                    long estado = semente;
+                    Conexao conexao = null;
+                    for (int i = 0; System.nanoTime() < fim; i++) {
+                        estado ^= estado << 13; estado ^= estado >>> 7; estado ^= estado << 17;
+                        byte[] requisicao = i % 10 == 9 ? lista
+                                : consultas[(int) Long.remainderUnsigned(estado, consultas.length)];
+                        long antes = System.nanoTime();
+                        try {
+                            if (conexao == null) conexao = new Conexao(porta);
+                            if (conexao.requisitar(requisicao, null) != 200) erros.increment();
+                        } catch (IOException e) {
+                            erros.increment();
+                            fechar(conexao);
+                            conexao = null; // Reconecta na próxima requisição
+                        }
+                        latencias.registrarDesde(antes);
+                    }
+                    fechar(conexao);
+                });
+            }
+        }
+        double duracao = (System.nanoTime() - inicio) / 1e9;
+
+        Metrica.Leitura leitura = latencias.ler();
+        System.out.printf("Requisições: %d em %.1f s (%.0f requisições/s), erros: %d%n",
+                leitura.getTotal(), duracao, leitura.getTotal() / duracao, erros.sum());
+        System.out.printf("Latência: média %.2f ms | p50 %.2f ms | p99 %.2f ms | p99,9 %.2f ms | máxima %.2f ms%n",
+                leitura.media() / 1e6, leitura.percentil(0.50) / 1e6, leitura.percentil(0.99) / 1e6,
+                leitura.percentil(0.999) / 1e6, leitura.getMaximo() / 1e6);
+        boolean ok = erros.sum() == 0;
+        System.out.println(ok ? "RESULTADO: OK" : "RESULTADO: FALHA");
+        return ok;
+    }
+
+    private static byte[] requisicao(String caminho) {
+        return ("GET " + caminho + " HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void fechar(Conexao conexao) {
+        if (conexao == null) return;
+        try {
+            conexao.close();
+        } catch (IOException e) {
+            // Já fechada
+        }
+    }
+
+    /**
+     * Conexão HTTP/1.1 persistente com o servidor; lê respostas com Content-Length ou chunked
+     */
+    private static final class Conexao implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream saida;
+        private final BufferedInputStream entrada;
+        private final StringBuilder linha = new StringBuilder();
+
+        Conexao(int porta) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), porta);
+            socket.setTcpNoDelay(true);
+            saida = socket.getOutputStream();
+            entrada = new BufferedInputStream(socket.getInputStream(), 1 << 14);
+        }
+
+        /**
+         * Envia uma requisição e lê a resposta inteira
+         * @param corpo Destino do corpo da resposta ou null para descartá-lo
+         * @return O status da resposta
+         */
+        int requisitar(byte[] requisicao, ByteArrayOutputStream corpo) throws IOException {
+            saida.write(requisicao);
+            saida.flush();
+            String inicial = lerLinha();
+            if (inicial.length() < 12 || !inicial.startsWith("HTTP/1.1 ")) {
+                throw new IOException("Resposta inválida: " + inicial);
+            }
+            int status = (int) Conversao.inteiro(inicial.substring(9, 12));
+            long tamanho = 0;
+            boolean blocos = false;
+            for (String cabecalho = lerLinha(); !cabecalho.isEmpty(); cabecalho = lerLinha()) {
+                int separador = cabecalho.indexOf(':');
+                if (separador < 0) continue;
+                String nome = cabecalho.substring(0, separador).trim();
+                String valor = cabecalho.substring(separador + 1).trim();
+                if (nome.equalsIgnoreCase("Content-Length")) tamanho = Long.parseLong(valor);
+                else if (nome.equalsIgnoreCase("Transfer-Encoding")) blocos = valor.equalsIgnoreCase("chunked");
+            }
+            if (!blocos) {
+                ler(tamanho, corpo);
+                return status;
+            }
+            while (true) {
+                String bloco = lerLinha();
+                int fimTamanho = bloco.indexOf(';');
+                long tamanhoBloco = Long.parseLong((fimTamanho < 0 ? bloco : bloco.substring(0, fimTamanho)).trim(), 16);
+                if (tamanhoBloco == 0) break;
+                ler(tamanhoBloco, corpo);
+                lerLinha(); // CRLF depois dos dados do bloco
+            }
+            while (!lerLinha().isEmpty()) {
+                // Cabeçalhos finais (trailers), ignorados
+            }
+            return status;
+        }
+
+        private void ler(long quantidade, ByteArrayOutputStream corpo) throws IOException {
+            byte[] bytes = new byte[(int) Math.min(quantidade, 1 << 14)];
+            while (quantidade > 0) {
+                int lidos = entrada.read(bytes, 0, (int) Math.min(quantidade, bytes.length));
+                if (lidos < 0) throw new EOFException("Conexão encerrada no meio da resposta");
+                if (corpo != null) corpo.write(bytes, 0, lidos);
+                quantidade -= lidos;
+            }
+        }
+
+        /**
+         * @return A próxima linha da resposta (ASCII), sem o CRLF
+         */
+        private String lerLinha() throws IOException {
+            linha.setLength(0);
+            while (true) {
+                int c = entrada.read();
+                if (c < 0) throw new EOFException("Conexão encerrada pelo servidor");
+                if (c == '\n') return linha.toString();
+                if (c != '\r') linha.append((char) c);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
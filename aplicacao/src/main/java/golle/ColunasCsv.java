@@ -0,0 +1,97 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.text.Normalizer;
+
+/**
+ * Posição das colunas esperadas em um CSV, identificadas pelo cabeçalho
+ * Os campos podem estar entre aspas (com "" representando uma aspa); o separador é ";" se o
+ * cabeçalho o usar, senão ","
+ */
+class ColunasCsv {
+    private final char separador;
+    private final int[] posicoes; // Para cada coluna esperada, sua posição no registro
+    private final int totalColunas;
+    private final StringBuilder campo = new StringBuilder();
+
+    private ColunasCsv(char separador, int[] posicoes, int totalColunas) {
+        this.separador = separador;
+        this.posicoes = posicoes;
+        this.totalColunas = totalColunas;
+    }
+
+    /**
+     * Localiza as colunas esperadas no cabeçalho (sem diferenciar maiúsculas nem acentos)
+     * @throws IllegalArgumentException se o cabeçalho faltar ou não tiver alguma das colunas
+     */
+    public static ColunasCsv doCabecalho(String cabecalho, String... esperadas) {
+        if (cabecalho == null) throw new IllegalArgumentException("Arquivo CSV vazio.");
+        if (!cabecalho.isEmpty() && cabecalho.charAt(0) == '\uFEFF') cabecalho = cabecalho.substring(1);
+        char separador = cabecalho.indexOf(';') >= 0 ? ';' : ',';
+
+        ColunasCsv leitor = new ColunasCsv(separador, new int[0], 0);
+        String[] nomes = leitor.separar(cabecalho, Integer.MAX_VALUE);
+        int[] posicoes = new int[esperadas.length];
+        for (int i = 0; i < esperadas.length; i++) {
+            posicoes[i] = -1;
+            for (int j = 0; j < nomes.length; j++) {
+                if (normalizar(nomes[j]).equals(esperadas[i])) posicoes[i] = j;
+            }
+            if (posicoes[i] < 0) {
+                throw new IllegalArgumentException("Cabeçalho do CSV sem a coluna \"" + esperadas[i] + "\".");
+            }
+        }
+        return new ColunasCsv(separador, posicoes, nomes.length);
+    }
+
+    /**
+     * Extrai os campos de uma linha na ordem das colunas esperadas, sem espaços nas pontas
+     * @return Os campos ou null se a linha tiver menos colunas que o cabeçalho
+     */
+    public String[] campos(String linha) {
+        String[] registro = separar(linha, totalColunas);
+        if (registro.length < totalColunas) return null;
+        String[] campos = new String[posicoes.length];
+        for (int i = 0; i < posicoes.length; i++) campos[i] = registro[posicoes[i]];
+        return campos;
+    }
+
+    /**
+     * Separa um registro em até maximo campos (os excedentes são descartados)
+     */
+    private String[] separar(String linha, int maximo) {
+        List<String> campos = new ArrayList<>();
+        boolean aspas = false;
+        campo.setLength(0);
+        for (int i = 0; i < linha.length() && campos.size() < maximo; i++) {
+            char c = linha.charAt(i);
+            if (aspas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    campo.append('"'); // Aspa escapada
+                    i++;
+                } else {
+                    aspas = false;
+                }
+            } else if (c == '"') {
+                aspas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString().strip());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        if (campos.size() < maximo) campos.add(campo.toString().strip());
+        return campos.toArray(new String[0]);
+    }
+
+    /**
+     * Nome de coluna em minúsculas e sem acentos
+     */
+    private static String normalizar(String nome) {
+        return Normalizer.normalize(nome.strip().toLowerCase(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+}
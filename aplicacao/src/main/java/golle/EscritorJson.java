@@ -0,0 +1,227 @@
+package golle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Escritor de JSON em UTF-8 direto num buffer de bytes, sem montar Strings intermediárias
+ * As listagens escrevem um bloco de itens, enviam o buffer com descarregar e continuam no
+ * mesmo buffer, então a resposta sai em fluxo sem ser montada inteira na memória.
+ * As vírgulas entre valores são colocadas automaticamente. Não é sincronizado
+ */
+final class EscritorJson {
+    private static final int TAMANHO_INICIAL = 1 << 10;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULO = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VERDADEIRO = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSO = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[TAMANHO_INICIAL];
+    private int tamanho;
+    private boolean separar; // O próximo valor (ou campo) vem depois de outro no mesmo objeto/lista
+
+    public EscritorJson abrirObjeto() {
+        antesDeValor();
+        caractere('{');
+        separar = false;
+        return this;
+    }
+
+    public EscritorJson fecharObjeto() {
+        caractere('}');
+        separar = true;
+        return this;
+    }
+
+    public EscritorJson abrirLista() {
+        antesDeValor();
+        caractere('[');
+        separar = false;
+        return this;
+    }
+
+    public EscritorJson fecharLista() {
+        caractere(']');
+        separar = true;
+        return this;
+    }
+
+    /**
+     * Escreve o nome de um campo do objeto aberto; o valor vem na chamada seguinte
+     * @param nome Nome do campo (apenas ASCII sem caracteres de escape)
+     */
+    public EscritorJson campo(String nome) {
+        antesDeValor();
+        garantir(nome.length() + 3);
+        buffer[tamanho++] = '"';
+        for (int i = 0; i < nome.length(); i++) buffer[tamanho++] = (byte) nome.charAt(i);
+        buffer[tamanho++] = '"';
+        buffer[tamanho++] = ':';
+        separar = false;
+        return this;
+    }
+
+    /**
+     * Escreve uma string (null vira null) com os escapes do JSON e codificada em UTF-8
+     */
+    public EscritorJson texto(String valor) {
+        if (valor == null) return nulo();
+        antesDeValor();
+        garantir(valor.length() * 6 + 2); // Pior caso: todo caractere vira \\u00XX
+        buffer[tamanho++] = '"';
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[tamanho++] = (byte) c;
+            } else if (c < 0x80) {
+                escapar(c);
+            } else if (c < 0x800) {
+                buffer[tamanho++] = (byte) (0xC0 | c >> 6);
+                buffer[tamanho++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < valor.length()
+                    && Character.isLowSurrogate(valor.charAt(i + 1))) {
+                int ponto = Character.toCodePoint(c, valor.charAt(++i));
+                buffer[tamanho++] = (byte) (0xF0 | ponto >> 18);
+                buffer[tamanho++] = (byte) (0x80 | ponto >> 12 & 0x3F);
+                buffer[tamanho++] = (byte) (0x80 | ponto >> 6 & 0x3F);
+                buffer[tamanho++] = (byte) (0x80 | ponto & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                buffer[tamanho++] = '?'; // Surrogate sem par (como em String.getBytes)
+            } else {
+                buffer[tamanho++] = (byte) (0xE0 | c >> 12);
+                buffer[tamanho++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[tamanho++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        buffer[tamanho++] = '"';
+        separar = true;
+        return this;
+    }
+
+    public EscritorJson numero(long valor) {
+        antesDeValor();
+        garantir(20);
+        if (valor == Long.MIN_VALUE) {
+            bytes(Long.toString(valor).getBytes(StandardCharsets.US_ASCII));
+        } else {
+            if (valor < 0) {
+                buffer[tamanho++] = '-';
+                valor = -valor;
+            }
+            int digitos = 1;
+            for (long resto = valor / 10; resto > 0; resto /= 10) digitos++;
+            for (int i = tamanho + digitos - 1; i >= tamanho; i--) {
+                buffer[i] = (byte) ('0' + valor % 10);
+                valor /= 10;
+            }
+            tamanho += digitos;
+        }
+        separar = true;
+        return this;
+    }
+
+    public EscritorJson booleano(boolean valor) {
+        antesDeValor();
+        bytes(valor ? VERDADEIRO : FALSO);
+        separar = true;
+        return this;
+    }
+
+    public EscritorJson nulo() {
+        antesDeValor();
+        bytes(NULO);
+        separar = true;
+        return this;
+    }
+
+    /**
+     * Escreve uma data como a string "AAAA-MM-DD"
+     * @param diaEpoch Dia epoch da data
+     */
+    public EscritorJson data(long diaEpoch) {
+        LocalDate data = LocalDate.ofEpochDay(diaEpoch);
+        int ano = data.getYear();
+        if (ano < 0 || ano > 9999) return texto(data.toString());
+        antesDeValor();
+        garantir(12);
+        buffer[tamanho++] = '"';
+        digitos(ano, 4);
+        buffer[tamanho++] = '-';
+        digitos(data.getMonthValue(), 2);
+        buffer[tamanho++] = '-';
+        digitos(data.getDayOfMonth(), 2);
+        buffer[tamanho++] = '"';
+        separar = true;
+        return this;
+    }
+
+    public EscritorJson data(LocalDate data) {
+        return data == null ? nulo() : data(data.toEpochDay());
+    }
+
+    /**
+     * @return Quantidade de bytes ainda não enviados
+     */
+    public int tamanho() { return tamanho; }
+
+    /**
+     * Envia os bytes escritos até agora e esvazia o buffer (a posição nos objetos e listas abertos
+     * é mantida)
+     */
+    public void descarregar(OutputStream destino) throws IOException {
+        destino.write(buffer, 0, tamanho);
+        tamanho = 0;
+    }
+
+    private void antesDeValor() {
+        if (separar) caractere(',');
+    }
+
+    private void escapar(char c) {
+        buffer[tamanho++] = '\\';
+        switch (c) {
+            case '"' -> buffer[tamanho++] = '"';
+            case '\\' -> buffer[tamanho++] = '\\';
+            case '\n' -> buffer[tamanho++] = 'n';
+            case '\r' -> buffer[tamanho++] = 'r';
+            case '\t' -> buffer[tamanho++] = 't';
+            case '\b' -> buffer[tamanho++] = 'b';
+            case '\f' -> buffer[tamanho++] = 'f';
+            default -> {
+                buffer[tamanho++] = 'u';
+                buffer[tamanho++] = '0';
+                buffer[tamanho++] = '0';
+                buffer[tamanho++] = HEX[c >> 4];
+                buffer[tamanho++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void digitos(int valor, int quantidade) {
+        for (int i = tamanho + quantidade - 1; i >= tamanho; i--) {
+            buffer[i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        tamanho += quantidade;
+    }
+
+    private void caractere(char c) {
+        garantir(1);
+        buffer[tamanho++] = (byte) c;
+    }
+
+    private void bytes(byte[] valor) {
+        garantir(valor.length);
+        System.arraycopy(valor, 0, buffer, tamanho, valor.length);
+        tamanho += valor.length;
+    }
+
+    private void garantir(int espaco) {
+        if (tamanho + espaco > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, tamanho + espaco));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package golle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Leitor dos corpos JSON das requisições da API HTTP: um objeto de um nível, com valores string,
+ * número inteiro, true, false ou null (os cadastros não usam objetos nem listas aninhados)
+ * Erros de sintaxe lançam IllegalArgumentException com a posição do problema
+ */
+final class LeitorJson {
+    private final String texto;
+    private int posicao;
+
+    private LeitorJson(String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * @param texto Corpo da requisição
+     * @return Os campos do objeto; valores null ficam no mapa (o campo foi informado como null)
+     * @throws IllegalArgumentException Se o texto não for um objeto JSON de um nível
+     */
+    public static Map<String, Object> objeto(String texto) {
+        LeitorJson leitor = new LeitorJson(texto);
+        Map<String, Object> campos = new HashMap<>();
+        leitor.esperar('{');
+        if (!leitor.consumir('}')) {
+            do {
+                leitor.espacos();
+                String nome = leitor.string();
+                leitor.esperar(':');
+                campos.put(nome, leitor.valor());
+            } while (leitor.consumir(','));
+            leitor.esperar('}');
+        }
+        leitor.espacos();
+        if (leitor.posicao < texto.length()) throw leitor.erro("conteúdo após o objeto");
+        return campos;
+    }
+
+    private Object valor() {
+        espacos();
+        if (posicao >= texto.length()) throw erro("valor esperado");
+        char c = texto.charAt(posicao);
+        if (c == '"') return string();
+        if (c == '-' || (c >= '0' && c <= '9')) return numero();
+        if (texto.startsWith("true", posicao)) { posicao += 4; return Boolean.TRUE; }
+        if (texto.startsWith("false", posicao)) { posicao += 5; return Boolean.FALSE; }
+        if (texto.startsWith("null", posicao)) { posicao += 4; return null; }
+        if (c == '{' || c == '[') throw erro("objetos e listas aninhados não são aceitos");
+        throw erro("valor inválido");
+    }
+
+    private Long numero() {
+        int inicio = posicao;
+        if (texto.charAt(posicao) == '-') posicao++;
+        while (posicao < texto.length() && texto.charAt(posicao) >= '0' && texto.charAt(posicao) <= '9') posicao++;
+        if (posicao < texto.length() && ".eE".indexOf(texto.charAt(posicao)) >= 0) {
+            throw erro("apenas números inteiros são aceitos");
+        }
+        long valor = Conversao.inteiro(texto.subSequence(inicio, posicao));
+        if (valor == Conversao.INVALIDO) throw erro("número inválido");
+        return valor;
+    }
+
+    private String string() {
+        if (posicao >= texto.length() || texto.charAt(posicao) != '"') throw erro("string esperada");
+        posicao++;
+        StringBuilder valor = null;
+        int inicio = posicao;
+        while (true) {
+            if (posicao >= texto.length()) throw erro("string sem fim");
+            char c = texto.charAt(posicao);
+            if (c == '"') break;
+            if (c < 0x20) throw erro("caractere de controle na string");
+            if (c != '\\') {
+                posicao++;
+                continue;
+            }
+            if (valor == null) valor = new StringBuilder();
+            valor.append(texto, inicio, posicao);
+            if (++posicao >= texto.length()) throw erro("string sem fim");
+            char escape = texto.charAt(posicao++);
+            switch (escape) {
+                case '"', '\\', '/' -> valor.append(escape);
+                case 'n' -> valor.append('\n');
+                case 'r' -> valor.append('\r');
+                case 't' -> valor.append('\t');
+                case 'b' -> valor.append('\b');
+                case 'f' -> valor.append('\f');
+                case 'u' -> {
+                    if (posicao + 4 > texto.length()) throw erro("escape \\u incompleto");
+                    int codigo = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digito = Character.digit(texto.charAt(posicao++), 16);
+                        if (digito < 0) throw erro("escape \\u inválido");
+                        codigo = codigo << 4 | digito;
+                    }
+                    valor.append((char) codigo);
+                }
+                default -> throw erro("escape inválido");
+            }
+            inicio = posicao;
+        }
+        String resultado = valor == null ? texto.substring(inicio, posicao)
+                : valor.append(texto, inicio, posicao).toString();
+        posicao++;
+        return resultado;
+    }
+
+    private void esperar(char c) {
+        if (!consumir(c)) throw erro("'" + c + "' esperado");
+    }
+
+    private boolean consumir(char c) {
+        espacos();
+        if (posicao < texto.length() && texto.charAt(posicao) == c) {
+            posicao++;
+            return true;
+        }
+        return false;
+    }
+
+    private void espacos() {
+        while (posicao < texto.length()) {
+            char c = texto.charAt(posicao);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+            posicao++;
+        }
+    }
+
+    private IllegalArgumentException erro(String mensagem) {
+        return new IllegalArgumentException("JSON inválido na posição " + posicao + ": " + mensagem);
+    }
+}
@@ -0,0 +1,48 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.io.PrintStream;
+
+/**
+ * Contadores e rejeições de uma execução do modo lote
+ */
+class ResumoLote {
+    private static final int REJEICOES_EXIBIDAS = 20;
+
+    int usuarios, epis, emprestimos, devolucoes;
+    private int rejeitadas;
+    private final List<String> rejeicoes = new ArrayList<>();
+
+    /**
+     * Registra uma linha rejeitada (apenas as primeiras são guardadas para exibição)
+     */
+    public void rejeitar(int numeroLinha, String linha, String erro) {
+        if (rejeitadas++ < REJEICOES_EXIBIDAS) {
+            rejeicoes.add("  linha " + numeroLinha + ": " + erro + " -> " + linha);
+        }
+    }
+
+    /**
+     * Imprime o resumo da execução
+     * @param nanos Duração total em nanossegundos
+     */
+    public void imprimir(PrintStream saida, long nanos) {
+        int aplicadas = usuarios + epis + emprestimos + devolucoes;
+        saida.println("\n=== RESUMO DO LOTE ===");
+        saida.println("Usuários cadastrados: " + usuarios);
+        saida.println("EPIs cadastrados: " + epis);
+        saida.println("Empréstimos cadastrados: " + emprestimos);
+        saida.println("Devoluções cadastradas: " + devolucoes);
+        saida.println("Linhas aplicadas: " + aplicadas + " | Rejeitadas: " + rejeitadas);
+        saida.printf("Tempo: %.1f ms (%.0f linhas/s)%n", nanos / 1e6,
+                (aplicadas + rejeitadas) / Math.max(nanos / 1e9, 1e-9));
+        if (rejeitadas > 0) {
+            saida.println("Linhas rejeitadas:");
+            for (String rejeicao : rejeicoes) saida.println(rejeicao);
+            if (rejeitadas > rejeicoes.size()) {
+                saida.println("  ... e mais " + (rejeitadas - rejeicoes.size()) + " linha(s)");
+            }
+        }
+    }
+}
@@ -0,0 +1,774 @@
+package golle;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * API HTTP/JSON local (executada com --http), para os terminais que não operam o menu de texto
+ * Usa o servidor HTTP do JDK: cada requisição é atendida em sua própria thread virtual e as
+ * conexões são mantidas entre requisições (keep-alive do HTTP/1.1). As operações e validações
+ * são as mesmas dos menus:
+ *   GET /api/usuarios[?busca=texto | ?matricula=N], POST /api/usuarios,
+ *   GET | PUT | DELETE /api/usuarios/{id}
+ *   GET /api/epis[?busca=texto], POST /api/epis, GET | PUT | DELETE /api/epis/{id}
+ *   GET /api/emprestimos[?situacao=abertos[&matricula=N | &epi=ID] | ?situacao=atrasados],
+ *   POST /api/emprestimos, GET | PUT | DELETE /api/emprestimos/{id}
+ *   GET /api/devolucoes, POST /api/devolucoes, GET | PUT | DELETE /api/devolucoes/{id}
+ * Os corpos de POST e PUT são objetos JSON com os campos de cada cadastro (usuário: nome,
+ * departamento, matricula; EPI: nome, quantidade, validade, estoqueMinimo, pontoReposicao;
+ * empréstimo: matricula, epi, data, devolucaoPrevista; devolução: emprestimo, data, observacao),
+ * datas no formato AAAA-MM-DD; no PUT, campos omitidos mantêm o valor atual e limites de estoque
+ * informados como null deixam o EPI sem o limite. Os EPIs são respondidos também com o
+ * nivelEstoque (NORMAL, REPOSICAO ou CRITICO). Erros retornam {"erro": "mensagem"} com o status 400
+ * (dados inválidos), 404 (não encontrado) ou 409 (conflito com o estado atual)
+ *
+ * As listagens são enviadas em fluxo (chunked) em blocos de ITENS_POR_BLOCO, cada um montado com
+ * as travas obtidas e enviado depois de liberá-las, como nas páginas dos menus: um cliente lento
+ * não bloqueia as alterações, e itens removidos entre dois blocos não aparecem
+ */
+class ServidorHttp extends NucleoEPI {
+    private static final int ITENS_POR_BLOCO = 256;
+    private static final int TAMANHO_MAXIMO_CORPO = 1 << 16;
+    private static final int RESULTADOS_BUSCA = 20;
+    private static final int FILA_CONEXOES = 1024;
+    private static final int SEM_ID = -1;
+    private static final String TIPO_JSON = "application/json; charset=utf-8";
+    private static final String DATA_INVALIDA = "Formato de data inválido. Use AAAA-MM-DD.";
+    private static final String CONFLITO = "Os dados foram alterados por outra sessão. Operação cancelada.";
+
+    // Latência de cada requisição, da leitura do cabeçalho ao fim da resposta
+    private static final Metrica METRICA_REQUISICAO = Metricas.nova("http.requisicao", "Requisição HTTP");
+
+    /**
+     * Falha de uma requisição, respondida com o status e a mensagem em {"erro": ...}
+     */
+    @SuppressWarnings("serial") // Nunca serializada
+    private static final class Falha extends RuntimeException {
+        private final int status;
+
+        Falha(int status, String mensagem) {
+            super(mensagem, null, false, false);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Método, ID do caminho (/recurso/{id}) e parâmetros de uma requisição
+     */
+    private static final class Requisicao {
+        private final HttpExchange troca;
+        private final String metodo;
+        private final int id; // SEM_ID se o caminho não tiver ID
+        private final Map<String, String> parametros;
+
+        Requisicao(HttpExchange troca) {
+            this.troca = troca;
+            this.metodo = troca.getRequestMethod();
+            String caminho = troca.getRequestURI().getPath();
+            String resto = caminho.substring(troca.getHttpContext().getPath().length());
+            if (resto.isEmpty() || resto.equals("/")) {
+                this.id = SEM_ID;
+            } else {
+                long valor = resto.charAt(0) == '/' ? Conversao.inteiro(resto.substring(1)) : Conversao.INVALIDO;
+                if (valor == Conversao.INVALIDO || valor < 0) throw new Falha(404, "Recurso não encontrado: " + caminho);
+                this.id = (int) valor;
+            }
+            this.parametros = parametros(troca.getRequestURI().getRawQuery());
+        }
+
+        /**
+         * @return Os campos do objeto JSON do corpo
+         */
+        Map<String, Object> corpo() throws IOException {
+            byte[] bytes = troca.getRequestBody().readNBytes(TAMANHO_MAXIMO_CORPO + 1);
+            if (bytes.length > TAMANHO_MAXIMO_CORPO) {
+                throw new Falha(413, "O corpo da requisição excede " + TAMANHO_MAXIMO_CORPO + " bytes.");
+            }
+            try {
+                return LeitorJson.objeto(new String(bytes, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new Falha(400, e.getMessage());
+            }
+        }
+
+        /**
+         * @return O parâmetro numérico da consulta ou null se ausente
+         */
+        Integer inteiro(String nome) {
+            String valor = parametros.get(nome);
+            if (valor == null) return null;
+            long numero = Conversao.inteiro(valor);
+            if (numero == Conversao.INVALIDO) throw new Falha(400, "Número inválido: " + Conversao.mensagemNumeroInvalido(valor));
+            return (int) numero;
+        }
+    }
+
+    /**
+     * Tratamento de um recurso da API
+     */
+    private interface Recurso {
+        void atender(Requisicao requisicao) throws IOException;
+    }
+
+    /**
+     * Aguarda a carga dos dados e inicia o servidor; retorna em seguida, e o processo continua
+     * atendendo até ser encerrado (Ctrl+C), quando os dados são gravados e o journal fechado
+     * @param porta Porta TCP em que o servidor escuta
+     * @return false se o servidor não pôde ser iniciado
+     */
+    static boolean executar(int porta) {
+        if (!aguardarCarga()) {
+            System.out.println("Erro: Os dados salvos não puderam ser carregados. Servidor não iniciado.");
+            return false;
+        }
+        // Sem o atraso de Nagle nas conexões aceitas: o servidor do JDK envia o cabeçalho e o corpo
+        // em escritas separadas, e o corpo esperaria a confirmação atrasada (ACK) do cliente
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer servidor;
+        try {
+            servidor = HttpServer.create(new InetSocketAddress(porta), FILA_CONEXOES);
+        } catch (IOException e) {
+            System.out.println("Erro: Falha no servidor: " + e.getMessage());
+            return false;
+        }
+        servidor.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        servidor.createContext("/api/usuarios", troca -> atender(troca, ServidorHttp::atenderUsuarios));
+        servidor.createContext("/api/epis", troca -> atender(troca, ServidorHttp::atenderEpis));
+        servidor.createContext("/api/emprestimos", troca -> atender(troca, ServidorHttp::atenderEmprestimos));
+        servidor.createContext("/api/devolucoes", troca -> atender(troca, ServidorHttp::atenderDevolucoes));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.stop(1);
+            encerrarPersistencia();
+        }, "encerramento"));
+        servidor.start();
+        System.out.println("API HTTP aguardando requisições na porta " + servidor.getAddress().getPort());
+        return true;
+    }
+
+    /**
+     * Atende uma requisição e fecha a troca (a conexão continua aberta para a próxima)
+     */
+    private static void atender(HttpExchange troca, Recurso recurso) {
+        long inicio = System.nanoTime();
+        try (troca) {
+            try {
+                recurso.atender(new Requisicao(troca));
+            } catch (Falha falha) {
+                responderErro(troca, falha.status, falha.getMessage());
+            } catch (UncheckedIOException e) {
+                responderErro(troca, 500, e.getMessage());
+            } catch (RuntimeException e) {
+                Falhas.reportar("Requisição " + troca.getRequestMethod() + " " + troca.getRequestURI() + " falhou", e);
+                responderErro(troca, 500, "Erro interno.");
+            }
+        } catch (IOException e) {
+            // Conexão encerrada pelo cliente
+        } finally {
+            METRICA_REQUISICAO.registrarDesde(inicio);
+        }
+    }
+
+    // ==================== USUÁRIOS ====================
+
+    private static void atenderUsuarios(Requisicao r) throws IOException {
+        if (r.id == SEM_ID) {
+            switch (r.metodo) {
+                case "GET" -> {
+                    String busca = r.parametros.get("busca");
+                    Integer matricula = r.inteiro("matricula");
+                    if (busca != null) {
+                        transmitir(r, USUARIOS, usuarios, buscaUsuarios.buscar(busca, RESULTADOS_BUSCA),
+                                ServidorHttp::escreverUsuario);
+                    } else if (matricula != null) {
+                        Usuario usuario = buscarUsuario(matricula);
+                        if (usuario == null) throw new Falha(404, "Nenhum usuário encontrado com esta matrícula!");
+                        responder(r, 200, USUARIOS, usuarios, usuario, ServidorHttp::escreverUsuario);
+                    } else {
+                        transmitir(r, USUARIOS, usuarios, null, ServidorHttp::escreverUsuario);
+                    }
+                }
+                case "POST" -> {
+                    Map<String, Object> corpo = r.corpo();
+                    String nome = obrigatorio(texto(corpo, "nome"), "nome");
+                    String departamento = obrigatorio(texto(corpo, "departamento"), "departamento");
+                    int matricula = obrigatorio(inteiro(corpo, "matricula"), "matricula");
+                    Usuario usuario = aplicarCadastroUsuario(NOVO, nome, departamento, matricula);
+                    if (usuario == null) throw new Falha(409, "Já existe um usuário cadastrado com esta matrícula!");
+                    responder(r, 201, USUARIOS, usuarios, usuario, ServidorHttp::escreverUsuario);
+                }
+                default -> naoPermitido(r, "GET, POST");
+            }
+            return;
+        }
+
+        Usuario usuario = existente(usuarios, r.id, "Nenhum usuário encontrado com este ID!");
+        switch (r.metodo) {
+            case "GET" -> responder(r, 200, USUARIOS, usuarios, usuario, ServidorHttp::escreverUsuario);
+            case "PUT" -> {
+                Map<String, Object> corpo = r.corpo();
+                String nome = texto(corpo, "nome");
+                String departamento = texto(corpo, "departamento");
+                Integer matricula = inteiro(corpo, "matricula");
+                // Os campos omitidos mantêm os valores lidos com as travas da própria atualização
+                travar(EMPRESTIMOS, USUARIOS);
+                try {
+                    if (!usuarios.contem(usuario)) throw new Falha(409, CONFLITO);
+                    if (matricula != null && matricula != usuario.getMatricula() && indiceMatricula.contem(matricula)) {
+                        throw new Falha(409, "Já existe um usuário cadastrado com esta matrícula!");
+                    }
+                    if (!aplicarAtualizacaoUsuario(usuario, nome != null ? nome : usuario.getNome(),
+                            departamento != null ? departamento : usuario.getDepartamento(),
+                            matricula != null ? matricula : usuario.getMatricula())) {
+                        throw new Falha(409, CONFLITO);
+                    }
+                } finally {
+                    destravar(EMPRESTIMOS, USUARIOS);
+                }
+                responder(r, 200, USUARIOS, usuarios, usuario, ServidorHttp::escreverUsuario);
+            }
+            case "DELETE" -> {
+                int emAberto;
+                travar(EMPRESTIMOS, 0);
+                try {
+                    emAberto = abertos.totalPorUsuario(usuario.getId());
+                } finally {
+                    destravar(EMPRESTIMOS, 0);
+                }
+                if (emAberto > 0) {
+                    throw new Falha(409, "O usuário possui " + emAberto
+                            + " empréstimo(s) em aberto. Registre as devoluções antes de removê-lo.");
+                }
+                if (!aplicarRemocaoUsuarioEmCascata(usuario)) throw new Falha(409, CONFLITO);
+                responder(r.troca, 204, null);
+            }
+            default -> naoPermitido(r, "GET, PUT, DELETE");
+        }
+    }
+
+    // ==================== EPIs ====================
+
+    private static void atenderEpis(Requisicao r) throws IOException {
+        if (r.id == SEM_ID) {
+            switch (r.metodo) {
+                case "GET" -> {
+                    String busca = r.parametros.get("busca");
+                    transmitir(r, EPIS, epis, busca != null ? buscaEpis.buscar(busca, RESULTADOS_BUSCA) : null,
+                            ServidorHttp::escreverEpi);
+                }
+                case "POST" -> {
+                    Map<String, Object> corpo = r.corpo();
+                    String nome = obrigatorio(texto(corpo, "nome"), "nome");
+                    int quantidade = obrigatorio(inteiro(corpo, "quantidade"), "quantidade");
+                    Integer validade = validade(corpo);
+                    int minimo = limite(corpo, "estoqueMinimo", EPI.SEM_LIMITE);
+                    int reposicao = limite(corpo, "pontoReposicao", EPI.SEM_LIMITE);
+                    String erro = SistemaGerenciamentoEPI.validarLimites(minimo, reposicao);
+                    if (erro != null) throw new Falha(400, erro);
+                    EPI epi = aplicarCadastroEPI(NOVO, nome, quantidade, validade != null ? validade : EPI.SEM_VALIDADE);
+                    if (minimo != EPI.SEM_LIMITE || reposicao != EPI.SEM_LIMITE) {
+                        aplicarLimitesEPI(epi, minimo, reposicao);
+                    }
+                    responder(r, 201, EPIS, epis, epi, ServidorHttp::escreverEpi);
+                }
+                default -> naoPermitido(r, "GET, POST");
+            }
+            return;
+        }
+
+        EPI epi = existente(epis, r.id, "ID de EPI inválido!");
+        switch (r.metodo) {
+            case "GET" -> responder(r, 200, EPIS, epis, epi, ServidorHttp::escreverEpi);
+            case "PUT" -> {
+                Map<String, Object> corpo = r.corpo();
+                String nome = texto(corpo, "nome");
+                Integer quantidade = inteiro(corpo, "quantidade");
+                Integer validade = validade(corpo);
+                // Os campos omitidos mantêm os valores lidos com os EPIs travados para escrita, o que
+                // também exclui os empréstimos e devoluções: a quantidade informada vira a variação
+                // exata e um PUT sem quantidade não toca no estoque
+                travar(0, EPIS);
+                try {
+                    if (!epis.contem(epi)) throw new Falha(409, CONFLITO);
+                    int minimo = limite(corpo, "estoqueMinimo", epi.getEstoqueMinimo());
+                    int reposicao = limite(corpo, "pontoReposicao", epi.getPontoReposicao());
+                    String erro = SistemaGerenciamentoEPI.validarLimites(minimo, reposicao);
+                    if (erro != null) throw new Falha(400, erro);
+                    aplicarAtualizacaoEPI(epi, nome != null ? nome : epi.getNome(),
+                            quantidade != null ? quantidade - epi.getQuantidade() : 0,
+                            validade != null ? validade : epi.getDataValidade());
+                    if (minimo != epi.getEstoqueMinimo() || reposicao != epi.getPontoReposicao()) {
+                        aplicarLimitesEPI(epi, minimo, reposicao);
+                    }
+                } finally {
+                    destravar(0, EPIS);
+                }
+                responder(r, 200, EPIS, epis, epi, ServidorHttp::escreverEpi);
+            }
+            case "DELETE" -> {
+                int emAberto;
+                travar(EMPRESTIMOS, 0);
+                try {
+                    emAberto = abertos.totalPorEpi(epi.getId());
+                } finally {
+                    destravar(EMPRESTIMOS, 0);
+                }
+                if (emAberto > 0) {
+                    throw new Falha(409, "O EPI possui " + emAberto
+                            + " empréstimo(s) em aberto. Registre as devoluções antes de removê-lo.");
+                }
+                if (!aplicarRemocaoEPIEmCascata(epi)) throw new Falha(409, CONFLITO);
+                responder(r.troca, 204, null);
+            }
+            default -> naoPermitido(r, "GET, PUT, DELETE");
+        }
+    }
+
+    /**
+     * @return A validade do corpo como dia epoch, EPI.SEM_VALIDADE se informada como null,
+     *         ou null se o campo foi omitido
+     */
+    private static Integer validade(Map<String, Object> corpo) {
+        if (!corpo.containsKey("validade")) return null;
+        if (corpo.get("validade") == null) return EPI.SEM_VALIDADE;
+        return (int) obrigatorio(data(corpo, "validade"), "validade").toEpochDay();
+    }
+
+    /**
+     * @return O limite de estoque do campo, EPI.SEM_LIMITE se informado como null, ou atual se omitido
+     */
+    private static int limite(Map<String, Object> corpo, String campo, int atual) {
+        if (!corpo.containsKey(campo)) return atual;
+        Integer valor = inteiro(corpo, campo);
+        return valor != null ? valor : EPI.SEM_LIMITE;
+    }
+
+    // ==================== EMPRÉSTIMOS ====================
+
+    private static void atenderEmprestimos(Requisicao r) throws IOException {
+        if (r.id == SEM_ID) {
+            switch (r.metodo) {
+                case "GET" -> listarEmprestimos(r);
+                case "POST" -> {
+                    Map<String, Object> corpo = r.corpo();
+                    int matricula = obrigatorio(inteiro(corpo, "matricula"), "matricula");
+                    int idEpi = obrigatorio(inteiro(corpo, "epi"), "epi");
+                    LocalDate dataEmp = obrigatorio(data(corpo, "data"), "data");
+                    LocalDate dataDev = obrigatorio(data(corpo, "devolucaoPrevista"), "devolucaoPrevista");
+                    Usuario usuario = buscarUsuario(matricula);
+                    if (usuario == null) throw new Falha(400, "Nenhum usuário encontrado com esta matrícula!");
+                    EPI epi = obter(epis, idEpi);
+                    if (epi == null) throw new Falha(400, "ID de EPI inválido!");
+                    if (dataDev.isBefore(dataEmp)) {
+                        throw new Falha(400, "A data de devolução deve ser posterior à data de empréstimo!");
+                    }
+                    Emprestimo emp;
+                    try {
+                        emp = aplicarCadastroEmprestimo(NOVO, usuario, epi, dataEmp, dataDev);
+                    } catch (EmprestimoRecusado e) {
+                        throw new Falha(409, e.getMessage());
+                    }
+                    if (emp == null) throw new Falha(409, CONFLITO);
+                    responder(r, 201, TODOS, emprestimos, emp, ServidorHttp::escreverEmprestimo);
+                }
+                default -> naoPermitido(r, "GET, POST");
+            }
+            return;
+        }
+
+        Emprestimo emp = existente(emprestimos, r.id, "ID de empréstimo inválido!");
+        switch (r.metodo) {
+            case "GET" -> responder(r, 200, TODOS, emprestimos, emp, ServidorHttp::escreverEmprestimo);
+            case "PUT" -> {
+                Map<String, Object> corpo = r.corpo();
+                Integer matricula = inteiro(corpo, "matricula");
+                Integer idEpi = inteiro(corpo, "epi");
+                LocalDate dataEmp = data(corpo, "data");
+                LocalDate dataDev = data(corpo, "devolucaoPrevista");
+
+                Usuario novoUsuario = null;
+                if (matricula != null) {
+                    novoUsuario = buscarUsuario(matricula);
+                    if (novoUsuario == null) throw new Falha(400, "Nenhum usuário encontrado com esta matrícula!");
+                }
+                EPI novoEpi = null;
+                if (idEpi != null) {
+                    novoEpi = obter(epis, idEpi);
+                    if (novoEpi == null) throw new Falha(400, "ID de EPI inválido!");
+                }
+                // As datas omitidas mantêm os valores lidos com as travas da própria atualização
+                travar(USUARIOS | EPIS, EMPRESTIMOS);
+                try {
+                    if (!emprestimos.contem(emp)) throw new Falha(409, CONFLITO);
+                    if (dataEmp == null) dataEmp = emp.getDataEmprestimo();
+                    if (dataDev == null) dataDev = emp.getDataDevolucaoPrevista();
+                    if (dataDev.isBefore(dataEmp)) {
+                        throw new Falha(400, "A data de devolução deve ser posterior à data de empréstimo!");
+                    }
+                    if (!aplicarAtualizacaoEmprestimo(emp, novoUsuario, novoEpi, dataEmp, dataDev)) {
+                        throw new Falha(409, CONFLITO);
+                    }
+                } catch (EmprestimoRecusado e) {
+                    throw new Falha(409, e.getMessage());
+                } finally {
+                    destravar(USUARIOS | EPIS, EMPRESTIMOS);
+                }
+                responder(r, 200, TODOS, emprestimos, emp, ServidorHttp::escreverEmprestimo);
+            }
+            case "DELETE" -> {
+                if (!aplicarRemocaoEmprestimo(emp)) throw new Falha(409, CONFLITO);
+                responder(r.troca, 204, null);
+            }
+            default -> naoPermitido(r, "GET, PUT, DELETE");
+        }
+    }
+
+    /**
+     * Lista todos os empréstimos, os em aberto (todos, de um usuário ou de um EPI) ou os em atraso
+     * Os IDs das consultas são copiados com as travas obtidas e os itens lidos de novo em cada bloco
+     */
+    private static void listarEmprestimos(Requisicao r) throws IOException {
+        String situacao = r.parametros.getOrDefault("situacao", "");
+        switch (situacao) {
+            case "" -> transmitir(r, TODOS, emprestimos, null, ServidorHttp::escreverEmprestimo);
+            case "abertos" -> {
+                Integer matricula = r.inteiro("matricula");
+                Integer idEpi = r.inteiro("epi");
+                int[] ids;
+                travar(USUARIOS | EPIS | EMPRESTIMOS, 0);
+                try {
+                    List<Emprestimo> consulta;
+                    if (matricula != null) {
+                        Usuario usuario = indiceMatricula.buscar(matricula);
+                        if (usuario == null) throw new Falha(404, "Nenhum usuário encontrado com esta matrícula!");
+                        consulta = abertos.porUsuario(usuario.getId());
+                    } else if (idEpi != null) {
+                        if (epis.obter(idEpi) == null) throw new Falha(404, "ID de EPI inválido!");
+                        consulta = abertos.porEpi(idEpi);
+                    } else {
+                        consulta = abertos.todos();
+                    }
+                    ids = new int[consulta.size()];
+                    for (int i = 0; i < ids.length; i++) ids[i] = consulta.get(i).getId();
+                } finally {
+                    destravar(USUARIOS | EPIS | EMPRESTIMOS, 0);
+                }
+                transmitir(r, TODOS, emprestimos, ids, ServidorHttp::escreverEmprestimo);
+            }
+            case "atrasados" -> {
+                // Garante que os vencimentos de hoje já foram processados (a verificação pode estar atrasada)
+                int hoje = (int) LocalDate.now().toEpochDay();
+                vencimentos.avancar(hoje);
+                transmitir(r, TODOS, emprestimos, vencimentos.atrasados(), (json, emp) -> {
+                    json.abrirObjeto();
+                    camposEmprestimo(json, emp);
+                    json.campo("diasAtraso").numero(hoje - emp.getDataDevolucaoPrevista().toEpochDay()).fecharObjeto();
+                });
+            }
+            default -> throw new Falha(400, "Situação inválida: use abertos ou atrasados.");
+        }
+    }
+
+    // ==================== DEVOLUÇÕES ====================
+
+    private static void atenderDevolucoes(Requisicao r) throws IOException {
+        if (r.id == SEM_ID) {
+            switch (r.metodo) {
+                case "GET" -> transmitir(r, EMPRESTIMOS | DEVOLUCOES, devolucoes, null, ServidorHttp::escreverDevolucao);
+                case "POST" -> {
+                    Map<String, Object> corpo = r.corpo();
+                    int idEmprestimo = obrigatorio(inteiro(corpo, "emprestimo"), "emprestimo");
+                    LocalDate dataDev = obrigatorio(data(corpo, "data"), "data");
+                    String observacao = texto(corpo, "observacao");
+                    Devolucao dev;
+                    // A situação e a data do empréstimo são lidas com as travas do próprio cadastro
+                    travar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+                    try {
+                        Emprestimo emp = emprestimos.obter(idEmprestimo);
+                        if (emp == null) throw new Falha(400, "ID de empréstimo inválido!");
+                        if (emp.getDevolucao() != null) {
+                            throw new Falha(409, "Este empréstimo já possui devolução registrada!");
+                        }
+                        if (dataDev.isBefore(emp.getDataEmprestimo())) {
+                            throw new Falha(400, "A data de devolução deve ser posterior à data de empréstimo!");
+                        }
+                        dev = aplicarCadastroDevolucao(NOVO, emp, dataDev, observacao != null ? observacao : "");
+                    } finally {
+                        destravar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+                    }
+                    if (dev == null) throw new Falha(409, CONFLITO);
+                    responder(r, 201, EMPRESTIMOS | DEVOLUCOES, devolucoes, dev, ServidorHttp::escreverDevolucao);
+                }
+                default -> naoPermitido(r, "GET, POST");
+            }
+            return;
+        }
+
+        Devolucao dev = existente(devolucoes, r.id, "ID de devolução inválido!");
+        switch (r.metodo) {
+            case "GET" -> responder(r, 200, EMPRESTIMOS | DEVOLUCOES, devolucoes, dev, ServidorHttp::escreverDevolucao);
+            case "PUT" -> {
+                Map<String, Object> corpo = r.corpo();
+                Integer idEmprestimo = inteiro(corpo, "emprestimo");
+                LocalDate dataDev = data(corpo, "data");
+                String observacao = texto(corpo, "observacao");
+
+                // Os campos omitidos e a data do empréstimo são lidos com as travas da própria atualização
+                travar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+                try {
+                    if (!devolucoes.contem(dev)) throw new Falha(409, CONFLITO);
+                    Emprestimo novoEmp = null;
+                    if (idEmprestimo != null) {
+                        novoEmp = emprestimos.obter(idEmprestimo);
+                        if (novoEmp == null) throw new Falha(400, "ID de empréstimo inválido!");
+                        if (novoEmp.getDevolucao() != null && !dev.equals(novoEmp.getDevolucao())) {
+                            throw new Falha(409, "Este empréstimo já possui devolução registrada!");
+                        }
+                    }
+                    Emprestimo empRelacionado = novoEmp != null ? novoEmp : dev.getEmprestimo();
+                    if (dataDev == null) dataDev = dev.getDataDevolucao();
+                    if (dataDev.isBefore(empRelacionado.getDataEmprestimo())) {
+                        throw new Falha(400, "A data de devolução deve ser posterior à data de empréstimo!");
+                    }
+                    if (!aplicarAtualizacaoDevolucao(dev, novoEmp, dataDev,
+                            observacao != null ? observacao : dev.getObservacao())) {
+                        throw new Falha(409, CONFLITO);
+                    }
+                } finally {
+                    destravar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+                }
+                responder(r, 200, EMPRESTIMOS | DEVOLUCOES, devolucoes, dev, ServidorHttp::escreverDevolucao);
+            }
+            case "DELETE" -> {
+                if (!aplicarRemocaoDevolucao(dev)) throw new Falha(409, CONFLITO);
+                responder(r.troca, 204, null);
+            }
+            default -> naoPermitido(r, "GET, PUT, DELETE");
+        }
+    }
+
+    // ==================== JSON DAS ENTIDADES ====================
+
+    private static void escreverUsuario(EscritorJson json, Usuario usuario) {
+        json.abrirObjeto()
+                .campo("id").numero(usuario.getId())
+                .campo("nome").texto(usuario.getNome())
+                .campo("departamento").texto(usuario.getDepartamento())
+                .campo("matricula").numero(usuario.getMatricula())
+                .fecharObjeto();
+    }
+
+    private static void escreverEpi(EscritorJson json, EPI epi) {
+        json.abrirObjeto()
+                .campo("id").numero(epi.getId())
+                .campo("nome").texto(epi.getNome())
+                .campo("quantidade").numero(epi.getQuantidade())
+                .campo("validade");
+        if (epi.possuiValidade()) json.data(epi.getDataValidade()); else json.nulo();
+        json.campo("estoqueMinimo");
+        if (epi.getEstoqueMinimo() != EPI.SEM_LIMITE) json.numero(epi.getEstoqueMinimo()); else json.nulo();
+        json.campo("pontoReposicao");
+        if (epi.getPontoReposicao() != EPI.SEM_LIMITE) json.numero(epi.getPontoReposicao()); else json.nulo();
+        json.campo("nivelEstoque").texto(epi.getNivelEstoque().name());
+        json.fecharObjeto();
+    }
+
+    private static void escreverEmprestimo(EscritorJson json, Emprestimo emp) {
+        json.abrirObjeto();
+        camposEmprestimo(json, emp);
+        json.fecharObjeto();
+    }
+
+    /**
+     * Escreve os campos de um empréstimo no objeto aberto (lê usuários, EPIs e devoluções)
+     */
+    private static void camposEmprestimo(EscritorJson json, Emprestimo emp) {
+        Usuario usuario = emp.getUsuario();
+        EPI epi = emp.getEpi();
+        Devolucao dev = emp.getDevolucao();
+        json.campo("id").numero(emp.getId())
+                .campo("usuario").numero(usuario.getId())
+                .campo("matricula").numero(usuario.getMatricula())
+                .campo("nomeUsuario").texto(usuario.getNome())
+                .campo("epi").numero(epi.getId())
+                .campo("nomeEpi").texto(epi.getNome())
+                .campo("data").data(emp.getDataEmprestimo())
+                .campo("devolucaoPrevista").data(emp.getDataDevolucaoPrevista())
+                .campo("devolucao");
+        if (dev != null) json.numero(dev.getId()); else json.nulo();
+    }
+
+    private static void escreverDevolucao(EscritorJson json, Devolucao dev) {
+        json.abrirObjeto()
+                .campo("id").numero(dev.getId())
+                .campo("emprestimo").numero(dev.getEmprestimo().getId())
+                .campo("data").data(dev.getDataDevolucao())
+                .campo("observacao").texto(dev.getObservacao())
+                .fecharObjeto();
+    }
+
+    // ==================== RESPOSTAS ====================
+
+    /**
+     * Envia uma lista JSON em fluxo, em blocos de até ITENS_POR_BLOCO itens
+     * Cada bloco é montado com os repositórios travados para leitura e enviado depois de liberá-los
+     * @param leitura Repositórios lidos pelo serializador
+     * @param ids IDs a enviar, nesta ordem, ou null para todos os IDs do repositório em ordem crescente
+     */
+    private static <T extends Entidade> void transmitir(Requisicao r, int leitura, Repositorio<T> repositorio,
+                                                        int[] ids, BiConsumer<EscritorJson, ? super T> serializador)
+            throws IOException {
+        r.troca.getResponseHeaders().set("Content-Type", TIPO_JSON);
+        r.troca.sendResponseHeaders(200, 0);
+        OutputStream saida = r.troca.getResponseBody();
+        EscritorJson json = new EscritorJson().abrirLista();
+        int posicao = 0;
+        boolean fim = false;
+        while (!fim) {
+            travar(leitura, 0);
+            try {
+                int total = ids != null ? ids.length : repositorio.limite();
+                for (int escritos = 0; posicao < total && escritos < ITENS_POR_BLOCO; posicao++) {
+                    T item = repositorio.obter(ids != null ? ids[posicao] : posicao);
+                    if (item == null) continue; // Removido depois da consulta
+                    serializador.accept(json, item);
+                    escritos++;
+                }
+                fim = posicao >= total;
+            } finally {
+                destravar(leitura, 0);
+            }
+            if (fim) json.fecharLista();
+            json.descarregar(saida);
+        }
+    }
+
+    /**
+     * Responde com uma entidade, lida com os repositórios travados para leitura
+     * @throws Falha 404 se a entidade foi removida por outra sessão
+     */
+    private static <T extends Entidade> void responder(Requisicao r, int status, int leitura, Repositorio<T> repositorio,
+                                                       T item, BiConsumer<EscritorJson, ? super T> serializador)
+            throws IOException {
+        EscritorJson json = new EscritorJson();
+        travar(leitura, 0);
+        try {
+            if (!repositorio.contem(item)) throw new Falha(404, "O registro foi removido por outra sessão.");
+            serializador.accept(json, item);
+        } finally {
+            destravar(leitura, 0);
+        }
+        responder(r.troca, status, json);
+    }
+
+    /**
+     * @param json Corpo da resposta ou null para uma resposta sem corpo
+     */
+    private static void responder(HttpExchange troca, int status, EscritorJson json) throws IOException {
+        if (json == null) {
+            troca.sendResponseHeaders(status, -1);
+            return;
+        }
+        troca.getResponseHeaders().set("Content-Type", TIPO_JSON);
+        troca.sendResponseHeaders(status, json.tamanho());
+        json.descarregar(troca.getResponseBody());
+    }
+
+    private static void responderErro(HttpExchange troca, int status, String mensagem) throws IOException {
+        responder(troca, status, new EscritorJson().abrirObjeto().campo("erro").texto(mensagem).fecharObjeto());
+    }
+
+    private static void naoPermitido(Requisicao r, String permitidos) {
+        r.troca.getResponseHeaders().set("Allow", permitidos);
+        throw new Falha(405, "Método " + r.metodo + " não permitido. Use " + permitidos + ".");
+    }
+
+    // ==================== CAMPOS DAS REQUISIÇÕES ====================
+
+    /**
+     * @return A entidade do ID do caminho
+     * @throws Falha 404 se o ID não existir
+     */
+    private static <T extends Entidade> T existente(Repositorio<T> repositorio, int id, String erro) {
+        T entidade = obter(repositorio, id);
+        if (entidade == null) throw new Falha(404, erro);
+        return entidade;
+    }
+
+    private static <T> T obrigatorio(T valor, String campo) {
+        if (valor == null) throw new Falha(400, "O campo " + campo + " é obrigatório.");
+        return valor;
+    }
+
+    /**
+     * @return O texto do campo sem espaços nas pontas, ou null se omitido ou null
+     * @throws Falha 400 se o campo não for uma string ou estiver em branco (exceto a observação)
+     */
+    private static String texto(Map<String, Object> corpo, String campo) {
+        Object valor = corpo.get(campo);
+        if (valor == null) return null;
+        if (!(valor instanceof String texto)) throw new Falha(400, "O campo " + campo + " deve ser uma string.");
+        texto = texto.trim();
+        if (texto.isEmpty() && !campo.equals("observacao")) {
+            throw new Falha(400, "O campo " + campo + " não pode ficar vazio.");
+        }
+        return texto;
+    }
+
+    /**
+     * @return O número do campo, ou null se omitido ou null
+     * @throws Falha 400 se o campo não for um número inteiro de 32 bits
+     */
+    private static Integer inteiro(Map<String, Object> corpo, String campo) {
+        Object valor = corpo.get(campo);
+        if (valor == null) return null;
+        if (!(valor instanceof Long numero)) throw new Falha(400, "O campo " + campo + " deve ser um número inteiro.");
+        if (numero != numero.intValue()) throw new Falha(400, "O campo " + campo + " excede o limite de um inteiro.");
+        return numero.intValue();
+    }
+
+    /**
+     * @return A data AAAA-MM-DD do campo, ou null se omitido ou null
+     * @throws Falha 400 se o campo não for uma data válida
+     */
+    private static LocalDate data(Map<String, Object> corpo, String campo) {
+        Object valor = corpo.get(campo);
+        if (valor == null) return null;
+        LocalDate data = valor instanceof String texto ? Conversao.data(texto) : null;
+        if (data == null) throw new Falha(400, DATA_INVALIDA);
+        return data;
+    }
+
+    /**
+     * @return Os parâmetros da consulta (a primeira ocorrência de cada nome)
+     */
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null) return parametros;
+        try {
+            for (String par : consulta.split("&")) {
+                if (par.isEmpty()) continue;
+                int igual = par.indexOf('=');
+                String nome = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+                String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+                parametros.putIfAbsent(nome, valor);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new Falha(400, "Consulta inválida: " + e.getMessage());
+        }
+        return parametros;
+    }
+}
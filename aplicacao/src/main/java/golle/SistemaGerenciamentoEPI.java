@@ -0,0 +1,2094 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+/**
+ * SISTEMA DE GERENCIAMENTO DE EQUIPAMENTOS DE PROTEÇÃO INDIVIDUAL (EPIs)
+ *
+ * Este sistema permite:
+ * - Cadastro e gerenciamento de usuários, EPIs, empréstimos e devoluções
+ * - Operações CRUD completas para todas as entidades
+ * - Validação robusta de todos os tipos de entrada
+ * - Tratamento adequado para entradas vazias ou inválidas
+ * - Interface intuitiva com menus hierárquicos
+ * - Persistência em journal binário (append-only) reproduzido na inicialização
+ * - Snapshots binários periódicos, mapeados em memória na inicialização
+ * - Verificação diária em segundo plano dos empréstimos que entraram em atraso
+ * - Consulta de EPIs vencidos ou a vencer por faixa de datas de validade
+ * - Baixa e reposição atômicas (CAS) do estoque de EPIs em empréstimos e devoluções
+ * - Modo servidor com várias sessões simultâneas, cada uma em sua própria thread virtual
+ * - Busca aproximada, sem diferenciar acentos, por nome e departamento de usuários e nome de
+ *   EPIs, aceita também onde se pede a matrícula do usuário ou o ID do EPI
+ * - Painel por departamento (itens em uso, em atraso e empréstimos do mês) com contadores
+ *   mantidos a cada operação
+ * - Empréstimos e devoluções guardados em colunas de int (struct-of-arrays), sem um objeto
+ *   por registro do histórico
+ * - Departamentos e nomes de EPI guardados uma única vez em dicionários, com as variantes de
+ *   digitação (maiúsculas, acentos, espaços) unificadas
+ * - Núcleo (modelo, índices, persistência e operações) separado dos menus, no módulo nucleo,
+ *   com benchmarks JMH das operações principais no módulo benchmarks
+ * - Métricas de contagem, vazão e latência (histogramas sem travas) de cada operação, exibidas
+ *   no menu Métricas e gravadas num arquivo de métricas para coleta local
+ * - Relatórios mensais (consumo por tipo de EPI, duração média dos empréstimos, taxa de atraso
+ *   por departamento e maiores tomadores) calculados em paralelo sobre o histórico
+ * - Relatórios lidos de um retrato do instante (colunas versionadas com cópia na escrita), sem
+ *   travar empréstimos e devoluções durante o cálculo
+ * - Histórico particionado por mês: os empréstimos devolvidos dos meses antigos são selados em
+ *   segmentos comprimidos em disco, lidos só pelos relatórios e pela consulta do histórico arquivado
+ * - Entrada lida direto dos bytes (UTF-8), com números e datas convertidos sem exceções nem
+ *   objetos intermediários, inclusive no modo lote e na importação
+ * - API HTTP/JSON local com as operações de usuários, EPIs, empréstimos e devoluções, cada
+ *   requisição em sua própria thread virtual, conexões persistentes e listagens em fluxo
+ * - Estoque mínimo e ponto de reposição por EPI, avaliados a cada empréstimo, devolução e
+ *   atualização; os alertas passam por uma fila limitada que nunca bloqueia o empréstimo e são
+ *   exibidos nas sessões e gravados no arquivo de alertas
+ *
+ * Compilação (Maven, Java 21): mvn -B package gera aplicacao/target/golle.jar, executado com
+ * "java -jar aplicacao/target/golle.jar [argumentos]", e benchmarks/target/benchmarks.jar
+ *
+ * Argumentos de execução:
+ * - (nenhum): uma sessão no console
+ * - --servidor [porta]: aceita sessões por conexões TCP (padrão: porta 7070), por exemplo com
+ *   "nc localhost 7070"; cada conexão tem seu próprio menu e os dados são compartilhados
+ * - --http [porta]: API HTTP/JSON (padrão: porta 8080), descrita em ServidorHttp, por exemplo
+ *   "curl localhost:8080/api/epis"
+ * - --lote [arquivo]: aplica os comandos do arquivo (ou da entrada padrão, se omitido ou "-")
+ *   sem menus nem prompts e mostra um resumo ao final. Um comando por linha, campos separados
+ *   por espaços (o último campo recebe o resto da linha) ou por ";"; linhas vazias e iniciadas
+ *   por "#" são ignoradas:
+ *     EMPRESTIMO (ou LOAN) <matrícula> <ID do EPI> <data> <devolução prevista>
+ *     DEVOLUCAO (ou RETURN) <ID do empréstimo> <data> [observação]
+ *     USUARIO (ou USER) <matrícula> <departamento> <nome>
+ *     EPI <quantidade> <validade ou -> <nome>
+ *     LIMITES <ID do EPI> <estoque mínimo ou -> <ponto de reposição ou ->
+ * - --importar usuarios|epis <arquivo.csv>: importa o cadastro de usuários (colunas nome,
+ *   departamento, matricula) ou de EPIs (colunas nome, quantidade, validade) de um CSV com
+ *   cabeçalho, separado por "," ou ";", validando cada linha como nos menus
+ * - --carga-http [porta] [clientes] [segundos]: roda apenas o teste de carga contra uma API HTTP já
+ *   iniciada em localhost (padrão: porta 8080, 64 clientes, 10 segundos) e encerra
+ *
+ * Configuração por propriedades do sistema (-Dpropriedade=valor):
+ * - golle.journal: caminho do arquivo de journal (padrão: golle.journal)
+ * - golle.fsync: "operacao" sincroniza o disco a cada operação (padrão),
+ *   "grupo" sincroniza em lote a cada golle.fsync.intervaloMs milissegundos (padrão: 50)
+ * - golle.snapshot: caminho do arquivo de snapshot (padrão: golle.snapshot)
+ * - golle.snapshot.intervalo: operações entre snapshots automáticos, 0 desativa (padrão: 10000)
+ * - golle.historico: diretório dos segmentos do histórico arquivado (padrão: golle.historico)
+ * - golle.historico.mesesAtivos: meses mantidos em memória, contando o atual; os empréstimos
+ *   devolvidos dos meses anteriores são selados na verificação diária, 0 desativa (padrão: 3)
+ * - golle.alertas: arquivo onde os alertas de estoque são acrescentados, vazio desativa (padrão: golle.alertas)
+ * - golle.alertas.fila: EPIs aguardando avaliação na fila dos alertas; com a fila cheia, os
+ *   EPIs são reavaliados todos de uma vez (padrão: 1024)
+ * - golle.metricas: caminho do arquivo de métricas, no formato texto do Prometheus (padrão: golle.metricas)
+ * - golle.metricas.intervalo: segundos entre gravações do arquivo de métricas, 0 grava apenas
+ *   ao sair e no menu Métricas (padrão: 10)
+ */
+public class SistemaGerenciamentoEPI extends NucleoEPI {
+
+    // Linhas aplicadas por vez no modo lote (cada lote trava os repositórios e sincroniza o journal uma vez)
+    private static final int LINHAS_POR_LOTE = 1000;
+
+    // Linhas exibidas por página nas listagens
+    private static final int LINHAS_POR_PAGINA = 20;
+
+    // Linhas montadas por vez (com as travas) ao exibir uma listagem inteira
+    private static final int LINHAS_POR_TRECHO = 500;
+
+    // Erro do modo lote para datas fora do formato AAAA-MM-DD ou inexistentes
+    private static final String DATA_INVALIDA = "Formato de data inválido. Use AAAA-MM-DD.";
+
+    // Latência da conversão das entradas digitadas (depois de lidas) e da montagem das páginas
+    // das listagens (com as travas, antes de escrever na sessão)
+    private static final Metrica METRICA_ENTRADA = Metricas.nova("entrada.converter", "Converter entrada");
+    private static final Metrica METRICA_LISTAR_USUARIOS = Metricas.nova("usuario.listar", "Listar usuários");
+    private static final Metrica METRICA_LISTAR_EPIS = Metricas.nova("epi.listar", "Listar EPIs");
+    private static final Metrica METRICA_LISTAR_VALIDADES = Metricas.nova("epi.listar_validades", "Consultar validades");
+    private static final Metrica METRICA_LISTAR_EMPRESTIMOS =
+            Metricas.nova("emprestimo.listar", "Listar empréstimos");
+    private static final Metrica METRICA_LISTAR_ABERTOS =
+            Metricas.nova("emprestimo.listar_abertos", "Listar empréstimos em aberto");
+    private static final Metrica METRICA_LISTAR_DEVOLUCOES = Metricas.nova("devolucao.listar", "Listar devoluções");
+    private static final Metrica METRICA_LISTAR_ARQUIVADOS =
+            Metricas.nova("historico.listar", "Consultar histórico arquivado");
+
+    // Arquivo de métricas, regravado periodicamente, ao sair e ao exibir o menu de métricas
+    private static Path arquivoMetricas;
+
+    /**
+     * MÉTODO PRINCIPAL - Ponto de entrada do sistema
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--carga-http")) {
+            int porta = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            int clientes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+            int segundos = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+            System.exit(CargaHttp.executar(porta, clientes, segundos) ? 0 : 1);
+        }
+
+        arquivoMetricas = Paths.get(System.getProperty("golle.metricas", "golle.metricas"));
+        Metricas.iniciarGravacao(arquivoMetricas, Long.getLong("golle.metricas.intervalo", 10));
+
+        // Os dados são carregados em segundo plano enquanto o menu já é exibido
+        Thread carga = new Thread(SistemaGerenciamentoEPI::carregarDados, "carga-inicial");
+        carga.setDaemon(true);
+        carga.start();
+
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            executarServidor(args.length > 1 ? Integer.parseInt(args[1]) : 7070);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--http")) {
+            if (!ServidorHttp.executar(args.length > 1 ? Integer.parseInt(args[1]) : 8080)) {
+                encerrarPersistencia();
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--lote")) {
+            try {
+                executarEmLotes(args.length > 1 ? args[1] : "-", null);
+            } finally {
+                encerrarPersistencia();
+            }
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--importar")) {
+            try {
+                executarEmLotes(args[2], args[1].toLowerCase());
+            } finally {
+                encerrarPersistencia();
+            }
+            return;
+        }
+
+        sessaoAtual.set(new Sessao(System.in, System.out));
+        try {
+            exibirMenuPrincipal(); // Inicia o sistema mostrando o menu principal
+        } finally {
+            encerrarPersistencia();
+        }
+    }
+
+    // ==================== MODO LOTE ====================
+
+    /**
+     * Lê um arquivo (ou a entrada padrão) em fluxo e aplica suas linhas em lotes de até
+     * LINHAS_POR_LOTE. Cada lote trava todos os repositórios uma vez e sincroniza o journal uma
+     * vez; linhas inválidas são rejeitadas individualmente com as mesmas regras dos menus
+     * @param arquivo Caminho do arquivo ou "-" para a entrada padrão
+     * @param tipoCsv null para comandos do modo lote, "usuarios" ou "epis" para importar um CSV
+     */
+    private static void executarEmLotes(String arquivo, String tipoCsv) {
+        if (tipoCsv != null && !tipoCsv.equals("usuarios") && !tipoCsv.equals("epis")) {
+            System.out.println("Erro: Tipo de importação inválido. Use usuarios ou epis.");
+            return;
+        }
+        if (!aguardarCarga()) {
+            System.out.println("Erro: Os dados salvos não puderam ser carregados. Lote não aplicado.");
+            return;
+        }
+
+        ResumoLote resumo = new ResumoLote();
+        long inicio = System.nanoTime();
+        try (LeitorLinhas entrada = new LeitorLinhas(arquivo.equals("-")
+                ? System.in : Files.newInputStream(Paths.get(arquivo)), 1 << 16)) {
+            BiFunction<String, ResumoLote, String> aplicador = SistemaGerenciamentoEPI::aplicarComando;
+            int numeroPrimeira = 1;
+            if (tipoCsv != null) {
+                ColunasCsv colunas = ColunasCsv.doCabecalho(entrada.lerLinha(), tipoCsv.equals("usuarios")
+                        ? new String[]{"nome", "departamento", "matricula"}
+                        : new String[]{"nome", "quantidade", "validade"});
+                aplicador = tipoCsv.equals("usuarios")
+                        ? (linha, r) -> importarUsuario(colunas.campos(linha), r)
+                        : (linha, r) -> importarEPI(colunas.campos(linha), r);
+                numeroPrimeira = 2;
+            }
+
+            String[] linhas = new String[LINHAS_POR_LOTE];
+            while (true) {
+                int quantidade = 0;
+                String linha;
+                while (quantidade < linhas.length && (linha = entrada.lerLinha()) != null) {
+                    linhas[quantidade++] = linha;
+                }
+                if (quantidade == 0) break;
+                aplicarLote(linhas, quantidade, numeroPrimeira, aplicador, resumo);
+                numeroPrimeira += quantidade;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Erro: Falha ao ler o arquivo: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+            return;
+        }
+        resumo.imprimir(System.out, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Aplica um lote de linhas com todos os repositórios travados e um único fsync ao final
+     * (as operações aninhadas só confirmam o journal na liberação mais externa)
+     */
+    private static void aplicarLote(String[] linhas, int quantidade, int numeroPrimeira,
+                                    BiFunction<String, ResumoLote, String> aplicador, ResumoLote resumo) {
+        travar(0, TODOS);
+        try {
+            for (int i = 0; i < quantidade; i++) {
+                String linha = linhas[i].trim();
+                linhas[i] = null;
+                if (linha.isEmpty()) continue;
+                String erro = aplicador.apply(linha, resumo);
+                if (erro != null) resumo.rejeitar(numeroPrimeira + i, linha, erro);
+            }
+        } finally {
+            destravar(0, TODOS);
+        }
+    }
+
+    /**
+     * Valida e aplica um comando do lote
+     * Chamado com todos os repositórios travados, então os índices são consultados diretamente
+     * @return null se o comando foi aplicado ou a mensagem de erro
+     */
+    private static String aplicarComando(String linha, ResumoLote resumo) {
+        if (linha.startsWith("#")) return null; // Comentário
+        int fimComando = 0;
+        while (fimComando < linha.length() && linha.charAt(fimComando) != ';'
+                && !Character.isWhitespace(linha.charAt(fimComando))) {
+            fimComando++;
+        }
+        String comando = linha.substring(0, fimComando).toUpperCase();
+        String resto = linha.substring(fimComando);
+
+        switch (comando) {
+            case "EMPRESTIMO", "LOAN" -> {
+                String[] c = campos(resto, 4);
+                if (c.length < 4) return "Uso: EMPRESTIMO <matrícula> <ID do EPI> <data> <devolução prevista>";
+                long matricula = Conversao.inteiro(c[0]);
+                if (matricula == Conversao.INVALIDO) return numeroInvalido(c[0]);
+                Usuario usuario = indiceMatricula.buscar((int) matricula);
+                if (usuario == null) return "Nenhum usuário encontrado com esta matrícula!";
+                long idEpi = Conversao.inteiro(c[1]);
+                if (idEpi == Conversao.INVALIDO) return numeroInvalido(c[1]);
+                EPI epi = epis.obter((int) idEpi);
+                if (epi == null) return "ID de EPI inválido!";
+                LocalDate dataEmp = Conversao.data(c[2]);
+                LocalDate dataDev = Conversao.data(c[3]);
+                if (dataEmp == null || dataDev == null) return DATA_INVALIDA;
+                if (dataDev.isBefore(dataEmp)) return "A data de devolução deve ser posterior à data de empréstimo!";
+                try {
+                    aplicarCadastroEmprestimo(NOVO, usuario, epi, dataEmp, dataDev);
+                } catch (EmprestimoRecusado e) {
+                    return e.getMessage();
+                }
+                resumo.emprestimos++;
+            }
+            case "DEVOLUCAO", "RETURN" -> {
+                String[] c = campos(resto, 3);
+                if (c.length < 2) return "Uso: DEVOLUCAO <ID do empréstimo> <data> [observação]";
+                long idEmprestimo = Conversao.inteiro(c[0]);
+                if (idEmprestimo == Conversao.INVALIDO) return numeroInvalido(c[0]);
+                Emprestimo emp = emprestimos.obter((int) idEmprestimo);
+                if (emp == null) return "ID de empréstimo inválido!";
+                if (emp.getDevolucao() != null) return "Este empréstimo já possui devolução registrada!";
+                LocalDate dataDev = Conversao.data(c[1]);
+                if (dataDev == null) return DATA_INVALIDA;
+                if (dataDev.isBefore(emp.getDataEmprestimo())) {
+                    return "A data de devolução deve ser posterior à data de empréstimo!";
+                }
+                aplicarCadastroDevolucao(NOVO, emp, dataDev, c.length > 2 ? c[2] : "");
+                resumo.devolucoes++;
+            }
+            case "USUARIO", "USER" -> {
+                String[] c = campos(resto, 3);
+                if (c.length < 3) return "Uso: USUARIO <matrícula> <departamento> <nome>";
+                long matricula = Conversao.inteiro(c[0]);
+                if (matricula == Conversao.INVALIDO) return numeroInvalido(c[0]);
+                if (aplicarCadastroUsuario(NOVO, c[2], c[1], (int) matricula) == null) {
+                    return "Já existe um usuário cadastrado com esta matrícula!";
+                }
+                resumo.usuarios++;
+            }
+            case "EPI" -> {
+                String[] c = campos(resto, 3);
+                if (c.length < 3) return "Uso: EPI <quantidade> <validade ou -> <nome>";
+                long validade = c[1].equals("-") ? EPI.SEM_VALIDADE : Conversao.diaEpoch(c[1]);
+                if (validade == Conversao.INVALIDO) return DATA_INVALIDA;
+                long quantidade = Conversao.inteiro(c[0]);
+                if (quantidade == Conversao.INVALIDO) return numeroInvalido(c[0]);
+                aplicarCadastroEPI(NOVO, c[2], (int) quantidade, (int) validade);
+                resumo.epis++;
+            }
+            case "LIMITES" -> {
+                String[] c = campos(resto, 3);
+                if (c.length < 3) return "Uso: LIMITES <ID do EPI> <estoque mínimo ou -> <ponto de reposição ou ->";
+                long idEpi = Conversao.inteiro(c[0]);
+                if (idEpi == Conversao.INVALIDO) return numeroInvalido(c[0]);
+                EPI epi = epis.obter((int) idEpi);
+                if (epi == null) return "ID de EPI inválido!";
+                long minimo = c[1].equals("-") ? EPI.SEM_LIMITE : Conversao.inteiro(c[1]);
+                if (minimo == Conversao.INVALIDO) return numeroInvalido(c[1]);
+                long reposicao = c[2].equals("-") ? EPI.SEM_LIMITE : Conversao.inteiro(c[2]);
+                if (reposicao == Conversao.INVALIDO) return numeroInvalido(c[2]);
+                String erro = validarLimites((int) minimo, (int) reposicao);
+                if (erro != null) return erro;
+                aplicarLimitesEPI(epi, (int) minimo, (int) reposicao);
+            }
+            default -> {
+                return "Comando desconhecido: " + comando;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mensagem de erro do lote para um campo numérico inválido (a mesma do Integer.parseInt)
+     */
+    private static String numeroInvalido(String campo) {
+        return "Número inválido: " + Conversao.mensagemNumeroInvalido(campo);
+    }
+
+    /**
+     * Valida e cadastra um usuário importado do CSV com as mesmas regras de cadastrarUsuario
+     * Chamado com todos os repositórios travados
+     * @param c Campos na ordem nome, departamento, matrícula, ou null se a linha estiver incompleta
+     * @return null se o usuário foi cadastrado ou a mensagem de erro
+     */
+    private static String importarUsuario(String[] c, ResumoLote resumo) {
+        if (c == null) return "Linha com colunas faltando.";
+        if (c[0].isEmpty() || c[1].isEmpty() || c[2].isEmpty()) return "Nome, departamento e matrícula são obrigatórios.";
+        long matricula = Conversao.inteiro(c[2]);
+        if (matricula == Conversao.INVALIDO) return "Matrícula não é um número inteiro válido.";
+        if (aplicarCadastroUsuario(NOVO, c[0], c[1], (int) matricula) == null) {
+            return "Já existe um usuário cadastrado com esta matrícula!";
+        }
+        resumo.usuarios++;
+        return null;
+    }
+
+    /**
+     * Valida e cadastra um EPI importado do CSV com as mesmas regras de cadastrarEPI
+     * Chamado com todos os repositórios travados
+     * @param c Campos na ordem nome, quantidade, validade (vazia se não houver), ou null se a linha estiver incompleta
+     * @return null se o EPI foi cadastrado ou a mensagem de erro
+     */
+    private static String importarEPI(String[] c, ResumoLote resumo) {
+        if (c == null) return "Linha com colunas faltando.";
+        if (c[0].isEmpty() || c[1].isEmpty()) return "Nome e quantidade são obrigatórios.";
+        long quantidade = Conversao.inteiro(c[1]);
+        if (quantidade == Conversao.INVALIDO) return "Quantidade não é um número inteiro válido.";
+        long validade = c[2].isEmpty() ? EPI.SEM_VALIDADE : Conversao.diaEpoch(c[2]);
+        if (validade == Conversao.INVALIDO) return "Formato de validade inválido. Use AAAA-MM-DD.";
+        aplicarCadastroEPI(NOVO, c[0], (int) quantidade, (int) validade);
+        resumo.epis++;
+        return null;
+    }
+
+    /**
+     * Separa os campos de um comando: por ";" se a linha usar ";", senão por espaços
+     * O último campo recebe o restante da linha; campos vazios não são aceitos
+     * @param texto Linha sem o nome do comando
+     * @param maximo Quantidade máxima de campos
+     */
+    private static String[] campos(String texto, int maximo) {
+        String separador = texto.indexOf(';') >= 0 ? "\\s*;\\s*" : "\\s+";
+        String[] campos = texto.strip().replaceFirst("^;\\s*", "").split(separador, maximo);
+        for (String campo : campos) {
+            if (campo.isEmpty()) return new String[0];
+        }
+        return campos;
+    }
+
+    // ==================== SESSÕES ====================
+
+    /**
+     * Aceita conexões TCP e atende cada uma em sua própria thread virtual
+     * Os dados são gravados e o journal fechado quando o processo é encerrado (Ctrl+C)
+     * @param porta Porta TCP em que o servidor escuta
+     */
+    private static void executarServidor(int porta) {
+        Runtime.getRuntime().addShutdownHook(new Thread(SistemaGerenciamentoEPI::encerrarPersistencia, "encerramento"));
+        try (ServerSocket servidor = new ServerSocket(porta)) {
+            System.out.println("Servidor aguardando sessões na porta " + servidor.getLocalPort());
+            long numero = 0;
+            while (true) {
+                Socket conexao = servidor.accept();
+                Thread.ofVirtual().name("sessao-" + ++numero).start(() -> atenderSessao(conexao));
+            }
+        } catch (IOException e) {
+            System.out.println("Erro: Falha no servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executa o menu principal para uma conexão, até o operador sair ou a conexão cair
+     */
+    private static void atenderSessao(Socket conexao) {
+        try (conexao) {
+            Sessao sessao = new Sessao(conexao.getInputStream(),
+                    new PrintStream(new BufferedOutputStream(conexao.getOutputStream()), false, StandardCharsets.UTF_8));
+            sessaoAtual.set(sessao);
+            exibirMenuPrincipal();
+            sessao.saida().flush();
+        } catch (IOException | UncheckedIOException | NoSuchElementException e) {
+            // Conexão encerrada pelo cliente
+        } catch (RuntimeException e) {
+            System.out.println("Erro: Sessão " + Thread.currentThread().getName() + " encerrada: " + e);
+        } finally {
+            sessaoAtual.remove();
+        }
+    }
+
+    /**
+     * Lê a próxima linha digitada na sessão atual
+     * @throws NoSuchElementException Se a entrada terminou
+     */
+    private static String lerLinha() {
+        return sessaoAtual.get().lerLinha();
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Lê uma string da entrada do usuário que não pode ser vazia
+     * @param mensagem A mensagem a ser exibida para solicitar a entrada
+     * @return String não vazia fornecida pelo usuário
+     */
+    private static String lerStringNaoVazia(String mensagem) {
+        String entrada;
+        do {
+            saida().print(mensagem);
+            entrada = lerLinha().trim();
+            if (entrada.isEmpty()) {
+                saida().println("Erro: Este campo é obrigatório. Por favor, digite um valor.");
+            }
+        } while (entrada.isEmpty());
+        return entrada;
+    }
+
+    /**
+     * Lê e valida um número inteiro da entrada do usuário
+     * Continua solicitando até que um valor inteiro válido seja fornecido
+     * @return O número inteiro validado
+     */
+    private static int lerInteiro() {
+        while (true) {
+            String input = lerLinha().trim();
+            if (input.isEmpty()) {
+                saida().print("Erro: Campo obrigatório. Digite um número: ");
+                continue;
+            }
+            long inicio = System.nanoTime();
+            long numero = Conversao.inteiro(input);
+            METRICA_ENTRADA.registrarDesde(inicio);
+            if (numero != Conversao.INVALIDO) return (int) numero;
+            saida().print("Erro: Por favor, digite um número inteiro válido: ");
+        }
+    }
+
+    /**
+     * Lê e valida uma data de validade (AAAA-MM-DD)
+     * Permite entrada vazia em campos opcionais
+     * @return A data como dia epoch ou EPI.SEM_VALIDADE se não informada
+     */
+    private static int lerData() {
+        while (true) {
+            String data = lerLinha().trim();
+            if (data.isEmpty()) return EPI.SEM_VALIDADE; // Permite vazio para campos opcionais
+            long inicio = System.nanoTime();
+            long dia = Conversao.diaEpoch(data);
+            METRICA_ENTRADA.registrarDesde(inicio);
+            if (dia != Conversao.INVALIDO) return (int) dia;
+            saida().print("Erro: Formato inválido. Use AAAA-MM-DD. Tente novamente: ");
+        }
+    }
+
+    /**
+     * Lê e valida uma data no formato LocalDate (AAAA-MM-DD)
+     * Não permite entrada vazia
+     * @return O objeto LocalDate correspondente à data informada
+     */
+    private static LocalDate lerLocalDate() {
+        while (true) {
+            String data = lerStringNaoVazia("Data (AAAA-MM-DD): ");
+            long inicio = System.nanoTime();
+            long dia = Conversao.diaEpoch(data);
+            METRICA_ENTRADA.registrarDesde(inicio);
+            if (dia != Conversao.INVALIDO) return LocalDate.ofEpochDay(dia);
+            saida().println("Erro: Formato de data inválido. Use AAAA-MM-DD.");
+        }
+    }
+
+    /**
+     * Seleciona um usuário pela matrícula usando o índice hash ou, se o texto digitado não for
+     * um número, entre os resultados da busca por nome e departamento
+     * @param mensagem A mensagem a ser exibida para solicitar a matrícula
+     * @return O usuário encontrado ou null se a matrícula não estiver cadastrada ou a escolha for cancelada
+     */
+    private static Usuario selecionarUsuario(String mensagem) {
+        saida().print(mensagem);
+        String entrada = lerNumeroOuTexto();
+        long matricula = Conversao.inteiro(entrada);
+        if (matricula == Conversao.INVALIDO) {
+            return escolherDaBusca(USUARIOS, usuarios, buscaUsuarios, entrada);
+        }
+
+        Usuario usuario = buscarUsuario((int) matricula);
+        if (usuario == null) {
+            saida().println("Erro: Nenhum usuário encontrado com esta matrícula!");
+        }
+        return usuario;
+    }
+
+    /**
+     * Seleciona um EPI pelo ID ou, se o texto digitado não for um número, entre os resultados
+     * da busca por nome
+     * @return O EPI encontrado ou null se o ID não existir ou a escolha for cancelada
+     */
+    private static EPI selecionarEPI(String mensagem, String erro) {
+        saida().print(mensagem);
+        String entrada = lerNumeroOuTexto();
+        long id = Conversao.inteiro(entrada);
+        if (id == Conversao.INVALIDO) {
+            return escolherDaBusca(EPIS, epis, buscaEpis, entrada);
+        }
+
+        EPI epi = obter(epis, (int) id);
+        if (epi == null) {
+            saida().println(erro);
+        }
+        return epi;
+    }
+
+    /**
+     * Lê uma entrada obrigatória que pode ser um número ou um texto de busca
+     */
+    private static String lerNumeroOuTexto() {
+        while (true) {
+            String entrada = lerLinha().trim();
+            if (!entrada.isEmpty()) return entrada;
+            saida().print("Erro: Campo obrigatório. Digite um número ou parte do nome: ");
+        }
+    }
+
+    /**
+     * Mostra os melhores resultados da busca e pede para escolher um deles
+     * Um único resultado é selecionado direto
+     * @param leitura Repositórios lidos para montar os resultados
+     * @return A entidade escolhida ou null se não houver resultados ou a escolha for cancelada
+     */
+    private static <T extends Entidade> T escolherDaBusca(int leitura, Slab<T> slab, IndiceBusca indice, String consulta) {
+        StringBuilder texto = sessaoAtual.get().texto();
+        int[] ids;
+        travar(leitura, 0);
+        try {
+            ids = indice.buscar(consulta, LINHAS_POR_PAGINA);
+            for (int i = 0; i < ids.length; i++) {
+                texto.append(i + 1).append(". [").append(ids[i]).append("] ");
+                slab.obter(ids[i]).renderizar(texto);
+                texto.append('\n');
+            }
+        } finally {
+            destravar(leitura, 0);
+        }
+
+        if (ids.length == 0) {
+            saida().println("Erro: Nenhum resultado encontrado para \"" + consulta + "\"!");
+            return null;
+        }
+        sessaoAtual.get().escrever(texto);
+        int escolha = 1;
+        if (ids.length > 1) {
+            saida().print("Escolha o resultado (1 a " + ids.length + ", 0 para cancelar): ");
+            escolha = lerInteiro();
+            if (escolha == 0) return null;
+            if (escolha < 1 || escolha > ids.length) {
+                saida().println("Erro: Opção inválida!");
+                return null;
+            }
+        }
+
+        T entidade = obter(slab, ids[escolha - 1]);
+        if (entidade == null) informarConflito();
+        return entidade;
+    }
+
+    /**
+     * Seleciona uma entidade pelo seu ID
+     * @param slab Armazenamento onde a entidade é procurada
+     * @param mensagem A mensagem a ser exibida para solicitar o ID
+     * @param erro A mensagem exibida se o ID não existir
+     * @return A entidade encontrada ou null se o ID não existir
+     */
+    private static <T extends Entidade> T selecionarPorId(Repositorio<T> slab, String mensagem, String erro) {
+        saida().print(mensagem);
+        T entidade = obter(slab, lerInteiro());
+        if (entidade == null) {
+            saida().println(erro);
+        }
+        return entidade;
+    }
+
+    /**
+     * Exibe uma listagem em páginas de LINHAS_POR_PAGINA linhas
+     * Listagens que cabem em uma página são exibidas direto; nas demais o operador navega com
+     * Enter (próxima), "a" (anterior), o número de uma página, "t" (todas, em trechos) ou "0" (sair)
+     * Cada página é montada com as travas obtidas e escrita depois de liberá-las
+     * A posição de retomada de cada página visitada é guardada: avançar, voltar ou ir para uma
+     * página já vista começa direto nela; ir adiante percorre só as páginas intermediárias
+     * @param metrica Métrica que recebe a latência de montagem de cada página
+     * @param leitura Repositórios lidos pela listagem
+     * @param itens Fornece os itens a listar; chamado já com as travas obtidas
+     * @return Quantidade total de itens da listagem
+     */
+    private static <T extends Entidade> int paginar(Metrica metrica, int leitura,
+                                                    Supplier<? extends Listagem<T>> itens) {
+        Sessao sessao = sessaoAtual.get();
+        ArrayList<Integer> inicios = new ArrayList<>(List.of(0)); // Posição de retomada de cada página
+        int pagina = 0;
+        while (true) {
+            StringBuilder texto = sessao.texto();
+            long inicio = System.nanoTime();
+            int total, retomada;
+            travar(leitura, 0);
+            try {
+                Listagem<T> listagem = itens.get();
+                total = listagem.total();
+                while (inicios.size() <= pagina) {
+                    inicios.add(listagem.escrever(null, inicios.get(inicios.size() - 1), LINHAS_POR_PAGINA));
+                }
+                retomada = listagem.escrever(texto, inicios.get(pagina), LINHAS_POR_PAGINA);
+            } finally {
+                destravar(leitura, 0);
+            }
+            metrica.registrarDesde(inicio);
+            if (retomada == inicios.get(pagina) && pagina > 0) { // A listagem encolheu desde a página anterior
+                pagina--;
+                continue;
+            }
+            // As páginas seguintes passam a começar depois desta (as posições antigas podem ter mudado)
+            while (inicios.size() > pagina + 1) inicios.remove(inicios.size() - 1);
+            inicios.add(retomada);
+            int paginas = Math.max((total + LINHAS_POR_PAGINA - 1) / LINHAS_POR_PAGINA, pagina + 1);
+            sessao.escrever(texto);
+            if (paginas <= 1) return total;
+
+            saida().print("Página " + (pagina + 1) + " de " + paginas + " (" + total + " itens) | "
+                    + "[Enter] próxima  [a] anterior  [nº] ir para a página  [t] todas  [0] sair: ");
+            String opcao = lerLinha().trim();
+            if (opcao.isEmpty()) {
+                if (pagina == paginas - 1) return total;
+                pagina++;
+            } else if (opcao.equalsIgnoreCase("a")) {
+                pagina = Math.max(pagina - 1, 0);
+            } else if (opcao.equalsIgnoreCase("t")) {
+                return listarTodas(metrica, leitura, itens);
+            } else {
+                long numero = Conversao.inteiro(opcao);
+                if (numero == Conversao.INVALIDO) {
+                    saida().println("Erro: Opção inválida!");
+                } else if (numero == 0) {
+                    return total;
+                } else if (numero < 1 || numero > paginas) {
+                    saida().println("Erro: Página inválida! Digite um número entre 1 e " + paginas + ".");
+                } else {
+                    pagina = (int) numero - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Escreve a listagem inteira em trechos de LINHAS_POR_TRECHO itens: cada trecho é montado com
+     * as travas obtidas, escrito depois de liberá-las e o seguinte retoma de onde ele parou, de
+     * modo que as alterações de outras sessões esperam no máximo um trecho
+     * @return Quantidade total de itens da listagem (lida no último trecho)
+     */
+    private static <T extends Entidade> int listarTodas(Metrica metrica, int leitura,
+                                                        Supplier<? extends Listagem<T>> itens) {
+        Sessao sessao = sessaoAtual.get();
+        int posicao = 0;
+        while (true) {
+            StringBuilder texto = sessao.texto();
+            long inicio = System.nanoTime();
+            int total, retomada;
+            travar(leitura, 0);
+            try {
+                Listagem<T> listagem = itens.get();
+                total = listagem.total();
+                retomada = listagem.escrever(texto, posicao, LINHAS_POR_TRECHO);
+            } finally {
+                destravar(leitura, 0);
+            }
+            metrica.registrarDesde(inicio);
+            if (retomada == posicao) return total;
+            sessao.escrever(texto);
+            posicao = retomada;
+        }
+    }
+
+    /**
+     * Monta a descrição de uma entidade com as travas, para ser escrita depois de liberá-las
+     * @param leitura Repositórios lidos pela descrição
+     * @return A descrição ou null se a entidade foi removida por outra sessão
+     */
+    private static <T extends Entidade> String descrever(int leitura, Repositorio<T> repositorio, T entidade) {
+        travar(leitura, 0);
+        try {
+            return repositorio.contem(entidade) ? entidade.toString() : null;
+        } finally {
+            destravar(leitura, 0);
+        }
+    }
+
+    /**
+     * @return true se o empréstimo ainda existe e já tem devolução (lido com a trava dos empréstimos)
+     */
+    private static boolean devolvido(Emprestimo emp) {
+        travar(EMPRESTIMOS, 0);
+        try {
+            return emprestimos.contem(emp) && emprestimos.idDevolucao(emp.getId()) >= 0;
+        } finally {
+            destravar(EMPRESTIMOS, 0);
+        }
+    }
+
+    /**
+     * Informa que a operação não foi aplicada porque outra sessão alterou os dados envolvidos
+     */
+    private static void informarConflito() {
+        saida().println("Erro: Os dados foram alterados por outra sessão. Operação cancelada.");
+    }
+
+    // ==================== MENU PRINCIPAL ====================
+
+    /**
+     * Avisa quantos empréstimos entraram em atraso desde o último aviso
+     */
+    private static void exibirAvisosAtraso() {
+        Sessao sessao = sessaoAtual.get();
+        int total = totalAtrasos.get();
+        int quantidade = total - sessao.getAtrasosAvisados();
+        sessao.setAtrasosAvisados(total);
+        if (quantidade > 0) {
+            saida().println("\nAviso: " + quantidade + " empréstimo(s) entraram em atraso. "
+                    + "Consulte Gerenciar Empréstimos > Empréstimos em Atraso.");
+        }
+    }
+
+    /**
+     * Exibe os alertas de estoque publicados no mural desde o último aviso desta sessão
+     */
+    private static void exibirAvisosEstoque() {
+        Sessao sessao = sessaoAtual.get();
+        long avisados = sessao.getAlertasAvisados();
+        if (muralAlertas.getTotal() == avisados) return;
+        List<AlertasEstoque.Alerta> novos = new ArrayList<>();
+        long total = muralAlertas.desde(avisados, novos);
+        sessao.setAlertasAvisados(total);
+        saida().println("\nAviso: Estoque de EPIs:");
+        if (total - avisados > novos.size()) {
+            saida().println("  (" + (total - avisados - novos.size())
+                    + " alerta(s) anteriores omitidos; consulte o arquivo de alertas)");
+        }
+        StringBuilder texto = sessao.texto();
+        for (AlertasEstoque.Alerta alerta : novos) {
+            texto.append("  ");
+            alerta.renderizar(texto);
+            texto.append('\n');
+        }
+        sessao.escrever(texto);
+    }
+
+    /**
+     * Exibe o menu principal e gerencia a navegação entre as funcionalidades
+     * Implementa loop até que o usuário escolha sair (opção 0)
+     */
+    private static void exibirMenuPrincipal() {
+        int opcao;
+        do {
+            exibirAvisosAtraso();
+            exibirAvisosEstoque();
+            saida().println("\n=== MENU PRINCIPAL ===");
+            saida().println("1. Gerenciar Usuários");
+            saida().println("2. Gerenciar EPIs");
+            saida().println("3. Gerenciar Empréstimos");
+            saida().println("4. Gerenciar Devoluções");
+            saida().println("5. Painel por Departamento");
+            saida().println("6. Métricas");
+            saida().println("7. Relatórios");
+            saida().println("0. Sair do Sistema");
+            saida().print("Escolha uma opção: ");
+
+            try {
+                String input = lerLinha().trim();
+                if (input.isEmpty()) {
+                    saida().println("Erro: Por favor, digite o número da opção desejada.");
+                    opcao = -1;
+                    continue;
+                }
+                opcao = Integer.parseInt(input);
+
+                // As opções que acessam os dados aguardam a carga inicial
+                if (opcao >= 1 && opcao <= 7 && opcao != 6 && !aguardarCarga()) {
+                    saida().println("Erro: Os dados salvos não puderam ser carregados. Encerrando o sistema.");
+                    return;
+                }
+
+                switch (opcao) {
+                    case 1 -> gerenciarUsuarios();
+                    case 2 -> gerenciarEPIs();
+                    case 3 -> gerenciarEmprestimos();
+                    case 4 -> gerenciarDevolucoes();
+                    case 5 -> exibirPainelDepartamentos();
+                    case 6 -> exibirMetricas();
+                    case 7 -> exibirRelatorios();
+                    case 0 -> saida().println("\nSaindo do sistema...");
+                    default -> saida().println("Erro: Opção inválida! Digite um número entre 0 e 7.");
+                }
+            } catch (NumberFormatException e) {
+                saida().println("Erro: Por favor, digite apenas números.");
+                opcao = -1;
+            }
+        } while (opcao != 0);
+    }
+
+    /**
+     * Exibe, por departamento, os itens em uso, os empréstimos em atraso e os empréstimos do mês
+     * Lê apenas os contadores mantidos a cada operação, sem percorrer empréstimos e devoluções
+     */
+    private static void exibirPainelDepartamentos() {
+        saida().println("\n--- PAINEL POR DEPARTAMENTO ---");
+
+        // Garante que os vencimentos de hoje já foram processados (a verificação pode estar atrasada)
+        LocalDate hoje = LocalDate.now();
+        vencimentos.avancar((int) hoje.toEpochDay());
+
+        StringBuilder texto = sessaoAtual.get().texto();
+        int linhas = agregados.painel(texto, hoje);
+        if (linhas == 0) {
+            saida().println("Nenhum empréstimo registrado.");
+            return;
+        }
+        sessaoAtual.get().escrever(texto);
+    }
+
+    /**
+     * Exibe a contagem, a vazão e os percentis de latência de cada operação desde o início do
+     * processo e regrava o arquivo de métricas
+     */
+    private static void exibirMetricas() {
+        saida().printf("%n--- MÉTRICAS (desde o início, há %.0f s) ---%n", Metricas.segundosAtivo());
+
+        StringBuilder texto = sessaoAtual.get().texto();
+        if (Metricas.relatorio(texto) == 0) {
+            saida().println("Nenhuma operação registrada.");
+        } else {
+            sessaoAtual.get().escrever(texto);
+        }
+        try {
+            Metricas.gravar(arquivoMetricas);
+            saida().println("Métricas gravadas em " + arquivoMetricas);
+        } catch (IOException e) {
+            saida().println("Erro: Falha ao gravar as métricas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exibe os relatórios de um mês (ou de todo o histórico): consumo por tipo de EPI, duração
+     * média dos empréstimos, taxa de atraso por departamento e maiores tomadores
+     */
+    private static void exibirRelatorios() {
+        saida().println("\n--- RELATÓRIOS ---");
+        LocalDate mesAtual = LocalDate.now().withDayOfMonth(1);
+        saida().print("Mês (AAAA-MM) [" + mesAtual.toString().substring(0, 7) + "] ou \"t\" para todo o histórico: ");
+        String mes = lerLinha().trim();
+
+        int primeiroDia = Integer.MIN_VALUE;
+        int ultimoDia = Integer.MAX_VALUE;
+        if (!mes.equalsIgnoreCase("t")) {
+            LocalDate inicioMes = mes.isEmpty() ? mesAtual : Conversao.data(mes + "-01");
+            if (inicioMes == null) {
+                saida().println("Erro: Mês inválido. Use AAAA-MM.");
+                return;
+            }
+            primeiroDia = (int) inicioMes.toEpochDay();
+            ultimoDia = (int) inicioMes.plusMonths(1).toEpochDay() - 1;
+        }
+
+        StringBuilder texto = sessaoAtual.get().texto();
+        long inicio = System.nanoTime();
+        long total;
+        try {
+            total = gerarRelatorio(texto, primeiroDia, ultimoDia);
+        } catch (IOException | UncheckedIOException e) {
+            saida().println("Erro: Falha ao ler o histórico arquivado: " + e.getMessage());
+            return;
+        }
+        long nanos = System.nanoTime() - inicio;
+        if (total == 0) {
+            saida().println("Nenhum empréstimo no período.");
+            return;
+        }
+        sessaoAtual.get().escrever(texto);
+        saida().printf("%nCalculado em %.1f ms%n", nanos / 1e6);
+    }
+
+    // ==================== GERENCIAMENTO DE USUÁRIOS ====================
+
+    /**
+     * Menu de gerenciamento de usuários
+     * Permite cadastrar, listar, atualizar e remover usuários
+     */
+    private static void gerenciarUsuarios() {
+        int opcao;
+        do {
+            saida().println("\n=== GERENCIAMENTO DE USUÁRIOS ===");
+            saida().println("1. Cadastrar Novo Usuário");
+            saida().println("2. Listar Todos os Usuários");
+            saida().println("3. Atualizar Usuário Existente");
+            saida().println("4. Remover Usuário");
+            saida().println("5. Buscar Usuário por Nome ou Departamento");
+            saida().println("0. Voltar ao Menu Principal");
+            saida().print("Escolha uma opção: ");
+
+            try {
+                opcao = Integer.parseInt(lerLinha().trim());
+
+                switch (opcao) {
+                    case 1 -> cadastrarUsuario();
+                    case 2 -> listarUsuarios();
+                    case 3 -> atualizarUsuario();
+                    case 4 -> removerUsuario();
+                    case 5 -> buscarUsuarios();
+                    case 0 -> saida().println("Retornando ao menu principal...");
+                    default -> saida().println("Erro: Opção inválida! Digite um número entre 0 e 5.");
+                }
+            } catch (NumberFormatException e) {
+                saida().println("Erro: Por favor, digite apenas números.");
+                opcao = -1;
+            }
+        } while (opcao != 0);
+    }
+
+    /**
+     * Cadastra um novo usuário no sistema
+     * Solicita e valida todos os campos obrigatórios
+     */
+    private static void cadastrarUsuario() {
+        saida().println("\n--- CADASTRAR NOVO USUÁRIO ---");
+
+        // Solicita dados obrigatórios com validação
+        String nome = lerStringNaoVazia("Nome completo: ");
+        String departamento = lerStringNaoVazia("Departamento: ");
+
+        saida().print("Matrícula (apenas números): ");
+        int matricula = lerInteiro();
+
+        // Adiciona o novo usuário ao armazenamento e ao índice, rejeitando matrículas duplicadas
+        if (aplicarCadastroUsuario(NOVO, nome, departamento, matricula) == null) {
+            saida().println("Erro: Já existe um usuário cadastrado com esta matrícula!");
+            return;
+        }
+        saida().println("\nSUCESSO: Usuário cadastrado com sucesso!");
+    }
+
+    /**
+     * Lista todos os usuários cadastrados no sistema
+     * Mostra mensagem especial se não houver usuários
+     */
+    private static void listarUsuarios() {
+        saida().println("\n--- LISTA DE USUÁRIOS CADASTRADOS ---");
+
+        // Exibe cada usuário com seu ID
+        if (paginar(METRICA_LISTAR_USUARIOS, USUARIOS, () -> Listagem.de(usuarios)) == 0) {
+            saida().println("Nenhum usuário cadastrado no sistema.");
+        }
+    }
+
+    /**
+     * Busca usuários por parte do nome ou do departamento, sem diferenciar acentos,
+     * tolerando pequenos erros de digitação
+     */
+    private static void buscarUsuarios() {
+        saida().println("\n--- BUSCAR USUÁRIOS ---");
+        exibirBusca(USUARIOS, usuarios, buscaUsuarios, lerStringNaoVazia("Nome ou departamento: "));
+    }
+
+    /**
+     * Exibe os melhores resultados de uma busca aproximada e o tempo gasto
+     */
+    private static <T extends Entidade> void exibirBusca(int leitura, Slab<T> slab, IndiceBusca indice, String consulta) {
+        StringBuilder texto = sessaoAtual.get().texto();
+        long inicio = System.nanoTime();
+        int[] ids;
+        travar(leitura, 0);
+        try {
+            ids = indice.buscar(consulta, LINHAS_POR_PAGINA);
+            for (int id : ids) {
+                texto.append('[').append(id).append("] ");
+                slab.obter(id).renderizar(texto);
+                texto.append('\n');
+            }
+        } finally {
+            destravar(leitura, 0);
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        if (ids.length == 0) {
+            saida().println("Nenhum resultado encontrado.");
+            return;
+        }
+        sessaoAtual.get().escrever(texto);
+        saida().printf("%d resultado(s) em %.1f ms%n", ids.length, nanos / 1e6);
+    }
+
+    /**
+     * Atualiza os dados de um usuário existente
+     * Permite atualização parcial (campos podem ser mantidos pressionando Enter)
+     */
+    private static void atualizarUsuario() {
+        if (usuarios.isEmpty()) {
+            saida().println("\nNenhum usuário cadastrado no sistema.");
+            return;
+        }
+
+        Usuario usuario = selecionarUsuario("\nDigite a matrícula do usuário a ser atualizado (ou parte do nome): ");
+        if (usuario == null) return;
+
+        // Os dados exibidos são copiados com a trava, antes de esperar o operador
+        String descricao = null, nomeAtual = null, deptoAtual = null;
+        int matriculaAtual = 0;
+        travar(USUARIOS, 0);
+        try {
+            if (usuarios.contem(usuario)) {
+                descricao = usuario.toString();
+                nomeAtual = usuario.getNome();
+                deptoAtual = usuario.getDepartamento();
+                matriculaAtual = usuario.getMatricula();
+            }
+        } finally {
+            destravar(USUARIOS, 0);
+        }
+        if (descricao == null) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nAtualizando usuário: " + descricao);
+
+        // Atualiza nome (campo opcional - Enter mantém valor atual)
+        saida().print("\nNovo nome [" + nomeAtual + "]: ");
+        String novoNome = lerLinha().trim();
+        if (novoNome.isEmpty()) novoNome = nomeAtual;
+
+        // Atualiza departamento (campo opcional)
+        saida().print("Novo departamento [" + deptoAtual + "]: ");
+        String novoDepto = lerLinha().trim();
+        if (novoDepto.isEmpty()) novoDepto = deptoAtual;
+
+        // Atualiza matrícula (campo opcional com validação)
+        int novaMatricula = matriculaAtual;
+        saida().print("Nova matrícula [" + matriculaAtual + "]: ");
+        String novaMatStr = lerLinha().trim();
+        if (!novaMatStr.isEmpty()) {
+            long matriculaInformada = Conversao.inteiro(novaMatStr);
+            if (matriculaInformada == Conversao.INVALIDO) {
+                saida().println("Aviso: Matrícula não alterada - valor inválido.");
+            } else if (matriculaInformada != matriculaAtual && buscarUsuario((int) matriculaInformada) != null) {
+                saida().println("Aviso: Matrícula não alterada - já pertence a outro usuário.");
+            } else {
+                novaMatricula = (int) matriculaInformada;
+            }
+        }
+
+        if (!aplicarAtualizacaoUsuario(usuario, novoNome, novoDepto, novaMatricula)) {
+            informarConflito();
+            return;
+        }
+        saida().println("\nSUCESSO: Usuário atualizado com sucesso!");
+    }
+
+    /**
+     * Remove um usuário do sistema
+     * Solicita confirmação antes da remoção definitiva
+     */
+    private static void removerUsuario() {
+        if (usuarios.isEmpty()) {
+            saida().println("\nNenhum usuário cadastrado no sistema.");
+            return;
+        }
+
+        Usuario usuario = selecionarUsuario("\nDigite a matrícula do usuário a ser removido (ou parte do nome): ");
+        if (usuario == null) return;
+
+        // Empréstimos em aberto bloqueiam a remoção; o histórico é removido junto
+        int historico, emAberto;
+        travar(EMPRESTIMOS, 0);
+        try {
+            historico = referencias.totalPorUsuario(usuario.getId());
+            emAberto = abertos.totalPorUsuario(usuario.getId());
+        } finally {
+            destravar(EMPRESTIMOS, 0);
+        }
+        if (emAberto > 0) {
+            saida().println("Erro: O usuário possui " + emAberto
+                    + " empréstimo(s) em aberto. Registre as devoluções antes de removê-lo.");
+            return;
+        }
+
+        // Solicita confirmação
+        saida().println("\nUsuário selecionado para remoção:");
+        saida().println(usuario);
+        if (historico > 0) {
+            saida().println("Atenção: " + historico + " empréstimo(s) do histórico deste usuário e suas devoluções também serão removidos.");
+        }
+        saida().print("\nTem certeza que deseja remover este usuário? (S/N): ");
+        String confirmacao = lerLinha().trim().toUpperCase();
+
+        if (confirmacao.equals("S")) {
+            if (!aplicarRemocaoUsuarioEmCascata(usuario)) {
+                informarConflito();
+                return;
+            }
+            saida().println("\nSUCESSO: Usuário removido com sucesso!");
+        } else {
+            saida().println("\nOperação cancelada. O usuário não foi removido.");
+        }
+    }
+
+    // ==================== GERENCIAMENTO DE EPIs ====================
+
+    /**
+     * Menu de gerenciamento de EPIs
+     * Permite cadastrar, listar, atualizar e remover EPIs
+     */
+    private static void gerenciarEPIs() {
+        int opcao;
+        do {
+            saida().println("\n=== GERENCIAMENTO DE EPIs ===");
+            saida().println("1. Cadastrar Novo EPI");
+            saida().println("2. Listar Todos os EPIs");
+            saida().println("3. Atualizar EPI Existente");
+            saida().println("4. Remover EPI");
+            saida().println("5. Consultar Validades");
+            saida().println("6. Buscar EPI por Nome");
+            saida().println("7. Definir Limites de Estoque");
+            saida().println("0. Voltar ao Menu Principal");
+            saida().print("Escolha uma opção: ");
+
+            try {
+                opcao = Integer.parseInt(lerLinha().trim());
+
+                switch (opcao) {
+                    case 1 -> cadastrarEPI();
+                    case 2 -> listarEPIs();
+                    case 3 -> atualizarEPI();
+                    case 4 -> removerEPI();
+                    case 5 -> consultarValidades();
+                    case 6 -> buscarEPIs();
+                    case 7 -> definirLimitesEPI();
+                    case 0 -> saida().println("Retornando ao menu principal...");
+                    default -> saida().println("Erro: Opção inválida! Digite um número entre 0 e 7.");
+                }
+            } catch (NumberFormatException e) {
+                saida().println("Erro: Por favor, digite apenas números.");
+                opcao = -1;
+            }
+        } while (opcao != 0);
+    }
+
+    /**
+     * Cadastra um novo EPI no sistema
+     * Solicita e valida todos os campos obrigatórios
+     */
+    private static void cadastrarEPI() {
+        saida().println("\n--- CADASTRAR NOVO EPI ---");
+
+        String nome = lerStringNaoVazia("Nome/descrição do EPI: ");
+
+        saida().print("Quantidade em estoque: ");
+        int quantidade = lerInteiro();
+
+        saida().print("Data de validade (AAAA-MM-DD): ");
+        int dataValidade = lerData();
+
+        // Adiciona o novo EPI ao armazenamento
+        aplicarCadastroEPI(NOVO, nome, quantidade, dataValidade);
+        saida().println("\nSUCESSO: EPI cadastrado com sucesso!");
+    }
+
+    /**
+     * Lista todos os EPIs cadastrados no sistema
+     * Mostra mensagem especial se não houver EPIs
+     */
+    private static void listarEPIs() {
+        saida().println("\n--- LISTA DE EPIs CADASTRADOS ---");
+
+        // Exibe cada EPI com seu ID
+        if (paginar(METRICA_LISTAR_EPIS, EPIS, () -> Listagem.de(epis)) == 0) {
+            saida().println("Nenhum EPI cadastrado no sistema.");
+        }
+    }
+
+    /**
+     * Consulta os EPIs vencidos ou que vencem nos próximos dias
+     * Lê apenas a faixa correspondente do índice de validade
+     */
+    private static void consultarValidades() {
+        saida().println("\n--- CONSULTAR VALIDADES ---");
+        saida().println("1. EPIs que vencem nos próximos dias");
+        saida().println("2. EPIs vencidos");
+        saida().print("Escolha uma opção: ");
+
+        int hoje = (int) LocalDate.now().toEpochDay();
+        Supplier<List<EPI>> consulta;
+        switch (lerInteiro()) {
+            case 1 -> {
+                int dias = 30;
+                saida().print("Quantidade de dias [" + dias + "]: ");
+                String diasStr = lerLinha().trim();
+                if (!diasStr.isEmpty()) {
+                    long diasInformados = Conversao.inteiro(diasStr);
+                    if (diasInformados == Conversao.INVALIDO) {
+                        saida().println("Aviso: Valor inválido. Usando " + dias + " dias.");
+                    } else {
+                        dias = (int) diasInformados;
+                    }
+                }
+                int prazo = dias;
+                consulta = () -> indiceValidade.vencendo(hoje, prazo);
+            }
+            case 2 -> consulta = () -> indiceValidade.vencidos(hoje);
+            default -> {
+                saida().println("Erro: Opção inválida! Digite um número entre 1 e 2.");
+                return;
+            }
+        }
+
+        int total = paginar(METRICA_LISTAR_VALIDADES, EPIS, () -> Listagem.de(consulta.get()));
+        if (total == 0) {
+            saida().println("Nenhum EPI encontrado.");
+            return;
+        }
+        saida().println("Total: " + total);
+    }
+
+    /**
+     * Busca EPIs por parte do nome, sem diferenciar acentos, tolerando pequenos erros de digitação
+     */
+    private static void buscarEPIs() {
+        saida().println("\n--- BUSCAR EPIs ---");
+        exibirBusca(EPIS, epis, buscaEpis, lerStringNaoVazia("Nome do EPI: "));
+    }
+
+    /**
+     * Atualiza os dados de um EPI existente
+     * Permite atualização parcial (campos podem ser mantidos pressionando Enter)
+     */
+    private static void atualizarEPI() {
+        listarEPIs();
+        if (epis.isEmpty()) return;
+
+        EPI epi = selecionarEPI("\nDigite o ID do EPI a ser atualizado (ou parte do nome): ", "Erro: ID inválido!");
+        if (epi == null) return;
+
+        // Os dados exibidos são copiados com a trava, antes de esperar o operador
+        String descricao = null, nomeAtual = null, validadeAtual = null;
+        int quantidadeExibida = 0, dataAtual = EPI.SEM_VALIDADE;
+        travar(EPIS, 0);
+        try {
+            if (epis.contem(epi)) {
+                descricao = epi.toString();
+                nomeAtual = epi.getNome();
+                quantidadeExibida = epi.getQuantidade();
+                validadeAtual = epi.getDataValidadeTexto();
+                dataAtual = epi.getDataValidade();
+            }
+        } finally {
+            destravar(EPIS, 0);
+        }
+        if (descricao == null) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nAtualizando EPI: " + descricao);
+
+        // Atualiza nome (campo opcional)
+        saida().print("\nNovo nome [" + nomeAtual + "]: ");
+        String novoNome = lerLinha().trim();
+        if (novoNome.isEmpty()) novoNome = nomeAtual;
+
+        // Atualiza quantidade (campo opcional com validação); aplicada como a diferença para a
+        // quantidade exibida, para não desfazer os empréstimos e devoluções feitos enquanto isso
+        int variacao = 0;
+        saida().print("Nova quantidade [" + quantidadeExibida + "]: ");
+        String novaQtdStr = lerLinha().trim();
+        if (!novaQtdStr.isEmpty()) {
+            long quantidadeInformada = Conversao.inteiro(novaQtdStr);
+            if (quantidadeInformada == Conversao.INVALIDO) {
+                saida().println("Aviso: Quantidade não alterada - valor inválido.");
+            } else {
+                variacao = (int) quantidadeInformada - quantidadeExibida;
+            }
+        }
+
+        // Atualiza data de validade (campo opcional com validação)
+        saida().print("Nova data de validade [" + validadeAtual + "]: ");
+        int novaData = lerData();
+        if (novaData == EPI.SEM_VALIDADE) novaData = dataAtual;
+
+        if (!aplicarAtualizacaoEPI(epi, novoNome, variacao, novaData)) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nSUCESSO: EPI atualizado com sucesso!");
+    }
+
+    /**
+     * Define o estoque mínimo e o ponto de reposição de um EPI
+     * Campos vazios mantêm o valor atual e "-" deixa o EPI sem o limite
+     */
+    private static void definirLimitesEPI() {
+        listarEPIs();
+        if (epis.isEmpty()) return;
+
+        EPI epi = selecionarEPI("\nDigite o ID do EPI (ou parte do nome): ", "Erro: ID inválido!");
+        if (epi == null) return;
+
+        saida().println("\nLimites do EPI: " + epi);
+        saida().println("Digite \"-\" para deixar sem o limite.");
+        long minimo = lerLimite("Estoque mínimo", epi.getEstoqueMinimo());
+        if (minimo == Conversao.INVALIDO) return;
+        long reposicao = lerLimite("Ponto de reposição", epi.getPontoReposicao());
+        if (reposicao == Conversao.INVALIDO) return;
+
+        String erro = validarLimites((int) minimo, (int) reposicao);
+        if (erro != null) {
+            saida().println("Erro: " + erro);
+            return;
+        }
+        if (!aplicarLimitesEPI(epi, (int) minimo, (int) reposicao)) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nSUCESSO: Limites de estoque definidos com sucesso!");
+    }
+
+    /**
+     * Lê um limite de estoque: vazio mantém o atual e "-" retorna EPI.SEM_LIMITE
+     * @return O limite ou Conversao.INVALIDO (com a mensagem de erro já exibida)
+     */
+    private static long lerLimite(String rotulo, int atual) {
+        saida().print(rotulo + " [" + (atual == EPI.SEM_LIMITE ? "-" : atual) + "]: ");
+        String valor = lerLinha().trim();
+        if (valor.isEmpty()) return atual;
+        if (valor.equals("-")) return EPI.SEM_LIMITE;
+        long limite = Conversao.inteiro(valor);
+        if (limite == Conversao.INVALIDO) saida().println("Erro: Por favor, digite um número válido.");
+        return limite;
+    }
+
+    /**
+     * @return null se os limites são válidos ou a mensagem de erro
+     */
+    static String validarLimites(int estoqueMinimo, int pontoReposicao) {
+        if ((estoqueMinimo != EPI.SEM_LIMITE && estoqueMinimo < 0)
+                || (pontoReposicao != EPI.SEM_LIMITE && pontoReposicao < 0)) {
+            return "Os limites de estoque não podem ser negativos!";
+        }
+        if (estoqueMinimo != EPI.SEM_LIMITE && pontoReposicao != EPI.SEM_LIMITE && pontoReposicao < estoqueMinimo) {
+            return "O ponto de reposição deve ser maior ou igual ao estoque mínimo!";
+        }
+        return null;
+    }
+
+    /**
+     * Remove um EPI do sistema
+     * Solicita confirmação antes da remoção definitiva
+     */
+    private static void removerEPI() {
+        listarEPIs();
+        if (epis.isEmpty()) return;
+
+        EPI epi = selecionarEPI("\nDigite o ID do EPI a ser removido (ou parte do nome): ", "Erro: ID inválido!");
+        if (epi == null) return;
+
+        // Empréstimos em aberto bloqueiam a remoção; o histórico é removido junto
+        int historico, emAberto;
+        travar(EMPRESTIMOS, 0);
+        try {
+            historico = referencias.totalPorEpi(epi.getId());
+            emAberto = abertos.totalPorEpi(epi.getId());
+        } finally {
+            destravar(EMPRESTIMOS, 0);
+        }
+        if (emAberto > 0) {
+            saida().println("Erro: O EPI possui " + emAberto
+                    + " empréstimo(s) em aberto. Registre as devoluções antes de removê-lo.");
+            return;
+        }
+
+        // Solicita confirmação
+        saida().println("\nEPI selecionado para remoção:");
+        saida().println(epi);
+        if (historico > 0) {
+            saida().println("Atenção: " + historico + " empréstimo(s) do histórico deste EPI e suas devoluções também serão removidos.");
+        }
+        saida().print("\nTem certeza que deseja remover este EPI? (S/N): ");
+        String confirmacao = lerLinha().trim().toUpperCase();
+
+        if (confirmacao.equals("S")) {
+            if (!aplicarRemocaoEPIEmCascata(epi)) {
+                informarConflito();
+                return;
+            }
+            saida().println("\nSUCESSO: EPI removido com sucesso!");
+        } else {
+            saida().println("\nOperação cancelada. O EPI não foi removido.");
+        }
+    }
+
+    // ==================== GERENCIAMENTO DE EMPRÉSTIMOS ====================
+
+    /**
+     * Menu de gerenciamento de empréstimos
+     * Permite cadastrar, listar, atualizar e remover empréstimos
+     */
+    private static void gerenciarEmprestimos() {
+        int opcao;
+        do {
+            saida().println("\n=== GERENCIAMENTO DE EMPRÉSTIMOS ===");
+            saida().println("1. Cadastrar Novo Empréstimo");
+            saida().println("2. Listar Todos os Empréstimos");
+            saida().println("3. Atualizar Empréstimo Existente");
+            saida().println("4. Remover Empréstimo");
+            saida().println("5. Listar Empréstimos em Aberto");
+            saida().println("6. Empréstimos em Atraso");
+            saida().println("7. Histórico Arquivado");
+            saida().println("0. Voltar ao Menu Principal");
+            saida().print("Escolha uma opção: ");
+
+            try {
+                opcao = Integer.parseInt(lerLinha().trim());
+
+                switch (opcao) {
+                    case 1 -> cadastrarEmprestimo();
+                    case 2 -> listarEmprestimos();
+                    case 3 -> atualizarEmprestimo();
+                    case 4 -> removerEmprestimo();
+                    case 5 -> consultarEmprestimosAbertos();
+                    case 6 -> listarEmprestimosAtrasados();
+                    case 7 -> consultarHistoricoArquivado();
+                    case 0 -> saida().println("Retornando ao menu principal...");
+                    default -> saida().println("Erro: Opção inválida! Digite um número entre 0 e 7.");
+                }
+            } catch (NumberFormatException e) {
+                saida().println("Erro: Por favor, digite apenas números.");
+                opcao = -1;
+            }
+        } while (opcao != 0);
+    }
+
+    /**
+     * Cadastra um novo empréstimo no sistema
+     * Valida todas as entradas e relacionamentos
+     */
+    private static void cadastrarEmprestimo() {
+        saida().println("\n--- CADASTRAR NOVO EMPRÉSTIMO ---");
+
+        // Verifica se existem usuários e EPIs cadastrados
+        if (usuarios.isEmpty()) {
+            saida().println("Erro: Não há usuários cadastrados. Cadastre um usuário primeiro.");
+            return;
+        }
+        if (epis.isEmpty()) {
+            saida().println("Erro: Não há EPIs cadastrados. Cadastre um EPI primeiro.");
+            return;
+        }
+
+        // Seleção do usuário pela matrícula
+        Usuario usuario = selecionarUsuario("\nDigite a matrícula do usuário (ou parte do nome): ");
+        if (usuario == null) return;
+
+        // Seleção do EPI
+        listarEPIs();
+        EPI epi = selecionarEPI("\nDigite o ID do EPI (ou parte do nome): ", "Erro: ID de EPI inválido!");
+        if (epi == null) return;
+        if (epi.getQuantidade() <= 0) {
+            saida().println("Erro: EPI sem estoque disponível!");
+            return;
+        }
+
+        // Datas do empréstimo
+        saida().println("\nData do empréstimo:");
+        LocalDate dataEmp = lerLocalDate();
+
+        saida().println("\nData de devolução prevista:");
+        LocalDate dataDev = lerLocalDate();
+
+        // Verifica se a data de devolução é posterior à data de empréstimo
+        if (dataDev.isBefore(dataEmp)) {
+            saida().println("Erro: A data de devolução deve ser posterior à data de empréstimo!");
+            return;
+        }
+
+        // Cria e armazena o novo empréstimo; a validade e o estoque são verificados de novo no núcleo
+        // (o estoque pode ter acabado enquanto as datas eram digitadas)
+        try {
+            if (aplicarCadastroEmprestimo(NOVO, usuario, epi, dataEmp, dataDev) == null) {
+                informarConflito();
+                return;
+            }
+        } catch (EmprestimoRecusado e) {
+            saida().println("Erro: " + e.getMessage());
+            return;
+        }
+        saida().println("\nSUCESSO: Empréstimo cadastrado com sucesso!");
+    }
+
+    /**
+     * Lista todos os empréstimos cadastrados no sistema
+     * Mostra mensagem especial se não houver empréstimos
+     */
+    private static void listarEmprestimos() {
+        saida().println("\n--- LISTA DE EMPRÉSTIMOS ---");
+
+        // Exibe cada empréstimo com seu ID
+        if (paginar(METRICA_LISTAR_EMPRESTIMOS, USUARIOS | EPIS | EMPRESTIMOS, () -> Listagem.de(emprestimos)) == 0) {
+            saida().println("Nenhum empréstimo cadastrado no sistema.");
+        }
+    }
+
+    /**
+     * Lista os empréstimos devolvidos de um mês selado no histórico arquivado
+     * O segmento do mês é lido do disco só aqui (ou pelos relatórios)
+     */
+    private static void consultarHistoricoArquivado() {
+        saida().println("\n--- HISTÓRICO ARQUIVADO ---");
+        List<HistoricoArquivado.Segmento> segmentos = historico.listar();
+        if (segmentos.isEmpty()) {
+            saida().println("Nenhum mês arquivado.");
+            return;
+        }
+        StringBuilder texto = sessaoAtual.get().texto();
+        texto.append("Meses arquivados (empréstimos):\n");
+        for (HistoricoArquivado.Segmento segmento : segmentos) {
+            texto.append("  ").append(HistoricoArquivado.texto(segmento.getMes()))
+                    .append(" (").append(segmento.getRegistros()).append(")\n");
+        }
+        sessaoAtual.get().escrever(texto);
+
+        saida().print("Mês (AAAA-MM): ");
+        String mes = lerLinha().trim();
+        LocalDate inicioMes = Conversao.data(mes + "-01");
+        if (inicioMes == null) {
+            saida().println("Erro: Mês inválido. Use AAAA-MM.");
+            return;
+        }
+        HistoricoArquivado.Particao particao;
+        try {
+            particao = historico.carregar(HistoricoArquivado.mes(inicioMes));
+        } catch (IOException e) {
+            saida().println("Erro: Falha ao ler o histórico arquivado: " + e.getMessage());
+            return;
+        }
+        if (particao == null) {
+            saida().println("Nenhum empréstimo arquivado neste mês.");
+            return;
+        }
+        paginar(METRICA_LISTAR_ARQUIVADOS, 0,
+                () -> Listagem.posicional(particao.registros, i -> new EmprestimoArquivado(particao, i)));
+    }
+
+    /**
+     * Lista os empréstimos sem devolução registrada
+     * Permite filtrar por usuário (matrícula) ou por EPI, lendo direto do índice de abertos
+     */
+    private static void consultarEmprestimosAbertos() {
+        saida().println("\n--- EMPRÉSTIMOS EM ABERTO ---");
+        saida().println("1. Todos");
+        saida().println("2. Por usuário");
+        saida().println("3. Por EPI");
+        saida().print("Escolha uma opção: ");
+
+        Supplier<List<Emprestimo>> consulta;
+        switch (lerInteiro()) {
+            case 1 -> consulta = abertos::todos;
+            case 2 -> {
+                Usuario usuario = selecionarUsuario("Digite a matrícula do usuário (ou parte do nome): ");
+                if (usuario == null) return;
+                consulta = () -> abertos.porUsuario(usuario.getId());
+            }
+            case 3 -> {
+                EPI epi = selecionarEPI("Digite o ID do EPI (ou parte do nome): ", "Erro: ID de EPI inválido!");
+                if (epi == null) return;
+                consulta = () -> abertos.porEpi(epi.getId());
+            }
+            default -> {
+                saida().println("Erro: Opção inválida! Digite um número entre 1 e 3.");
+                return;
+            }
+        }
+
+        int total = paginar(METRICA_LISTAR_ABERTOS, USUARIOS | EPIS | EMPRESTIMOS, () -> Listagem.de(consulta.get()));
+        if (total == 0) {
+            saida().println("Nenhum empréstimo em aberto.");
+            return;
+        }
+        saida().println("Total em aberto: " + total);
+    }
+
+    /**
+     * Lista os empréstimos em atraso, lidos direto da agenda de vencimentos
+     */
+    private static void listarEmprestimosAtrasados() {
+        saida().println("\n--- EMPRÉSTIMOS EM ATRASO ---");
+
+        // Garante que os vencimentos de hoje já foram processados (a verificação pode estar atrasada)
+        int hoje = (int) LocalDate.now().toEpochDay();
+        vencimentos.avancar(hoje);
+        sessaoAtual.get().setAtrasosAvisados(totalAtrasos.get());
+
+        // Com os empréstimos travados, nenhum empréstimo da lista pode ser removido durante a leitura
+        StringBuilder texto = sessaoAtual.get().texto();
+        int[] atrasados;
+        travar(USUARIOS | EPIS | EMPRESTIMOS, 0);
+        try {
+            atrasados = vencimentos.atrasados();
+            for (int id : atrasados) {
+                Emprestimo emp = emprestimos.obter(id);
+                long dias = hoje - emp.getDataDevolucaoPrevista().toEpochDay();
+                texto.append('[').append(id).append("] ");
+                emp.renderizar(texto);
+                texto.append(" | Atraso: ").append(dias).append(" dia(s)\n");
+            }
+        } finally {
+            destravar(USUARIOS | EPIS | EMPRESTIMOS, 0);
+        }
+
+        if (atrasados.length == 0) {
+            saida().println("Nenhum empréstimo em atraso.");
+            return;
+        }
+        sessaoAtual.get().escrever(texto);
+        saida().println("Total em atraso: " + atrasados.length);
+    }
+
+    /**
+     * Atualiza os dados de um empréstimo existente
+     * Permite atualização parcial (campos podem ser mantidos pressionando Enter)
+     */
+    private static void atualizarEmprestimo() {
+        listarEmprestimos();
+        if (emprestimos.isEmpty()) return;
+
+        Emprestimo emp = selecionarPorId(emprestimos, "\nDigite o ID do empréstimo a ser atualizado: ",
+                "Erro: ID inválido!");
+        if (emp == null) return;
+
+        // A visão lê as colunas da tabela: os dados exibidos são copiados com as travas
+        String descricao = null;
+        int matriculaAtual = 0, idEpiAtual = 0;
+        LocalDate dataEmpAtual = null, dataDevAtual = null;
+        travar(USUARIOS | EPIS | EMPRESTIMOS, 0);
+        try {
+            if (emprestimos.contem(emp)) {
+                descricao = emp.toString();
+                matriculaAtual = emp.getUsuario().getMatricula();
+                idEpiAtual = emp.getEpi().getId();
+                dataEmpAtual = emp.getDataEmprestimo();
+                dataDevAtual = emp.getDataDevolucaoPrevista();
+            }
+        } finally {
+            destravar(USUARIOS | EPIS | EMPRESTIMOS, 0);
+        }
+        if (descricao == null) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nAtualizando empréstimo: " + descricao);
+
+        // Atualização do usuário pela matrícula (campo opcional, null mantém o atual)
+        Usuario novoUsuario = null;
+        saida().print("\nNova matrícula do usuário [" + matriculaAtual + "]: ");
+        String userStr = lerLinha().trim();
+        if (!userStr.isEmpty()) {
+            long matricula = Conversao.inteiro(userStr);
+            Usuario usuarioInformado = matricula == Conversao.INVALIDO ? null : buscarUsuario((int) matricula);
+            if (matricula == Conversao.INVALIDO) {
+                saida().println("Aviso: Valor inválido. Usuário não alterado.");
+            } else if (usuarioInformado != null) {
+                novoUsuario = usuarioInformado;
+            } else {
+                saida().println("Aviso: Matrícula não encontrada. Usuário não alterado.");
+            }
+        }
+
+        // Atualização do EPI (campo opcional, null mantém o atual)
+        listarEPIs();
+        EPI novoEpi = null;
+        saida().print("Novo ID do EPI [" + idEpiAtual + "]: ");
+        String epiStr = lerLinha().trim();
+        if (!epiStr.isEmpty()) {
+            long idEpi = Conversao.inteiro(epiStr);
+            EPI epiInformado = idEpi == Conversao.INVALIDO ? null : obter(epis, (int) idEpi);
+            if (idEpi == Conversao.INVALIDO) {
+                saida().println("Aviso: Valor inválido. EPI não alterado.");
+            } else if (epiInformado != null) {
+                novoEpi = epiInformado;
+            } else {
+                saida().println("Aviso: ID de EPI inválido. EPI não alterado.");
+            }
+        }
+
+        // Atualização da data de empréstimo (campo opcional)
+        LocalDate novaDataEmp = dataEmpAtual;
+        saida().print("Nova data de empréstimo [" + dataEmpAtual + "]: ");
+        String dataEmpStr = lerLinha().trim();
+        if (!dataEmpStr.isEmpty()) {
+            LocalDate dataInformada = Conversao.data(dataEmpStr);
+            if (dataInformada == null) {
+                saida().println("Aviso: Data inválida. Data de empréstimo não alterada.");
+            } else {
+                novaDataEmp = dataInformada;
+            }
+        }
+
+        // Atualização da data de devolução (campo opcional)
+        LocalDate novaDataDev = dataDevAtual;
+        saida().print("Nova data de devolução [" + dataDevAtual + "]: ");
+        String dataDevStr = lerLinha().trim();
+        if (!dataDevStr.isEmpty()) {
+            LocalDate dataInformada = Conversao.data(dataDevStr);
+
+            // Verifica se a nova data de devolução é posterior à data de empréstimo
+            if (dataInformada == null) {
+                saida().println("Aviso: Data inválida. Data de devolução não alterada.");
+            } else if (dataInformada.isBefore(novaDataEmp)) {
+                saida().println("Erro: A data de devolução deve ser posterior à data de empréstimo!");
+            } else {
+                novaDataDev = dataInformada;
+            }
+        }
+
+        try {
+            if (!aplicarAtualizacaoEmprestimo(emp, novoUsuario, novoEpi, novaDataEmp, novaDataDev)) {
+                informarConflito();
+                return;
+            }
+        } catch (EmprestimoRecusado e) {
+            saida().println("Erro: " + e.getMessage() + " Empréstimo não alterado.");
+            return;
+        }
+        saida().println("\nSUCESSO: Empréstimo atualizado com sucesso!");
+    }
+
+    /**
+     * Remove um empréstimo do sistema
+     * Solicita confirmação antes da remoção definitiva
+     */
+    private static void removerEmprestimo() {
+        listarEmprestimos();
+        if (emprestimos.isEmpty()) return;
+
+        Emprestimo emp = selecionarPorId(emprestimos, "\nDigite o ID do empréstimo a ser removido: ",
+                "Erro: ID inválido!");
+        if (emp == null) return;
+        String descricao = descrever(USUARIOS | EPIS | EMPRESTIMOS, emprestimos, emp);
+        if (descricao == null) {
+            informarConflito();
+            return;
+        }
+
+        // Solicita confirmação
+        saida().println("\nEmpréstimo selecionado para remoção:");
+        saida().println(descricao);
+        saida().print("\nTem certeza que deseja remover este empréstimo? (S/N): ");
+        String confirmacao = lerLinha().trim().toUpperCase();
+
+        if (confirmacao.equals("S")) {
+            if (!aplicarRemocaoEmprestimo(emp)) {
+                informarConflito();
+                return;
+            }
+            saida().println("\nSUCESSO: Empréstimo removido com sucesso!");
+        } else {
+            saida().println("\nOperação cancelada. O empréstimo não foi removido.");
+        }
+    }
+
+    // ==================== GERENCIAMENTO DE DEVOLUÇÕES ====================
+
+    /**
+     * Menu de gerenciamento de devoluções
+     * Permite cadastrar, listar, atualizar e remover devoluções
+     */
+    private static void gerenciarDevolucoes() {
+        int opcao;
+        do {
+            saida().println("\n=== GERENCIAMENTO DE DEVOLUÇÕES ===");
+            saida().println("1. Cadastrar Nova Devolução");
+            saida().println("2. Listar Todas as Devoluções");
+            saida().println("3. Atualizar Devolução Existente");
+            saida().println("4. Remover Devolução");
+            saida().println("0. Voltar ao Menu Principal");
+            saida().print("Escolha uma opção: ");
+
+            try {
+                opcao = Integer.parseInt(lerLinha().trim());
+
+                switch (opcao) {
+                    case 1 -> cadastrarDevolucao();
+                    case 2 -> listarDevolucoes();
+                    case 3 -> atualizarDevolucao();
+                    case 4 -> removerDevolucao();
+                    case 0 -> saida().println("Retornando ao menu principal...");
+                    default -> saida().println("Erro: Opção inválida! Digite um número entre 0 e 4.");
+                }
+            } catch (NumberFormatException e) {
+                saida().println("Erro: Por favor, digite apenas números.");
+                opcao = -1;
+            }
+        } while (opcao != 0);
+    }
+
+    /**
+     * Cadastra uma nova devolução no sistema
+     * Valida todas as entradas e relacionamentos
+     */
+    private static void cadastrarDevolucao() {
+        saida().println("\n--- CADASTRAR NOVA DEVOLUÇÃO ---");
+
+        // Verifica se existem empréstimos aguardando devolução
+        if (abertos.total() == 0) {
+            saida().println("Erro: Não há empréstimos em aberto. Cadastre um empréstimo primeiro.");
+            return;
+        }
+
+        // Seleção do empréstimo entre os que estão em aberto (apenas a primeira página; a listagem
+        // completa, com filtros por usuário e EPI, fica em "Listar Empréstimos em Aberto")
+        StringBuilder texto = sessaoAtual.get().texto().append("\n--- EMPRÉSTIMOS EM ABERTO ---\n");
+        long inicio = System.nanoTime();
+        int total = listar(texto, USUARIOS | EPIS | EMPRESTIMOS, () -> Listagem.de(abertos.todos()), 0, LINHAS_POR_PAGINA);
+        METRICA_LISTAR_ABERTOS.registrarDesde(inicio);
+        if (total > LINHAS_POR_PAGINA) {
+            texto.append("... mostrando ").append(LINHAS_POR_PAGINA).append(" de ").append(total)
+                    .append(" (consulte \"Listar Empréstimos em Aberto\" para ver todos)\n");
+        }
+        sessaoAtual.get().escrever(texto);
+        Emprestimo emp = selecionarPorId(emprestimos, "\nDigite o ID do empréstimo: ",
+                "Erro: ID de empréstimo inválido!");
+        if (emp == null) return;
+        // A visão lê as colunas da tabela: a situação e a data são copiadas com a trava
+        LocalDate dataEmp = null;
+        boolean devolvido = false;
+        travar(EMPRESTIMOS, 0);
+        try {
+            if (emprestimos.contem(emp)) {
+                dataEmp = emp.getDataEmprestimo();
+                devolvido = emprestimos.idDevolucao(emp.getId()) >= 0;
+            }
+        } finally {
+            destravar(EMPRESTIMOS, 0);
+        }
+        if (dataEmp == null) {
+            informarConflito();
+            return;
+        }
+        if (devolvido) {
+            saida().println("Erro: Este empréstimo já possui devolução registrada!");
+            return;
+        }
+
+        // Data da devolução
+        saida().println("\nData da devolução:");
+        LocalDate dataDev = lerLocalDate();
+
+        // Verifica se a data de devolução é posterior à data de empréstimo
+        if (dataDev.isBefore(dataEmp)) {
+            saida().println("Erro: A data de devolução deve ser posterior à data de empréstimo!");
+            return;
+        }
+
+        // Observação (campo opcional)
+        saida().print("Observações (opcional): ");
+        String obs = lerLinha().trim();
+
+        // Cria e armazena a nova devolução
+        if (aplicarCadastroDevolucao(NOVO, emp, dataDev, obs) == null) {
+            if (devolvido(emp)) {
+                saida().println("Erro: Este empréstimo já possui devolução registrada!");
+            } else {
+                informarConflito();
+            }
+            return;
+        }
+        saida().println("\nSUCESSO: Devolução cadastrada com sucesso!");
+    }
+
+    /**
+     * Lista todas as devoluções cadastradas no sistema
+     * Mostra mensagem especial se não houver devoluções
+     */
+    private static void listarDevolucoes() {
+        saida().println("\n--- LISTA DE DEVOLUÇÕES ---");
+
+        // Exibe cada devolução com seu ID
+        if (paginar(METRICA_LISTAR_DEVOLUCOES, TODOS, () -> Listagem.de(devolucoes)) == 0) {
+            saida().println("Nenhuma devolução cadastrada no sistema.");
+        }
+    }
+
+    /**
+     * Atualiza os dados de uma devolução existente
+     * Permite atualização parcial (campos podem ser mantidos pressionando Enter)
+     */
+    private static void atualizarDevolucao() {
+        listarDevolucoes();
+        if (devolucoes.isEmpty()) return;
+
+        Devolucao dev = selecionarPorId(devolucoes, "\nDigite o ID da devolução a ser atualizada: ",
+                "Erro: ID inválido!");
+        if (dev == null) return;
+
+        // A visão lê as colunas da tabela: os dados exibidos são copiados com as travas
+        String descricao = null, observacaoAtual = null;
+        int idEmpAtual = 0;
+        LocalDate dataDevAtual = null, dataEmpAtual = null;
+        travar(USUARIOS | EPIS | EMPRESTIMOS | DEVOLUCOES, 0);
+        try {
+            if (devolucoes.contem(dev)) {
+                descricao = dev.toString();
+                observacaoAtual = dev.getObservacao();
+                idEmpAtual = dev.getEmprestimo().getId();
+                dataEmpAtual = dev.getEmprestimo().getDataEmprestimo();
+                dataDevAtual = dev.getDataDevolucao();
+            }
+        } finally {
+            destravar(USUARIOS | EPIS | EMPRESTIMOS | DEVOLUCOES, 0);
+        }
+        if (descricao == null) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nAtualizando devolução: " + descricao);
+
+        // Atualização do empréstimo relacionado (campo opcional, null mantém o atual)
+        listarEmprestimos();
+        Emprestimo novoEmp = null;
+        LocalDate dataEmpRelacionado = dataEmpAtual;
+        saida().print("\nNovo ID do empréstimo [" + idEmpAtual + "]: ");
+        String empStr = lerLinha().trim();
+        if (!empStr.isEmpty()) {
+            long idEmprestimo = Conversao.inteiro(empStr);
+            Emprestimo empInformado = null;
+            boolean jaDevolvido = false;
+            LocalDate dataEmpInformado = null;
+            if (idEmprestimo != Conversao.INVALIDO) {
+                travar(EMPRESTIMOS | DEVOLUCOES, 0);
+                try {
+                    empInformado = emprestimos.obter((int) idEmprestimo);
+                    if (empInformado != null) {
+                        Devolucao devolucaoInformada = empInformado.getDevolucao();
+                        jaDevolvido = devolucaoInformada != null && !dev.equals(devolucaoInformada);
+                        dataEmpInformado = empInformado.getDataEmprestimo();
+                    }
+                } finally {
+                    destravar(EMPRESTIMOS | DEVOLUCOES, 0);
+                }
+            }
+            if (idEmprestimo == Conversao.INVALIDO) {
+                saida().println("Aviso: Valor inválido. Empréstimo não alterado.");
+            } else if (jaDevolvido) {
+                saida().println("Aviso: Empréstimo já possui devolução registrada. Empréstimo não alterado.");
+            } else if (empInformado != null) {
+                novoEmp = empInformado;
+                dataEmpRelacionado = dataEmpInformado;
+            } else {
+                saida().println("Aviso: ID de empréstimo inválido. Empréstimo não alterado.");
+            }
+        }
+
+        // Atualização da data (campo opcional)
+        LocalDate novaDataDev = dataDevAtual;
+        saida().print("Nova data de devolução [" + dataDevAtual + "]: ");
+        String dataDevStr = lerLinha().trim();
+        if (!dataDevStr.isEmpty()) {
+            LocalDate dataInformada = Conversao.data(dataDevStr);
+
+            // Verifica se a nova data é posterior à data de empréstimo
+            if (dataInformada == null) {
+                saida().println("Aviso: Data inválida. Data de devolução não alterada.");
+            } else if (dataInformada.isBefore(dataEmpRelacionado)) {
+                saida().println("Erro: A data de devolução deve ser posterior à data de empréstimo!");
+            } else {
+                novaDataDev = dataInformada;
+            }
+        }
+
+        // Atualização da observação (campo opcional)
+        saida().print("Nova observação [" + observacaoAtual + "]: ");
+        String novaObs = lerLinha().trim();
+        if (novaObs.isEmpty()) novaObs = observacaoAtual;
+
+        if (!aplicarAtualizacaoDevolucao(dev, novoEmp, novaDataDev, novaObs)) {
+            informarConflito();
+            return;
+        }
+
+        saida().println("\nSUCESSO: Devolução atualizada com sucesso!");
+    }
+
+    /**
+     * Remove uma devolução do sistema
+     * Solicita confirmação antes da remoção definitiva
+     */
+    private static void removerDevolucao() {
+        listarDevolucoes();
+        if (devolucoes.isEmpty()) return;
+
+        Devolucao dev = selecionarPorId(devolucoes, "\nDigite o ID da devolução a ser removida: ",
+                "Erro: ID inválido!");
+        if (dev == null) return;
+        String descricao = descrever(USUARIOS | EPIS | EMPRESTIMOS | DEVOLUCOES, devolucoes, dev);
+        if (descricao == null) {
+            informarConflito();
+            return;
+        }
+
+        // Solicita confirmação
+        saida().println("\nDevolução selecionada para remoção:");
+        saida().println(descricao);
+        saida().print("\nTem certeza que deseja remover esta devolução? (S/N): ");
+        String confirmacao = lerLinha().trim().toUpperCase();
+
+        if (confirmacao.equals("S")) {
+            if (!aplicarRemocaoDevolucao(dev)) {
+                informarConflito();
+                return;
+            }
+            saida().println("\nSUCESSO: Devolução removida com sucesso!");
+        } else {
+            saida().println("\nOperação cancelada. A devolução não foi removida.");
+        }
+    }
+}
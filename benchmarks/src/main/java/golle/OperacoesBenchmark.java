@@ -0,0 +1,328 @@
+package golle;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Benchmarks JMH das operações principais do núcleo, sobre uma base carregada em memória
+ * sem journal (nada é gravado em disco, só o custo das operações e dos índices é medido)
+ *
+ * A base tem {@code registros} empréstimos, um usuário para cada dez empréstimos e 1000 EPIs;
+ * nove em cada dez empréstimos já foram devolvidos. A carga é determinística (mesma semente,
+ * mesmas datas), para que os resultados de versões diferentes sejam comparáveis:
+ *   java -jar benchmarks/target/benchmarks.jar -p registros=10000 -rf json -rff resultado.json
+ * A escala de 10M precisa do heap de 3 GB configurado em @Fork
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OperacoesBenchmark {
+    // Operações por invocação nos benchmarks de escrita, que precisam de preparo a cada iteração
+    static final int LOTE = 10_000;
+    // Quantidade de EPIs e de departamentos da base
+    static final int TOTAL_EPIS = 1000;
+    static final int TOTAL_DEPARTAMENTOS = 20;
+    // Datas usadas na carga e nos lotes, pré-criadas para não medir alocação de LocalDate
+    static final LocalDate[] DATAS = new LocalDate[3650];
+
+    static {
+        LocalDate inicio = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < DATAS.length; i++) DATAS[i] = inicio.plusDays(i);
+    }
+
+    /**
+     * Base compartilhada por todos os benchmarks, carregada uma vez por fork
+     */
+    @State(Scope.Benchmark)
+    public static class Base {
+        @Param({"10000", "1000000", "10000000"})
+        public int registros;
+
+        Usuario[] usuarios;
+        EPI[] epis;
+        final StringBuilder texto = new StringBuilder();
+        private long semente = 0x9E3779B97F4A7C15L;
+
+        /**
+         * Carrega usuários, EPIs, empréstimos e devoluções pelas mesmas operações usadas pelos menus
+         */
+        @Setup(Level.Trial)
+        public void carregar() {
+            usuarios = new Usuario[Math.max(1, registros / 10)];
+            for (int i = 0; i < usuarios.length; i++) {
+                usuarios[i] = NucleoEPI.aplicarCadastroUsuario(NucleoEPI.NOVO, "Usuário " + i,
+                        "Departamento " + (i % TOTAL_DEPARTAMENTOS), i + 1);
+            }
+            epis = new EPI[TOTAL_EPIS];
+            for (int i = 0; i < epis.length; i++) {
+                epis[i] = NucleoEPI.aplicarCadastroEPI(NucleoEPI.NOVO, "EPI " + i, 1_000_000_000, EPI.SEM_VALIDADE);
+            }
+            for (int i = 0; i < registros; i++) {
+                int dia = i % (DATAS.length - 60);
+                Emprestimo emp = NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, usuarios[i % usuarios.length],
+                        epis[i % epis.length], DATAS[dia], DATAS[dia + 30]);
+                if (i % 10 != 0) NucleoEPI.aplicarCadastroDevolucao(NucleoEPI.NOVO, emp, DATAS[dia + 10], "");
+            }
+        }
+
+        /**
+         * Próximo número pseudoaleatório em [0, limite) (xorshift, sem alocação)
+         */
+        int sortear(int limite) {
+            semente ^= semente << 13;
+            semente ^= semente >>> 7;
+            semente ^= semente << 17;
+            return (int) ((semente >>> 1) % limite);
+        }
+
+        /**
+         * Usuário sorteado da base
+         */
+        Usuario usuario() {
+            return usuarios[sortear(usuarios.length)];
+        }
+
+        /**
+         * EPI sorteado da base
+         */
+        EPI epi() {
+            return epis[sortear(epis.length)];
+        }
+    }
+
+    /**
+     * Empréstimos criados numa iteração, removidos ao fim dela para a base não crescer
+     */
+    @State(Scope.Benchmark)
+    public static class LoteEmprestimos {
+        final Emprestimo[] criados = new Emprestimo[LOTE];
+
+        /**
+         * Remove os empréstimos criados na iteração
+         */
+        @TearDown(Level.Iteration)
+        public void remover() {
+            for (int i = 0; i < LOTE; i++) {
+                if (criados[i] != null) NucleoEPI.aplicarRemocaoEmprestimo(criados[i]);
+                criados[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Empréstimos em aberto preparados para a iteração receber as devoluções
+     */
+    @State(Scope.Benchmark)
+    public static class LoteDevolucoes {
+        final Emprestimo[] abertos = new Emprestimo[LOTE];
+        final Devolucao[] registradas = new Devolucao[LOTE];
+
+        /**
+         * Abre os empréstimos que serão devolvidos na iteração
+         */
+        @Setup(Level.Iteration)
+        public void abrir(Base base) {
+            for (int i = 0; i < LOTE; i++) {
+                int dia = base.sortear(DATAS.length - 60);
+                abertos[i] = NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, base.usuario(), base.epi(),
+                        DATAS[dia], DATAS[dia + 30]);
+            }
+        }
+
+        /**
+         * Desfaz as devoluções e os empréstimos da iteração
+         */
+        @TearDown(Level.Iteration)
+        public void remover() {
+            for (int i = 0; i < LOTE; i++) {
+                if (registradas[i] != null) NucleoEPI.aplicarRemocaoDevolucao(registradas[i]);
+                NucleoEPI.aplicarRemocaoEmprestimo(abertos[i]);
+                registradas[i] = null;
+                abertos[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Usuário de cada thread nos benchmarks com várias threads (um balcão de empréstimos)
+     */
+    @State(Scope.Thread)
+    public static class Balcao {
+        Usuario usuario;
+
+        @Setup(Level.Trial)
+        public void escolher(Base base, ThreadParams parametros) {
+            usuario = base.usuarios[parametros.getThreadIndex() % base.usuarios.length];
+        }
+    }
+
+    /**
+     * Busca de usuário pela matrícula
+     */
+    @Benchmark
+    public Usuario buscarUsuarioPorMatricula(Base base) {
+        return NucleoEPI.buscarUsuario(base.sortear(base.usuarios.length) + 1);
+    }
+
+    /**
+     * Busca de EPI pelo ID
+     */
+    @Benchmark
+    public EPI obterEpiPorId(Base base) {
+        return NucleoEPI.obter(NucleoEPI.epis, base.sortear(TOTAL_EPIS));
+    }
+
+    /**
+     * Cadastro de empréstimo: reserva de estoque, referências, agregados e agenda de vencimentos
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(LOTE)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 20)
+    public void cadastrarEmprestimo(Base base, LoteEmprestimos lote) {
+        for (int i = 0; i < LOTE; i++) {
+            int dia = base.sortear(DATAS.length - 60);
+            lote.criados[i] = NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, base.usuario(), base.epi(),
+                    DATAS[dia], DATAS[dia + 30]);
+        }
+    }
+
+    /**
+     * Registro de devolução de um empréstimo em aberto
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(LOTE)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 20)
+    public void registrarDevolucao(LoteDevolucoes lote) {
+        for (int i = 0; i < LOTE; i++) {
+            LocalDate data = lote.abertos[i].getDataEmprestimo().plusDays(10);
+            lote.registradas[i] = NucleoEPI.aplicarCadastroDevolucao(NucleoEPI.NOVO, lote.abertos[i], data, "");
+        }
+    }
+
+    /**
+     * Uma página da listagem de empréstimos, como no menu (inclui a contagem do total),
+     * retomada a partir de um ID sorteado
+     */
+    @Benchmark
+    public int renderizarPaginaEmprestimos(Base base, Blackhole buraco) {
+        base.texto.setLength(0);
+        int inicio = base.sortear(Math.max(1, NucleoEPI.emprestimos.limite()));
+        int total = NucleoEPI.listar(base.texto, NucleoEPI.USUARIOS | NucleoEPI.EPIS | NucleoEPI.EMPRESTIMOS,
+                () -> Listagem.de(NucleoEPI.emprestimos), inicio, 20);
+        buraco.consume(base.texto);
+        return total;
+    }
+
+    /**
+     * Primeira página dos empréstimos em aberto de um usuário
+     */
+    @Benchmark
+    public int consultarAbertosPorUsuario(Base base, Blackhole buraco) {
+        base.texto.setLength(0);
+        int usuarioId = base.usuario().getId();
+        int total = NucleoEPI.listar(base.texto, NucleoEPI.USUARIOS | NucleoEPI.EPIS | NucleoEPI.EMPRESTIMOS,
+                () -> Listagem.de(NucleoEPI.abertos.porUsuario(usuarioId)), 0, 20);
+        buraco.consume(base.texto);
+        return total;
+    }
+
+    /**
+     * Primeira página dos empréstimos em aberto de um EPI
+     */
+    @Benchmark
+    public int consultarAbertosPorEpi(Base base, Blackhole buraco) {
+        base.texto.setLength(0);
+        int epiId = base.epi().getId();
+        int total = NucleoEPI.listar(base.texto, NucleoEPI.USUARIOS | NucleoEPI.EPIS | NucleoEPI.EMPRESTIMOS,
+                () -> Listagem.de(NucleoEPI.abertos.porEpi(epiId)), 0, 20);
+        buraco.consume(base.texto);
+        return total;
+    }
+
+    /**
+     * Relatórios de todo o histórico, calculados em paralelo no ForkJoinPool comum
+     * (a escala com os núcleos é medida variando -Djava.util.concurrent.ForkJoinPool.common.parallelism)
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long gerarRelatorio(Base base, Blackhole buraco) throws IOException {
+        base.texto.setLength(0);
+        long total = NucleoEPI.gerarRelatorio(base.texto, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        buraco.consume(base.texto);
+        return total;
+    }
+
+    /**
+     * Cadastro e remoção de um empréstimo enquanto outra thread do grupo gera relatórios sem
+     * parar: os relatórios leem um retrato, então a cauda das latências de escrita não inclui
+     * o tempo do cálculo
+     */
+    @Benchmark
+    @Group("escritasDuranteRelatorio")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean escreverDuranteRelatorio(Base base) {
+        int dia = base.sortear(DATAS.length - 60);
+        Emprestimo emp = NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, base.usuario(), base.epi(),
+                DATAS[dia], DATAS[dia + 30]);
+        return NucleoEPI.aplicarRemocaoEmprestimo(emp);
+    }
+
+    /**
+     * Relatórios de todo o histórico gerados em paralelo às escritas de escreverDuranteRelatorio
+     */
+    @Benchmark
+    @Group("escritasDuranteRelatorio")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long relatorioDuranteEscritas(Base base, Blackhole buraco) throws IOException {
+        base.texto.setLength(0);
+        long total = NucleoEPI.gerarRelatorio(base.texto, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        buraco.consume(base.texto);
+        return total;
+    }
+
+    /**
+     * Cadastro e remoção de um empréstimo do mesmo EPI por várias threads, como balcões
+     * entregando o mesmo item: as escritas passam pela trava de escrita dos empréstimos, então a
+     * vazão total mostra o quanto essa trava limita a escala (varie as threads com -t)
+     */
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean emprestarMesmoEpi(Base base, Balcao balcao) {
+        Emprestimo emp = NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, balcao.usuario, base.epis[0],
+                DATAS[0], DATAS[30]);
+        return NucleoEPI.aplicarRemocaoEmprestimo(emp);
+    }
+}
@@ -0,0 +1,149 @@
+package golle;
+
+import java.util.Arrays;
+
+/**
+ * Agenda dos empréstimos em aberto pela data de devolução prevista (dia epoch)
+ * Os pendentes ficam em um min-heap indexado: agendar, reagendar e cancelar custam O(log n)
+ * e a verificação diária só olha o topo. Os que passam do vencimento migram para a lista de
+ * atrasados, notificando o ouvinte. Usada pela thread de verificação e pelo menu, por isso
+ * todos os métodos são sincronizados
+ */
+class AgendaVencimentos {
+    /**
+     * Recebe a notificação de um empréstimo que acabou de entrar em atraso
+     * É chamado com o lock da agenda, então deve ser rápido
+     */
+    interface Ouvinte {
+        void emAtraso(int emprestimoId, int diaVencimento);
+    }
+
+    private static final int FORA = -1;      // Posição de um empréstimo fora da agenda
+    private static final int ATRASADO = -2;  // Posição de um empréstimo na lista de atrasados
+    private static final int LISTA_ATRASADOS = 0;
+
+    private final Ouvinte ouvinte;
+    private int[] heap = new int[16];      // IDs dos empréstimos pendentes, menor vencimento no topo
+    private int pendentes = 0;
+    private int[] posicao = new int[0];    // Por empréstimo: índice no heap, FORA ou ATRASADO
+    private int[] vencimento = new int[0]; // Por empréstimo: dia epoch do vencimento
+    private final ListasPorChave atrasados = new ListasPorChave();
+    private int hoje = Integer.MIN_VALUE;  // Último dia processado por avancar
+
+    /**
+     * Construtor da classe AgendaVencimentos
+     * @param ouvinte Notificado a cada empréstimo que entra em atraso
+     */
+    public AgendaVencimentos(Ouvinte ouvinte) {
+        this.ouvinte = ouvinte;
+    }
+
+    /**
+     * Agenda o empréstimo para o dia de vencimento informado, substituindo o agendamento anterior
+     * Se o dia já passou (em relação ao último dia processado), o empréstimo vai direto para os atrasados
+     */
+    public synchronized void agendar(int emprestimoId, int diaVencimento) {
+        cancelar(emprestimoId);
+        vencimento[emprestimoId] = diaVencimento;
+        if (diaVencimento < hoje) {
+            marcarAtrasado(emprestimoId);
+            return;
+        }
+        if (pendentes == heap.length) heap = Arrays.copyOf(heap, pendentes * 2);
+        heap[pendentes] = emprestimoId;
+        posicao[emprestimoId] = pendentes;
+        subir(pendentes++);
+    }
+
+    /**
+     * Retira o empréstimo da agenda (pendente ou atrasado)
+     */
+    public synchronized void cancelar(int emprestimoId) {
+        garantirCapacidade(emprestimoId);
+        int pos = posicao[emprestimoId];
+        if (pos == ATRASADO) {
+            atrasados.remover(emprestimoId);
+        } else if (pos >= 0) {
+            int ultimo = heap[--pendentes];
+            if (pos < pendentes) {
+                heap[pos] = ultimo;
+                posicao[ultimo] = pos;
+                descer(pos);
+                subir(posicao[ultimo]);
+            }
+        }
+        posicao[emprestimoId] = FORA;
+    }
+
+    /**
+     * Processa a chegada de um novo dia: empréstimos com vencimento anterior a hoje entram em atraso
+     * @param hoje Dia epoch atual
+     * @return Quantidade de empréstimos que entraram em atraso
+     */
+    public synchronized int avancar(int hoje) {
+        this.hoje = Math.max(this.hoje, hoje);
+        int novos = 0;
+        while (pendentes > 0 && vencimento[heap[0]] < this.hoje) {
+            int id = heap[0];
+            cancelar(id);
+            marcarAtrasado(id);
+            novos++;
+        }
+        return novos;
+    }
+
+    /**
+     * @return IDs dos empréstimos em atraso, na ordem em que entraram em atraso
+     */
+    public synchronized int[] atrasados() {
+        int[] ids = new int[atrasados.tamanho(LISTA_ATRASADOS)];
+        int i = 0;
+        for (int id = atrasados.primeiro(LISTA_ATRASADOS); id >= 0; id = atrasados.proximo(id)) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    private void marcarAtrasado(int emprestimoId) {
+        atrasados.adicionar(emprestimoId, LISTA_ATRASADOS);
+        posicao[emprestimoId] = ATRASADO;
+        ouvinte.emAtraso(emprestimoId, vencimento[emprestimoId]);
+    }
+
+    private void subir(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int pai = (i - 1) >>> 1;
+            if (vencimento[heap[pai]] <= vencimento[id]) break;
+            heap[i] = heap[pai];
+            posicao[heap[i]] = i;
+            i = pai;
+        }
+        heap[i] = id;
+        posicao[id] = i;
+    }
+
+    private void descer(int i) {
+        int id = heap[i];
+        while (true) {
+            int filho = 2 * i + 1;
+            if (filho >= pendentes) break;
+            if (filho + 1 < pendentes && vencimento[heap[filho + 1]] < vencimento[heap[filho]]) filho++;
+            if (vencimento[id] <= vencimento[heap[filho]]) break;
+            heap[i] = heap[filho];
+            posicao[heap[i]] = i;
+            i = filho;
+        }
+        heap[i] = id;
+        posicao[id] = i;
+    }
+
+    private void garantirCapacidade(int emprestimoId) {
+        if (emprestimoId < posicao.length) return;
+        int capacidade = Math.max(emprestimoId + 1, Math.max(16, posicao.length * 2));
+        int usados = posicao.length;
+        posicao = Arrays.copyOf(posicao, capacidade);
+        vencimento = Arrays.copyOf(vencimento, capacidade);
+        Arrays.fill(posicao, usados, capacidade, FORA);
+    }
+}
@@ -0,0 +1,167 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.time.LocalDate;
+
+/**
+ * Contadores de empréstimos por departamento do usuário, atualizados em O(1) a cada evento:
+ * empréstimos em aberto (itens em uso), em atraso e cadastrados por mês (pela data do empréstimo)
+ * Guarda, por ID de empréstimo, o código do departamento e o mês em que ele foi contado, então
+ * cada evento desfaz exatamente a contagem anterior. Sincronizado porque os atrasos chegam da thread de
+ * verificação (com o lock da agenda, sempre antes deste)
+ */
+class AgregadosDepartamento {
+    private static final byte FECHADO = 0, ABERTO = 1, ATRASADO = 2;
+
+    /**
+     * Contadores de um departamento
+     */
+    private static final class Contadores {
+        int registrados; // Empréstimos contados no departamento, de qualquer mês
+        int emAberto;
+        int atrasados;
+        final HashMap<Integer, Integer> porMes = new HashMap<>(); // Mês (ano * 12 + mês - 1) -> empréstimos
+    }
+
+    private final Dicionario departamentos;
+    private final ArrayList<Contadores> porDepartamento = new ArrayList<>(); // Pelo código do departamento
+    private int[] departamentoDo = new int[0]; // Por empréstimo: código do departamento contado (-1 se não registrado)
+    private int[] mesDo = new int[0];                 // Por empréstimo: mês contado
+    private byte[] estado = new byte[0];              // Por empréstimo: FECHADO, ABERTO ou ATRASADO
+
+    /**
+     * Construtor da classe AgregadosDepartamento
+     * @param departamentos Dicionário que dá o nome de cada código de departamento
+     */
+    public AgregadosDepartamento(Dicionario departamentos) {
+        this.departamentos = departamentos;
+    }
+
+    /**
+     * Conta um empréstimo (ainda fechado) no mês da data de empréstimo do departamento
+     */
+    public synchronized void registrar(int id, int departamento, LocalDate dataEmprestimo) {
+        garantir(id);
+        departamentoDo[id] = departamento;
+        mesDo[id] = mes(dataEmprestimo);
+        estado[id] = FECHADO;
+        contar(departamento, mesDo[id], 1);
+    }
+
+    /**
+     * Desfaz a contagem de um empréstimo fechado (removido ou prestes a mudar de dados)
+     */
+    public synchronized void desregistrar(int id) {
+        if (id >= departamentoDo.length || departamentoDo[id] < 0) return;
+        contar(departamentoDo[id], mesDo[id], -1);
+        departamentoDo[id] = -1;
+    }
+
+    /**
+     * Passa a contar o empréstimo como em aberto
+     */
+    public synchronized void abrir(int id) {
+        if (id >= departamentoDo.length || departamentoDo[id] < 0 || estado[id] != FECHADO) return;
+        estado[id] = ABERTO;
+        contadores(departamentoDo[id]).emAberto++;
+    }
+
+    /**
+     * Passa a contar o empréstimo em aberto como atrasado
+     */
+    public synchronized void atrasar(int id) {
+        if (id >= departamentoDo.length || estado[id] != ABERTO) return;
+        estado[id] = ATRASADO;
+        contadores(departamentoDo[id]).atrasados++;
+    }
+
+    /**
+     * Deixa de contar o empréstimo como em aberto (e como atrasado, se estava)
+     */
+    public synchronized void fechar(int id) {
+        if (id >= departamentoDo.length || estado[id] == FECHADO) return;
+        Contadores contadores = contadores(departamentoDo[id]);
+        contadores.emAberto--;
+        if (estado[id] == ATRASADO) contadores.atrasados--;
+        estado[id] = FECHADO;
+    }
+
+    /**
+     * Move todas as contagens do empréstimo para outro departamento
+     */
+    public synchronized void mudarDepartamento(int id, int departamento) {
+        if (id >= departamentoDo.length || departamentoDo[id] < 0) return;
+        byte anterior = estado[id];
+        fechar(id);
+        contar(departamentoDo[id], mesDo[id], -1);
+        departamentoDo[id] = departamento;
+        contar(departamento, mesDo[id], 1);
+        if (anterior != FECHADO) abrir(id);
+        if (anterior == ATRASADO) atrasar(id);
+    }
+
+    /**
+     * Escreve uma linha por departamento com empréstimos, em ordem alfabética
+     * @param hoje Data cujo mês é usado na coluna de empréstimos do mês
+     * @return Quantidade de departamentos escritos
+     */
+    public synchronized int painel(StringBuilder destino, LocalDate hoje) {
+        int mes = mes(hoje);
+        ArrayList<Integer> codigos = new ArrayList<>();
+        for (int codigo = 0; codigo < porDepartamento.size(); codigo++) {
+            Contadores c = porDepartamento.get(codigo);
+            if (c != null && c.registrados > 0) codigos.add(codigo);
+        }
+        codigos.sort((a, b) -> departamentos.texto(a).compareTo(departamentos.texto(b)));
+        int linhas = 0;
+        for (int codigo : codigos) {
+            Contadores c = porDepartamento.get(codigo);
+            int noMes = c.porMes.getOrDefault(mes, 0);
+            if (linhas++ == 0) {
+                Colunas.esquerda(destino, "Departamento", 20);
+                destino.append(" | Em uso | Em atraso | Empréstimos no mês\n");
+            }
+            Colunas.esquerda(destino, departamentos.texto(codigo), 20);
+            destino.append(" | ");
+            Colunas.direita(destino, c.emAberto, 6);
+            destino.append(" | ");
+            Colunas.direita(destino, c.atrasados, 9);
+            destino.append(" | ");
+            Colunas.direita(destino, noMes, 19);
+            destino.append('\n');
+        }
+        return linhas;
+    }
+
+    private void contar(int departamento, int mes, int delta) {
+        Contadores contadores = contadores(departamento);
+        contadores.registrados += delta;
+        contadores.porMes.merge(mes, delta, Integer::sum);
+    }
+
+    private Contadores contadores(int departamento) {
+        while (porDepartamento.size() <= departamento) porDepartamento.add(null);
+        Contadores contadores = porDepartamento.get(departamento);
+        if (contadores == null) {
+            contadores = new Contadores();
+            porDepartamento.set(departamento, contadores);
+        }
+        return contadores;
+    }
+
+    private static int mes(LocalDate data) {
+        return data.getYear() * 12 + data.getMonthValue() - 1;
+    }
+
+    private void garantir(int id) {
+        if (id < departamentoDo.length) return;
+        int capacidade = Math.max(id + 1, Math.max(16, departamentoDo.length * 2));
+        int anterior = departamentoDo.length;
+        departamentoDo = Arrays.copyOf(departamentoDo, capacidade);
+        Arrays.fill(departamentoDo, anterior, capacidade, -1);
+        mesDo = Arrays.copyOf(mesDo, capacidade);
+        estado = Arrays.copyOf(estado, capacidade);
+    }
+}
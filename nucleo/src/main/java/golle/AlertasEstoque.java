@@ -0,0 +1,323 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Motor de alertas de estoque baixo: avisa quando um EPI chega ao ponto de reposição ou ao
+ * estoque mínimo e quando volta acima deles
+ *
+ * A avaliação é incremental: o próprio EPI detecta, na reserva ou na devolução de uma unidade,
+ * que o estoque cruzou um limite (uma comparação) e chama sinalizar, que marca o EPI como
+ * pendente e o coloca numa fila limitada com offer, sem nunca bloquear o empréstimo. Um EPI já
+ * pendente não entra de novo, então uma rajada de empréstimos do mesmo item na troca de turno
+ * ocupa uma só posição da fila. A thread do motor retira o EPI, lê o nível atual e, se ele mudou
+ * desde o último aviso, entrega o alerta aos notificadores (mural das sessões, arquivo ou outro
+ * registrado com adicionar). Se a fila enche, o EPI é descartado e o motor reavalia todos os EPIs
+ * uma vez ao esvaziá-la, para que nenhum nível fique sem aviso
+ */
+class AlertasEstoque {
+    private static final DateTimeFormatter FORMATO_INSTANTE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Tempo de entrega de cada alerta a todos os notificadores
+    private static final Metrica METRICA_ENTREGA = Metricas.nova("estoque.alerta", "Entregar alerta de estoque");
+
+    private final ArrayBlockingQueue<EPI> fila;
+    private final CopyOnWriteArrayList<Notificador> notificadores = new CopyOnWriteArrayList<>();
+    private final LongAdder descartados = new LongAdder();
+    private volatile boolean transbordou; // Algum EPI ficou fora da fila desde a última reavaliação
+    private volatile boolean encerrando;
+    private Slab<EPI> epis;
+    private Thread thread;
+
+    /**
+     * Nível do estoque de um EPI em relação aos seus limites
+     */
+    enum Nivel {
+        NORMAL("Normal"),
+        REPOSICAO("Repor"),
+        CRITICO("Estoque mínimo");
+
+        private final String descricao;
+
+        Nivel(String descricao) {
+            this.descricao = descricao;
+        }
+
+        public String getDescricao() { return descricao; }
+    }
+
+    /**
+     * Destino dos alertas; chamado só pela thread do motor, um alerta por vez
+     */
+    interface Notificador {
+        void notificar(Alerta alerta) throws IOException;
+    }
+
+    /**
+     * Mudança de nível do estoque de um EPI, com os dados do instante em que foi percebida
+     */
+    static final class Alerta {
+        private final int idEpi;
+        private final String nomeEpi;
+        private final int quantidade, estoqueMinimo, pontoReposicao;
+        private final Nivel anterior, nivel;
+        private final LocalDateTime instante;
+
+        Alerta(EPI epi, int quantidade, Nivel anterior, Nivel nivel) {
+            this.idEpi = epi.getId();
+            this.nomeEpi = epi.getNome();
+            this.quantidade = quantidade;
+            this.estoqueMinimo = epi.getEstoqueMinimo();
+            this.pontoReposicao = epi.getPontoReposicao();
+            this.anterior = anterior;
+            this.nivel = nivel;
+            this.instante = LocalDateTime.now();
+        }
+
+        public int getIdEpi() { return idEpi; }
+        public String getNomeEpi() { return nomeEpi; }
+        public int getQuantidade() { return quantidade; }
+        public Nivel getAnterior() { return anterior; }
+        public Nivel getNivel() { return nivel; }
+        public LocalDateTime getInstante() { return instante; }
+
+        /**
+         * Escreve "[ID] nome: nível (quantidade, limite)" ou, ao voltar ao normal, o nível deixado
+         */
+        public void renderizar(StringBuilder destino) {
+            destino.append('[').append(idEpi).append("] ").append(nomeEpi).append(": ");
+            if (nivel == Nivel.NORMAL) {
+                destino.append("estoque normalizado (").append(quantidade).append(" unidade(s))");
+                return;
+            }
+            destino.append(nivel.getDescricao()).append(" (").append(quantidade).append(" unidade(s), ");
+            if (nivel == Nivel.CRITICO) {
+                destino.append("mínimo ").append(estoqueMinimo).append(')');
+            } else {
+                destino.append("ponto de reposição ").append(pontoReposicao).append(')');
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder texto = new StringBuilder(64);
+            renderizar(texto);
+            return texto.toString();
+        }
+    }
+
+    /**
+     * Mural dos alertas recentes, exibido pelas sessões no menu principal
+     * Guarda os últimos alertas num buffer circular numerado; cada sessão lembra o número do
+     * último que já exibiu
+     */
+    static final class Mural implements Notificador {
+        private final Alerta[] recentes;
+        private long total; // Número do próximo alerta
+
+        /**
+         * Construtor da classe Mural
+         * @param capacidade Quantidade de alertas recentes guardados
+         */
+        public Mural(int capacidade) {
+            recentes = new Alerta[capacidade];
+        }
+
+        @Override
+        public synchronized void notificar(Alerta alerta) {
+            recentes[(int) (total++ % recentes.length)] = alerta;
+        }
+
+        /**
+         * @return Quantidade de alertas já publicados no mural
+         */
+        public synchronized long getTotal() { return total; }
+
+        /**
+         * Copia os alertas publicados depois de desde que ainda estão no mural, do mais antigo
+         * ao mais novo
+         * @param desde Total do mural quando a sessão exibiu os alertas pela última vez
+         * @return O total do mural no instante da cópia (o próximo desde)
+         */
+        public synchronized long desde(long desde, List<Alerta> destino) {
+            for (long i = Math.max(desde, total - recentes.length); i < total; i++) {
+                destino.add(recentes[(int) (i % recentes.length)]);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Grava cada alerta como uma linha "AAAA-MM-DD HH:MM:SS alerta" no fim de um arquivo local
+     */
+    static final class Arquivo implements Notificador, AutoCloseable {
+        private final BufferedWriter saida;
+
+        /**
+         * Construtor da classe Arquivo
+         * @param arquivo Arquivo de alertas (criado se não existir)
+         */
+        public Arquivo(Path arquivo) throws IOException {
+            saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public void notificar(Alerta alerta) throws IOException {
+            saida.write(FORMATO_INSTANTE.format(alerta.getInstante()) + " " + alerta);
+            saida.newLine();
+            saida.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            saida.close();
+        }
+    }
+
+    /**
+     * Construtor da classe AlertasEstoque
+     * @param capacidade Quantidade máxima de EPIs aguardando avaliação na fila
+     */
+    public AlertasEstoque(int capacidade) {
+        fila = new ArrayBlockingQueue<>(capacidade);
+    }
+
+    /**
+     * Registra um destino dos alertas (pode ser chamado com o motor em execução)
+     */
+    public void adicionar(Notificador notificador) {
+        notificadores.add(notificador);
+    }
+
+    /**
+     * Inicia a thread do motor e passa a receber os sinais dos EPIs; os EPIs que já estão
+     * abaixo de algum limite são avisados uma vez
+     * @param epis EPIs cadastrados, percorridos com a trava de leitura só nas reavaliações
+     */
+    public synchronized void iniciar(Slab<EPI> epis) {
+        if (thread != null) return;
+        this.epis = epis;
+        thread = new Thread(this::executar, "alertas-estoque");
+        thread.setDaemon(true);
+        thread.start();
+        EPI.alertas = this;
+        transbordou = true; // A primeira reavaliação avisa os níveis da carga
+    }
+
+    /**
+     * Para de receber sinais e encerra a thread depois de entregar os alertas já na fila
+     * (sem interrupção, que fecharia o canal de um notificador gravando em arquivo)
+     */
+    public void encerrar() {
+        Thread atual;
+        synchronized (this) {
+            atual = thread;
+            if (atual == null) return;
+            thread = null;
+            EPI.alertas = null;
+        }
+        encerrando = true;
+        try {
+            atual.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Coloca na fila um EPI que cruzou um limite (chamado pelo EPI, que já o marcou como pendente)
+     * Nunca bloqueia: com a fila cheia, o EPI fica para a reavaliação geral
+     */
+    void sinalizar(EPI epi) {
+        if (!fila.offer(epi)) {
+            epi.desmarcarAlerta();
+            descartados.increment();
+            transbordou = true;
+        }
+    }
+
+    /**
+     * @return Quantidade de sinais que não couberam na fila desde o início
+     */
+    public long getDescartados() { return descartados.sum(); }
+
+    private void executar() {
+        ArrayList<Alerta> alertas = new ArrayList<>();
+        while (true) {
+            if (transbordou) {
+                transbordou = false;
+                epis.trava().readLock().lock();
+                try {
+                    for (EPI epi : epis) avaliar(epi, alertas);
+                } finally {
+                    epis.trava().readLock().unlock();
+                }
+            }
+            EPI epi;
+            try {
+                epi = fila.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                epi = null;
+                encerrando = true;
+            }
+            if (epi != null) {
+                epis.trava().readLock().lock();
+                try {
+                    // A rajada que já estiver na fila é avaliada com a mesma trava
+                    for (; epi != null; epi = fila.poll()) {
+                        if (epis.contem(epi)) avaliar(epi, alertas);
+                    }
+                } finally {
+                    epis.trava().readLock().unlock();
+                }
+            }
+            // Os notificadores são chamados sem a trava, que as alterações de EPIs esperam
+            for (Alerta alerta : alertas) entregar(alerta);
+            alertas.clear();
+            if (encerrando && fila.isEmpty()) return;
+        }
+    }
+
+    /**
+     * Lê o nível atual do EPI (com os EPIs travados para leitura) e, se mudou desde o último
+     * aviso, acrescenta o alerta à lista
+     */
+    private static void avaliar(EPI epi, List<Alerta> alertas) {
+        epi.desmarcarAlerta();
+        int quantidade = epi.getQuantidade();
+        Nivel nivel = epi.nivel(quantidade);
+        Nivel anterior = epi.getNivelAvisado();
+        if (nivel == anterior) return;
+        epi.setNivelAvisado(nivel);
+        alertas.add(new Alerta(epi, quantidade, anterior, nivel));
+    }
+
+    /**
+     * Entrega o alerta a todos os notificadores; a falha de um não impede os outros
+     */
+    private void entregar(Alerta alerta) {
+        long inicio = System.nanoTime();
+        for (Notificador notificador : notificadores) {
+            try {
+                notificador.notificar(alerta);
+            } catch (IOException | RuntimeException e) {
+                Falhas.reportar("Falha ao entregar o alerta de estoque", e);
+            }
+        }
+        METRICA_ENTREGA.registrarDesde(inicio);
+    }
+}
@@ -0,0 +1,90 @@
+package golle;
+
+import java.util.Arrays;
+
+/**
+ * Coluna de int dividida em páginas com cópia na escrita (copy-on-write), que permite tirar
+ * versões de um instante da coluna e lê-las sem trava enquanto as escritas continuam (MVCC)
+ *
+ * Uma versão copia só o array de páginas e passa a compartilhar as páginas com a coluna. Cada
+ * página guarda a época em que foi criada ou copiada pela última vez, e tirar uma versão avança a
+ * época da coluna: a primeira escrita numa página de época anterior copia a página (4096 posições)
+ * e grava na cópia, então as versões continuam vendo os valores do instante em que foram tiradas.
+ * Tirar uma versão custa O(posições / 4096); uma escrita numa página já copiada custa uma
+ * comparação a mais. As escritas devem ser feitas com a trava de escrita do repositório dono e as
+ * versões tiradas com a trava de leitura (ou de escrita); a versão em si é imutável
+ */
+final class ColunaVersionada {
+    private static final int BITS_PAGINA = 12;
+    private static final int TAMANHO_PAGINA = 1 << BITS_PAGINA;
+    private static final int MASCARA = TAMANHO_PAGINA - 1;
+
+    private final int vazio; // Valor das posições nunca escritas
+    private int[][] paginas = new int[0][];
+    private int[] epocaPagina = new int[0];
+    private int epoca;
+
+    /**
+     * Construtor da classe ColunaVersionada
+     * @param vazio Valor inicial de todas as posições
+     * @param capacidade Quantidade inicial de posições
+     */
+    public ColunaVersionada(int vazio, int capacidade) {
+        this.vazio = vazio;
+        redimensionar(capacidade);
+    }
+
+    /**
+     * Valores da coluna no instante em que a versão foi tirada
+     */
+    static final class Versao {
+        private final int[][] paginas;
+
+        private Versao(int[][] paginas) {
+            this.paginas = paginas;
+        }
+
+        public int ler(int id) {
+            return paginas[id >>> BITS_PAGINA][id & MASCARA];
+        }
+    }
+
+    public int ler(int id) {
+        return paginas[id >>> BITS_PAGINA][id & MASCARA];
+    }
+
+    public void gravar(int id, int valor) {
+        int pagina = id >>> BITS_PAGINA;
+        if (epocaPagina[pagina] != epoca) {
+            // Página compartilhada com alguma versão: a coluna passa a usar uma cópia
+            paginas[pagina] = paginas[pagina].clone();
+            epocaPagina[pagina] = epoca;
+        }
+        paginas[pagina][id & MASCARA] = valor;
+    }
+
+    /**
+     * Tira uma versão da coluna; sincronizado porque várias threads podem tirar versões ao
+     * mesmo tempo com a trava de leitura
+     */
+    public synchronized Versao versao() {
+        epoca++;
+        return new Versao(paginas.clone());
+    }
+
+    /**
+     * Garante páginas para as posições abaixo da capacidade
+     */
+    public void redimensionar(int capacidade) {
+        int quantidade = (capacidade + MASCARA) >>> BITS_PAGINA;
+        int atual = paginas.length;
+        if (quantidade <= atual) return;
+        paginas = Arrays.copyOf(paginas, quantidade);
+        epocaPagina = Arrays.copyOf(epocaPagina, quantidade);
+        for (int p = atual; p < quantidade; p++) {
+            paginas[p] = new int[TAMANHO_PAGINA];
+            if (vazio != 0) Arrays.fill(paginas[p], vazio);
+            epocaPagina[p] = epoca;
+        }
+    }
+}
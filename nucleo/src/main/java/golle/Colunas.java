@@ -0,0 +1,92 @@
+package golle;
+
+import java.time.LocalDate;
+
+/**
+ * Escrita de colunas de largura fixa direto em um StringBuilder, com o mesmo resultado de
+ * String.format ("%-20s", "%3d", "%06d") e LocalDate.toString, mas sem analisar o formato,
+ * sem boxing e sem strings intermediárias
+ */
+final class Colunas {
+    private Colunas() {}
+
+    /**
+     * Texto alinhado à esquerda e completado com espaços até a largura ("%-Ns")
+     */
+    public static void esquerda(StringBuilder destino, String texto, int largura) {
+        destino.append(texto);
+        espacos(destino, largura - texto.length());
+    }
+
+    /**
+     * Número alinhado à direita com espaços à esquerda ("%Nd")
+     */
+    public static void direita(StringBuilder destino, int valor, int largura) {
+        espacos(destino, largura - digitos(valor));
+        destino.append(valor);
+    }
+
+    /**
+     * Número completado com zeros à esquerda até a largura, sinal incluído ("%0Nd")
+     */
+    public static void zeros(StringBuilder destino, int valor, int largura) {
+        long absoluto = valor;
+        if (valor < 0) {
+            destino.append('-');
+            absoluto = -absoluto;
+            largura--;
+        }
+        for (int i = digitos(absoluto); i < largura; i++) destino.append('0');
+        destino.append(absoluto);
+    }
+
+    /**
+     * Número com uma casa decimal (vírgula como separador), arredondado e alinhado à direita
+     */
+    public static void decimal(StringBuilder destino, double valor, int largura) {
+        long decimos = Math.round(Math.abs(valor) * 10);
+        boolean negativo = valor < 0 && decimos > 0;
+        espacos(destino, largura - digitos(decimos / 10) - 2 - (negativo ? 1 : 0));
+        if (negativo) destino.append('-');
+        destino.append(decimos / 10).append(',').append((char) ('0' + decimos % 10));
+    }
+
+    /**
+     * Data no formato AAAA-MM-DD alinhada à direita ("%Ns"); anos fora de 0..9999 usam LocalDate.toString
+     */
+    public static void data(StringBuilder destino, LocalDate data, int largura) {
+        int ano = data.getYear();
+        if (ano < 0 || ano > 9999) {
+            String texto = data.toString();
+            espacos(destino, largura - texto.length());
+            destino.append(texto);
+            return;
+        }
+        espacos(destino, largura - 10);
+        destino.append((char) ('0' + ano / 1000)).append((char) ('0' + ano / 100 % 10))
+                .append((char) ('0' + ano / 10 % 10)).append((char) ('0' + ano % 10)).append('-');
+        doisDigitos(destino, data.getMonthValue());
+        destino.append('-');
+        doisDigitos(destino, data.getDayOfMonth());
+    }
+
+    /**
+     * Acrescenta espaços (nenhum se quantidade não for positiva)
+     */
+    public static void espacos(StringBuilder destino, int quantidade) {
+        for (int i = 0; i < quantidade; i++) destino.append(' ');
+    }
+
+    private static void doisDigitos(StringBuilder destino, int valor) {
+        destino.append((char) ('0' + valor / 10)).append((char) ('0' + valor % 10));
+    }
+
+    /**
+     * Quantidade de caracteres de um número em decimal, incluindo o sinal
+     */
+    private static int digitos(long valor) {
+        int digitos = valor < 0 ? 2 : 1;
+        for (long resto = Math.abs(valor); resto >= 10; resto /= 10) digitos++;
+        return digitos;
+    }
+}
@@ -0,0 +1,153 @@
+package golle;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conversão de textos digitados em números inteiros e datas AAAA-MM-DD, com o mesmo resultado de
+ * Integer.parseInt e LocalDate.parse (sobre o texto sem espaços nas pontas, como em trim), mas
+ * sem objetos intermediários e sem lançar exceção quando o texto é inválido: o erro é indicado
+ * pelo valor INVALIDO. Formas raras (dígitos não ASCII, anos com sinal) usam as conversões do JDK
+ */
+final class Conversao {
+    // Valor devolvido para textos que não representam um número ou uma data válida
+    public static final long INVALIDO = Long.MIN_VALUE;
+
+    // Dias de 0000-03-01 até 1970-01-01, como em LocalDate.toEpochDay
+    private static final int DIAS_0000_A_1970 = 719528;
+
+    private Conversao() {}
+
+    /**
+     * @return O número inteiro do texto (sinal opcional) ou INVALIDO se o texto não for um int válido
+     */
+    public static long inteiro(CharSequence texto) {
+        int inicio = inicio(texto);
+        int fim = fim(texto, inicio);
+        if (inicio == fim) return INVALIDO;
+
+        boolean negativo = false;
+        int i = inicio;
+        char sinal = texto.charAt(i);
+        if (sinal == '-' || sinal == '+') {
+            negativo = sinal == '-';
+            if (++i == fim) return INVALIDO;
+        }
+        long valor = 0;
+        for (; i < fim; i++) {
+            int digito = texto.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return texto.charAt(i) < 128 ? INVALIDO : inteiroJdk(texto, inicio, fim);
+            }
+            valor = valor * 10 + digito;
+            if (valor > 1L + Integer.MAX_VALUE) return INVALIDO;
+        }
+        valor = negativo ? -valor : valor;
+        return valor > Integer.MAX_VALUE ? INVALIDO : valor;
+    }
+
+    /**
+     * @return A data AAAA-MM-DD do texto como dia epoch (LocalDate.toEpochDay) ou INVALIDO se o
+     *         texto não for uma data existente nesse formato
+     */
+    public static long diaEpoch(CharSequence texto) {
+        int inicio = inicio(texto);
+        int fim = fim(texto, inicio);
+        if (inicio == fim) return INVALIDO;
+        char primeiro = texto.charAt(inicio);
+        if (primeiro == '+' || primeiro == '-') return diaEpochJdk(texto, inicio, fim); // Ano fora de 0000..9999
+        if (fim - inicio != 10 || texto.charAt(inicio + 4) != '-' || texto.charAt(inicio + 7) != '-') return INVALIDO;
+
+        int ano = digitos(texto, inicio, 4);
+        int mes = digitos(texto, inicio + 5, 2);
+        int dia = digitos(texto, inicio + 8, 2);
+        if (ano < 0 || mes < 1 || mes > 12 || dia < 1 || dia > diasDoMes(ano, mes)) return INVALIDO;
+        return diaEpoch(ano, mes, dia);
+    }
+
+    /**
+     * @return A data do texto ou null se o texto não for uma data AAAA-MM-DD existente
+     */
+    public static LocalDate data(CharSequence texto) {
+        long dia = diaEpoch(texto);
+        return dia == INVALIDO ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    /**
+     * Mensagem da NumberFormatException que Integer.parseInt lançaria para o texto
+     */
+    public static String mensagemNumeroInvalido(String texto) {
+        return "For input string: \"" + texto + "\"";
+    }
+
+    /**
+     * Dia epoch de uma data válida, com o mesmo cálculo de LocalDate.toEpochDay
+     */
+    private static long diaEpoch(int ano, int mes, int dia) {
+        long total = 365L * ano;
+        total += (ano + 3) / 4 - (ano + 99) / 100 + (ano + 399) / 400;
+        total += (367 * mes - 362) / 12;
+        total += dia - 1;
+        if (mes > 2) total -= bissexto(ano) ? 1 : 2;
+        return total - DIAS_0000_A_1970;
+    }
+
+    private static int diasDoMes(int ano, int mes) {
+        return switch (mes) {
+            case 2 -> bissexto(ano) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean bissexto(int ano) {
+        return (ano & 3) == 0 && (ano % 100 != 0 || ano % 400 == 0);
+    }
+
+    /**
+     * @return O valor dos dígitos ASCII a partir de inicio ou -1 se algum caractere não for dígito
+     */
+    private static int digitos(CharSequence texto, int inicio, int quantidade) {
+        int valor = 0;
+        for (int i = inicio; i < inicio + quantidade; i++) {
+            int digito = texto.charAt(i) - '0';
+            if (digito < 0 || digito > 9) return -1;
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    /**
+     * Primeira posição após os espaços e caracteres de controle iniciais (como em trim)
+     */
+    private static int inicio(CharSequence texto) {
+        int i = 0;
+        while (i < texto.length() && texto.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    /**
+     * Posição seguinte ao último caractere que não é espaço nem controle
+     */
+    private static int fim(CharSequence texto, int inicio) {
+        int i = texto.length();
+        while (i > inicio && texto.charAt(i - 1) <= ' ') i--;
+        return i;
+    }
+
+    private static long inteiroJdk(CharSequence texto, int inicio, int fim) {
+        try {
+            return Integer.parseInt(texto, inicio, fim, 10);
+        } catch (NumberFormatException e) {
+            return INVALIDO;
+        }
+    }
+
+    private static long diaEpochJdk(CharSequence texto, int inicio, int fim) {
+        try {
+            return LocalDate.parse(texto.subSequence(inicio, fim)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return INVALIDO;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package golle;
+
+import java.time.LocalDate;
+
+/**
+ * Classe que representa a devolução de um EPI emprestado
+ * Visão de uma linha da TabelaDevolucoes, com a mesma igualdade por ID e geração do Emprestimo
+ */
+class Devolucao implements Entidade {
+    private final TabelaDevolucoes tabela;
+    private int id;
+    private final int geracao;
+
+    /**
+     * Construtor da classe Devolucao (usado apenas pela tabela)
+     * @param tabela Tabela que guarda os dados
+     * @param id ID da linha
+     * @param geracao Geração da linha quando a visão foi criada
+     */
+    Devolucao(TabelaDevolucoes tabela, int id, int geracao) {
+        this.tabela = tabela;
+        this.id = id;
+        this.geracao = geracao;
+    }
+
+    // Métodos getters e setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    TabelaDevolucoes getTabela() { return tabela; }
+    int getGeracao() { return geracao; }
+
+    public Emprestimo getEmprestimo() { return tabela.emprestimo(id); }
+    public void setEmprestimo(Emprestimo emprestimo) { tabela.definirEmprestimo(id, emprestimo); }
+
+    public LocalDate getDataDevolucao() { return LocalDate.ofEpochDay(tabela.dataDevolucao(id)); }
+    public void setDataDevolucao(LocalDate dataDevolucao) { tabela.definirDataDevolucao(id, dataDevolucao); }
+
+    public String getObservacao() { return tabela.observacao(id); }
+    public void setObservacao(String observacao) { tabela.definirObservacao(id, observacao); }
+
+    @Override
+    public boolean equals(Object outro) {
+        return outro instanceof Devolucao dev && dev.tabela == tabela && dev.id == id && dev.geracao == geracao;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + geracao;
+    }
+
+    /**
+     * Escreve "Dev: usuário | EPI: nome | Data Dev: AAAA-MM-DD | Obs: observação" em colunas fixas
+     */
+    @Override
+    public void renderizar(StringBuilder destino) {
+        Emprestimo emprestimo = getEmprestimo();
+        String observacao = getObservacao();
+        destino.append("Dev: ");
+        Colunas.esquerda(destino, emprestimo.getUsuario().getNome(), 15);
+        destino.append(" | EPI: ");
+        Colunas.esquerda(destino, emprestimo.getEpi().getNome(), 15);
+        destino.append(" | Data Dev: ");
+        Colunas.data(destino, getDataDevolucao(), 0);
+        destino.append(" | Obs: ").append(observacao.isEmpty() ? "Nenhuma" : observacao);
+    }
+
+    /**
+     * Retorna uma representação em string da devolução
+     * @return String formatada com os dados da devolução
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(96);
+        renderizar(texto);
+        return texto.toString();
+    }
+}
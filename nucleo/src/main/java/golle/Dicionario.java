@@ -0,0 +1,78 @@
+package golle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Dicionário de textos repetidos (departamentos, nomes de EPI): cada valor distinto recebe um
+ * código int pequeno e o texto é guardado uma única vez, então os modelos guardam só o código e
+ * agrupar ou filtrar por ele é uma comparação de int. Variantes de digitação (maiúsculas,
+ * acentos, pontuação e espaços) caem no mesmo código, exibido com a grafia da primeira ocorrência
+ * até que uma alteração feita pelo operador (corrigir) informe outra grafia.
+ * A consulta do texto não trava; a codificação é sincronizada
+ */
+final class Dicionario {
+    private final HashMap<String, Integer> codigos = new HashMap<>(); // Forma normalizada -> código
+    private volatile String[] textos = new String[16];
+    private int tamanho;
+
+    /**
+     * Código do texto, incluindo-o no dicionário se nenhuma variante dele existir ainda
+     * @param texto Texto como digitado
+     * @return Código do texto
+     */
+    public synchronized int codificar(String texto) {
+        String exibicao = exibicao(texto);
+        String chave = IndiceBusca.normalizar(exibicao);
+        if (chave.isEmpty()) chave = exibicao; // Só pontuação: vale o texto exato
+        Integer codigo = codigos.get(chave);
+        if (codigo != null) return codigo;
+        String[] atuais = textos;
+        if (tamanho == atuais.length) atuais = Arrays.copyOf(atuais, tamanho * 2);
+        atuais[tamanho] = exibicao;
+        textos = atuais;
+        codigos.put(chave, tamanho);
+        return tamanho++;
+    }
+
+    /**
+     * Código do texto, como em codificar, mas uma variante já existente passa a ser exibida com
+     * a grafia informada (alterações do operador, que corrigem maiúsculas, acentos e espaços)
+     * Vale para todos os textos com o mesmo código
+     * @param texto Texto como digitado
+     * @return Código do texto
+     */
+    public synchronized int corrigir(String texto) {
+        int codigo = codificar(texto);
+        String exibicao = exibicao(texto);
+        if (!textos[codigo].equals(exibicao)) {
+            // Cópia: quem lê sem trava vê o array anterior ou o novo, nunca um meio-termo
+            String[] atuais = textos.clone();
+            atuais[codigo] = exibicao;
+            textos = atuais;
+        }
+        return codigo;
+    }
+
+    /**
+     * @param codigo Código obtido de codificar
+     * @return O texto do código
+     */
+    public String texto(int codigo) {
+        return textos[codigo];
+    }
+
+    /**
+     * @return Quantidade de textos distintos (os códigos vão de 0 a tamanho - 1)
+     */
+    public synchronized int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Texto como exibido: sem espaços nas pontas e com espaços internos simples
+     */
+    private static String exibicao(String texto) {
+        return String.join(" ", texto.strip().split("\\s+"));
+    }
+}
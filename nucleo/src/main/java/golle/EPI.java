@@ -0,0 +1,202 @@
+package golle;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+
+/**
+ * Classe que representa um Equipamento de Proteção Individual (EPI)
+ * O estoque muda de uma unidade por vez (CAS), então cruzar o estoque mínimo ou o ponto de
+ * reposição é detectado com uma comparação do valor resultante; só os cruzamentos avisam o
+ * motor de alertas.
+ * No núcleo, as reservas e liberações acontecem com a trava de escrita dos empréstimos, e as
+ * correções com a dos EPIs, que as excluem: empréstimos do mesmo EPI feitos por sessões
+ * diferentes são serializados por essa trava, e não pelo CAS. O CAS mantém a classe correta por
+ * si só e garante que as leituras sem trava (listagens, API, motor de alertas) vejam um valor inteiro
+ */
+class EPI implements Entidade {
+    // Valor de dataValidade para EPIs sem data de validade informada
+    public static final int SEM_VALIDADE = Integer.MIN_VALUE;
+    // Valor de estoqueMinimo e pontoReposicao para EPIs sem o limite definido
+    public static final int SEM_LIMITE = Integer.MIN_VALUE;
+
+    // Acesso atômico ao campo quantidade, sem objeto contador por EPI
+    private static final VarHandle QUANTIDADE;
+    private static final VarHandle ALERTA_PENDENTE;
+    static {
+        try {
+            QUANTIDADE = MethodHandles.lookup().findVarHandle(EPI.class, "quantidade", int.class);
+            ALERTA_PENDENTE = MethodHandles.lookup().findVarHandle(EPI.class, "alertaPendente", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Nomes distintos de EPI, repetidos entre lotes do mesmo item
+    public static final Dicionario NOMES = new Dicionario();
+
+    // Motor avisado quando o estoque cruza um limite (null enquanto os alertas não foram iniciados)
+    static volatile AlertasEstoque alertas;
+
+    private int id;
+    private int nome; // Código em NOMES
+    private volatile int quantidade; // Unidades disponíveis (descontados os empréstimos em aberto)
+    private int dataValidade; // Dia epoch (LocalDate.toEpochDay) ou SEM_VALIDADE
+    private int estoqueMinimo = SEM_LIMITE;  // Na quantidade mínima ou abaixo: nível crítico
+    private int pontoReposicao = SEM_LIMITE; // No ponto ou abaixo: repor
+    private volatile boolean alertaPendente; // Já está na fila do motor de alertas
+    private AlertasEstoque.Nivel nivelAvisado = AlertasEstoque.Nivel.NORMAL; // Só lido pelo motor
+
+    /**
+     * Construtor da classe EPI
+     * @param nome Nome/descrição do EPI
+     * @param quantidade Quantidade disponível em estoque
+     * @param dataValidade Data de validade como dia epoch ou SEM_VALIDADE
+     */
+    public EPI(String nome, int quantidade, int dataValidade) {
+        this.nome = NOMES.codificar(nome);
+        this.quantidade = quantidade;
+        this.dataValidade = dataValidade;
+    }
+
+    // Métodos getters e setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getNome() { return NOMES.texto(nome); }
+    public void setNome(String nome) { this.nome = NOMES.corrigir(nome); }
+
+    public int getCodigoNome() { return nome; }
+
+    public int getQuantidade() { return quantidade; }
+
+    /**
+     * Soma uma variação ao estoque (correção feita pelo operador), sem perder as reservas e
+     * liberações concorrentes; o motor de alertas reavalia o nível
+     */
+    public void ajustar(int variacao) {
+        if (variacao == 0) return;
+        QUANTIDADE.getAndAdd(this, variacao);
+        avisar();
+    }
+
+    /**
+     * Reserva uma unidade do estoque com compare-and-set, sem nunca deixar o estoque negativo
+     * @return false se não havia unidade disponível
+     */
+    public boolean reservar() {
+        int atual;
+        do {
+            atual = quantidade;
+            if (atual <= 0) return false;
+        } while (!QUANTIDADE.compareAndSet(this, atual, atual - 1));
+        if (atual - 1 == pontoReposicao || atual - 1 == estoqueMinimo) avisar();
+        return true;
+    }
+
+    /**
+     * Devolve uma unidade ao estoque
+     */
+    public void liberar() {
+        int anterior = (int) QUANTIDADE.getAndAdd(this, 1);
+        if (anterior == pontoReposicao || anterior == estoqueMinimo) avisar();
+    }
+
+    /**
+     * Retira uma unidade sem verificar o estoque (correções de empréstimos já entregues)
+     */
+    public void retirar() {
+        int atual = (int) QUANTIDADE.getAndAdd(this, -1) - 1;
+        if (atual == pontoReposicao || atual == estoqueMinimo) avisar();
+    }
+
+    public int getEstoqueMinimo() { return estoqueMinimo; }
+    public int getPontoReposicao() { return pontoReposicao; }
+
+    /**
+     * Define os limites de estoque (SEM_LIMITE desativa cada um); o motor de alertas reavalia o nível
+     */
+    public void setLimites(int estoqueMinimo, int pontoReposicao) {
+        this.estoqueMinimo = estoqueMinimo;
+        this.pontoReposicao = pontoReposicao;
+        avisar();
+    }
+
+    /**
+     * @return O nível do estoque atual em relação aos limites
+     */
+    public AlertasEstoque.Nivel getNivelEstoque() {
+        return nivel(quantidade);
+    }
+
+    /**
+     * @return O nível de uma quantidade em relação aos limites deste EPI
+     */
+    public AlertasEstoque.Nivel nivel(int quantidade) {
+        if (quantidade <= estoqueMinimo) return AlertasEstoque.Nivel.CRITICO;
+        if (quantidade <= pontoReposicao) return AlertasEstoque.Nivel.REPOSICAO;
+        return AlertasEstoque.Nivel.NORMAL;
+    }
+
+    /**
+     * Coloca o EPI na fila do motor de alertas, se ainda não estiver lá
+     */
+    private void avisar() {
+        AlertasEstoque motor = alertas;
+        if (motor != null && ALERTA_PENDENTE.compareAndSet(this, false, true)) motor.sinalizar(this);
+    }
+
+    /**
+     * Retira a marca de pendente, antes de o motor ler o nível (um cruzamento depois disso
+     * coloca o EPI de novo na fila)
+     */
+    void desmarcarAlerta() {
+        alertaPendente = false;
+    }
+
+    AlertasEstoque.Nivel getNivelAvisado() { return nivelAvisado; }
+    void setNivelAvisado(AlertasEstoque.Nivel nivel) { this.nivelAvisado = nivel; }
+
+    public int getDataValidade() { return dataValidade; }
+    public void setDataValidade(int dataValidade) { this.dataValidade = dataValidade; }
+
+    public boolean possuiValidade() { return dataValidade != SEM_VALIDADE; }
+
+    /**
+     * @return A data de validade no formato AAAA-MM-DD ou string vazia se não informada
+     */
+    public String getDataValidadeTexto() {
+        return possuiValidade() ? LocalDate.ofEpochDay(dataValidade).toString() : "";
+    }
+
+    /**
+     * Escreve "EPI: nome | Qtd: quantidade | Validade: AAAA-MM-DD" em colunas fixas, seguido do
+     * nível do estoque quando está no ponto de reposição ou no mínimo
+     */
+    @Override
+    public void renderizar(StringBuilder destino) {
+        destino.append("EPI: ");
+        Colunas.esquerda(destino, getNome(), 20);
+        destino.append(" | Qtd: ");
+        Colunas.direita(destino, quantidade, 3);
+        destino.append(" | Validade: ");
+        if (possuiValidade()) {
+            Colunas.data(destino, LocalDate.ofEpochDay(dataValidade), 10);
+        } else {
+            Colunas.espacos(destino, 10);
+        }
+        AlertasEstoque.Nivel nivel = getNivelEstoque();
+        if (nivel != AlertasEstoque.Nivel.NORMAL) destino.append(" | ").append(nivel.getDescricao());
+    }
+
+    /**
+     * Retorna uma representação em string do EPI
+     * @return String formatada com os dados do EPI
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(64);
+        renderizar(texto);
+        return texto.toString();
+    }
+}
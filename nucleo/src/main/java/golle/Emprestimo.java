@@ -0,0 +1,89 @@
+package golle;
+
+import java.time.LocalDate;
+
+/**
+ * Classe que representa um empréstimo de EPI para um usuário
+ * É uma visão de uma linha da TabelaEmprestimos: os dados ficam nas colunas e o objeto guarda
+ * só o ID e a geração da linha, então duas visões do mesmo empréstimo são iguais (equals)
+ * e uma visão antiga deixa de ser contida na tabela depois que o ID é reutilizado
+ */
+class Emprestimo implements Entidade {
+    private final TabelaEmprestimos tabela;
+    private int id; // Negativo para empréstimo removido ainda referenciado pela devolução
+    private final int geracao;
+
+    /**
+     * Construtor da classe Emprestimo (usado apenas pela tabela)
+     * @param tabela Tabela que guarda os dados
+     * @param id ID da linha ou referência negativa para a área de removidos
+     * @param geracao Geração da linha quando a visão foi criada
+     */
+    Emprestimo(TabelaEmprestimos tabela, int id, int geracao) {
+        this.tabela = tabela;
+        this.id = id;
+        this.geracao = geracao;
+    }
+
+    // Métodos getters e setters
+    public int getId() { return Math.max(id, -1); }
+    public void setId(int id) { this.id = id; }
+
+    int referencia() { return id; }
+    TabelaEmprestimos getTabela() { return tabela; }
+    int getGeracao() { return geracao; }
+
+    public Usuario getUsuario() { return tabela.usuario(id); }
+    public void setUsuario(Usuario usuario) { tabela.definirUsuario(id, usuario); }
+
+    public EPI getEpi() { return tabela.epi(id); }
+    public void setEpi(EPI epi) { tabela.definirEpi(id, epi); }
+
+    public LocalDate getDataEmprestimo() { return LocalDate.ofEpochDay(tabela.dataEmprestimo(id)); }
+    public void setDataEmprestimo(LocalDate dataEmprestimo) { tabela.definirDataEmprestimo(id, dataEmprestimo); }
+
+    public LocalDate getDataDevolucaoPrevista() { return LocalDate.ofEpochDay(tabela.dataPrevista(id)); }
+    public void setDataDevolucaoPrevista(LocalDate dataDevolucaoPrevista) { tabela.definirDataPrevista(id, dataDevolucaoPrevista); }
+
+    public Devolucao getDevolucao() { return tabela.devolucao(id); } // null enquanto em aberto
+    public void setDevolucao(Devolucao devolucao) { tabela.definirDevolucao(id, devolucao); }
+
+    /**
+     * Duas visões são iguais quando apontam para a mesma linha na mesma geração
+     */
+    @Override
+    public boolean equals(Object outro) {
+        return outro instanceof Emprestimo emp && emp.tabela == tabela && emp.id == id && emp.geracao == geracao;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + geracao;
+    }
+
+    /**
+     * Escreve "Emp: usuário | EPI: nome | Data Emp: AAAA-MM-DD | Data Dev: AAAA-MM-DD" em colunas fixas
+     */
+    @Override
+    public void renderizar(StringBuilder destino) {
+        destino.append("Emp: ");
+        Colunas.esquerda(destino, getUsuario().getNome(), 15);
+        destino.append(" | EPI: ");
+        Colunas.esquerda(destino, getEpi().getNome(), 15);
+        destino.append(" | Data Emp: ");
+        Colunas.data(destino, getDataEmprestimo(), 0);
+        destino.append(" | Data Dev: ");
+        Colunas.data(destino, getDataDevolucaoPrevista(), 0);
+    }
+
+    /**
+     * Retorna uma representação em string do empréstimo
+     * @return String formatada com os dados do empréstimo
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(96);
+        renderizar(texto);
+        return texto.toString();
+    }
+}
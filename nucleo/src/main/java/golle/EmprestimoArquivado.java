@@ -0,0 +1,77 @@
+package golle;
+
+import java.time.LocalDate;
+
+/**
+ * Empréstimo devolvido de um mês selado no histórico arquivado
+ * Visão de um registro de uma HistoricoArquivado.Particao; somente leitura. O ID é o que o
+ * empréstimo tinha ao ser selado (o ID pode já ter sido reutilizado por outro empréstimo)
+ */
+class EmprestimoArquivado implements Entidade {
+    private final HistoricoArquivado.Particao particao;
+    private final int posicao;
+
+    /**
+     * Construtor da classe EmprestimoArquivado (usado apenas pela partição)
+     * @param particao Partição que guarda os dados
+     * @param posicao Posição do registro na partição
+     */
+    EmprestimoArquivado(HistoricoArquivado.Particao particao, int posicao) {
+        this.particao = particao;
+        this.posicao = posicao;
+    }
+
+    // Métodos getters
+    public int getId() { return particao.idEmprestimo[posicao]; }
+
+    public void setId(int id) { throw new UnsupportedOperationException("Empréstimo arquivado não muda de ID"); }
+
+    public int getIdDevolucao() { return particao.idDevolucao[posicao]; }
+
+    public int getMatricula() { return particao.matriculas[particao.usuario[posicao]]; }
+
+    public String getNomeUsuario() { return particao.nomesUsuarios[particao.usuario[posicao]]; }
+
+    public String getDepartamento() { return particao.departamentos[particao.usuario[posicao]]; }
+
+    public String getNomeEpi() { return particao.nomesEpis[particao.epi[posicao]]; }
+
+    public LocalDate getDataEmprestimo() { return LocalDate.ofEpochDay(particao.dataEmprestimo[posicao]); }
+
+    public LocalDate getDataDevolucaoPrevista() { return LocalDate.ofEpochDay(particao.dataPrevista[posicao]); }
+
+    public LocalDate getDataDevolucao() { return LocalDate.ofEpochDay(particao.dataDevolucao[posicao]); }
+
+    public String getObservacao() { return particao.observacoes[particao.observacao[posicao]]; }
+
+    /**
+     * Escreve "Emp: usuário | EPI: nome | Data Emp: AAAA-MM-DD | Data Dev: AAAA-MM-DD |
+     * Devolvido: AAAA-MM-DD | Obs: observação" em colunas fixas
+     */
+    @Override
+    public void renderizar(StringBuilder destino) {
+        String observacao = getObservacao();
+        destino.append("Emp: ");
+        Colunas.esquerda(destino, getNomeUsuario(), 15);
+        destino.append(" | EPI: ");
+        Colunas.esquerda(destino, getNomeEpi(), 15);
+        destino.append(" | Data Emp: ");
+        Colunas.data(destino, getDataEmprestimo(), 0);
+        destino.append(" | Data Dev: ");
+        Colunas.data(destino, getDataDevolucaoPrevista(), 0);
+        destino.append(" | Devolvido: ");
+        Colunas.data(destino, getDataDevolucao(), 0);
+        destino.append(" | Obs: ").append(observacao.isEmpty() ? "Nenhuma" : observacao);
+    }
+
+    /**
+     * Retorna uma representação em string do empréstimo arquivado
+     * @return String formatada com os dados do empréstimo e da devolução
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(128);
+        renderizar(texto);
+        return texto.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package golle;
+
+/**
+ * Empréstimo recusado por uma regra verificada nas operações do núcleo, com os repositórios
+ * travados: EPI sem estoque ou com a validade vencida. A mensagem é a exibida ao operador
+ */
+@SuppressWarnings("serial") // Nunca serializada
+final class EmprestimoRecusado extends RuntimeException {
+    enum Motivo { SEM_ESTOQUE, VENCIDO }
+
+    private final Motivo motivo;
+
+    EmprestimoRecusado(Motivo motivo, String mensagem) {
+        super(mensagem, null, false, false);
+        this.motivo = motivo;
+    }
+
+    /**
+     * @return Recusa por falta de estoque do EPI
+     */
+    static EmprestimoRecusado semEstoque() {
+        return new EmprestimoRecusado(Motivo.SEM_ESTOQUE, "EPI sem estoque disponível!");
+    }
+
+    /**
+     * @return Recusa por EPI com a validade vencida
+     */
+    static EmprestimoRecusado vencido(EPI epi) {
+        return new EmprestimoRecusado(Motivo.VENCIDO,
+                "EPI com validade vencida (" + epi.getDataValidadeTexto() + ") não pode ser emprestado!");
+    }
+
+    public Motivo getMotivo() { return motivo; }
+}
@@ -0,0 +1,15 @@
+package golle;
+
+/**
+ * Interface comum às entidades armazenadas por ID estável
+ */
+interface Entidade {
+    int getId();
+    void setId(int id);
+
+    /**
+     * Escreve a linha de listagem da entidade direto no destino, sem String.format
+     * @param destino Buffer que recebe a linha (sem o terminador)
+     */
+    void renderizar(StringBuilder destino);
+}
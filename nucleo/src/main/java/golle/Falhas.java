@@ -0,0 +1,39 @@
+package golle;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Destino único das falhas das tarefas em segundo plano (sincronização do journal, entrega de
+ * alertas, gravação de métricas, selagem do histórico) e das falhas inesperadas das requisições
+ * HTTP, que não têm uma sessão para exibi-las
+ * As mensagens vão para a saída de erro do processo, que no modo servidor é o console do
+ * servidor, e ficam contadas em getTotal
+ */
+final class Falhas {
+    private static final LongAdder TOTAL = new LongAdder();
+    private static volatile PrintStream destino = System.err;
+
+    private Falhas() {}
+
+    /**
+     * Reporta uma falha como "Erro: descrição: mensagem" (o tipo da exceção, se ela não tem mensagem)
+     * @param descricao O que falhou, por exemplo "Falha ao gravar as métricas"
+     */
+    static void reportar(String descricao, Exception e) {
+        TOTAL.increment();
+        destino.println("Erro: " + descricao + ": " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+    }
+
+    /**
+     * @return Quantidade de falhas reportadas desde o início do processo
+     */
+    static long getTotal() { return TOTAL.sum(); }
+
+    /**
+     * Troca o destino das mensagens (System.err por padrão)
+     */
+    static void redirecionar(PrintStream novoDestino) {
+        destino = novoDestino;
+    }
+}
@@ -0,0 +1,465 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Histórico de empréstimos particionado pelo mês da data do empréstimo
+ *
+ * Os meses recentes ficam na TabelaEmprestimos e na TabelaDevolucoes, com todos os índices.
+ * Os empréstimos já devolvidos dos meses anteriores são selados em um segmento por mês no
+ * diretório do histórico: um arquivo imutável com as colunas do mês comprimidas (DEFLATE) e os
+ * usuários, EPIs e observações gravados por extenso, pois os IDs deles podem ser reutilizados
+ * depois. Um segmento só é lido quando um relatório ou a consulta do histórico arquivado pede o
+ * seu mês e fica em cache por SoftReference, que o coletor libera sob pressão de memória; assim a
+ * memória residente acompanha os empréstimos ativos e não o histórico inteiro.
+ *
+ * Selar de novo um mês (empréstimos antigos devolvidos depois da primeira selagem) grava uma
+ * nova versão do segmento com os registros anteriores e os novos. A lista de segmentos válidos
+ * (mês, versão, registros) vai para o journal a cada selagem e para o snapshot; arquivos fora
+ * dela (selagens interrompidas e versões substituídas) são apagados em limpar
+ *
+ * Formato do segmento: cabeçalho de 20 bytes (mágico, versão, mês, registros, CRC dos dados)
+ * seguido dos dados comprimidos: tabelas de usuários (matrícula, nome, departamento), de nomes
+ * de EPI e de observações, e então uma coluna de int por campo
+ */
+class HistoricoArquivado {
+    private static final int MAGICO = 0x474F4C48; // "GOLH"
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 20;
+    private static final String EXTENSAO = ".seg";
+
+    private final Path diretorio;
+    private final TreeMap<Integer, Segmento> segmentos = new TreeMap<>(); // Por mês
+    private final HashMap<Integer, SoftReference<Particao>> cache = new HashMap<>();
+
+    /**
+     * Construtor da classe HistoricoArquivado
+     * @param diretorio Diretório dos segmentos (criado na primeira selagem)
+     */
+    public HistoricoArquivado(Path diretorio) {
+        this.diretorio = diretorio;
+    }
+
+    /**
+     * Segmento válido de um mês; a versão identifica o arquivo
+     */
+    static final class Segmento {
+        private final int mes;
+        private final int versao;
+        private final int registros;
+
+        Segmento(int mes, int versao, int registros) {
+            this.mes = mes;
+            this.versao = versao;
+            this.registros = registros;
+        }
+
+        public int getMes() { return mes; }
+        public int getVersao() { return versao; }
+        public int getRegistros() { return registros; }
+    }
+
+    /**
+     * Empréstimos devolvidos de um mês, lidos de um segmento (somente leitura)
+     * As colunas são indexadas pela posição do registro; usuário, EPI e observação são posições
+     * nas tabelas do segmento, e os códigos nos dicionários globais são calculados na leitura
+     */
+    static final class Particao implements Iterable<EmprestimoArquivado> {
+        final int mes;
+        final int versao;
+        final int registros;
+        final int[] idEmprestimo, idDevolucao, usuario, epi, observacao;
+        final int[] dataEmprestimo, dataPrevista, dataDevolucao; // Dias epoch
+        final int[] matriculas;
+        final String[] nomesUsuarios, departamentos, nomesEpis, observacoes;
+        final int[] codigoDepartamento; // Por usuário do segmento, em Usuario.DEPARTAMENTOS
+        final int[] codigoNome;         // Por EPI do segmento, em EPI.NOMES
+
+        private Particao(int mes, int versao, int registros, DataInputStream entrada) throws IOException {
+            this.mes = mes;
+            this.versao = versao;
+            this.registros = registros;
+
+            int totalUsuarios = entrada.readInt();
+            matriculas = new int[totalUsuarios];
+            nomesUsuarios = new String[totalUsuarios];
+            departamentos = new String[totalUsuarios];
+            codigoDepartamento = new int[totalUsuarios];
+            for (int i = 0; i < totalUsuarios; i++) {
+                matriculas[i] = entrada.readInt();
+                nomesUsuarios[i] = entrada.readUTF();
+                departamentos[i] = entrada.readUTF();
+                codigoDepartamento[i] = Usuario.DEPARTAMENTOS.codificar(departamentos[i]);
+            }
+            nomesEpis = new String[entrada.readInt()];
+            codigoNome = new int[nomesEpis.length];
+            for (int i = 0; i < nomesEpis.length; i++) {
+                nomesEpis[i] = entrada.readUTF();
+                codigoNome[i] = EPI.NOMES.codificar(nomesEpis[i]);
+            }
+            observacoes = new String[entrada.readInt()];
+            for (int i = 0; i < observacoes.length; i++) observacoes[i] = entrada.readUTF();
+
+            idEmprestimo = coluna(entrada, registros);
+            idDevolucao = coluna(entrada, registros);
+            usuario = coluna(entrada, registros);
+            epi = coluna(entrada, registros);
+            observacao = coluna(entrada, registros);
+            // Datas gravadas como deslocamentos pequenos, que comprimem melhor
+            int inicioMes = primeiroDia(mes);
+            dataEmprestimo = coluna(entrada, registros);
+            dataPrevista = coluna(entrada, registros);
+            dataDevolucao = coluna(entrada, registros);
+            for (int i = 0; i < registros; i++) {
+                dataEmprestimo[i] += inicioMes;
+                dataPrevista[i] += dataEmprestimo[i];
+                dataDevolucao[i] += dataEmprestimo[i];
+            }
+        }
+
+        private static int[] coluna(DataInputStream entrada, int registros) throws IOException {
+            int[] valores = new int[registros];
+            for (int i = 0; i < registros; i++) valores[i] = entrada.readInt();
+            return valores;
+        }
+
+        /**
+         * Percorre os empréstimos na ordem em que foram selados
+         */
+        @Override
+        public Iterator<EmprestimoArquivado> iterator() {
+            return new Iterator<EmprestimoArquivado>() {
+                private int proximo;
+
+                @Override
+                public boolean hasNext() { return proximo < registros; }
+
+                @Override
+                public EmprestimoArquivado next() {
+                    if (proximo >= registros) throw new NoSuchElementException();
+                    return new EmprestimoArquivado(Particao.this, proximo++);
+                }
+            };
+        }
+    }
+
+    /**
+     * Registros de um mês em montagem para um novo segmento, com usuários, EPIs e observações
+     * repetidos guardados uma única vez
+     */
+    static final class Montagem {
+        private static final int CAMPOS = 8; // Campos por registro em linhas, na ordem das colunas do segmento
+
+        private final int mes;
+        private int registros;
+        private int[] linhas = new int[CAMPOS * 64];
+        private final HashMap<String, Integer> posicaoUsuario = new HashMap<>();
+        private final IdentityHashMap<Usuario, Integer> posicaoUsuarioEmMemoria = new IdentityHashMap<>();
+        private final ArrayList<Integer> matriculas = new ArrayList<>();
+        private final ArrayList<String> nomesUsuarios = new ArrayList<>();
+        private final ArrayList<String> departamentos = new ArrayList<>();
+        private final HashMap<String, Integer> posicaoEpi = new HashMap<>();
+        private final ArrayList<String> nomesEpis = new ArrayList<>();
+        private final HashMap<String, Integer> posicaoObservacao = new HashMap<>();
+        private final ArrayList<String> observacoes = new ArrayList<>();
+
+        private Montagem(int mes) {
+            this.mes = mes;
+        }
+
+        public int getMes() { return mes; }
+
+        /**
+         * Inclui um empréstimo em memória e a sua devolução
+         */
+        public void adicionar(Emprestimo emp, Devolucao dev) {
+            Usuario u = emp.getUsuario();
+            int usuario = posicaoUsuarioEmMemoria.computeIfAbsent(u,
+                    chave -> usuario(chave.getMatricula(), chave.getNome(), chave.getDepartamento()));
+            adicionar(emp.getId(), dev.getId(), usuario, emp.getEpi().getNome(), observacao(dev.getObservacao()),
+                    (int) emp.getDataEmprestimo().toEpochDay(), (int) emp.getDataDevolucaoPrevista().toEpochDay(),
+                    (int) dev.getDataDevolucao().toEpochDay());
+        }
+
+        /**
+         * Inclui um registro de uma versão anterior do segmento do mês
+         */
+        private void adicionar(Particao p, int i) {
+            int u = p.usuario[i];
+            adicionar(p.idEmprestimo[i], p.idDevolucao[i],
+                    usuario(p.matriculas[u], p.nomesUsuarios[u], p.departamentos[u]),
+                    p.nomesEpis[p.epi[i]], observacao(p.observacoes[p.observacao[i]]),
+                    p.dataEmprestimo[i], p.dataPrevista[i], p.dataDevolucao[i]);
+        }
+
+        private void adicionar(int idEmprestimo, int idDevolucao, int usuario, String epi, int observacao,
+                               int dataEmprestimo, int dataPrevista, int dataDevolucao) {
+            if ((registros + 1) * CAMPOS > linhas.length) linhas = Arrays.copyOf(linhas, linhas.length * 2);
+            int base = registros++ * CAMPOS;
+            linhas[base] = idEmprestimo;
+            linhas[base + 1] = idDevolucao;
+            linhas[base + 2] = usuario;
+            linhas[base + 3] = posicaoEpi.computeIfAbsent(epi, chave -> {
+                nomesEpis.add(chave);
+                return nomesEpis.size() - 1;
+            });
+            linhas[base + 4] = observacao;
+            linhas[base + 5] = dataEmprestimo - primeiroDia(mes);
+            linhas[base + 6] = dataPrevista - dataEmprestimo;
+            linhas[base + 7] = dataDevolucao - dataEmprestimo;
+        }
+
+        private int usuario(int matricula, String nome, String departamento) {
+            return posicaoUsuario.computeIfAbsent(matricula + "\n" + nome + "\n" + departamento, chave -> {
+                matriculas.add(matricula);
+                nomesUsuarios.add(nome);
+                departamentos.add(departamento);
+                return matriculas.size() - 1;
+            });
+        }
+
+        private int observacao(String texto) {
+            return posicaoObservacao.computeIfAbsent(texto, chave -> {
+                observacoes.add(chave);
+                return observacoes.size() - 1;
+            });
+        }
+
+        private void escrever(DataOutputStream saida) throws IOException {
+            saida.writeInt(matriculas.size());
+            for (int i = 0; i < matriculas.size(); i++) {
+                saida.writeInt(matriculas.get(i));
+                saida.writeUTF(nomesUsuarios.get(i));
+                saida.writeUTF(departamentos.get(i));
+            }
+            saida.writeInt(nomesEpis.size());
+            for (String nome : nomesEpis) saida.writeUTF(nome);
+            saida.writeInt(observacoes.size());
+            for (String texto : observacoes) saida.writeUTF(texto);
+            for (int campo = 0; campo < CAMPOS; campo++) {
+                for (int i = 0; i < registros; i++) saida.writeInt(linhas[i * CAMPOS + campo]);
+            }
+        }
+    }
+
+    /**
+     * Inicia a montagem de uma nova versão do segmento de um mês, já com os registros da versão
+     * atual (se o mês já foi selado)
+     */
+    public Montagem montagem(int mes) throws IOException {
+        Montagem montagem = new Montagem(mes);
+        Particao atual = carregar(mes);
+        if (atual != null) {
+            for (int i = 0; i < atual.registros; i++) montagem.adicionar(atual, i);
+        }
+        return montagem;
+    }
+
+    /**
+     * Grava a próxima versão do segmento do mês da montagem em um arquivo temporário, sincroniza
+     * e o move atomicamente para o nome definitivo. O segmento só passa a valer em registrar
+     * @return O segmento gravado
+     */
+    public Segmento gravar(Montagem montagem) throws IOException {
+        Segmento atual = segmento(montagem.mes);
+        Segmento novo = new Segmento(montagem.mes, atual == null ? 1 : atual.versao + 1, montagem.registros);
+
+        ByteArrayOutputStream comprimidos = new ByteArrayOutputStream();
+        try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(comprimidos)))) {
+            montagem.escrever(saida);
+        }
+        byte[] dados = comprimidos.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO).putInt(MAGICO).putInt(VERSAO)
+                .putInt(novo.mes).putInt(novo.registros).putInt((int) crc.getValue()).flip();
+
+        Files.createDirectories(diretorio);
+        Path arquivo = arquivo(novo);
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] partes = {cabecalho, ByteBuffer.wrap(dados)};
+            while (partes[1].hasRemaining()) canal.write(partes);
+            canal.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return novo;
+    }
+
+    /**
+     * Passa a usar o segmento como versão válida do seu mês
+     */
+    public synchronized void registrar(Segmento segmento) {
+        segmentos.put(segmento.mes, segmento);
+        cache.remove(segmento.mes);
+    }
+
+    /**
+     * Substitui a lista de segmentos válidos pela gravada no snapshot
+     */
+    public synchronized void restaurar(List<Segmento> lista) {
+        segmentos.clear();
+        cache.clear();
+        for (Segmento segmento : lista) segmentos.put(segmento.mes, segmento);
+    }
+
+    /**
+     * @return Os segmentos válidos, em ordem de mês
+     */
+    public synchronized List<Segmento> listar() {
+        return new ArrayList<>(segmentos.values());
+    }
+
+    /**
+     * @return O segmento válido do mês ou null se o mês não foi selado
+     */
+    public synchronized Segmento segmento(int mes) {
+        return segmentos.get(mes);
+    }
+
+    /**
+     * @return Quantidade de empréstimos selados no mês (0 se o mês não foi selado)
+     */
+    public synchronized int registros(int mes) {
+        Segmento segmento = segmentos.get(mes);
+        return segmento == null ? 0 : segmento.registros;
+    }
+
+    /**
+     * Lê o segmento válido do mês, ou devolve o que ainda estiver em cache
+     * @return A partição do mês ou null se o mês não foi selado
+     */
+    public Particao carregar(int mes) throws IOException {
+        Segmento segmento = segmento(mes);
+        return segmento == null ? null : carregar(segmento);
+    }
+
+    /**
+     * Lê uma versão específica de segmento (mesmo que já substituída), ou devolve a do cache
+     */
+    public Particao carregar(Segmento segmento) throws IOException {
+        synchronized (this) {
+            SoftReference<Particao> referencia = cache.get(segmento.mes);
+            Particao particao = referencia == null ? null : referencia.get();
+            if (particao != null && particao.versao == segmento.versao) return particao;
+        }
+        // A leitura é feita fora do monitor para não bloquear consultas a outros meses
+        Particao particao = ler(segmento);
+        synchronized (this) {
+            if (segmentos.get(segmento.mes) == segmento) cache.put(segmento.mes, new SoftReference<>(particao));
+        }
+        return particao;
+    }
+
+    /**
+     * Lê, da lista informada (tirada de listar no instante de um retrato), os segmentos dos meses
+     * que têm algum dia entre primeiroDia e ultimoDia (dias epoch, inclusive)
+     */
+    public List<Particao> carregar(List<Segmento> lista, int primeiroDia, int ultimoDia) throws IOException {
+        ArrayList<Particao> particoes = new ArrayList<>();
+        for (Segmento segmento : lista) {
+            if (primeiroDia(segmento.mes) > ultimoDia || primeiroDia(segmento.mes + 1) <= primeiroDia) continue;
+            particoes.add(carregar(segmento));
+        }
+        return particoes;
+    }
+
+    /**
+     * Apaga os arquivos do diretório que não são segmentos válidos (selagens interrompidas antes
+     * do journal e versões substituídas). Só deve ser chamado depois que um snapshot com a lista
+     * atual foi gravado, para que nenhum snapshot anterior ainda dependa deles
+     */
+    public synchronized void limpar() throws IOException {
+        if (!Files.isDirectory(diretorio)) return;
+        HashSet<String> validos = new HashSet<>();
+        for (Segmento segmento : segmentos.values()) validos.add(arquivo(segmento).getFileName().toString());
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio)) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                if ((nome.endsWith(EXTENSAO) || nome.endsWith(EXTENSAO + ".tmp")) && !validos.contains(nome)) {
+                    Files.deleteIfExists(arquivo);
+                }
+            }
+        }
+    }
+
+    private Particao ler(Segmento segmento) throws IOException {
+        Path arquivo = arquivo(segmento);
+        byte[] bytes = Files.readAllBytes(arquivo);
+        ByteBuffer cabecalho = ByteBuffer.wrap(bytes);
+        if (bytes.length < TAMANHO_CABECALHO || cabecalho.getInt(0) != MAGICO) {
+            throw new IOException("arquivo não é um segmento do histórico: " + arquivo);
+        }
+        if (cabecalho.getInt(4) != VERSAO) {
+            throw new IOException("versão de segmento não suportada: " + cabecalho.getInt(4));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, TAMANHO_CABECALHO, bytes.length - TAMANHO_CABECALHO);
+        if (cabecalho.getInt(8) != segmento.mes || cabecalho.getInt(12) != segmento.registros
+                || cabecalho.getInt(16) != (int) crc.getValue()) {
+            throw new IOException("segmento do histórico corrompido: " + arquivo);
+        }
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(bytes, TAMANHO_CABECALHO, bytes.length - TAMANHO_CABECALHO))))) {
+            return new Particao(segmento.mes, segmento.versao, segmento.registros, entrada);
+        }
+    }
+
+    private Path arquivo(Segmento segmento) {
+        return diretorio.resolve(texto(segmento.mes) + "." + segmento.versao + EXTENSAO);
+    }
+
+    /**
+     * Mês (ano * 12 + mês - 1) de um dia epoch
+     */
+    static int mes(int dia) {
+        return mes(LocalDate.ofEpochDay(dia));
+    }
+
+    static int mes(LocalDate data) {
+        return data.getYear() * 12 + data.getMonthValue() - 1;
+    }
+
+    /**
+     * Dia epoch do primeiro dia do mês
+     */
+    static int primeiroDia(int mes) {
+        return (int) LocalDate.of(Math.floorDiv(mes, 12), Math.floorMod(mes, 12) + 1, 1).toEpochDay();
+    }
+
+    /**
+     * O mês no formato AAAA-MM
+     */
+    static String texto(int mes) {
+        return YearMonth.of(Math.floorDiv(mes, 12), Math.floorMod(mes, 12) + 1).toString();
+    }
+}
@@ -0,0 +1,225 @@
+package golle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.text.Normalizer;
+
+/**
+ * Índice de busca aproximada por trigramas (sequências de 3 caracteres) dos textos das entidades
+ * Os textos são normalizados sem acentos e em minúsculas, e cada palavra é indexada com um espaço
+ * inicial, então " lu" só aparece no início de palavras e favorece prefixos. Uma consulta soma,
+ * por entidade, quantos dos seus trigramas ela contém; entidades com pelo menos metade deles são
+ * candidatas (o que tolera erros de digitação) e ganham pontos extras quando cada palavra da
+ * consulta é prefixo ou trecho de uma palavra do texto.
+ * Reindexar ou remover não percorre as listas: a versão do ID muda e as entradas antigas passam
+ * a ser ignoradas, até que as obsoletas superem as válidas e as listas sejam reconstruídas.
+ * Protegido pela trava do repositório da entidade; as consultas também são sincronizadas porque
+ * usam os contadores internos
+ */
+class IndiceBusca {
+    /**
+     * Lista de entradas de um trigrama: (versão << 32) | ID
+     */
+    private static final class Entradas {
+        long[] itens = new long[4];
+        int tamanho;
+
+        void adicionar(long entrada) {
+            if (tamanho == itens.length) itens = Arrays.copyOf(itens, tamanho * 2);
+            itens[tamanho++] = entrada;
+        }
+    }
+
+    private String[] textos = new String[0];  // Por ID: texto normalizado (null se não indexado)
+    private int[] versoes = new int[0];       // Por ID: versão atual das entradas
+    private int[] contagem = new int[0];      // Por ID: trigramas encontrados na consulta atual
+    private int[] tocados = new int[16];      // IDs com contagem diferente de zero
+    private final HashMap<Long, Entradas> porTrigrama = new HashMap<>();
+    private long validas, obsoletas;
+
+    /**
+     * Indexa o texto do ID, substituindo o texto anterior se houver
+     */
+    public synchronized void indexar(int id, String texto) {
+        garantir(id);
+        descartar(id);
+        String normalizado = normalizar(texto);
+        textos[id] = normalizado;
+        long[] trigramas = trigramas(normalizado);
+        for (long trigrama : trigramas) adicionar(trigrama, id);
+        validas += trigramas.length;
+        compactarSeNecessario();
+    }
+
+    /**
+     * Retira o ID do índice
+     */
+    public synchronized void remover(int id) {
+        if (id >= textos.length) return;
+        descartar(id);
+        compactarSeNecessario();
+    }
+
+    /**
+     * Busca os textos mais parecidos com a consulta
+     * @param limite Quantidade máxima de resultados
+     * @return IDs dos resultados, do mais ao menos relevante
+     */
+    public synchronized int[] buscar(String consulta, int limite) {
+        String normalizada = normalizar(consulta);
+        long[] trigramas = trigramas(normalizada);
+        if (trigramas.length == 0) return new int[0];
+
+        int quantidadeTocados = 0;
+        for (long trigrama : trigramas) {
+            Entradas entradas = porTrigrama.get(trigrama);
+            if (entradas == null) continue;
+            for (int i = 0; i < entradas.tamanho; i++) {
+                long entrada = entradas.itens[i];
+                int id = (int) entrada;
+                if (versoes[id] != (int) (entrada >>> 32) || textos[id] == null) continue;
+                if (contagem[id]++ == 0) {
+                    if (quantidadeTocados == tocados.length) tocados = Arrays.copyOf(tocados, tocados.length * 2);
+                    tocados[quantidadeTocados++] = id;
+                }
+            }
+        }
+
+        // Seleciona os melhores por inserção em um vetor ordenado de tamanho limite
+        String[] palavras = normalizada.split(" ");
+        int[] melhores = new int[limite];
+        int[] pontos = new int[limite];
+        int encontrados = 0;
+        for (int t = 0; t < quantidadeTocados; t++) {
+            int id = tocados[t];
+            int encontradosId = contagem[id];
+            contagem[id] = 0;
+            if (encontradosId * 2 < trigramas.length) continue;
+
+            int pontuacao = pontuar(textos[id], palavras, encontradosId * 100 / trigramas.length);
+            int posicao = encontrados;
+            while (posicao > 0 && precede(pontuacao, id, pontos[posicao - 1], melhores[posicao - 1])) posicao--;
+            if (posicao >= limite) continue;
+            int fim = Math.min(encontrados, limite - 1);
+            System.arraycopy(melhores, posicao, melhores, posicao + 1, fim - posicao);
+            System.arraycopy(pontos, posicao, pontos, posicao + 1, fim - posicao);
+            melhores[posicao] = id;
+            pontos[posicao] = pontuacao;
+            if (encontrados < limite) encontrados++;
+        }
+        return Arrays.copyOf(melhores, encontrados);
+    }
+
+    /**
+     * Texto em minúsculas, sem acentos, com pontuação trocada por espaços e espaços simples
+     */
+    public static String normalizar(String texto) {
+        String decomposto = Normalizer.isNormalized(texto, Normalizer.Form.NFD)
+                ? texto : Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder resultado = new StringBuilder(decomposto.length());
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue; // Acento separado da letra
+            if (Character.isLetterOrDigit(c)) {
+                resultado.append(Character.toLowerCase(c));
+            } else if (resultado.length() > 0 && resultado.charAt(resultado.length() - 1) != ' ') {
+                resultado.append(' ');
+            }
+        }
+        int fim = resultado.length();
+        if (fim > 0 && resultado.charAt(fim - 1) == ' ') resultado.setLength(fim - 1);
+        return resultado.toString();
+    }
+
+    /**
+     * Pontuação de um candidato: a porcentagem de trigramas encontrados mais 50 pontos por palavra
+     * da consulta que é prefixo de uma palavra do texto ou 25 se for apenas um trecho
+     */
+    private static int pontuar(String texto, String[] palavras, int porcentagem) {
+        int pontuacao = porcentagem;
+        for (String palavra : palavras) {
+            int posicao = texto.indexOf(palavra);
+            if (posicao < 0) continue;
+            boolean prefixo = false;
+            for (; posicao >= 0 && !prefixo; posicao = texto.indexOf(palavra, posicao + 1)) {
+                prefixo = posicao == 0 || texto.charAt(posicao - 1) == ' ';
+            }
+            pontuacao += prefixo ? 50 : 25;
+        }
+        return pontuacao;
+    }
+
+    /**
+     * Ordem dos resultados: maior pontuação, depois texto mais curto, depois menor ID
+     */
+    private boolean precede(int pontuacao, int id, int outraPontuacao, int outroId) {
+        if (pontuacao != outraPontuacao) return pontuacao > outraPontuacao;
+        if (textos[id].length() != textos[outroId].length()) return textos[id].length() < textos[outroId].length();
+        return id < outroId;
+    }
+
+    /**
+     * Trigramas distintos das palavras do texto normalizado, cada palavra precedida de um espaço
+     */
+    private static long[] trigramas(String normalizado) {
+        long[] resultado = new long[normalizado.length() + 1];
+        int quantidade = 0;
+        char a = ' ', b = ' ';
+        int naPalavra = 1; // Caracteres da palavra atual vistos, contando o espaço inicial
+        for (int i = 0; i < normalizado.length(); i++) {
+            char c = normalizado.charAt(i);
+            if (c == ' ') {
+                a = ' ';
+                b = ' ';
+                naPalavra = 1;
+                continue;
+            }
+            if (++naPalavra >= 3) resultado[quantidade++] = ((long) a << 32) | ((long) b << 16) | c;
+            a = b;
+            b = c;
+        }
+        Arrays.sort(resultado, 0, quantidade);
+        int distintos = 0;
+        for (int i = 0; i < quantidade; i++) {
+            if (distintos == 0 || resultado[distintos - 1] != resultado[i]) resultado[distintos++] = resultado[i];
+        }
+        return Arrays.copyOf(resultado, distintos);
+    }
+
+    private void adicionar(long trigrama, int id) {
+        porTrigrama.computeIfAbsent(trigrama, t -> new Entradas()).adicionar(((long) versoes[id] << 32) | id);
+    }
+
+    /**
+     * Invalida as entradas atuais do ID (se houver)
+     */
+    private void descartar(int id) {
+        if (textos[id] == null) return;
+        long quantidade = trigramas(textos[id]).length;
+        validas -= quantidade;
+        obsoletas += quantidade;
+        textos[id] = null;
+        versoes[id]++;
+    }
+
+    /**
+     * Refaz as listas só com as entradas válidas quando as obsoletas passam a ser maioria
+     */
+    private void compactarSeNecessario() {
+        if (obsoletas <= validas || obsoletas <= 1024) return;
+        porTrigrama.clear();
+        for (int id = 0; id < textos.length; id++) {
+            if (textos[id] == null) continue;
+            for (long trigrama : trigramas(textos[id])) adicionar(trigrama, id);
+        }
+        obsoletas = 0;
+    }
+
+    private void garantir(int id) {
+        if (id < textos.length) return;
+        int capacidade = Math.max(id + 1, Math.max(16, textos.length * 2));
+        textos = Arrays.copyOf(textos, capacidade);
+        versoes = Arrays.copyOf(versoes, capacidade);
+        contagem = Arrays.copyOf(contagem, capacidade);
+    }
+}
@@ -0,0 +1,48 @@
+package golle;
+
+import java.util.List;
+
+/**
+ * Índice dos empréstimos em aberto (sem devolução), por usuário e por EPI
+ * As listas por usuário e por EPI são as de IndiceReferencias, restritas aos empréstimos em
+ * aberto; uma lista geral guarda todos eles. As consultas percorrem apenas os empréstimos do resultado
+ */
+class IndiceEmprestimosAbertos extends IndiceReferencias {
+    private static final int TODOS = 0;
+
+    private final ListasPorChave todos = new ListasPorChave();
+
+    /**
+     * Construtor da classe IndiceEmprestimosAbertos
+     * @param usuarios Armazenamento de usuários (chaves das listas por usuário)
+     * @param epis Armazenamento de EPIs (chaves das listas por EPI)
+     * @param emprestimos Armazenamento usado para resolver os IDs dos resultados
+     */
+    public IndiceEmprestimosAbertos(Slab<Usuario> usuarios, Slab<EPI> epis, TabelaEmprestimos emprestimos) {
+        super(usuarios, epis, emprestimos);
+    }
+
+    /**
+     * Marca o empréstimo como em aberto
+     * Usuário ou EPI já removidos não recebem o empréstimo nas suas listas
+     */
+    public void abrir(Emprestimo emp) {
+        todos.adicionar(emp.getId(), TODOS);
+        vincular(emp);
+    }
+
+    /**
+     * Retira o empréstimo do índice (devolvido ou removido)
+     */
+    public void fechar(Emprestimo emp) {
+        todos.remover(emp.getId());
+        desvincular(emp);
+    }
+
+    /**
+     * @return Quantidade total de empréstimos em aberto
+     */
+    public int total() { return todos.tamanho(TODOS); }
+
+    public List<Emprestimo> todos() { return coletar(todos, TODOS); }
+}
@@ -0,0 +1,137 @@
+package golle;
+
+/**
+ * Índice hash de usuários por matrícula
+ * Usa endereçamento aberto com sondagem linear sobre um array de int,
+ * evitando o boxing de Integer que um HashMap<Integer, Usuario> exigiria
+ */
+class IndiceMatricula {
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    private int[] chaves;
+    private Usuario[] valores; // Posição com valor null está livre
+    private int tamanho;
+
+    /**
+     * Construtor da classe IndiceMatricula
+     */
+    public IndiceMatricula() {
+        chaves = new int[CAPACIDADE_INICIAL];
+        valores = new Usuario[CAPACIDADE_INICIAL];
+    }
+
+    /**
+     * Busca o usuário de uma matrícula
+     * @param matricula Número de matrícula procurado
+     * @return O usuário com a matrícula ou null se não existir
+     */
+    public Usuario buscar(int matricula) {
+        int mascara = chaves.length - 1;
+        int i = espalhar(matricula) & mascara;
+        while (valores[i] != null) {
+            if (chaves[i] == matricula) return valores[i];
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    /**
+     * Verifica se a matrícula já está cadastrada
+     * @param matricula Número de matrícula procurado
+     * @return true se existir um usuário com a matrícula
+     */
+    public boolean contem(int matricula) {
+        return buscar(matricula) != null;
+    }
+
+    /**
+     * Insere um usuário no índice pela sua matrícula atual
+     * @param usuario Usuário a ser indexado
+     * @return false se a matrícula já estiver em uso (o índice não é alterado)
+     */
+    public boolean inserir(Usuario usuario) {
+        // Mantém o fator de carga abaixo de 3/4
+        if ((tamanho + 1) * 4 > chaves.length * 3) {
+            redimensionar(chaves.length * 2);
+        }
+
+        int matricula = usuario.getMatricula();
+        int mascara = chaves.length - 1;
+        int i = espalhar(matricula) & mascara;
+        while (valores[i] != null) {
+            if (chaves[i] == matricula) return false;
+            i = (i + 1) & mascara;
+        }
+        chaves[i] = matricula;
+        valores[i] = usuario;
+        tamanho++;
+        return true;
+    }
+
+    /**
+     * Remove uma matrícula do índice
+     * Reposiciona os elementos seguintes do agrupamento (sem marcadores de remoção)
+     * @param matricula Número de matrícula a ser removido
+     * @return O usuário removido ou null se a matrícula não existir
+     */
+    public Usuario remover(int matricula) {
+        int mascara = chaves.length - 1;
+        int i = espalhar(matricula) & mascara;
+        while (valores[i] != null && chaves[i] != matricula) {
+            i = (i + 1) & mascara;
+        }
+        Usuario removido = valores[i];
+        if (removido == null) return null;
+
+        valores[i] = null;
+        tamanho--;
+
+        // Desloca para trás os elementos que dependiam da posição liberada
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            if (valores[j] == null) break;
+            int ideal = espalhar(chaves[j]) & mascara;
+            boolean alcancavel = (i <= j) ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+            if (!alcancavel) {
+                chaves[i] = chaves[j];
+                valores[i] = valores[j];
+                valores[j] = null;
+                i = j;
+            }
+        }
+        return removido;
+    }
+
+    /**
+     * @return Quantidade de matrículas indexadas
+     */
+    public int tamanho() { return tamanho; }
+
+    /**
+     * Realoca as tabelas com a nova capacidade (potência de 2)
+     */
+    private void redimensionar(int novaCapacidade) {
+        int[] antigasChaves = chaves;
+        Usuario[] antigosValores = valores;
+        chaves = new int[novaCapacidade];
+        valores = new Usuario[novaCapacidade];
+
+        int mascara = novaCapacidade - 1;
+        for (int k = 0; k < antigosValores.length; k++) {
+            if (antigosValores[k] == null) continue;
+            int i = espalhar(antigasChaves[k]) & mascara;
+            while (valores[i] != null) i = (i + 1) & mascara;
+            chaves[i] = antigasChaves[k];
+            valores[i] = antigosValores[k];
+        }
+    }
+
+    /**
+     * Mistura os bits da matrícula para que números sequenciais não formem agrupamentos
+     */
+    private static int espalhar(int chave) {
+        int h = chave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,83 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Índice reverso de todos os empréstimos (em aberto ou devolvidos), por usuário e por EPI
+ * Remover um usuário ou EPI consulta só os k empréstimos que o referenciam, sem percorrer
+ * todos; as operações que criam, removem ou reapontam empréstimos o mantêm atualizado.
+ * IndiceEmprestimosAbertos usa as mesmas listas para os empréstimos em aberto
+ */
+class IndiceReferencias {
+    private final Slab<Usuario> usuarios;
+    private final Slab<EPI> epis;
+    private final TabelaEmprestimos emprestimos;
+    private final ListasPorChave porUsuario = new ListasPorChave();
+    private final ListasPorChave porEpi = new ListasPorChave();
+
+    /**
+     * Construtor da classe IndiceReferencias
+     * @param usuarios Armazenamento de usuários (chaves das listas por usuário)
+     * @param epis Armazenamento de EPIs (chaves das listas por EPI)
+     * @param emprestimos Armazenamento usado para resolver os IDs dos resultados
+     */
+    public IndiceReferencias(Slab<Usuario> usuarios, Slab<EPI> epis, TabelaEmprestimos emprestimos) {
+        this.usuarios = usuarios;
+        this.epis = epis;
+        this.emprestimos = emprestimos;
+    }
+
+    /**
+     * Registra o empréstimo nas listas do seu usuário e do seu EPI
+     * Usuário ou EPI já removidos não recebem o empréstimo nas suas listas
+     */
+    public void vincular(Emprestimo emp) {
+        if (usuarios.contem(emp.getUsuario())) porUsuario.adicionar(emp.getId(), emp.getUsuario().getId());
+        if (epis.contem(emp.getEpi())) porEpi.adicionar(emp.getId(), emp.getEpi().getId());
+    }
+
+    /**
+     * Retira o empréstimo das listas em que estiver (removido ou prestes a ser reapontado)
+     */
+    public void desvincular(Emprestimo emp) {
+        porUsuario.remover(emp.getId());
+        porEpi.remover(emp.getId());
+    }
+
+    /**
+     * Desfaz a lista de um usuário removido, para que um novo usuário com o mesmo ID não a herde
+     */
+    public void desvincularUsuario(int usuarioId) {
+        porUsuario.esvaziar(usuarioId);
+    }
+
+    /**
+     * Desfaz a lista de um EPI removido, para que um novo EPI com o mesmo ID não a herde
+     */
+    public void desvincularEpi(int epiId) {
+        porEpi.esvaziar(epiId);
+    }
+
+    public int totalPorUsuario(int usuarioId) { return porUsuario.tamanho(usuarioId); }
+
+    public int totalPorEpi(int epiId) { return porEpi.tamanho(epiId); }
+
+    /**
+     * @return Cópia da lista de empréstimos do usuário (pode ser percorrida enquanto eles são removidos)
+     */
+    public List<Emprestimo> porUsuario(int usuarioId) { return coletar(porUsuario, usuarioId); }
+
+    /**
+     * @return Cópia da lista de empréstimos do EPI (pode ser percorrida enquanto eles são removidos)
+     */
+    public List<Emprestimo> porEpi(int epiId) { return coletar(porEpi, epiId); }
+
+    protected List<Emprestimo> coletar(ListasPorChave listas, int chave) {
+        ArrayList<Emprestimo> resultado = new ArrayList<>(listas.tamanho(chave));
+        for (int id = listas.primeiro(chave); id >= 0; id = listas.proximo(id)) {
+            resultado.add(emprestimos.obter(id));
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,178 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice ordenado dos EPIs pela data de validade
+ * Guarda chaves (dia epoch << 32 | ID) em blocos ordenados de até TAMANHO_BLOCO chaves, eles
+ * mesmos em ordem: inserir ou remover desloca só as chaves de um bloco (e, quando um bloco se
+ * divide ou esvazia, a lista de blocos), em vez do índice inteiro. Consultas por faixa de datas
+ * são uma busca binária nos blocos e no bloco inicial seguida da leitura sequencial do resultado.
+ * EPIs sem data de validade não entram no índice
+ */
+class IndiceValidade {
+    private static final int TAMANHO_BLOCO = 256;
+
+    private final Slab<EPI> epis;
+    private final ArrayList<Bloco> blocos = new ArrayList<>();
+
+    /**
+     * Trecho ordenado do índice; todas as suas chaves são maiores que as do bloco anterior
+     */
+    private static final class Bloco {
+        private long[] chaves;
+        private int tamanho;
+
+        Bloco(long[] chaves, int tamanho) {
+            this.chaves = chaves;
+            this.tamanho = tamanho;
+        }
+
+        long ultima() { return chaves[tamanho - 1]; }
+
+        /**
+         * @return Primeira posição do bloco cuja chave é maior ou igual à informada
+         */
+        int limiteInferior(long chave) {
+            int baixo = 0, alto = tamanho;
+            while (baixo < alto) {
+                int meio = (baixo + alto) >>> 1;
+                if (chaves[meio] < chave) baixo = meio + 1; else alto = meio;
+            }
+            return baixo;
+        }
+    }
+
+    /**
+     * Construtor da classe IndiceValidade
+     * @param epis Armazenamento usado para resolver os IDs dos resultados
+     */
+    public IndiceValidade(Slab<EPI> epis) {
+        this.epis = epis;
+    }
+
+    /**
+     * Insere o EPI com a data de validade atual
+     */
+    public void inserir(EPI epi) {
+        if (!epi.possuiValidade()) return;
+        long chave = chave(epi.getDataValidade(), epi.getId());
+        if (blocos.isEmpty()) {
+            long[] chaves = new long[16];
+            chaves[0] = chave;
+            blocos.add(new Bloco(chaves, 1));
+            return;
+        }
+        // Chaves maiores que todas vão para o fim do último bloco
+        int b = Math.min(blocoDe(chave), blocos.size() - 1);
+        Bloco bloco = blocos.get(b);
+        int pos = bloco.limiteInferior(chave);
+        if (pos < bloco.tamanho && bloco.chaves[pos] == chave) return;
+        if (bloco.tamanho == TAMANHO_BLOCO) {
+            // Divide o bloco cheio ao meio e insere na metade correspondente
+            int metade = TAMANHO_BLOCO / 2;
+            Bloco novo = new Bloco(Arrays.copyOfRange(bloco.chaves, metade, TAMANHO_BLOCO), TAMANHO_BLOCO - metade);
+            bloco.tamanho = metade;
+            blocos.add(b + 1, novo);
+            if (pos > metade) {
+                bloco = novo;
+                pos -= metade;
+            }
+        }
+        if (bloco.tamanho == bloco.chaves.length) {
+            bloco.chaves = Arrays.copyOf(bloco.chaves, Math.min(bloco.chaves.length * 2, TAMANHO_BLOCO));
+        }
+        System.arraycopy(bloco.chaves, pos, bloco.chaves, pos + 1, bloco.tamanho - pos);
+        bloco.chaves[pos] = chave;
+        bloco.tamanho++;
+    }
+
+    /**
+     * Remove o EPI; deve ser chamado antes de alterar a data de validade
+     */
+    public void remover(EPI epi) {
+        if (!epi.possuiValidade()) return;
+        long chave = chave(epi.getDataValidade(), epi.getId());
+        int b = blocoDe(chave);
+        if (b == blocos.size()) return;
+        Bloco bloco = blocos.get(b);
+        int pos = bloco.limiteInferior(chave);
+        if (bloco.chaves[pos] != chave) return;
+        if (bloco.tamanho == 1) {
+            blocos.remove(b);
+            return;
+        }
+        System.arraycopy(bloco.chaves, pos + 1, bloco.chaves, pos, bloco.tamanho - pos - 1);
+        bloco.tamanho--;
+    }
+
+    /**
+     * Verifica a validade pela chave do EPI no índice: vencido se a chave está no índice e é
+     * anterior à primeira chave de hoje (válido até o próprio dia de validade)
+     * @return true se o EPI já passou da validade
+     */
+    public boolean vencido(EPI epi, int hoje) {
+        if (!epi.possuiValidade()) return false;
+        long chave = chave(epi.getDataValidade(), epi.getId());
+        if (chave >= chave(hoje, 0)) return false;
+        int b = blocoDe(chave);
+        if (b == blocos.size()) return false;
+        Bloco bloco = blocos.get(b);
+        return bloco.chaves[bloco.limiteInferior(chave)] == chave;
+    }
+
+    /**
+     * @return EPIs com validade anterior a hoje, do vencimento mais antigo ao mais recente
+     */
+    public List<EPI> vencidos(int hoje) {
+        return entre(Integer.MIN_VALUE + 1, hoje - 1);
+    }
+
+    /**
+     * @return EPIs que vencem de hoje até hoje + dias, em ordem de vencimento
+     */
+    public List<EPI> vencendo(int hoje, int dias) {
+        return entre(hoje, (int) Math.min((long) hoje + Math.max(dias, 0), Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return EPIs com validade no intervalo fechado [de, ate], em ordem de vencimento
+     */
+    public List<EPI> entre(int de, int ate) {
+        ArrayList<EPI> resultado = new ArrayList<>();
+        if (de > ate) return resultado;
+        long inicio = chave(de, 0);
+        int b = blocoDe(inicio);
+        if (b == blocos.size()) return resultado;
+        int i = blocos.get(b).limiteInferior(inicio);
+        for (; b < blocos.size(); b++, i = 0) {
+            Bloco bloco = blocos.get(b);
+            for (; i < bloco.tamanho; i++) {
+                if ((int) (bloco.chaves[i] >> 32) > ate) return resultado;
+                resultado.add(epis.obter((int) bloco.chaves[i]));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Combina dia e ID em uma chave cuja ordem é a do dia e, em caso de empate, a do ID
+     */
+    private static long chave(int dia, int id) {
+        return ((long) dia << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Primeiro bloco cuja última chave é maior ou igual à informada (blocos.size() se nenhum)
+     */
+    private int blocoDe(long chave) {
+        int baixo = 0, alto = blocos.size();
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (blocos.get(meio).ultima() < chave) baixo = meio + 1; else alto = meio;
+        }
+        return baixo;
+    }
+}
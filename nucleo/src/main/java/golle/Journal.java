@@ -0,0 +1,410 @@
+package golle;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Journal binário append-only das operações do sistema (write-ahead log)
+ *
+ * Formato do arquivo: cabeçalho (mágico + versão) seguido de registros
+ * [tamanho:int][operação:byte][campos...][crc32:int]. Um registro incompleto
+ * ou corrompido no final (queda durante a gravação) é descartado na abertura.
+ * Uma falha de gravação com o processo no ar trunca o arquivo de volta ao fim do último registro
+ * completo, para que os registros seguintes não fiquem depois de bytes parciais (que a
+ * reprodução trataria como o fim do journal). Se o arquivo não puder ser restaurado, ou se um
+ * fsync falhar (o que já está no disco deixa de ser conhecido), o journal passa a recusar
+ * gravações até ser reaberto.
+ *
+ * A gravação (gravar) só acrescenta o registro ao arquivo e é feita com os repositórios
+ * travados; o fsync da política OPERACAO fica em confirmar, chamado depois que as travas foram
+ * liberadas. Quem chega a confirmar enquanto outro fsync está em andamento espera por ele e, se
+ * o seu registro já foi coberto, retorna sem novo fsync (group commit).
+ */
+class Journal implements AutoCloseable {
+    private static final int MAGICO = 0x474F4C4A; // "GOLJ"
+    private static final int VERSAO = 4;
+    private static final int TAMANHO_CABECALHO = 8;
+
+    /**
+     * Política de sincronização com o disco
+     * OPERACAO: fsync antes de confirmar cada operação
+     * GRUPO: fsync em lote, no máximo uma vez por intervalo
+     */
+    enum PoliticaSync { OPERACAO, GRUPO }
+
+    /**
+     * Aplica um registro lido durante a reprodução do journal
+     */
+    interface Reprodutor {
+        void aplicar(Leitor registro) throws IOException;
+    }
+
+    private final FileChannel canal;
+    private final PoliticaSync politica;
+    // Cada thread monta seus registros no próprio buffer; a gravação no arquivo é serializada
+    // por um ReentrantLock (e não synchronized) para não prender a thread portadora de
+    // threads virtuais durante o fsync
+    private final ThreadLocal<Registro> registros = ThreadLocal.withInitial(Registro::new);
+    private final ReentrantLock trava = new ReentrantLock();
+    // Serializa os fsyncs de confirmar, fora da trava de gravação
+    private final ReentrantLock sincronizacao = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService sincronizador;
+    private boolean pendente; // Há dados gravados ainda não sincronizados
+    private volatile long sincronizado; // Posição até a qual o arquivo já está no disco
+    private volatile IOException falha; // Falha que tornou o journal indisponível para gravação
+    private long operacoesReproduzidas;
+
+    private Journal(FileChannel canal, PoliticaSync politica, long intervaloMs) {
+        this.canal = canal;
+        this.politica = politica;
+        if (politica == PoliticaSync.GRUPO) {
+            sincronizador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            sincronizador.scheduleWithFixedDelay(this::sincronizarPendentes, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        } else {
+            sincronizador = null;
+        }
+    }
+
+    /**
+     * Abre (ou cria) o journal e reproduz os registros válidos a partir de uma posição
+     * @param arquivo Caminho do arquivo de journal
+     * @param politica Política de sincronização com o disco
+     * @param intervaloMs Intervalo entre sincronizações na política GRUPO
+     * @param inicio Posição do primeiro registro a reproduzir (0 reproduz desde o início)
+     * @param reprodutor Recebe cada registro gravado anteriormente, em ordem
+     * @return O journal pronto para novas gravações
+     */
+    public static Journal abrir(Path arquivo, PoliticaSync politica, long intervaloMs,
+                                long inicio, Reprodutor reprodutor) throws IOException {
+        FileChannel canal = FileChannel.open(arquivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long operacoes = 0;
+            if (canal.size() == 0 && inicio <= TAMANHO_CABECALHO) {
+                ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO).putInt(MAGICO).putInt(VERSAO).flip();
+                while (cabecalho.hasRemaining()) canal.write(cabecalho);
+                canal.force(true);
+            } else {
+                operacoes = reproduzir(canal, inicio, reprodutor);
+            }
+            canal.position(canal.size());
+
+            Journal journal = new Journal(canal, politica, intervaloMs);
+            journal.operacoesReproduzidas = operacoes;
+            journal.sincronizado = canal.position();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lê os registros a partir da posição inicial e trunca um final incompleto
+     * @return Quantidade de registros reproduzidos
+     */
+    private static long reproduzir(FileChannel canal, long inicio, Reprodutor reprodutor) throws IOException {
+        long valido = Math.max(inicio, TAMANHO_CABECALHO);
+        if (valido > canal.size()) {
+            throw new IOException("journal menor que a posição registrada no snapshot (" + valido + " bytes)");
+        }
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        canal.read(cabecalho, 0);
+        if (cabecalho.getInt(0) != MAGICO) {
+            throw new IOException("arquivo não é um journal do sistema");
+        }
+        int versao = cabecalho.getInt(4);
+        if (versao != VERSAO) {
+            throw new IOException("versão de journal não suportada: " + versao);
+        }
+
+        canal.position(valido);
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(Channels.newInputStream(canal), 1 << 16));
+
+        CRC32 crc = new CRC32();
+        byte[] dados = new byte[256];
+        long operacoes = 0;
+        while (true) {
+            int tamanho;
+            try {
+                tamanho = entrada.readInt();
+                if (tamanho <= 0 || valido + 8 + tamanho > canal.size()) break;
+                if (tamanho > dados.length) dados = new byte[Math.max(tamanho, dados.length * 2)];
+                entrada.readFully(dados, 0, tamanho);
+                crc.reset();
+                crc.update(dados, 0, tamanho);
+                if (entrada.readInt() != (int) crc.getValue()) break;
+            } catch (EOFException e) {
+                break;
+            }
+
+            reprodutor.aplicar(new Leitor(ByteBuffer.wrap(dados, 0, tamanho)));
+            valido += 8 + tamanho;
+            operacoes++;
+        }
+
+        // Descarta o registro parcial deixado por uma interrupção durante a gravação
+        if (valido < canal.size()) {
+            canal.truncate(valido);
+            canal.force(true);
+        }
+        return operacoes;
+    }
+
+    /**
+     * @return Quantidade de registros reproduzidos na abertura
+     */
+    public long getOperacoesReproduzidas() { return operacoesReproduzidas; }
+
+    /**
+     * Inicia a montagem de um novo registro (o buffer da thread é reutilizado entre gravações)
+     * @param operacao Código da operação
+     * @return O registro vazio para receber os campos
+     */
+    public Registro iniciar(byte operacao) {
+        Registro registro = registros.get();
+        registro.reiniciar(operacao);
+        return registro;
+    }
+
+    /**
+     * Acrescenta o registro montado ao final do arquivo, sem esperar o disco
+     * Na política OPERACAO, a thread deve chamar confirmar antes de responder pela operação
+     * @param registro Registro obtido por iniciar
+     */
+    public void gravar(Registro registro) throws IOException {
+        trava.lock();
+        try {
+            verificarDisponivel();
+            int tamanho = registro.posicao - 4;
+            crc.reset();
+            crc.update(registro.dados, 4, tamanho);
+            registro.garantir(4);
+            ByteBuffer.wrap(registro.dados).putInt(0, tamanho).putInt(registro.posicao, (int) crc.getValue());
+
+            long antes = canal.position();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(registro.dados, 0, registro.posicao + 4);
+                while (buffer.hasRemaining()) canal.write(buffer);
+            } catch (IOException e) {
+                desfazer(antes, e);
+                throw e;
+            }
+            registro.fim = canal.position();
+            pendente = true;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Na política OPERACAO, espera até que os registros gravados por esta thread estejam no disco
+     * Deve ser chamado sem travas de repositório: um único fsync cobre os registros de todas as
+     * threads que chegaram até ele. Na política GRUPO retorna imediatamente
+     */
+    public void confirmar() throws IOException {
+        if (politica != PoliticaSync.OPERACAO) return;
+        long fim = registros.get().fim;
+        if (fim <= sincronizado) return;
+        sincronizacao.lock();
+        try {
+            if (fim <= sincronizado) return; // Coberto pelo fsync de outra thread
+            verificarDisponivel();
+            long alvo = posicao();
+            try {
+                canal.force(false);
+            } catch (IOException e) {
+                falha = e;
+                throw e;
+            }
+            sincronizado = alvo;
+        } finally {
+            sincronizacao.unlock();
+        }
+    }
+
+    /**
+     * Trunca o arquivo de volta ao fim do último registro completo depois de uma gravação parcial;
+     * se não for possível, o journal fica indisponível (chamado com a trava)
+     */
+    private void desfazer(long posicao, IOException causa) {
+        try {
+            canal.truncate(posicao);
+            canal.position(posicao);
+        } catch (IOException | RuntimeException e) {
+            causa.addSuppressed(e);
+            falha = causa;
+        }
+    }
+
+    /**
+     * Sincroniza com o disco; uma falha torna o journal indisponível (chamado com a trava)
+     */
+    private void forcar() throws IOException {
+        try {
+            canal.force(false);
+            pendente = false;
+            sincronizado = canal.position();
+        } catch (IOException e) {
+            falha = e;
+            throw e;
+        }
+    }
+
+    /**
+     * @throws IOException Se uma falha anterior tornou o journal indisponível
+     */
+    private void verificarDisponivel() throws IOException {
+        if (falha != null) {
+            throw new IOException("journal indisponível após falha anterior: " + falha.getMessage(), falha);
+        }
+    }
+
+    /**
+     * @return Posição do final do journal (onde o próximo registro será gravado)
+     */
+    public long posicao() throws IOException {
+        trava.lock();
+        try {
+            return canal.position();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Força para o disco todos os registros já gravados, independente da política
+     */
+    public void sincronizar() throws IOException {
+        trava.lock();
+        try {
+            verificarDisponivel();
+            forcar();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Sincroniza com o disco os registros gravados desde a última sincronização
+     */
+    private void sincronizarPendentes() {
+        trava.lock();
+        try {
+            if (!pendente || falha != null) return;
+            forcar();
+        } catch (IOException e) {
+            Falhas.reportar("Falha ao sincronizar o journal", e);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Sincroniza os dados pendentes e fecha o arquivo
+     */
+    @Override
+    public void close() throws IOException {
+        if (sincronizador != null) sincronizador.shutdownNow();
+        trava.lock();
+        try {
+            if (canal.isOpen()) {
+                try {
+                    if (falha == null) canal.force(false);
+                } finally {
+                    canal.close();
+                }
+            }
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Registro em montagem, com os campos codificados em binário compacto
+     * (inteiros de 4 bytes, datas como dia época e textos em UTF-8 prefixados pelo tamanho)
+     */
+    static class Registro {
+        private byte[] dados = new byte[256];
+        private int posicao;
+        private long fim; // Posição do arquivo logo após o último registro gravado pela thread
+
+        private void reiniciar(byte operacao) {
+            posicao = 4; // Reserva espaço para o tamanho
+            dados[posicao++] = operacao;
+        }
+
+        private void garantir(int bytes) {
+            if (posicao + bytes > dados.length) {
+                dados = Arrays.copyOf(dados, Math.max(dados.length * 2, posicao + bytes));
+            }
+        }
+
+        public Registro inteiro(int valor) {
+            garantir(4);
+            dados[posicao++] = (byte) (valor >>> 24);
+            dados[posicao++] = (byte) (valor >>> 16);
+            dados[posicao++] = (byte) (valor >>> 8);
+            dados[posicao++] = (byte) valor;
+            return this;
+        }
+
+        public Registro data(LocalDate data) {
+            return inteiro((int) data.toEpochDay());
+        }
+
+        public Registro texto(String texto) {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            inteiro(bytes.length);
+            garantir(bytes.length);
+            System.arraycopy(bytes, 0, dados, posicao, bytes.length);
+            posicao += bytes.length;
+            return this;
+        }
+    }
+
+    /**
+     * Leitura sequencial dos campos de um registro durante a reprodução
+     */
+    static class Leitor {
+        private final ByteBuffer buffer;
+
+        private Leitor(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public byte operacao() { return buffer.get(); }
+
+        public int inteiro() { return buffer.getInt(); }
+
+        public LocalDate data() { return LocalDate.ofEpochDay(buffer.getInt()); }
+
+        public String texto() {
+            int tamanho = buffer.getInt();
+            String texto = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), tamanho, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + tamanho);
+            return texto;
+        }
+    }
+}
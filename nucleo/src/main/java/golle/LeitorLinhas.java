@@ -0,0 +1,100 @@
+package golle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Leitor de linhas em UTF-8 direto dos bytes de um InputStream, no lugar de
+ * BufferedReader(InputStreamReader): o terminador é procurado no buffer de bytes e cada linha
+ * é decodificada uma única vez, sem o buffer de caracteres intermediário do Reader.
+ * Aceita os mesmos terminadores de BufferedReader.readLine ("\n", "\r" e "\r\n").
+ * Cada leitura bloqueia só até haver bytes disponíveis, então serve também para o console e
+ * para conexões interativas. Não é sincronizado
+ */
+final class LeitorLinhas implements AutoCloseable {
+    private static final int TAMANHO_INICIAL = 1 << 13;
+
+    private final InputStream entrada;
+    private byte[] buffer;
+    private int posicao; // Primeiro byte ainda não consumido
+    private int limite;  // Fim dos bytes lidos
+    private boolean pularLf; // A linha anterior terminou em "\r": um "\n" logo em seguida é descartado
+    private boolean fim;
+
+    /**
+     * Construtor da classe LeitorLinhas
+     * @param entrada Fluxo de bytes em UTF-8
+     * @param tamanho Tamanho inicial do buffer (cresce se uma linha não couber)
+     */
+    public LeitorLinhas(InputStream entrada, int tamanho) {
+        this.entrada = entrada;
+        this.buffer = new byte[Math.max(tamanho, 16)];
+    }
+
+    public LeitorLinhas(InputStream entrada) {
+        this(entrada, TAMANHO_INICIAL);
+    }
+
+    /**
+     * @return A próxima linha, sem o terminador, ou null se a entrada terminou
+     */
+    public String lerLinha() throws IOException {
+        int inicio = posicao;
+        int busca = posicao;
+        while (true) {
+            if (pularLf && busca < limite) {
+                pularLf = false;
+                if (buffer[busca] == '\n') {
+                    inicio = ++busca;
+                    posicao = busca;
+                }
+            }
+            for (int i = busca; i < limite; i++) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    posicao = i + 1;
+                    pularLf = b == '\r';
+                    return new String(buffer, inicio, i - inicio, StandardCharsets.UTF_8);
+                }
+            }
+            // preencher move a linha pendente para o início do buffer
+            busca = limite - inicio;
+            inicio = 0;
+            if (!preencher()) {
+                if (limite == 0) return null;
+                posicao = limite;
+                return new String(buffer, 0, limite, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Move a linha pendente para o início do buffer (dobrando-o se estiver cheio) e lê mais bytes
+     * @return false se a entrada terminou (a linha pendente continua no início do buffer)
+     */
+    private boolean preencher() throws IOException {
+        int pendentes = limite - posicao;
+        if (posicao > 0) {
+            System.arraycopy(buffer, posicao, buffer, 0, pendentes);
+        } else if (pendentes == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        posicao = 0;
+        limite = pendentes;
+        if (fim) return false;
+        int lidos = entrada.read(buffer, limite, buffer.length - limite);
+        if (lidos < 0) {
+            fim = true;
+            return false;
+        }
+        limite += lidos;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+}
@@ -0,0 +1,86 @@
+package golle;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Itens de uma listagem em páginas, lidos com as travas da listagem obtidas
+ * Cada página devolve a posição de retomada do item seguinte ao último escrito; quem pagina a
+ * guarda e a página seguinte começa direto nela, sem percorrer de novo os itens anteriores.
+ * Nos repositórios a posição é um ID (o seguinte ao último exibido), então remoções e cadastros
+ * de outras sessões entre uma página e outra não fazem a listagem pular nem repetir itens
+ */
+interface Listagem<T extends Entidade> {
+
+    /**
+     * @return Quantidade total de itens
+     */
+    int total();
+
+    /**
+     * Escreve as linhas "[ID] entidade" de até limite itens, a partir de uma posição de retomada
+     * @param texto Destino das linhas ou null para apenas avançar
+     * @param inicio Posição de retomada (0 é o início da listagem)
+     * @param limite Quantidade máxima de itens
+     * @return Posição de retomada depois do último item escrito (inicio se não havia itens)
+     */
+    int escrever(StringBuilder texto, int inicio, int limite);
+
+    /**
+     * Listagem de um repositório em ordem de ID; a posição de retomada é um ID
+     */
+    static <T extends Entidade> Listagem<T> de(Repositorio<T> repositorio) {
+        return new Listagem<T>() {
+            @Override
+            public int total() { return repositorio.tamanho(); }
+
+            @Override
+            public int escrever(StringBuilder texto, int inicio, int limite) {
+                int retomada = inicio;
+                Iterator<T> itens = repositorio.iterator(inicio);
+                for (int i = 0; i < limite && itens.hasNext(); i++) {
+                    T item = itens.next();
+                    if (texto != null) linha(texto, item);
+                    retomada = item.getId() + 1;
+                }
+                return retomada;
+            }
+        };
+    }
+
+    /**
+     * Listagem de um resultado já montado (consultas dos índices); a posição de retomada é a
+     * posição na lista
+     */
+    static <T extends Entidade> Listagem<T> de(List<T> itens) {
+        return posicional(itens.size(), itens::get);
+    }
+
+    /**
+     * Listagem com acesso direto por posição
+     * @param total Quantidade de itens
+     * @param item Item de cada posição
+     */
+    static <T extends Entidade> Listagem<T> posicional(int total, IntFunction<T> item) {
+        return new Listagem<T>() {
+            @Override
+            public int total() { return total; }
+
+            @Override
+            public int escrever(StringBuilder texto, int inicio, int limite) {
+                int fim = (int) Math.min(total, (long) inicio + limite);
+                if (texto != null) {
+                    for (int i = inicio; i < fim; i++) linha(texto, item.apply(i));
+                }
+                return Math.max(inicio, fim);
+            }
+        };
+    }
+
+    private static void linha(StringBuilder texto, Entidade item) {
+        texto.append('[').append(item.getId()).append("] ");
+        item.renderizar(texto);
+        texto.append('\n');
+    }
+}
@@ -0,0 +1,103 @@
+package golle;
+
+import java.util.Arrays;
+
+/**
+ * Listas duplamente encadeadas de IDs, agrupadas por chave
+ * Os encadeamentos ficam em arrays indexados pelo próprio ID do elemento (listas intrusivas),
+ * então cada elemento pertence a no máximo uma lista e inserção e remoção são O(1)
+ */
+class ListasPorChave {
+    private int[] primeiro = new int[0];  // Por chave: primeiro elemento da lista (-1 se vazia)
+    private int[] ultimo = new int[0];    // Por chave: último elemento da lista
+    private int[] tamanhos = new int[0];  // Por chave: quantidade de elementos
+    private int[] proximo = new int[0];   // Por elemento
+    private int[] anterior = new int[0];  // Por elemento
+    private int[] chaveDo = new int[0];   // Por elemento: chave da lista em que está (-1 se nenhuma)
+
+    /**
+     * Adiciona o elemento no fim da lista da chave (se ainda não estiver em uma lista)
+     */
+    public void adicionar(int elemento, int chave) {
+        garantirElemento(elemento);
+        garantirChave(chave);
+        if (chaveDo[elemento] >= 0) return;
+
+        int cauda = ultimo[chave];
+        anterior[elemento] = cauda;
+        proximo[elemento] = -1;
+        if (cauda >= 0) proximo[cauda] = elemento; else primeiro[chave] = elemento;
+        ultimo[chave] = elemento;
+        chaveDo[elemento] = chave;
+        tamanhos[chave]++;
+    }
+
+    /**
+     * Retira o elemento da lista em que estiver
+     * @return false se o elemento não estava em nenhuma lista
+     */
+    public boolean remover(int elemento) {
+        if (elemento >= chaveDo.length || chaveDo[elemento] < 0) return false;
+        int chave = chaveDo[elemento];
+        int ant = anterior[elemento];
+        int prox = proximo[elemento];
+        if (ant >= 0) proximo[ant] = prox; else primeiro[chave] = prox;
+        if (prox >= 0) anterior[prox] = ant; else ultimo[chave] = ant;
+        chaveDo[elemento] = -1;
+        tamanhos[chave]--;
+        return true;
+    }
+
+    /**
+     * Retira todos os elementos da lista da chave
+     */
+    public void esvaziar(int chave) {
+        for (int elemento = primeiro(chave); elemento >= 0; ) {
+            int seguinte = proximo[elemento];
+            remover(elemento);
+            elemento = seguinte;
+        }
+    }
+
+    /**
+     * @return Primeiro elemento da lista da chave ou -1 se a lista estiver vazia
+     */
+    public int primeiro(int chave) {
+        return chave < primeiro.length ? primeiro[chave] : -1;
+    }
+
+    /**
+     * @return Elemento seguinte na mesma lista ou -1 no fim da lista
+     */
+    public int proximo(int elemento) {
+        return proximo[elemento];
+    }
+
+    /**
+     * @return Quantidade de elementos na lista da chave
+     */
+    public int tamanho(int chave) {
+        return chave < tamanhos.length ? tamanhos[chave] : 0;
+    }
+
+    private void garantirElemento(int elemento) {
+        if (elemento < chaveDo.length) return;
+        int capacidade = Math.max(elemento + 1, Math.max(16, chaveDo.length * 2));
+        int usados = chaveDo.length;
+        proximo = Arrays.copyOf(proximo, capacidade);
+        anterior = Arrays.copyOf(anterior, capacidade);
+        chaveDo = Arrays.copyOf(chaveDo, capacidade);
+        Arrays.fill(chaveDo, usados, capacidade, -1);
+    }
+
+    private void garantirChave(int chave) {
+        if (chave < primeiro.length) return;
+        int capacidade = Math.max(chave + 1, Math.max(16, primeiro.length * 2));
+        int usadas = primeiro.length;
+        primeiro = Arrays.copyOf(primeiro, capacidade);
+        ultimo = Arrays.copyOf(ultimo, capacidade);
+        tamanhos = Arrays.copyOf(tamanhos, capacidade);
+        Arrays.fill(primeiro, usadas, capacidade, -1);
+        Arrays.fill(ultimo, usadas, capacidade, -1);
+    }
+}
@@ -0,0 +1,134 @@
+package golle;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contagem e histograma de latências de uma operação, no estilo HDR: cada potência de 2 é
+ * dividida em 32 baldes de mesma largura, então qualquer valor é guardado com erro relativo
+ * abaixo de 1/32 (~3%) sem limitar o maior valor registrável
+ *
+ * O registro não usa travas (um incremento atômico no balde, somas em LongAdder e um CAS no
+ * máximo só quando ele aumenta), então pode ser chamado por várias sessões ao mesmo tempo,
+ * inclusive com os repositórios travados
+ */
+final class Metrica {
+    private static final int BITS_SUBFAIXA = 5;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    // Valores abaixo de 2 * SUBFAIXAS têm um balde cada; acima, 32 baldes por potência de 2
+    private static final int BALDES = indice(Long.MAX_VALUE) + 1;
+
+    private final String nome;
+    private final String descricao;
+    private final AtomicLongArray baldes = new AtomicLongArray(BALDES);
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    Metrica(String nome, String descricao) {
+        this.nome = nome;
+        this.descricao = descricao;
+    }
+
+    public String getNome() { return nome; }
+    public String getDescricao() { return descricao; }
+
+    /**
+     * Registra uma ocorrência da operação
+     * @param nanos Duração em nanossegundos (valores negativos contam como 0)
+     */
+    public void registrar(long nanos) {
+        if (nanos < 0) nanos = 0;
+        baldes.incrementAndGet(indice(nanos));
+        soma.add(nanos);
+        long atual = maximo.get();
+        while (nanos > atual && !maximo.compareAndSet(atual, nanos)) atual = maximo.get();
+    }
+
+    /**
+     * Registra uma ocorrência iniciada em inicio (System.nanoTime) e terminada agora
+     */
+    public void registrarDesde(long inicio) {
+        registrar(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Copia o estado atual; as quantidades de cada balde são lidas uma a uma, então registros
+     * concorrentes podem aparecer na soma e ainda não nos baldes (ou o contrário)
+     */
+    public Leitura ler() {
+        long[] copia = new long[BALDES];
+        long total = 0;
+        for (int i = 0; i < BALDES; i++) {
+            copia[i] = baldes.get(i);
+            total += copia[i];
+        }
+        return new Leitura(copia, total, soma.sum(), maximo.get());
+    }
+
+    /**
+     * Balde de um valor: os pequenos são exatos; os demais usam os 6 bits mais altos
+     * (o bit líder e 5 de subfaixa), deslocados pela potência de 2
+     */
+    static int indice(long valor) {
+        if (valor < 2 * SUBFAIXAS) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int mantissa = (int) (valor >>> (expoente - BITS_SUBFAIXA));
+        return (expoente - BITS_SUBFAIXA) * SUBFAIXAS + mantissa;
+    }
+
+    /**
+     * Maior valor guardado no balde (o valor informado para os percentis que caem nele)
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < 2 * SUBFAIXAS) return indice;
+        int deslocamento = indice / SUBFAIXAS - 1;
+        long mantissa = SUBFAIXAS + indice % SUBFAIXAS;
+        long limite = ((mantissa + 1) << deslocamento) - 1;
+        return limite < 0 ? Long.MAX_VALUE : limite;
+    }
+
+    /**
+     * Estado copiado de uma métrica, do qual saem a contagem, a média e os percentis
+     */
+    static final class Leitura {
+        private final long[] baldes;
+        private final long total;
+        private final long soma;
+        private final long maximo;
+
+        private Leitura(long[] baldes, long total, long soma, long maximo) {
+            this.baldes = baldes;
+            this.total = total;
+            this.soma = soma;
+            this.maximo = maximo;
+        }
+
+        public long getTotal() { return total; }
+        public long getSoma() { return soma; }
+        public long getMaximo() { return maximo; }
+
+        /**
+         * @return A média em nanossegundos (0 sem registros)
+         */
+        public double media() {
+            return total == 0 ? 0 : (double) soma / total;
+        }
+
+        /**
+         * @param fracao Percentil entre 0 e 1 (0.99 para p99)
+         * @return O valor abaixo do qual está a fração pedida dos registros, com erro de até
+         *         1/32 para cima, limitado ao máximo registrado (0 sem registros)
+         */
+        public long percentil(double fracao) {
+            if (total == 0) return 0;
+            long posicao = Math.max(1, (long) Math.ceil(fracao * total));
+            long acumulado = 0;
+            for (int i = 0; i < baldes.length; i++) {
+                acumulado += baldes[i];
+                if (acumulado >= posicao) return Math.min(limiteSuperior(i), maximo);
+            }
+            return maximo;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package golle;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Registro das métricas de latência do processo, com o relatório exibido no menu e o
+ * arquivo de métricas para coleta local
+ *
+ * O arquivo usa o formato texto do Prometheus (um contador e um resumo com percentis por
+ * operação), lido direto por um coletor de arquivos texto ou por scripts:
+ *   golle_operacoes_total{operacao="usuario.cadastrar"} 12
+ *   golle_latencia_ns{operacao="usuario.cadastrar",quantile="0.99"} 48127
+ */
+final class Metricas {
+    // Percentis exibidos no menu e gravados no arquivo
+    private static final double[] PERCENTIS = {0.5, 0.9, 0.99, 0.999};
+
+    private static final List<Metrica> TODAS = new CopyOnWriteArrayList<>();
+    private static final long INICIO = System.nanoTime();
+
+    private Metricas() {}
+
+    /**
+     * Cria e registra uma métrica; o relatório e o arquivo seguem a ordem de criação
+     * @param nome Identificador no arquivo de métricas ("entidade.operacao")
+     * @param descricao Nome exibido no menu
+     */
+    static Metrica nova(String nome, String descricao) {
+        Metrica metrica = new Metrica(nome, descricao);
+        TODAS.add(metrica);
+        return metrica;
+    }
+
+    /**
+     * @return Segundos desde o início do processo
+     */
+    static double segundosAtivo() {
+        return (System.nanoTime() - INICIO) / 1e9;
+    }
+
+    /**
+     * Escreve a tabela do menu: contagem, vazão média desde o início e latências em
+     * microssegundos das operações que já ocorreram
+     * @return Quantidade de operações listadas
+     */
+    static int relatorio(StringBuilder texto) {
+        double segundos = segundosAtivo();
+        int linhas = 0;
+        for (Metrica metrica : TODAS) {
+            Metrica.Leitura leitura = metrica.ler();
+            if (leitura.getTotal() == 0) continue;
+            if (linhas++ == 0) {
+                texto.append(String.format("%-28s %9s %9s %9s %9s %9s %9s %9s %10s%n", "Operação", "Qtd",
+                        "Ops/s", "Média", "p50", "p90", "p99", "p99,9", "Máx (µs)"));
+            }
+            texto.append(String.format("%-28s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %10.1f%n",
+                    metrica.getDescricao(), leitura.getTotal(), leitura.getTotal() / segundos,
+                    leitura.media() / 1e3, leitura.percentil(0.5) / 1e3, leitura.percentil(0.9) / 1e3,
+                    leitura.percentil(0.99) / 1e3, leitura.percentil(0.999) / 1e3, leitura.getMaximo() / 1e3));
+        }
+        return linhas;
+    }
+
+    /**
+     * Escreve todas as métricas (inclusive as sem registros) no formato texto do Prometheus
+     */
+    static void exportar(StringBuilder texto) {
+        texto.append("# HELP golle_tempo_ativo_segundos Tempo desde o início do processo\n");
+        texto.append("# TYPE golle_tempo_ativo_segundos gauge\n");
+        texto.append("golle_tempo_ativo_segundos ").append(segundosAtivo()).append('\n');
+        texto.append("# HELP golle_operacoes_total Operações concluídas\n");
+        texto.append("# TYPE golle_operacoes_total counter\n");
+        Metrica.Leitura[] leituras = new Metrica.Leitura[TODAS.size()];
+        for (int i = 0; i < leituras.length; i++) {
+            leituras[i] = TODAS.get(i).ler();
+            texto.append("golle_operacoes_total{operacao=\"").append(TODAS.get(i).getNome()).append("\"} ")
+                    .append(leituras[i].getTotal()).append('\n');
+        }
+        texto.append("# HELP golle_latencia_ns Latência das operações em nanossegundos\n");
+        texto.append("# TYPE golle_latencia_ns summary\n");
+        for (int i = 0; i < leituras.length; i++) {
+            String rotulo = "{operacao=\"" + TODAS.get(i).getNome() + "\"";
+            for (double percentil : PERCENTIS) {
+                texto.append("golle_latencia_ns").append(rotulo).append(",quantile=\"").append(percentil)
+                        .append("\"} ").append(leituras[i].percentil(percentil)).append('\n');
+            }
+            texto.append("golle_latencia_ns").append(rotulo).append(",quantile=\"1\"} ")
+                    .append(leituras[i].getMaximo()).append('\n');
+            texto.append("golle_latencia_ns_sum").append(rotulo).append("} ").append(leituras[i].getSoma()).append('\n');
+            texto.append("golle_latencia_ns_count").append(rotulo).append("} ").append(leituras[i].getTotal()).append('\n');
+        }
+    }
+
+    /**
+     * Grava o arquivo de métricas num temporário e o move por cima do anterior, para que
+     * quem lê o arquivo nunca veja uma gravação pela metade
+     */
+    static void gravar(Path arquivo) throws IOException {
+        StringBuilder texto = new StringBuilder();
+        exportar(texto);
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        Files.writeString(temporario, texto, StandardCharsets.UTF_8);
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Grava o arquivo de métricas a cada intervalo (se positivo) e ao encerrar o processo
+     * @param intervaloSegundos Segundos entre gravações; 0 grava apenas ao encerrar
+     */
+    static void iniciarGravacao(Path arquivo, long intervaloSegundos) {
+        Runnable tarefa = () -> {
+            try {
+                gravar(arquivo);
+            } catch (IOException e) {
+                Falhas.reportar("Falha ao gravar as métricas", e);
+            }
+        };
+        if (intervaloSegundos > 0) {
+            ScheduledExecutorService gravador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "gravacao-metricas");
+                t.setDaemon(true);
+                return t;
+            });
+            gravador.scheduleWithFixedDelay(tarefa, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(tarefa, "gravacao-metricas-final"));
+    }
+}
@@ -0,0 +1,1245 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Núcleo do sistema de gerenciamento de EPIs, sem nenhuma interação com o operador:
+ * armazenamento e índices em memória, travas dos repositórios, operações de cadastro,
+ * atualização e remoção, journal, snapshots, verificação diária de atrasos, histórico arquivado
+ * por mês, relatórios e métricas de latência.
+ * Os membros são estáticos e visíveis no pacote, usados pelos menus (SistemaGerenciamentoEPI,
+ * que estende esta classe) e pelos benchmarks
+ */
+abstract class NucleoEPI {
+
+    // Armazenamento de dados em memória, endereçado por ID estável
+    static Slab<Usuario> usuarios = new Slab<>();
+    static Slab<EPI> epis = new Slab<>();
+    static TabelaEmprestimos emprestimos = new TabelaEmprestimos(usuarios, epis);
+    static TabelaDevolucoes devolucoes = new TabelaDevolucoes(emprestimos);
+
+    // Travas de leitura/escrita dos repositórios, adquiridas nesta ordem (ver travar)
+    static final Repositorio<?>[] repositorios = {usuarios, epis, emprestimos, devolucoes};
+    static final int USUARIOS = 1, EPIS = 2, EMPRESTIMOS = 4, DEVOLUCOES = 8, TODOS = 15;
+
+    // ID passado às operações de cadastro para alocar o próximo ID livre
+    static final int NOVO = -1;
+
+    // Índice de usuários por matrícula (busca em tempo constante)
+    static IndiceMatricula indiceMatricula = new IndiceMatricula();
+
+    // Empréstimos sem devolução, por usuário e por EPI
+    static IndiceEmprestimosAbertos abertos = new IndiceEmprestimosAbertos(usuarios, epis, emprestimos);
+
+    // Índice reverso de todos os empréstimos por usuário e por EPI (remoções em cascata)
+    static IndiceReferencias referencias = new IndiceReferencias(usuarios, epis, emprestimos);
+
+    // EPIs ordenados pela data de validade
+    static IndiceValidade indiceValidade = new IndiceValidade(epis);
+
+    // Busca aproximada por nome e departamento dos usuários e por nome dos EPIs
+    static IndiceBusca buscaUsuarios = new IndiceBusca();
+    static IndiceBusca buscaEpis = new IndiceBusca();
+
+    // Contadores por departamento (em uso, em atraso, empréstimos por mês) mantidos a cada operação
+    static AgregadosDepartamento agregados = new AgregadosDepartamento(Usuario.DEPARTAMENTOS);
+
+    // Empréstimos devolvidos de meses antigos, selados em segmentos comprimidos e lidos sob demanda;
+    // mesesAtivos é a quantidade de meses (contando o atual) mantidos em memória, 0 não sela
+    static HistoricoArquivado historico =
+            new HistoricoArquivado(Paths.get(System.getProperty("golle.historico", "golle.historico")));
+    static int mesesAtivos;
+
+    // Relatórios calculados em paralelo sobre o histórico de empréstimos e devoluções
+    static Relatorios relatorios = new Relatorios(usuarios, indiceMatricula, historico);
+
+    // Empréstimos em aberto ordenados pela data de devolução prevista e verificação diária de atrasos
+    // (totalAtrasos só cresce; cada sessão avisa a diferença desde o seu último aviso)
+    static final AtomicInteger totalAtrasos = new AtomicInteger();
+    static AgendaVencimentos vencimentos = new AgendaVencimentos((id, dia) -> {
+        totalAtrasos.incrementAndGet();
+        agregados.atrasar(id);
+    });
+    static ScheduledThreadPoolExecutor verificadorAtrasos;
+
+    // Alertas de estoque baixo: fila limitada (golle.alertas.fila) entregue ao mural exibido pelas
+    // sessões e ao arquivo golle.alertas (vazio desativa o arquivo)
+    static AlertasEstoque alertas = new AlertasEstoque(Integer.getInteger("golle.alertas.fila", 1024));
+    static final AlertasEstoque.Mural muralAlertas = new AlertasEstoque.Mural(64);
+    static AlertasEstoque.Arquivo arquivoAlertas;
+
+    // Journal de operações (null até ser aberto na carga inicial)
+    static Journal journal;
+    static boolean reproduzindo = false;
+
+    // Snapshot periódico e sinalização do fim da carga inicial em segundo plano
+    static Path arquivoSnapshot;
+    static long intervaloSnapshot;
+    static final AtomicLong operacoesDesdeSnapshot = new AtomicLong();
+    static final ReentrantLock gravandoSnapshot = new ReentrantLock();
+
+    // Alterações e remoções de empréstimos e devoluções existentes (guardada pela trava dos empréstimos);
+    // a selagem a compara para saber se os empréstimos que gravou mudaram antes de tirá-los da memória
+    static long alteracoesEmprestimos;
+    static final CountDownLatch cargaConcluida = new CountDownLatch(1);
+    static volatile boolean cargaComErro = false;
+
+    // Códigos das operações gravadas no journal
+    static final byte OP_CADASTRO_USUARIO = 1;
+    static final byte OP_ATUALIZACAO_USUARIO = 2;
+    static final byte OP_REMOCAO_USUARIO = 3;
+    static final byte OP_CADASTRO_EPI = 4;
+    static final byte OP_ATUALIZACAO_EPI = 5; // Quantidade absoluta (só em journals anteriores a OP_CORRECAO_EPI)
+    static final byte OP_REMOCAO_EPI = 6;
+    static final byte OP_CADASTRO_EMPRESTIMO = 7;
+    static final byte OP_ATUALIZACAO_EMPRESTIMO = 8;
+    static final byte OP_REMOCAO_EMPRESTIMO = 9;
+    static final byte OP_CADASTRO_DEVOLUCAO = 10;
+    static final byte OP_ATUALIZACAO_DEVOLUCAO = 11;
+    static final byte OP_REMOCAO_DEVOLUCAO = 12;
+    static final byte OP_SELAGEM_HISTORICO = 13;
+    static final byte OP_LIMITES_EPI = 14;
+    static final byte OP_CORRECAO_EPI = 15; // Atualização de EPI com a variação do estoque
+
+    // Latência das operações (medida com as esperas por travas, o journal e o snapshot
+    // periódico incluídos) e das gravações em disco; a reprodução do journal não é medida
+    static final Metrica METRICA_CADASTRO_USUARIO = Metricas.nova("usuario.cadastrar", "Cadastrar usuário");
+    static final Metrica METRICA_ATUALIZACAO_USUARIO = Metricas.nova("usuario.atualizar", "Atualizar usuário");
+    static final Metrica METRICA_REMOCAO_USUARIO = Metricas.nova("usuario.remover", "Remover usuário");
+    static final Metrica METRICA_REMOCAO_USUARIO_CASCATA =
+            Metricas.nova("usuario.remover_cascata", "Remover usuário (cascata)");
+    static final Metrica METRICA_CADASTRO_EPI = Metricas.nova("epi.cadastrar", "Cadastrar EPI");
+    static final Metrica METRICA_ATUALIZACAO_EPI = Metricas.nova("epi.atualizar", "Atualizar EPI");
+    static final Metrica METRICA_REMOCAO_EPI = Metricas.nova("epi.remover", "Remover EPI");
+    static final Metrica METRICA_LIMITES_EPI = Metricas.nova("epi.limites", "Definir limites de estoque");
+    static final Metrica METRICA_REMOCAO_EPI_CASCATA = Metricas.nova("epi.remover_cascata", "Remover EPI (cascata)");
+    static final Metrica METRICA_CADASTRO_EMPRESTIMO = Metricas.nova("emprestimo.cadastrar", "Cadastrar empréstimo");
+    static final Metrica METRICA_ATUALIZACAO_EMPRESTIMO =
+            Metricas.nova("emprestimo.atualizar", "Atualizar empréstimo");
+    static final Metrica METRICA_REMOCAO_EMPRESTIMO = Metricas.nova("emprestimo.remover", "Remover empréstimo");
+    static final Metrica METRICA_CADASTRO_DEVOLUCAO = Metricas.nova("devolucao.cadastrar", "Cadastrar devolução");
+    static final Metrica METRICA_ATUALIZACAO_DEVOLUCAO =
+            Metricas.nova("devolucao.atualizar", "Atualizar devolução");
+    static final Metrica METRICA_REMOCAO_DEVOLUCAO = Metricas.nova("devolucao.remover", "Remover devolução");
+    static final Metrica METRICA_JOURNAL = Metricas.nova("persistencia.journal", "Gravar no journal");
+    static final Metrica METRICA_CONFIRMACAO = Metricas.nova("persistencia.confirmacao", "Confirmar journal no disco");
+    static final Metrica METRICA_SNAPSHOT = Metricas.nova("persistencia.snapshot", "Gravar snapshot");
+    static final Metrica METRICA_RELATORIO = Metricas.nova("relatorio.gerar", "Gerar relatórios");
+    static final Metrica METRICA_RETRATO = Metricas.nova("relatorio.retrato", "Retrato para relatórios");
+    static final Metrica METRICA_SELAGEM = Metricas.nova("historico.selar", "Selar histórico");
+
+    // Sessão (entrada e saída do operador) da thread atual
+    static final ThreadLocal<Sessao> sessaoAtual = new ThreadLocal<>();
+
+    /**
+     * @return A saída da sessão atual (o console para threads sem sessão)
+     */
+    static PrintStream saida() {
+        Sessao sessao = sessaoAtual.get();
+        return sessao != null ? sessao.saida() : System.out;
+    }
+
+    // ==================== PERSISTÊNCIA ====================
+
+    /**
+     * Carrega o último snapshot (se existir) e reproduz o restante do journal
+     * Executado em segundo plano; as operações aguardam sua conclusão em aguardarCarga
+     */
+    static void carregarDados() {
+        Path arquivoJournal = Paths.get(System.getProperty("golle.journal", "golle.journal"));
+        Journal.PoliticaSync politica = System.getProperty("golle.fsync", "operacao").equalsIgnoreCase("grupo")
+                ? Journal.PoliticaSync.GRUPO : Journal.PoliticaSync.OPERACAO;
+        long intervaloMs = Long.getLong("golle.fsync.intervaloMs", 50);
+        arquivoSnapshot = Paths.get(System.getProperty("golle.snapshot", "golle.snapshot"));
+        intervaloSnapshot = Long.getLong("golle.snapshot.intervalo", 10000);
+        mesesAtivos = Integer.getInteger("golle.historico.mesesAtivos", 3);
+
+        reproduzindo = true;
+        try {
+            long inicioJournal = 0;
+            if (Files.exists(arquivoSnapshot)) {
+                Snapshot snapshot = Snapshot.mapear(arquivoSnapshot);
+                snapshot.materializar(usuarios, epis, emprestimos, devolucoes, historico);
+                reconstruirIndices();
+                inicioJournal = snapshot.getPosicaoJournal();
+            }
+
+            journal = Journal.abrir(arquivoJournal, politica, intervaloMs, inicioJournal,
+                    NucleoEPI::reproduzirOperacao);
+            operacoesDesdeSnapshot.set(journal.getOperacoesReproduzidas());
+            iniciarVerificacaoAtrasos();
+            iniciarAlertas();
+        } catch (IOException | RuntimeException e) {
+            saida().println("\nErro: Não foi possível carregar os dados salvos: " + e.getMessage());
+            cargaComErro = true;
+        } finally {
+            reproduzindo = false;
+            cargaConcluida.countDown();
+        }
+    }
+
+    /**
+     * Reconstrói os índices e vínculos derivados a partir das entidades carregadas do snapshot
+     */
+    static void reconstruirIndices() {
+        for (Usuario usuario : usuarios) {
+            indiceMatricula.inserir(usuario);
+            indexarBusca(usuario);
+        }
+        for (EPI epi : epis) {
+            indiceValidade.inserir(epi);
+            buscaEpis.indexar(epi.getId(), epi.getNome());
+        }
+        for (Devolucao dev : devolucoes) dev.getEmprestimo().setDevolucao(dev);
+        // As quantidades do snapshot já descontam os empréstimos em aberto
+        for (Emprestimo emp : emprestimos) {
+            referencias.vincular(emp);
+            agregados.registrar(emp.getId(), emp.getUsuario().getCodigoDepartamento(), emp.getDataEmprestimo());
+            if (emp.getDevolucao() == null) indexarEmprestimoAberto(emp);
+        }
+    }
+
+    /**
+     * Inicia a verificação de atrasos em segundo plano: uma vez agora e depois a cada meia-noite
+     */
+    static void iniciarVerificacaoAtrasos() {
+        verificadorAtrasos = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "verificacao-atrasos");
+            t.setDaemon(true);
+            return t;
+        });
+        // Ao encerrar, a próxima verificação agendada é descartada
+        verificadorAtrasos.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        verificadorAtrasos.execute(NucleoEPI::verificarAtrasos);
+    }
+
+    /**
+     * Inicia o motor de alertas de estoque depois da carga, que avisa uma vez os EPIs já abaixo
+     * de algum limite; uma falha ao abrir o arquivo de alertas deixa só o mural
+     */
+    static void iniciarAlertas() {
+        alertas.adicionar(muralAlertas);
+        String arquivo = System.getProperty("golle.alertas", "golle.alertas");
+        if (!arquivo.isEmpty()) {
+            try {
+                arquivoAlertas = new AlertasEstoque.Arquivo(Paths.get(arquivo));
+                alertas.adicionar(arquivoAlertas);
+            } catch (IOException e) {
+                saida().println("\nErro: Não foi possível abrir o arquivo de alertas: " + e.getMessage());
+            }
+        }
+        alertas.iniciar(epis);
+    }
+
+    /**
+     * Marca como atrasados os empréstimos vencidos até ontem, agenda a próxima verificação e sela
+     * os meses que saíram da janela de meses ativos
+     * Cada empréstimo marcado custa O(log n); sem vencimentos, a verificação é O(1)
+     */
+    static void verificarAtrasos() {
+        vencimentos.avancar((int) LocalDate.now().toEpochDay());
+        if (verificadorAtrasos.isShutdown()) return; // Encerrando: sem próxima verificação nem selagem
+        LocalDateTime agora = LocalDateTime.now();
+        long ateProximoDia = agora.until(agora.toLocalDate().plusDays(1).atStartOfDay(), ChronoUnit.MILLIS);
+        verificadorAtrasos.schedule(NucleoEPI::verificarAtrasos, ateProximoDia + 1, TimeUnit.MILLISECONDS);
+        selarMesesAntigos();
+    }
+
+    /**
+     * Sela os empréstimos devolvidos dos meses anteriores aos mesesAtivos meses mais recentes
+     * Os empréstimos antigos devolvidos depois entram na selagem do dia seguinte
+     */
+    static void selarMesesAntigos() {
+        if (mesesAtivos <= 0 || journal == null) return;
+        try {
+            selarHistorico(HistoricoArquivado.mes(LocalDate.now()) - mesesAtivos + 1);
+        } catch (IOException | RuntimeException e) {
+            Falhas.reportar("Falha ao selar o histórico", e);
+        }
+    }
+
+    /**
+     * Aguarda o fim da carga inicial antes de acessar as coleções
+     * @return false se a carga falhou e o sistema não deve continuar
+     */
+    static boolean aguardarCarga() {
+        try {
+            cargaConcluida.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !cargaComErro;
+    }
+
+    /**
+     * Grava um snapshot do estado atual junto com a posição correspondente do journal
+     * O journal é sincronizado antes para que o snapshot nunca aponte além do que está no disco
+     * Deve ser chamado com todos os repositórios travados (ou sem outras sessões ativas)
+     */
+    static void gravarSnapshot() {
+        long inicio = System.nanoTime();
+        try {
+            journal.sincronizar();
+            Snapshot.gravar(arquivoSnapshot, usuarios, epis, emprestimos, devolucoes, historico, journal.posicao());
+            operacoesDesdeSnapshot.set(0);
+        } catch (IOException e) {
+            saida().println("Erro: Falha ao gravar o snapshot: " + e.getMessage());
+            METRICA_SNAPSHOT.registrarDesde(inicio);
+            return;
+        }
+        // Com a lista de segmentos no snapshot, versões substituídas já não são necessárias
+        try {
+            historico.limpar();
+        } catch (IOException e) {
+            saida().println("Erro: Falha ao limpar o histórico arquivado: " + e.getMessage());
+        }
+        METRICA_SNAPSHOT.registrarDesde(inicio);
+    }
+
+    /**
+     * Grava o snapshot final e fecha o journal ao sair do sistema
+     */
+    static void encerrarPersistencia() {
+        if (!aguardarCarga() || journal == null) return;
+        if (verificadorAtrasos != null) {
+            // Sem interromper: uma selagem em andamento grava no journal, e a interrupção fecharia o canal
+            verificadorAtrasos.shutdown();
+            try {
+                verificadorAtrasos.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        alertas.encerrar();
+        if (arquivoAlertas != null) {
+            try {
+                arquivoAlertas.close();
+            } catch (IOException e) {
+                saida().println("Erro: Falha ao fechar o arquivo de alertas: " + e.getMessage());
+            }
+        }
+        travar(TODOS, 0);
+        try {
+            if (operacoesDesdeSnapshot.get() > 0) gravarSnapshot();
+        } finally {
+            destravar(TODOS, 0);
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            saida().println("Erro: Falha ao fechar o journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indica se as operações aplicadas agora devem ser gravadas no journal
+     * (não são gravadas durante a reprodução)
+     */
+    static boolean registrando() {
+        return journal != null && !reproduzindo;
+    }
+
+    /**
+     * Grava um registro montado no journal (o fsync fica para destravar, fora das travas)
+     * Chamado com os repositórios da operação travados para escrita
+     * @param registro Registro com a operação e seus campos
+     */
+    static void gravar(Journal.Registro registro) {
+        long inicio = System.nanoTime();
+        try {
+            journal.gravar(registro);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar no journal", e);
+        }
+        METRICA_JOURNAL.registrarDesde(inicio);
+        operacoesDesdeSnapshot.incrementAndGet();
+    }
+
+    /**
+     * Registra a latência de uma operação iniciada em inicio (System.nanoTime), exceto durante
+     * a reprodução do journal, que não corresponde a operações feitas agora
+     */
+    static void medir(Metrica metrica, long inicio) {
+        if (!reproduzindo) metrica.registrarDesde(inicio);
+    }
+
+    /**
+     * Trava os repositórios indicados, sempre na ordem usuários, EPIs, empréstimos e devoluções
+     * (a ordem fixa evita deadlock entre sessões)
+     * A granularidade é de um repositório inteiro: todo empréstimo, devolução e atualização de
+     * empréstimo de todas as sessões passa pela trava de escrita dos empréstimos, que protege a
+     * tabela, os índices, a agenda de vencimentos e os agregados. O trecho travado é curto (o fsync
+     * fica fora, em destravar), então com o journal a vazão é limitada pelo disco; o benchmark
+     * emprestarMesmoEpi mede a vazão dessas escritas com várias threads
+     * @param leitura Repositórios apenas lidos (USUARIOS | EPIS | ...)
+     * @param escrita Repositórios alterados; prevalece sobre leitura
+     */
+    static void travar(int leitura, int escrita) {
+        for (int i = 0; i < repositorios.length; i++) {
+            int bit = 1 << i;
+            if ((escrita & bit) != 0) repositorios[i].trava().writeLock().lock();
+            else if ((leitura & bit) != 0) repositorios[i].trava().readLock().lock();
+        }
+    }
+
+    /**
+     * Libera as travas obtidas em travar, na ordem inversa
+     * Ao fim de uma alteração, quando a thread já não tem nenhuma trava, espera o journal chegar
+     * ao disco (operações aninhadas confirmam uma única vez, na liberação mais externa) e grava
+     * o snapshot periódico se o intervalo foi atingido
+     * @throws UncheckedIOException Se o fsync falhou: a operação foi aplicada em memória, mas não
+     *         é durável, e o journal passa a recusar novas gravações
+     */
+    static void destravar(int leitura, int escrita) {
+        for (int i = repositorios.length - 1; i >= 0; i--) {
+            int bit = 1 << i;
+            if ((escrita & bit) != 0) repositorios[i].trava().writeLock().unlock();
+            else if ((leitura & bit) != 0) repositorios[i].trava().readLock().unlock();
+        }
+        if (escrita == 0 || !registrando() || !semTravas()) return;
+        long inicio = System.nanoTime();
+        try {
+            journal.confirmar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao sincronizar o journal", e);
+        }
+        METRICA_CONFIRMACAO.registrarDesde(inicio);
+        if (intervaloSnapshot > 0 && operacoesDesdeSnapshot.get() >= intervaloSnapshot) {
+            gravarSnapshotPeriodico();
+        }
+    }
+
+    /**
+     * @return true se a thread atual não tem nenhuma trava de repositório
+     */
+    private static boolean semTravas() {
+        for (Repositorio<?> repositorio : repositorios) {
+            ReentrantReadWriteLock trava = repositorio.trava();
+            if (trava.isWriteLockedByCurrentThread() || trava.getReadHoldCount() > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Grava o snapshot periódico com todos os repositórios travados para leitura: nenhuma
+     * alteração está em andamento, então o estado corresponde exatamente à posição do journal.
+     * Se outra sessão já está gravando, esta segue sem esperar
+     */
+    static void gravarSnapshotPeriodico() {
+        if (!gravandoSnapshot.tryLock()) return;
+        try {
+            travar(TODOS, 0);
+            try {
+                if (operacoesDesdeSnapshot.get() >= intervaloSnapshot) gravarSnapshot();
+            } finally {
+                destravar(TODOS, 0);
+            }
+        } finally {
+            gravandoSnapshot.unlock();
+        }
+    }
+
+    /**
+     * Reaplica uma operação lida do journal na inicialização
+     * @param registro Registro lido do journal
+     */
+    static void reproduzirOperacao(Journal.Leitor registro) throws IOException {
+        byte operacao = registro.operacao();
+        boolean aplicada = switch (operacao) {
+            case OP_CADASTRO_USUARIO ->
+                    aplicarCadastroUsuario(registro.inteiro(), registro.texto(), registro.texto(), registro.inteiro()) != null;
+            case OP_ATUALIZACAO_USUARIO ->
+                    aplicarAtualizacaoUsuario(doJournal(usuarios, registro.inteiro()),
+                            registro.texto(), registro.texto(), registro.inteiro());
+            case OP_REMOCAO_USUARIO -> aplicarRemocaoUsuario(doJournal(usuarios, registro.inteiro()));
+            case OP_CADASTRO_EPI ->
+                    aplicarCadastroEPI(registro.inteiro(), registro.texto(), registro.inteiro(), registro.inteiro()) != null;
+            case OP_ATUALIZACAO_EPI -> {
+                // Na reprodução nada mais altera o estoque: a quantidade gravada vira a variação
+                EPI epi = doJournal(epis, registro.inteiro());
+                String nome = registro.texto();
+                int variacao = registro.inteiro() - epi.getQuantidade();
+                yield aplicarAtualizacaoEPI(epi, nome, variacao, registro.inteiro());
+            }
+            case OP_CORRECAO_EPI ->
+                    aplicarAtualizacaoEPI(doJournal(epis, registro.inteiro()),
+                            registro.texto(), registro.inteiro(), registro.inteiro());
+            case OP_REMOCAO_EPI -> aplicarRemocaoEPI(doJournal(epis, registro.inteiro()));
+            case OP_LIMITES_EPI ->
+                    aplicarLimitesEPI(doJournal(epis, registro.inteiro()), registro.inteiro(), registro.inteiro());
+            case OP_CADASTRO_EMPRESTIMO ->
+                    aplicarCadastroEmprestimo(registro.inteiro(), doJournal(usuarios, registro.inteiro()),
+                            doJournal(epis, registro.inteiro()), registro.data(), registro.data()) != null;
+            case OP_ATUALIZACAO_EMPRESTIMO ->
+                    aplicarAtualizacaoEmprestimo(doJournal(emprestimos, registro.inteiro()),
+                            opcionalDoJournal(usuarios, registro.inteiro()), opcionalDoJournal(epis, registro.inteiro()),
+                            registro.data(), registro.data());
+            case OP_REMOCAO_EMPRESTIMO -> aplicarRemocaoEmprestimo(doJournal(emprestimos, registro.inteiro()));
+            case OP_CADASTRO_DEVOLUCAO ->
+                    aplicarCadastroDevolucao(registro.inteiro(), doJournal(emprestimos, registro.inteiro()),
+                            registro.data(), registro.texto()) != null;
+            case OP_ATUALIZACAO_DEVOLUCAO ->
+                    aplicarAtualizacaoDevolucao(doJournal(devolucoes, registro.inteiro()),
+                            opcionalDoJournal(emprestimos, registro.inteiro()), registro.data(), registro.texto());
+            case OP_REMOCAO_DEVOLUCAO -> aplicarRemocaoDevolucao(doJournal(devolucoes, registro.inteiro()));
+            case OP_SELAGEM_HISTORICO -> aplicarSelagem(registro.inteiro(), segmentosDoJournal(registro));
+            default -> throw new IOException("Operação desconhecida no journal: " + operacao);
+        };
+        // Na reprodução o estado é o mesmo da gravação, então toda operação deve ser aceita
+        if (!aplicada) throw new IOException("Journal inconsistente: operação " + operacao + " rejeitada");
+    }
+
+    /**
+     * Lê a lista de segmentos (quantidade e mês, versão e registros de cada um) de um registro de selagem
+     */
+    static List<HistoricoArquivado.Segmento> segmentosDoJournal(Journal.Leitor registro) {
+        int quantidade = registro.inteiro();
+        ArrayList<HistoricoArquivado.Segmento> segmentos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            segmentos.add(new HistoricoArquivado.Segmento(registro.inteiro(), registro.inteiro(), registro.inteiro()));
+        }
+        return segmentos;
+    }
+
+    /**
+     * Resolve um ID gravado no journal para a entidade correspondente
+     */
+    static <T extends Entidade> T doJournal(Repositorio<T> slab, int id) throws IOException {
+        T entidade = slab.obter(id);
+        if (entidade == null) throw new IOException("Journal inconsistente: ID " + id + " inexistente");
+        return entidade;
+    }
+
+    /**
+     * Resolve um ID opcional gravado no journal (-1 indica referência mantida)
+     */
+    static <T extends Entidade> T opcionalDoJournal(Repositorio<T> slab, int id) throws IOException {
+        return id == -1 ? null : doJournal(slab, id);
+    }
+
+    /**
+     * ID gravado no journal para uma referência opcional
+     */
+    static int idOpcional(Entidade entidade) {
+        return entidade == null ? -1 : entidade.getId();
+    }
+
+    // ==================== OPERAÇÕES ====================
+    // Cada operação trava os repositórios que usa, confere se as entidades envolvidas ainda
+    // existem, grava seu registro no journal e só então altera as coleções em memória; ao
+    // liberar as travas, registra sua latência na métrica correspondente.
+    // Operações que alteram os mesmos repositórios são serializadas pelas travas, então a
+    // ordem no journal é a mesma em que foram aplicadas.
+
+    /**
+     * Adiciona um usuário
+     * @param id ID do novo usuário (NOVO aloca o próximo ID livre)
+     * @return O usuário criado ou null se a matrícula já estiver cadastrada
+     */
+    static Usuario aplicarCadastroUsuario(int id, String nome, String departamento, int matricula) {
+        long inicio = System.nanoTime();
+        travar(0, USUARIOS);
+        try {
+            if (indiceMatricula.contem(matricula)) return null;
+            if (id == NOVO) id = usuarios.proximoId();
+            if (registrando()) {
+                gravar(journal.iniciar(OP_CADASTRO_USUARIO).inteiro(id).texto(nome).texto(departamento).inteiro(matricula));
+            }
+            Usuario usuario = new Usuario(nome, departamento, matricula);
+            usuarios.inserirEm(id, usuario);
+            indiceMatricula.inserir(usuario);
+            indexarBusca(usuario);
+            return usuario;
+        } finally {
+            destravar(0, USUARIOS);
+            medir(METRICA_CADASTRO_USUARIO, inicio);
+        }
+    }
+
+    /**
+     * Substitui os dados de um usuário, reindexando a matrícula se ela mudou
+     * Se o departamento mudou, os empréstimos do usuário passam a contar no novo departamento
+     * @return false se o usuário foi removido ou a nova matrícula passou a pertencer a outro usuário
+     */
+    static boolean aplicarAtualizacaoUsuario(Usuario usuario, String nome, String departamento, int matricula) {
+        long inicio = System.nanoTime();
+        travar(EMPRESTIMOS, USUARIOS);
+        try {
+            if (!usuarios.contem(usuario)) return false;
+            if (matricula != usuario.getMatricula() && indiceMatricula.contem(matricula)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_ATUALIZACAO_USUARIO).inteiro(usuario.getId())
+                        .texto(nome).texto(departamento).inteiro(matricula));
+            }
+            int codigoDepartamento = Usuario.DEPARTAMENTOS.codificar(departamento);
+            if (codigoDepartamento != usuario.getCodigoDepartamento()) {
+                for (Emprestimo emp : referencias.porUsuario(usuario.getId())) {
+                    agregados.mudarDepartamento(emp.getId(), codigoDepartamento);
+                }
+            }
+            usuario.setNome(nome);
+            usuario.setDepartamento(departamento);
+            indexarBusca(usuario);
+            if (matricula != usuario.getMatricula()) {
+                indiceMatricula.remover(usuario.getMatricula());
+                usuario.setMatricula(matricula);
+                indiceMatricula.inserir(usuario);
+            }
+            return true;
+        } finally {
+            destravar(EMPRESTIMOS, USUARIOS);
+            medir(METRICA_ATUALIZACAO_USUARIO, inicio);
+        }
+    }
+
+    /**
+     * Remove um usuário do armazenamento e do índice de matrículas
+     * Empréstimos que ainda o referenciem (só em journals anteriores à remoção em cascata)
+     * saem dos índices do usuário
+     * @return false se o usuário já havia sido removido
+     */
+    static boolean aplicarRemocaoUsuario(Usuario usuario) {
+        long inicio = System.nanoTime();
+        travar(0, USUARIOS | EMPRESTIMOS);
+        try {
+            if (!usuarios.contem(usuario)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_REMOCAO_USUARIO).inteiro(usuario.getId()));
+            }
+            usuarios.remover(usuario.getId());
+            emprestimos.desligarUsuario(usuario, referencias.porUsuario(usuario.getId()));
+            indiceMatricula.remover(usuario.getMatricula());
+            buscaUsuarios.remover(usuario.getId());
+            abertos.desvincularUsuario(usuario.getId());
+            referencias.desvincularUsuario(usuario.getId());
+            return true;
+        } finally {
+            destravar(0, USUARIOS | EMPRESTIMOS);
+            medir(METRICA_REMOCAO_USUARIO, inicio);
+        }
+    }
+
+    /**
+     * Remove um usuário junto com o histórico de empréstimos dele e as respectivas devoluções
+     * Cada remoção é gravada como uma operação própria, com todos os repositórios travados
+     * do início ao fim; os empréstimos vêm do índice reverso, em O(k)
+     * @return false se o usuário já havia sido removido ou tem empréstimos em aberto
+     */
+    static boolean aplicarRemocaoUsuarioEmCascata(Usuario usuario) {
+        long inicio = System.nanoTime();
+        travar(0, TODOS);
+        try {
+            if (!usuarios.contem(usuario) || abertos.totalPorUsuario(usuario.getId()) > 0) return false;
+            for (Emprestimo emp : referencias.porUsuario(usuario.getId())) removerHistorico(emp);
+            return aplicarRemocaoUsuario(usuario);
+        } finally {
+            destravar(0, TODOS);
+            medir(METRICA_REMOCAO_USUARIO_CASCATA, inicio);
+        }
+    }
+
+    /**
+     * Adiciona um novo EPI
+     * @param id ID do novo EPI (NOVO aloca o próximo ID livre)
+     * @return O EPI criado
+     */
+    static EPI aplicarCadastroEPI(int id, String nome, int quantidade, int dataValidade) {
+        long inicio = System.nanoTime();
+        travar(0, EPIS);
+        try {
+            if (id == NOVO) id = epis.proximoId();
+            if (registrando()) {
+                gravar(journal.iniciar(OP_CADASTRO_EPI).inteiro(id).texto(nome).inteiro(quantidade).inteiro(dataValidade));
+            }
+            EPI epi = new EPI(nome, quantidade, dataValidade);
+            epis.inserirEm(id, epi);
+            indiceValidade.inserir(epi);
+            buscaEpis.indexar(id, nome);
+            return epi;
+        } finally {
+            destravar(0, EPIS);
+            medir(METRICA_CADASTRO_EPI, inicio);
+        }
+    }
+
+    /**
+     * Substitui o nome e a validade de um EPI e corrige o estoque
+     * O estoque recebe uma variação, e não um valor absoluto: os empréstimos e devoluções feitos
+     * entre a leitura da quantidade exibida e a atualização continuam descontados
+     * @param variacao Unidades somadas ao estoque disponível (negativa retira, 0 mantém)
+     * @return false se o EPI foi removido
+     */
+    static boolean aplicarAtualizacaoEPI(EPI epi, String nome, int variacao, int dataValidade) {
+        long inicio = System.nanoTime();
+        travar(0, EPIS);
+        try {
+            if (!epis.contem(epi)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_CORRECAO_EPI).inteiro(epi.getId())
+                        .texto(nome).inteiro(variacao).inteiro(dataValidade));
+            }
+            epi.setNome(nome);
+            buscaEpis.indexar(epi.getId(), nome);
+            epi.ajustar(variacao);
+            indiceValidade.remover(epi);
+            epi.setDataValidade(dataValidade);
+            indiceValidade.inserir(epi);
+            return true;
+        } finally {
+            destravar(0, EPIS);
+            medir(METRICA_ATUALIZACAO_EPI, inicio);
+        }
+    }
+
+    /**
+     * Define o estoque mínimo e o ponto de reposição de um EPI
+     * @param estoqueMinimo Quantidade do nível crítico ou EPI.SEM_LIMITE
+     * @param pontoReposicao Quantidade do nível de reposição ou EPI.SEM_LIMITE
+     * @return false se o EPI foi removido
+     */
+    static boolean aplicarLimitesEPI(EPI epi, int estoqueMinimo, int pontoReposicao) {
+        long inicio = System.nanoTime();
+        travar(0, EPIS);
+        try {
+            if (!epis.contem(epi)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_LIMITES_EPI).inteiro(epi.getId())
+                        .inteiro(estoqueMinimo).inteiro(pontoReposicao));
+            }
+            epi.setLimites(estoqueMinimo, pontoReposicao);
+            return true;
+        } finally {
+            destravar(0, EPIS);
+            medir(METRICA_LIMITES_EPI, inicio);
+        }
+    }
+
+    /**
+     * Remove um EPI do armazenamento
+     * Empréstimos que ainda o referenciem (só em journals anteriores à remoção em cascata)
+     * saem dos índices do EPI
+     * @return false se o EPI já havia sido removido
+     */
+    static boolean aplicarRemocaoEPI(EPI epi) {
+        long inicio = System.nanoTime();
+        travar(0, EPIS | EMPRESTIMOS);
+        try {
+            if (!epis.contem(epi)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_REMOCAO_EPI).inteiro(epi.getId()));
+            }
+            epis.remover(epi.getId());
+            emprestimos.desligarEpi(epi, referencias.porEpi(epi.getId()));
+            indiceValidade.remover(epi);
+            buscaEpis.remover(epi.getId());
+            abertos.desvincularEpi(epi.getId());
+            referencias.desvincularEpi(epi.getId());
+            return true;
+        } finally {
+            destravar(0, EPIS | EMPRESTIMOS);
+            medir(METRICA_REMOCAO_EPI, inicio);
+        }
+    }
+
+    /**
+     * Remove um EPI junto com o histórico de empréstimos dele e as respectivas devoluções
+     * Mesmo procedimento de aplicarRemocaoUsuarioEmCascata
+     * @return false se o EPI já havia sido removido ou tem empréstimos em aberto
+     */
+    static boolean aplicarRemocaoEPIEmCascata(EPI epi) {
+        long inicio = System.nanoTime();
+        travar(0, TODOS);
+        try {
+            if (!epis.contem(epi) || abertos.totalPorEpi(epi.getId()) > 0) return false;
+            for (Emprestimo emp : referencias.porEpi(epi.getId())) removerHistorico(emp);
+            return aplicarRemocaoEPI(epi);
+        } finally {
+            destravar(0, TODOS);
+            medir(METRICA_REMOCAO_EPI_CASCATA, inicio);
+        }
+    }
+
+    /**
+     * Remove um empréstimo já devolvido e a sua devolução
+     * O empréstimo sai primeiro, para que remover a devolução não o reabra
+     */
+    static void removerHistorico(Emprestimo emp) {
+        Devolucao dev = emp.getDevolucao();
+        aplicarRemocaoEmprestimo(emp);
+        if (dev != null) aplicarRemocaoDevolucao(dev);
+    }
+
+    /**
+     * Adiciona um empréstimo, reservando uma unidade do estoque do EPI
+     * Os empréstimos de todas as sessões são serializados pela trava de escrita dos empréstimos,
+     * inclusive os do mesmo EPI (a reserva por CAS não os paraleliza; ver travar)
+     * A validade e o estoque são verificados com os EPIs travados, então nenhuma entrada nem
+     * atualização concorrente da validade empresta um lote vencido. A reserva é feita antes de
+     * gravar no journal; sem estoque nada é gravado, e se a gravação falhar a unidade é liberada
+     * @param id ID do novo empréstimo (NOVO aloca o próximo ID livre)
+     * @return O empréstimo criado ou null se o usuário ou o EPI foram removidos
+     * @throws EmprestimoRecusado Se o EPI está vencido ou sem estoque disponível
+     */
+    static Emprestimo aplicarCadastroEmprestimo(int id, Usuario usuario, EPI epi,
+                                                        LocalDate dataEmprestimo, LocalDate dataDevolucaoPrevista) {
+        long inicio = System.nanoTime();
+        travar(USUARIOS | EPIS, EMPRESTIMOS);
+        try {
+            if (!usuarios.contem(usuario) || !epis.contem(epi)) return null;
+            verificarValidade(epi);
+            if (!epi.reservar()) throw EmprestimoRecusado.semEstoque();
+            if (id == NOVO) id = emprestimos.proximoId();
+            Emprestimo emp;
+            try {
+                if (registrando()) {
+                    gravar(journal.iniciar(OP_CADASTRO_EMPRESTIMO).inteiro(id).inteiro(usuario.getId()).inteiro(epi.getId())
+                            .data(dataEmprestimo).data(dataDevolucaoPrevista));
+                }
+                emp = emprestimos.inserirEm(id, usuario, epi, dataEmprestimo, dataDevolucaoPrevista);
+            } catch (RuntimeException e) {
+                epi.liberar(); // Sem empréstimo, a unidade volta ao estoque
+                throw e;
+            }
+            referencias.vincular(emp);
+            agregados.registrar(id, usuario.getCodigoDepartamento(), dataEmprestimo);
+            indexarEmprestimoAberto(emp);
+            return emp;
+        } finally {
+            destravar(USUARIOS | EPIS, EMPRESTIMOS);
+            medir(METRICA_CADASTRO_EMPRESTIMO, inicio);
+        }
+    }
+
+    /**
+     * Substitui os dados de um empréstimo
+     * Usuário ou EPI null mantêm a referência atual
+     * @return false se o empréstimo, o novo usuário ou o novo EPI foram removidos
+     * @throws EmprestimoRecusado Se o novo EPI está vencido ou, com o empréstimo em aberto, sem estoque
+     */
+    static boolean aplicarAtualizacaoEmprestimo(Emprestimo emp, Usuario usuario, EPI epi,
+                                                        LocalDate dataEmprestimo, LocalDate dataDevolucaoPrevista) {
+        long inicio = System.nanoTime();
+        travar(USUARIOS | EPIS, EMPRESTIMOS);
+        try {
+            if (!emprestimos.contem(emp)) return false;
+            if ((usuario != null && !usuarios.contem(usuario)) || (epi != null && !epis.contem(epi))) return false;
+            if (epi != null && epi != emp.getEpi()) {
+                verificarValidade(epi);
+                // Com os empréstimos travados para escrita, nenhuma reserva concorrente muda o estoque
+                if (emp.getDevolucao() == null && epi.getQuantidade() <= 0) throw EmprestimoRecusado.semEstoque();
+            }
+            if (registrando()) {
+                gravar(journal.iniciar(OP_ATUALIZACAO_EMPRESTIMO).inteiro(emp.getId())
+                        .inteiro(idOpcional(usuario)).inteiro(idOpcional(epi))
+                        .data(dataEmprestimo).data(dataDevolucaoPrevista));
+            }
+            // Um empréstimo em aberto é reposicionado nas listas do novo usuário/EPI e reagendado;
+            // a unidade volta ao estoque do EPI anterior e sai do novo
+            boolean aberto = emp.getDevolucao() == null;
+            alteracoesEmprestimos++;
+            if (aberto) fecharEmprestimo(emp);
+            referencias.desvincular(emp);
+            agregados.desregistrar(emp.getId());
+            if (usuario != null) emp.setUsuario(usuario);
+            if (epi != null) emp.setEpi(epi);
+            emp.setDataEmprestimo(dataEmprestimo);
+            emp.setDataDevolucaoPrevista(dataDevolucaoPrevista);
+            referencias.vincular(emp);
+            agregados.registrar(emp.getId(), emp.getUsuario().getCodigoDepartamento(), dataEmprestimo);
+            if (aberto) abrirEmprestimo(emp);
+            return true;
+        } finally {
+            destravar(USUARIOS | EPIS, EMPRESTIMOS);
+            medir(METRICA_ATUALIZACAO_EMPRESTIMO, inicio);
+        }
+    }
+
+    /**
+     * Recusa o empréstimo de um EPI vencido; chamado com os EPIs travados
+     * Na reprodução do journal não verifica: a operação foi aceita quando o lote ainda valia
+     */
+    static void verificarValidade(EPI epi) {
+        if (!reproduzindo && indiceValidade.vencido(epi, (int) LocalDate.now().toEpochDay())) {
+            throw EmprestimoRecusado.vencido(epi);
+        }
+    }
+
+    /**
+     * Remove um empréstimo do armazenamento
+     * @return false se o empréstimo já havia sido removido
+     */
+    static boolean aplicarRemocaoEmprestimo(Emprestimo emp) {
+        long inicio = System.nanoTime();
+        travar(EPIS, EMPRESTIMOS);
+        try {
+            if (!emprestimos.contem(emp)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_REMOCAO_EMPRESTIMO).inteiro(emp.getId()));
+            }
+            alteracoesEmprestimos++;
+            emprestimos.remover(emp.getId());
+            referencias.desvincular(emp);
+            if (emp.getDevolucao() == null) fecharEmprestimo(emp);
+            agregados.desregistrar(emp.getId());
+            return true;
+        } finally {
+            destravar(EPIS, EMPRESTIMOS);
+            medir(METRICA_REMOCAO_EMPRESTIMO, inicio);
+        }
+    }
+
+    /**
+     * Adiciona uma devolução já validada
+     * @param id ID da nova devolução (NOVO aloca o próximo ID livre)
+     * @return A devolução criada ou null se o empréstimo foi removido ou já tem devolução
+     */
+    static Devolucao aplicarCadastroDevolucao(int id, Emprestimo emp, LocalDate dataDevolucao, String observacao) {
+        long inicio = System.nanoTime();
+        travar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+        try {
+            if (!emprestimos.contem(emp) || emp.getDevolucao() != null) return null;
+            if (id == NOVO) id = devolucoes.proximoId();
+            if (registrando()) {
+                gravar(journal.iniciar(OP_CADASTRO_DEVOLUCAO).inteiro(id).inteiro(emp.getId())
+                        .data(dataDevolucao).texto(observacao));
+            }
+            Devolucao dev = devolucoes.inserirEm(id, emp, dataDevolucao, observacao);
+            vincularDevolucao(emp, dev);
+            return dev;
+        } finally {
+            destravar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+            medir(METRICA_CADASTRO_DEVOLUCAO, inicio);
+        }
+    }
+
+    /**
+     * Substitui os dados de uma devolução
+     * Empréstimo null mantém a referência atual
+     * @return false se a devolução foi removida ou o novo empréstimo foi removido ou já tem devolução
+     */
+    static boolean aplicarAtualizacaoDevolucao(Devolucao dev, Emprestimo emp, LocalDate dataDevolucao,
+                                                       String observacao) {
+        long inicio = System.nanoTime();
+        travar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+        try {
+            if (!devolucoes.contem(dev)) return false;
+            boolean trocaEmprestimo = emp != null && !emp.equals(dev.getEmprestimo());
+            if (trocaEmprestimo && (!emprestimos.contem(emp) || emp.getDevolucao() != null)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_ATUALIZACAO_DEVOLUCAO).inteiro(dev.getId()).inteiro(idOpcional(emp))
+                        .data(dataDevolucao).texto(observacao));
+            }
+            alteracoesEmprestimos++;
+            if (trocaEmprestimo) {
+                desvincularDevolucao(dev.getEmprestimo(), dev);
+                dev.setEmprestimo(emp);
+                vincularDevolucao(emp, dev);
+            }
+            dev.setDataDevolucao(dataDevolucao);
+            dev.setObservacao(observacao);
+            return true;
+        } finally {
+            destravar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+            medir(METRICA_ATUALIZACAO_DEVOLUCAO, inicio);
+        }
+    }
+
+    /**
+     * Remove uma devolução do armazenamento
+     * @return false se a devolução já havia sido removida
+     */
+    static boolean aplicarRemocaoDevolucao(Devolucao dev) {
+        long inicio = System.nanoTime();
+        travar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+        try {
+            if (!devolucoes.contem(dev)) return false;
+            if (registrando()) {
+                gravar(journal.iniciar(OP_REMOCAO_DEVOLUCAO).inteiro(dev.getId()));
+            }
+            alteracoesEmprestimos++;
+            devolucoes.remover(dev.getId());
+            desvincularDevolucao(dev.getEmprestimo(), dev);
+            return true;
+        } finally {
+            destravar(EPIS, EMPRESTIMOS | DEVOLUCOES);
+            medir(METRICA_REMOCAO_DEVOLUCAO, inicio);
+        }
+    }
+
+    /**
+     * Sela no histórico arquivado os empréstimos devolvidos feitos antes do mês corte
+     * (ano * 12 + mês - 1): monta um segmento por mês com os repositórios travados só para leitura,
+     * grava (comprime e sincroniza) sem travas e aplica a selagem, que os tira da memória.
+     * Os segmentos são gravados antes do journal; se a operação não chegar ao journal ou os empréstimos
+     * mudarem durante a gravação, eles ficam fora da lista de segmentos válidos e são apagados depois
+     * do próximo snapshot. A trava dos snapshots fica com a selagem até o fim, para que a limpeza do
+     * histórico não apague segmentos ainda não aplicados (e para que duas selagens não gravem a mesma versão)
+     * @return Quantidade de empréstimos selados (0 se eles mudaram e a selagem fica para a próxima vez)
+     */
+    static int selarHistorico(int corte) throws IOException {
+        long inicio = System.nanoTime();
+        gravandoSnapshot.lock();
+        try {
+            long[] selaveis;
+            long alteracoes;
+            ArrayList<HistoricoArquivado.Montagem> montagens = new ArrayList<>();
+            travar(TODOS, 0);
+            try {
+                selaveis = selaveis(corte);
+                if (selaveis.length == 0) return 0;
+                alteracoes = alteracoesEmprestimos;
+                HistoricoArquivado.Montagem montagem = null;
+                for (long chave : selaveis) {
+                    int mes = (int) (chave >> 32);
+                    if (montagem == null || montagem.getMes() != mes) {
+                        montagem = historico.montagem(mes);
+                        montagens.add(montagem);
+                    }
+                    Emprestimo emp = emprestimos.obter((int) chave);
+                    montagem.adicionar(emp, emp.getDevolucao());
+                }
+            } finally {
+                destravar(TODOS, 0);
+            }
+            ArrayList<HistoricoArquivado.Segmento> segmentos = new ArrayList<>();
+            for (HistoricoArquivado.Montagem montagem : montagens) segmentos.add(historico.gravar(montagem));
+            return aplicarSelagem(corte, segmentos, selaveis, alteracoes) ? selaveis.length : 0;
+        } finally {
+            gravandoSnapshot.unlock();
+            METRICA_SELAGEM.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Tira da memória os empréstimos devolvidos feitos antes do mês corte, já gravados nos
+     * segmentos informados, que passam a ser as versões válidas dos seus meses
+     * Os empréstimos saem das tabelas e dos índices sem passar pelo estoque (já estão fechados)
+     * @return false se a quantidade de empréstimos não corresponde aos registros novos dos segmentos
+     */
+    static boolean aplicarSelagem(int corte, List<HistoricoArquivado.Segmento> segmentos) {
+        return aplicarSelagem(corte, segmentos, null, 0);
+    }
+
+    /**
+     * Como aplicarSelagem, conferindo também que os empréstimos selecionados na montagem dos
+     * segmentos (gravados) não mudaram desde então
+     * @param gravados Chaves dos empréstimos gravados nos segmentos (null não confere)
+     * @param alteracoes Valor de alteracoesEmprestimos na montagem dos segmentos
+     */
+    static boolean aplicarSelagem(int corte, List<HistoricoArquivado.Segmento> segmentos, long[] gravados,
+                                  long alteracoes) {
+        travar(0, TODOS);
+        try {
+            long[] selaveis = selaveis(corte);
+            if (gravados != null && (alteracoes != alteracoesEmprestimos || !Arrays.equals(gravados, selaveis))) {
+                return false;
+            }
+            long novos = 0;
+            for (HistoricoArquivado.Segmento segmento : segmentos) {
+                novos += segmento.getRegistros() - historico.registros(segmento.getMes());
+            }
+            if (novos != selaveis.length) return false;
+            if (registrando()) {
+                Journal.Registro registro = journal.iniciar(OP_SELAGEM_HISTORICO).inteiro(corte).inteiro(segmentos.size());
+                for (HistoricoArquivado.Segmento segmento : segmentos) {
+                    registro.inteiro(segmento.getMes()).inteiro(segmento.getVersao()).inteiro(segmento.getRegistros());
+                }
+                gravar(registro);
+            }
+            for (HistoricoArquivado.Segmento segmento : segmentos) historico.registrar(segmento);
+            for (long chave : selaveis) arquivarEmprestimo(emprestimos.obter((int) chave));
+            return true;
+        } finally {
+            destravar(0, TODOS);
+        }
+    }
+
+    /**
+     * Empréstimos devolvidos feitos antes do mês corte, como (mês << 32 | ID) em ordem de mês e de ID
+     * Devoluções de empréstimos já removidos ficam em memória
+     */
+    static long[] selaveis(int corte) {
+        int diaCorte = HistoricoArquivado.primeiroDia(corte);
+        long[] chaves = new long[16];
+        int quantidade = 0;
+        for (int id = 0; id < emprestimos.limite(); id++) {
+            if (!emprestimos.ocupado(id) || emprestimos.idDevolucao(id) < 0) continue;
+            int data = emprestimos.dataEmprestimo(id);
+            if (data >= diaCorte) continue;
+            if (quantidade == chaves.length) chaves = Arrays.copyOf(chaves, quantidade * 2);
+            chaves[quantidade++] = (long) HistoricoArquivado.mes(data) << 32 | id;
+        }
+        chaves = Arrays.copyOf(chaves, quantidade);
+        Arrays.sort(chaves);
+        return chaves;
+    }
+
+    /**
+     * Tira da memória um empréstimo devolvido que já está num segmento do histórico, com a sua devolução
+     */
+    static void arquivarEmprestimo(Emprestimo emp) {
+        Devolucao dev = emp.getDevolucao();
+        referencias.desvincular(emp);
+        agregados.desregistrar(emp.getId());
+        emp.setDevolucao(null); // Para que a remoção não guarde o empréstimo na área de removidos
+        emprestimos.remover(emp.getId());
+        devolucoes.remover(dev.getId());
+    }
+
+    /**
+     * Indexa (ou reindexa) o nome e o departamento do usuário para a busca aproximada
+     */
+    static void indexarBusca(Usuario usuario) {
+        buscaUsuarios.indexar(usuario.getId(), usuario.getNome() + " " + usuario.getDepartamento());
+    }
+
+    /**
+     * Associa a devolução ao empréstimo, que deixa de estar em aberto
+     */
+    static void vincularDevolucao(Emprestimo emp, Devolucao dev) {
+        emp.setDevolucao(dev);
+        fecharEmprestimo(emp);
+    }
+
+    /**
+     * Desfaz a associação; o empréstimo volta a ficar em aberto se ainda existir
+     */
+    static void desvincularDevolucao(Emprestimo emp, Devolucao dev) {
+        if (!dev.equals(emp.getDevolucao())) return;
+        emp.setDevolucao(null);
+        if (emprestimos.contem(emp)) abrirEmprestimo(emp);
+    }
+
+    /**
+     * Reabre um empréstimo: a unidade sai do estoque (mesmo que fique negativo, pois o item
+     * já está com o usuário) e o empréstimo volta aos índices
+     */
+    static void abrirEmprestimo(Emprestimo emp) {
+        emp.getEpi().retirar();
+        indexarEmprestimoAberto(emp);
+    }
+
+    /**
+     * Encerra um empréstimo em aberto: a unidade volta ao estoque e o empréstimo sai dos índices
+     */
+    static void fecharEmprestimo(Emprestimo emp) {
+        emp.getEpi().liberar();
+        abertos.fechar(emp);
+        vencimentos.cancelar(emp.getId());
+        agregados.fechar(emp.getId()); // Depois de sair da agenda, para não voltar a ser marcado como atrasado
+    }
+
+    /**
+     * Coloca o empréstimo no índice de abertos e na agenda de vencimentos, sem mexer no estoque
+     */
+    static void indexarEmprestimoAberto(Emprestimo emp) {
+        abertos.abrir(emp);
+        agregados.abrir(emp.getId()); // Antes de agendar, que pode marcá-lo como atrasado na hora
+        vencimentos.agendar(emp.getId(), (int) emp.getDataDevolucaoPrevista().toEpochDay());
+    }
+
+    // ==================== CONSULTAS ====================
+
+    /**
+     * Busca um usuário pela matrícula com o repositório de usuários travado para leitura
+     * @return O usuário ou null se a matrícula não estiver cadastrada
+     */
+    static Usuario buscarUsuario(int matricula) {
+        travar(USUARIOS, 0);
+        try {
+            return indiceMatricula.buscar(matricula);
+        } finally {
+            destravar(USUARIOS, 0);
+        }
+    }
+
+    /**
+     * Busca uma entidade pelo ID com o seu repositório travado para leitura
+     * @return A entidade ou null se o ID não existir
+     */
+    static <T extends Entidade> T obter(Repositorio<T> slab, int id) {
+        slab.trava().readLock().lock();
+        try {
+            return slab.obter(id);
+        } finally {
+            slab.trava().readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula e escreve os relatórios dos empréstimos feitos entre primeiroDia e ultimoDia (dias
+     * epoch, inclusive). Os repositórios ficam travados para leitura só enquanto o retrato é
+     * tirado; o cálculo, que usa todos os núcleos e lê os segmentos arquivados dos meses do
+     * período, percorre o retrato sem trava e as alterações seguem sem esperar por ele
+     * @return Quantidade de empréstimos do período (nada é escrito se for 0)
+     */
+    static long gerarRelatorio(StringBuilder texto, int primeiroDia, int ultimoDia) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            TabelaEmprestimos.Retrato retrato;
+            List<HistoricoArquivado.Segmento> segmentos;
+            travar(TODOS, 0);
+            try {
+                retrato = emprestimos.retratar();
+                segmentos = historico.listar();
+            } finally {
+                destravar(TODOS, 0);
+                METRICA_RETRATO.registrarDesde(inicio);
+            }
+            Relatorios.Totais totais = relatorios.calcular(retrato, segmentos, primeiroDia, ultimoDia,
+                    (int) LocalDate.now().toEpochDay());
+            if (totais.getEmprestimos() == 0) return 0;
+            travar(USUARIOS, 0);
+            try {
+                relatorios.renderizar(texto, totais, retrato);
+            } finally {
+                destravar(USUARIOS, 0);
+            }
+            return totais.getEmprestimos();
+        } finally {
+            METRICA_RELATORIO.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Monta as linhas "[ID] entidade" de um trecho da listagem com os repositórios travados para leitura
+     * A saída só é escrita depois de liberar as travas, para que uma sessão lenta não bloqueie as outras
+     * @param texto Destino das linhas
+     * @param leitura Repositórios lidos pela listagem (incluindo os referenciados em renderizar)
+     * @param itens Fornece os itens a listar; chamado já com as travas obtidas
+     * @param inicio Posição de retomada do primeiro item a escrever (ver Listagem)
+     * @param limite Quantidade máxima de itens a escrever
+     * @return Quantidade total de itens da listagem (escritos ou não)
+     */
+    static <T extends Entidade> int listar(StringBuilder texto, int leitura,
+                                           Supplier<? extends Listagem<T>> itens, int inicio, int limite) {
+        travar(leitura, 0);
+        try {
+            Listagem<T> listagem = itens.get();
+            listagem.escrever(texto, inicio, limite);
+            return listagem.total();
+        } finally {
+            destravar(leitura, 0);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.io.IOException;
+
+/**
+ * Relatórios do histórico de empréstimos e devoluções de um período (pela data do empréstimo):
+ * consumo por tipo de EPI (o nome no dicionário EPI.NOMES), duração média dos empréstimos
+ * devolvidos, taxa de atraso por departamento e maiores tomadores
+ *
+ * O cálculo lê um retrato da TabelaEmprestimos (colunas versionadas de um instante) e a lista
+ * de segmentos do mesmo instante, sem trava: empréstimos e devoluções continuam sendo feitos
+ * durante o relatório, que vê o histórico exatamente como estava quando o retrato foi tirado.
+ * As colunas do retrato são divididas em faixas de IDs calculadas em paralelo no
+ * ForkJoinPool comum. Cada faixa acumula os seus próprios contadores por tipo e por departamento
+ * em arrays indexados pelo código (sem travas e sem objetos por empréstimo), somados dois a dois
+ * no join. A contagem por usuário, grande demais para ser copiada em cada faixa, é um único
+ * AtomicIntegerArray compartilhado; com os empréstimos espalhados entre muitos usuários, os
+ * incrementos quase nunca disputam a mesma posição. Assim o cálculo escala com os núcleos até o
+ * limite da banda de memória. Os meses selados no histórico arquivado que caem no período são
+ * lidos dos seus segmentos e calculados em paralelo, uma tarefa por mês; ali o tomador é o usuário
+ * ativo com a mesma matrícula (os usuários são travados só para essa busca)
+ */
+class Relatorios {
+    // Maiores tomadores exibidos
+    private static final int TOP_TOMADORES = 10;
+    // Menor faixa de IDs de uma tarefa (abaixo disso, dividir custa mais que percorrer)
+    private static final int FAIXA_MINIMA = 1 << 15;
+    // Faixas por thread do pool, para que threads que terminam antes peguem trabalho das outras
+    private static final int FAIXAS_POR_THREAD = 4;
+
+    private final Slab<Usuario> usuarios;
+    private final IndiceMatricula indiceMatricula;
+    private final HistoricoArquivado historico;
+
+    /**
+     * Construtor da classe Relatorios
+     * @param usuarios Usuários (a sua trava protege o índice de matrículas)
+     * @param indiceMatricula Índice que leva os tomadores do histórico arquivado aos usuários ativos
+     * @param historico Meses selados, lidos quando fazem parte do período
+     */
+    public Relatorios(Slab<Usuario> usuarios, IndiceMatricula indiceMatricula, HistoricoArquivado historico) {
+        this.usuarios = usuarios;
+        this.indiceMatricula = indiceMatricula;
+        this.historico = historico;
+    }
+
+    /**
+     * Contadores de um período (ou de uma faixa de IDs dele)
+     */
+    static final class Totais {
+        long emprestimos;
+        long arquivados; // Dos empréstimos, quantos vieram do histórico arquivado
+        long devolvidos;
+        long diasEmprestados; // Soma das durações dos empréstimos devolvidos
+        final int[] porTipo;  // Por código de nome de EPI
+        final int[] devolvidosPorTipo;
+        final long[] diasPorTipo;
+        final int[] porDepartamento; // Por código de departamento
+        final int[] atrasadosPorDepartamento;
+        final AtomicIntegerArray porUsuario; // Por ID de usuário, compartilhado entre as faixas (removidos não contam)
+
+        Totais(int tipos, int departamentos, AtomicIntegerArray porUsuario) {
+            porTipo = new int[tipos];
+            devolvidosPorTipo = new int[tipos];
+            diasPorTipo = new long[tipos];
+            porDepartamento = new int[departamentos];
+            atrasadosPorDepartamento = new int[departamentos];
+            this.porUsuario = porUsuario;
+        }
+
+        public long getEmprestimos() { return emprestimos; }
+
+        void somar(Totais outro) {
+            emprestimos += outro.emprestimos;
+            arquivados += outro.arquivados;
+            devolvidos += outro.devolvidos;
+            diasEmprestados += outro.diasEmprestados;
+            for (int i = 0; i < porTipo.length; i++) {
+                porTipo[i] += outro.porTipo[i];
+                devolvidosPorTipo[i] += outro.devolvidosPorTipo[i];
+                diasPorTipo[i] += outro.diasPorTipo[i];
+            }
+            for (int i = 0; i < porDepartamento.length; i++) {
+                porDepartamento[i] += outro.porDepartamento[i];
+                atrasadosPorDepartamento[i] += outro.atrasadosPorDepartamento[i];
+            }
+        }
+    }
+
+    /**
+     * Calcula os totais dos empréstimos feitos entre primeiroDia e ultimoDia (dias epoch, inclusive)
+     * Um empréstimo está atrasado se foi devolvido depois da data prevista ou se, ainda em aberto,
+     * a data prevista já passou
+     * @param retrato Retrato dos empréstimos em memória
+     * @param segmentos Segmentos válidos no instante do retrato
+     * @param hoje Dia epoch usado para os empréstimos em aberto
+     */
+    public Totais calcular(TabelaEmprestimos.Retrato retrato, List<HistoricoArquivado.Segmento> segmentos,
+                           int primeiroDia, int ultimoDia, int hoje) throws IOException {
+        // Os segmentos são lidos antes de dimensionar os contadores: a leitura inclui nos
+        // dicionários os nomes de EPI e os departamentos que só existem no histórico arquivado
+        List<HistoricoArquivado.Particao> particoes = historico.carregar(segmentos, primeiroDia, ultimoDia);
+        int tipos = EPI.NOMES.tamanho();
+        int departamentos = Usuario.DEPARTAMENTOS.tamanho();
+        AtomicIntegerArray porUsuario = new AtomicIntegerArray(retrato.limiteUsuarios());
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ArrayList<ForkJoinTask<Totais>> arquivados = new ArrayList<>(particoes.size());
+        for (HistoricoArquivado.Particao particao : particoes) {
+            int[] usuarioAtivo = usuariosAtivos(retrato, particao);
+            arquivados.add(pool.submit(() -> calcular(particao, usuarioAtivo, primeiroDia, ultimoDia,
+                    tipos, departamentos, porUsuario)));
+        }
+        int limite = retrato.limite();
+        int faixa = Math.max(FAIXA_MINIMA, limite / (pool.getParallelism() * FAIXAS_POR_THREAD) + 1);
+        Totais totais = pool.invoke(new Faixa(retrato, primeiroDia, ultimoDia, hoje, 0, limite, faixa,
+                tipos, departamentos, porUsuario));
+        for (ForkJoinTask<Totais> tarefa : arquivados) totais.somar(tarefa.join());
+        return totais;
+    }
+
+    /**
+     * ID do usuário ativo com a matrícula de cada usuário da partição (-1 se não há), considerando
+     * só os usuários que já existiam no instante do retrato
+     */
+    private int[] usuariosAtivos(TabelaEmprestimos.Retrato retrato, HistoricoArquivado.Particao p) {
+        int[] usuarioAtivo = new int[p.matriculas.length];
+        usuarios.trava().readLock().lock();
+        try {
+            for (int u = 0; u < usuarioAtivo.length; u++) {
+                Usuario usuario = indiceMatricula.buscar(p.matriculas[u]);
+                int id = usuario == null ? -1 : usuario.getId();
+                usuarioAtivo[u] = id >= 0 && id < retrato.limiteUsuarios() && retrato.usuario(id) == usuario ? id : -1;
+            }
+        } finally {
+            usuarios.trava().readLock().unlock();
+        }
+        return usuarioAtivo;
+    }
+
+    /**
+     * Calcula os empréstimos de um mês selado (todos devolvidos) feitos dentro do período
+     */
+    private Totais calcular(HistoricoArquivado.Particao p, int[] usuarioAtivo, int primeiroDia, int ultimoDia,
+                            int tipos, int departamentos, AtomicIntegerArray porUsuario) {
+        Totais t = new Totais(tipos, departamentos, porUsuario);
+        for (int i = 0; i < p.registros; i++) {
+            int data = p.dataEmprestimo[i];
+            if (data < primeiroDia || data > ultimoDia) continue;
+
+            int tipo = p.codigoNome[p.epi[i]];
+            int departamento = p.codigoDepartamento[p.usuario[i]];
+            int usuario = usuarioAtivo[p.usuario[i]];
+            int dias = p.dataDevolucao[i] - data;
+            t.emprestimos++;
+            t.arquivados++;
+            t.porTipo[tipo]++;
+            t.porDepartamento[departamento]++;
+            if (usuario >= 0) porUsuario.getAndIncrement(usuario);
+            t.devolvidos++;
+            t.diasEmprestados += dias;
+            t.devolvidosPorTipo[tipo]++;
+            t.diasPorTipo[tipo] += dias;
+            if (p.dataDevolucao[i] > p.dataPrevista[i]) t.atrasadosPorDepartamento[departamento]++;
+        }
+        return t;
+    }
+
+    /**
+     * Tarefa que calcula uma faixa de IDs, dividindo-a ao meio enquanto for maior que o tamanho de faixa
+     */
+    @SuppressWarnings("serial") // Nunca serializada
+    private static final class Faixa extends RecursiveTask<Totais> {
+        private final TabelaEmprestimos.Retrato emprestimos;
+        private final int primeiroDia, ultimoDia, hoje;
+        private final int inicio, fim, tamanhoFaixa;
+        private final int tipos, departamentos;
+        private final AtomicIntegerArray porUsuario;
+
+        Faixa(TabelaEmprestimos.Retrato emprestimos, int primeiroDia, int ultimoDia, int hoje, int inicio, int fim,
+              int tamanhoFaixa, int tipos, int departamentos, AtomicIntegerArray porUsuario) {
+            this.emprestimos = emprestimos;
+            this.primeiroDia = primeiroDia;
+            this.ultimoDia = ultimoDia;
+            this.hoje = hoje;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.tamanhoFaixa = tamanhoFaixa;
+            this.tipos = tipos;
+            this.departamentos = departamentos;
+            this.porUsuario = porUsuario;
+        }
+
+        private Faixa parte(int de, int ate) {
+            return new Faixa(emprestimos, primeiroDia, ultimoDia, hoje, de, ate, tamanhoFaixa, tipos, departamentos, porUsuario);
+        }
+
+        @Override
+        protected Totais compute() {
+            if (fim - inicio > tamanhoFaixa) {
+                int meio = (inicio + fim) >>> 1;
+                Faixa direita = parte(meio, fim);
+                direita.fork();
+                Totais totais = parte(inicio, meio).compute();
+                totais.somar(direita.join());
+                return totais;
+            }
+
+            Totais t = new Totais(tipos, departamentos, porUsuario);
+            for (int id = inicio; id < fim; id++) {
+                if (!emprestimos.ocupado(id)) continue;
+                int data = emprestimos.dataEmprestimo(id);
+                if (data < primeiroDia || data > ultimoDia) continue;
+
+                int tipo = emprestimos.codigoNome(id);
+                int departamento = emprestimos.codigoDepartamento(id);
+                int usuario = emprestimos.referenciaUsuario(id);
+                t.emprestimos++;
+                t.porTipo[tipo]++;
+                t.porDepartamento[departamento]++;
+                if (usuario >= 0) porUsuario.getAndIncrement(usuario);
+
+                int devolucao = emprestimos.idDevolucao(id);
+                boolean atrasado;
+                if (devolucao >= 0) {
+                    int dataDevolucao = emprestimos.dataDevolucao(devolucao);
+                    int dias = dataDevolucao - data;
+                    t.devolvidos++;
+                    t.diasEmprestados += dias;
+                    t.devolvidosPorTipo[tipo]++;
+                    t.diasPorTipo[tipo] += dias;
+                    atrasado = dataDevolucao > emprestimos.dataPrevista(id);
+                } else {
+                    atrasado = emprestimos.dataPrevista(id) < hoje;
+                }
+                if (atrasado) t.atrasadosPorDepartamento[departamento]++;
+            }
+            return t;
+        }
+    }
+
+    /**
+     * Escreve os quatro relatórios: resumo do período, consumo por tipo de EPI (do mais
+     * emprestado ao menos), atrasos por departamento (em ordem alfabética) e maiores tomadores
+     * Os tomadores são os usuários do retrato; deve ser chamado com os usuários travados para leitura
+     */
+    public void renderizar(StringBuilder destino, Totais t, TabelaEmprestimos.Retrato retrato) {
+        destino.append("Empréstimos: ").append(t.emprestimos);
+        if (t.arquivados > 0) destino.append(" (").append(t.arquivados).append(" do histórico arquivado)");
+        destino.append(" | Devolvidos: ").append(t.devolvidos).append(" | Duração média: ");
+        Colunas.decimal(destino, media(t.diasEmprestados, t.devolvidos), 0);
+        destino.append(" dia(s)\n");
+
+        destino.append("\nConsumo por tipo de EPI\n");
+        Colunas.esquerda(destino, "EPI", 20);
+        destino.append(" | Empréstimos | Devolvidos | Duração média (dias)\n");
+        ArrayList<Integer> tipos = new ArrayList<>();
+        for (int tipo = 0; tipo < t.porTipo.length; tipo++) {
+            if (t.porTipo[tipo] > 0) tipos.add(tipo);
+        }
+        tipos.sort((a, b) -> t.porTipo[a] != t.porTipo[b] ? Integer.compare(t.porTipo[b], t.porTipo[a])
+                : EPI.NOMES.texto(a).compareTo(EPI.NOMES.texto(b)));
+        for (int tipo : tipos) {
+            Colunas.esquerda(destino, EPI.NOMES.texto(tipo), 20);
+            destino.append(" | ");
+            Colunas.direita(destino, t.porTipo[tipo], 11);
+            destino.append(" | ");
+            Colunas.direita(destino, t.devolvidosPorTipo[tipo], 10);
+            destino.append(" | ");
+            Colunas.decimal(destino, media(t.diasPorTipo[tipo], t.devolvidosPorTipo[tipo]), 20);
+            destino.append('\n');
+        }
+
+        destino.append("\nAtrasos por departamento\n");
+        Colunas.esquerda(destino, "Departamento", 20);
+        destino.append(" | Empréstimos | Em atraso | Taxa de atraso (%)\n");
+        ArrayList<Integer> departamentos = new ArrayList<>();
+        for (int codigo = 0; codigo < t.porDepartamento.length; codigo++) {
+            if (t.porDepartamento[codigo] > 0) departamentos.add(codigo);
+        }
+        departamentos.sort((a, b) -> Usuario.DEPARTAMENTOS.texto(a).compareTo(Usuario.DEPARTAMENTOS.texto(b)));
+        for (int codigo : departamentos) {
+            Colunas.esquerda(destino, Usuario.DEPARTAMENTOS.texto(codigo), 20);
+            destino.append(" | ");
+            Colunas.direita(destino, t.porDepartamento[codigo], 11);
+            destino.append(" | ");
+            Colunas.direita(destino, t.atrasadosPorDepartamento[codigo], 9);
+            destino.append(" | ");
+            Colunas.decimal(destino, 100.0 * t.atrasadosPorDepartamento[codigo] / t.porDepartamento[codigo], 18);
+            destino.append('\n');
+        }
+
+        destino.append("\nMaiores tomadores\n");
+        Colunas.esquerda(destino, "Usuário", 20);
+        destino.append(" | Matrícula | Empréstimos\n");
+        for (int id : maiores(t.porUsuario, TOP_TOMADORES)) {
+            Usuario usuario = retrato.usuario(id);
+            Colunas.esquerda(destino, usuario.getNome(), 20);
+            destino.append(" |    ");
+            Colunas.zeros(destino, usuario.getMatricula(), 6);
+            destino.append(" | ");
+            Colunas.direita(destino, t.porUsuario.get(id), 11);
+            destino.append('\n');
+        }
+    }
+
+    /**
+     * Posições dos maiores valores positivos, do maior ao menor (empates pela menor posição),
+     * numa passada com inserção num array de tamanho quantidade
+     */
+    private static int[] maiores(AtomicIntegerArray valores, int quantidade) {
+        int[] posicoes = new int[quantidade];
+        int[] maiores = new int[quantidade];
+        int encontrados = 0;
+        for (int i = 0; i < valores.length(); i++) {
+            int valor = valores.get(i);
+            if (valor <= 0) continue;
+            if (encontrados == quantidade && valor <= maiores[quantidade - 1]) continue;
+            int j = Math.min(encontrados, quantidade - 1);
+            while (j > 0 && maiores[j - 1] < valor) {
+                posicoes[j] = posicoes[j - 1];
+                maiores[j] = maiores[j - 1];
+                j--;
+            }
+            posicoes[j] = i;
+            maiores[j] = valor;
+            if (encontrados < quantidade) encontrados++;
+        }
+        return Arrays.copyOf(posicoes, encontrados);
+    }
+
+    private static double media(long soma, long quantidade) {
+        return quantidade == 0 ? 0 : (double) soma / quantidade;
+    }
+}
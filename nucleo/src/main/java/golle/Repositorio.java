@@ -0,0 +1,158 @@
+package golle;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Base dos repositórios de entidades por ID estável
+ * O ID é a posição no armazenamento e não muda quando outras entidades são removidas.
+ * Posições liberadas entram em uma lista duplamente encadeada de livres e são
+ * reutilizadas por novos cadastros; inserção e remoção são O(1).
+ * As subclasses decidem como os dados de cada posição são guardados
+ */
+abstract class Repositorio<T extends Entidade> implements Iterable<T> {
+    protected static final int CAPACIDADE_INICIAL = 16;
+    private static final int OCUPADA = -2; // Marca em proximoLivre das posições em uso
+
+    private int[] proximoLivre = new int[CAPACIDADE_INICIAL];
+    private int[] anteriorLivre = new int[CAPACIDADE_INICIAL];
+    private int primeiroLivre = -1;
+    private int limite;  // Quantidade de posições já utilizadas (todo ID é menor que o limite)
+    private int tamanho;
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+
+    /**
+     * @param id ID procurado
+     * @return A entidade com o ID ou null se o ID estiver livre ou não existir
+     */
+    public abstract T obter(int id);
+
+    /**
+     * @param item Entidade procurada
+     * @return true se a entidade ainda está armazenada no seu ID (não foi removida)
+     */
+    public abstract boolean contem(T item);
+
+    /**
+     * Aumenta o armazenamento da subclasse para a nova capacidade
+     */
+    protected abstract void redimensionar(int capacidade);
+
+    /**
+     * @return O ID que o próximo cadastro receberá
+     */
+    public int proximoId() {
+        return primeiroLivre >= 0 ? primeiroLivre : limite;
+    }
+
+    /**
+     * Marca um ID como em uso (usado no cadastro, na reprodução do journal e na carga do snapshot)
+     * @param id ID livre a ser ocupado
+     */
+    protected final void ocupar(int id) {
+        if (id < 0) throw new IllegalArgumentException("ID inválido: " + id);
+        if (id >= limite) {
+            garantirCapacidade(id + 1);
+            // Posições puladas passam a ser livres
+            for (int livre = limite; livre < id; livre++) empilharLivre(livre);
+            limite = id + 1;
+        } else if (ocupado(id)) {
+            throw new IllegalStateException("ID já está em uso: " + id);
+        } else {
+            desencadearLivre(id);
+        }
+        proximoLivre[id] = OCUPADA;
+        tamanho++;
+    }
+
+    /**
+     * Libera um ID para reutilização
+     * @return false se o ID já estava livre
+     */
+    protected final boolean liberar(int id) {
+        if (!ocupado(id)) return false;
+        empilharLivre(id);
+        tamanho--;
+        return true;
+    }
+
+    /**
+     * @return true se o ID está em uso
+     */
+    protected final boolean ocupado(int id) {
+        return id >= 0 && id < limite && proximoLivre[id] == OCUPADA;
+    }
+
+    /**
+     * Trava de leitura/escrita do repositório; quem acessa o repositório de mais de uma thread
+     * deve segurá-la (o repositório em si não é sincronizado)
+     */
+    public ReentrantReadWriteLock trava() { return trava; }
+
+    public int tamanho() { return tamanho; }
+
+    public boolean isEmpty() { return tamanho == 0; }
+
+    /**
+     * @return Limite superior (exclusivo) dos IDs já utilizados
+     */
+    public int limite() { return limite; }
+
+    /**
+     * Percorre as entidades em ordem crescente de ID, ignorando posições livres
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Percorre, em ordem crescente, as entidades com ID maior ou igual a inicio
+     * (retoma uma listagem sem passar pelos IDs anteriores)
+     */
+    public Iterator<T> iterator(int inicio) {
+        return new Iterator<T>() {
+            private int proximo = avancar(Math.max(inicio, 0));
+
+            private int avancar(int id) {
+                while (id < limite && !ocupado(id)) id++;
+                return id;
+            }
+
+            @Override
+            public boolean hasNext() { return proximo < limite; }
+
+            @Override
+            public T next() {
+                if (proximo >= limite) throw new NoSuchElementException();
+                T item = obter(proximo);
+                proximo = avancar(proximo + 1);
+                return item;
+            }
+        };
+    }
+
+    private void empilharLivre(int id) {
+        proximoLivre[id] = primeiroLivre;
+        anteriorLivre[id] = -1;
+        if (primeiroLivre >= 0) anteriorLivre[primeiroLivre] = id;
+        primeiroLivre = id;
+    }
+
+    private void desencadearLivre(int id) {
+        int anterior = anteriorLivre[id];
+        int proximo = proximoLivre[id];
+        if (anterior >= 0) proximoLivre[anterior] = proximo; else primeiroLivre = proximo;
+        if (proximo >= 0) anteriorLivre[proximo] = anterior;
+    }
+
+    private void garantirCapacidade(int capacidade) {
+        if (capacidade <= proximoLivre.length) return;
+        int novaCapacidade = Math.max(capacidade, proximoLivre.length * 2);
+        proximoLivre = Arrays.copyOf(proximoLivre, novaCapacidade);
+        anteriorLivre = Arrays.copyOf(anteriorLivre, novaCapacidade);
+        redimensionar(novaCapacidade);
+    }
+}
@@ -0,0 +1,78 @@
+package golle;
+
+import java.util.NoSuchElementException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Sessão de um operador: leitor de entrada e saída próprios, sem estado compartilhado
+ * com outras sessões
+ */
+class Sessao {
+    // Tamanho dos trechos escritos de uma vez e capacidade acima da qual o buffer de texto é descartado
+    private static final int TRECHO = 1 << 15;
+    private static final int CAPACIDADE_MAXIMA = 1 << 20;
+
+    private final LeitorLinhas entrada;
+    private final PrintStream saida;
+    private StringBuilder texto = new StringBuilder(TRECHO);
+    private int atrasosAvisados; // Total de atrasos já avisado nesta sessão
+    private long alertasAvisados; // Total do mural de alertas de estoque já exibido nesta sessão
+
+    /**
+     * Construtor da classe Sessao
+     * @param entrada Bytes (UTF-8) das linhas digitadas pelo operador
+     * @param saida Destino das mensagens (esvaziado antes de cada leitura)
+     */
+    public Sessao(InputStream entrada, PrintStream saida) {
+        this.entrada = new LeitorLinhas(entrada);
+        this.saida = saida;
+    }
+
+    /**
+     * Envia o que estiver pendente na saída (como o texto de um prompt) e lê a próxima linha
+     * @return A linha lida, sem o terminador
+     * @throws NoSuchElementException Se a entrada terminou
+     */
+    public String lerLinha() {
+        saida.flush();
+        try {
+            String linha = entrada.lerLinha();
+            if (linha == null) throw new NoSuchElementException("Fim da entrada");
+            return linha;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public PrintStream saida() { return saida; }
+
+    /**
+     * @return O buffer de texto da sessão, vazio, reaproveitado entre as listagens
+     * (recriado se uma listagem completa o fez crescer demais)
+     */
+    public StringBuilder texto() {
+        if (texto.capacity() > CAPACIDADE_MAXIMA) {
+            texto = new StringBuilder(TRECHO);
+        }
+        texto.setLength(0);
+        return texto;
+    }
+
+    /**
+     * Escreve um texto na saída em trechos de até TRECHO caracteres
+     */
+    public void escrever(CharSequence conteudo) {
+        for (int inicio = 0; inicio < conteudo.length(); inicio += TRECHO) {
+            saida.append(conteudo, inicio, Math.min(inicio + TRECHO, conteudo.length()));
+        }
+    }
+
+    public int getAtrasosAvisados() { return atrasosAvisados; }
+    public void setAtrasosAvisados(int atrasosAvisados) { this.atrasosAvisados = atrasosAvisados; }
+
+    public long getAlertasAvisados() { return alertasAvisados; }
+    public void setAlertasAvisados(long alertasAvisados) { this.alertasAvisados = alertasAvisados; }
+}
@@ -0,0 +1,62 @@
+package golle;
+
+import java.util.Arrays;
+
+/**
+ * Armazenamento de objetos por ID estável (slab)
+ * Cada posição guarda a própria entidade
+ */
+class Slab<T extends Entidade> extends Repositorio<T> {
+    private Object[] itens = new Object[CAPACIDADE_INICIAL];
+
+    /**
+     * Armazena um item no próximo ID livre
+     * @param item Entidade a ser armazenada (recebe o ID)
+     * @return O ID atribuído
+     */
+    public int inserir(T item) {
+        int id = proximoId();
+        inserirEm(id, item);
+        return id;
+    }
+
+    /**
+     * Armazena um item em um ID específico (usado na reprodução do journal e na carga do snapshot)
+     * @param id ID livre onde o item será armazenado
+     * @param item Entidade a ser armazenada (recebe o ID)
+     */
+    public void inserirEm(int id, T item) {
+        ocupar(id);
+        itens[id] = item;
+        item.setId(id);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T obter(int id) {
+        return ocupado(id) ? (T) itens[id] : null;
+    }
+
+    /**
+     * Remove o item do ID informado, liberando a posição para reutilização
+     * @param id ID a ser removido
+     * @return O item removido ou null se o ID estava livre
+     */
+    public T remover(int id) {
+        T item = obter(id);
+        if (item == null) return null;
+        itens[id] = null;
+        liberar(id);
+        return item;
+    }
+
+    @Override
+    public boolean contem(T item) {
+        return obter(item.getId()) == item;
+    }
+
+    @Override
+    protected void redimensionar(int capacidade) {
+        itens = Arrays.copyOf(itens, capacidade);
+    }
+}
@@ -0,0 +1,330 @@
+package golle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Snapshot binário de todas as coleções, com layout fixo e lido por mapeamento em memória
+ *
+ * Formato do arquivo: cabeçalho de 64 bytes, seções de registros de tamanho fixo
+ * (usuários, EPIs, empréstimos, devoluções, segmentos do histórico arquivado) e uma área de
+ * textos em UTF-8.
+ * Cada registro começa pelo ID da entidade e as referências entre entidades são IDs;
+ * textos são deslocamentos na área de textos (-1 para texto vazio). Entidades já
+ * removidas mas ainda referenciadas por outras são gravadas no final da seção com
+ * ID -1 e referenciadas como -(k + 1), onde k é a ordem entre as removidas.
+ */
+class Snapshot {
+    private static final int MAGICO = 0x474F4C53; // "GOLS"
+    private static final int VERSAO = 6;
+    private static final int TAMANHO_CABECALHO = 64;
+
+    // Tamanho em bytes de cada registro por seção
+    private static final int TAMANHO_USUARIO = 16;    // ID, matrícula, nome, departamento
+    private static final int TAMANHO_EPI = 24;        // ID, quantidade, nome, validade (dia epoch), mínimo, reposição
+    private static final int TAMANHO_EMPRESTIMO = 20; // ID, usuário, EPI, data empréstimo, data devolução
+    private static final int TAMANHO_DEVOLUCAO = 16;  // ID, empréstimo, data devolução, observação
+    private static final int TAMANHO_SEGMENTO = 12;   // Mês, versão, registros
+
+    private final MappedByteBuffer buffer;
+    private final long posicaoJournal;
+    private final int totalUsuarios, totalEpis, totalEmprestimos, totalDevolucoes, totalSegmentos;
+    private final int crcEsperado;
+
+    private Snapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < TAMANHO_CABECALHO || buffer.getInt(0) != MAGICO) {
+            throw new IOException("arquivo não é um snapshot do sistema");
+        }
+        int versao = buffer.getInt(4);
+        if (versao != VERSAO) {
+            throw new IOException("versão de snapshot não suportada: " + versao);
+        }
+        posicaoJournal = buffer.getLong(8);
+        totalUsuarios = buffer.getInt(16);
+        totalEpis = buffer.getInt(20);
+        totalEmprestimos = buffer.getInt(24);
+        totalDevolucoes = buffer.getInt(28);
+        crcEsperado = buffer.getInt(36);
+        totalSegmentos = buffer.getInt(40);
+    }
+
+    /**
+     * Mapeia o arquivo em memória e valida apenas o cabeçalho (custo constante)
+     * @param arquivo Caminho do snapshot
+     * @return O snapshot pronto para ser materializado
+     */
+    public static Snapshot mapear(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return new Snapshot(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * @return Posição do journal até a qual as operações já estão no snapshot
+     */
+    public long getPosicaoJournal() { return posicaoJournal; }
+
+    /**
+     * Verifica a integridade do arquivo e recria os objetos nos seus IDs originais
+     */
+    public void materializar(Slab<Usuario> usuarios, Slab<EPI> epis, TabelaEmprestimos emprestimos,
+                             TabelaDevolucoes devolucoes, HistoricoArquivado historico) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(TAMANHO_CABECALHO, buffer.capacity() - TAMANHO_CABECALHO));
+        if ((int) crc.getValue() != crcEsperado) {
+            throw new IOException("snapshot corrompido (CRC inválido)");
+        }
+
+        int inicioEpis = TAMANHO_CABECALHO + totalUsuarios * TAMANHO_USUARIO;
+        int inicioEmprestimos = inicioEpis + totalEpis * TAMANHO_EPI;
+        int inicioDevolucoes = inicioEmprestimos + totalEmprestimos * TAMANHO_EMPRESTIMO;
+        int inicioSegmentos = inicioDevolucoes + totalDevolucoes * TAMANHO_DEVOLUCAO;
+        int inicioTextos = inicioSegmentos + totalSegmentos * TAMANHO_SEGMENTO;
+        HashMap<Integer, String> textos = new HashMap<>();
+
+        ArrayList<Usuario> usuariosRemovidos = new ArrayList<>();
+        for (int i = 0; i < totalUsuarios; i++) {
+            int base = TAMANHO_CABECALHO + i * TAMANHO_USUARIO;
+            Usuario usuario = new Usuario(texto(inicioTextos, buffer.getInt(base + 8), textos),
+                    texto(inicioTextos, buffer.getInt(base + 12), textos), buffer.getInt(base + 4));
+            adicionar(usuarios, usuariosRemovidos, buffer.getInt(base), usuario);
+        }
+
+        ArrayList<EPI> episRemovidos = new ArrayList<>();
+        for (int i = 0; i < totalEpis; i++) {
+            int base = inicioEpis + i * TAMANHO_EPI;
+            EPI epi = new EPI(texto(inicioTextos, buffer.getInt(base + 8), textos),
+                    buffer.getInt(base + 4), buffer.getInt(base + 12));
+            epi.setLimites(buffer.getInt(base + 16), buffer.getInt(base + 20));
+            adicionar(epis, episRemovidos, buffer.getInt(base), epi);
+        }
+
+        // Os empréstimos vão direto para as colunas da tabela; os removidos, para a área de removidos
+        ArrayList<Emprestimo> emprestimosRemovidos = new ArrayList<>();
+        for (int i = 0; i < totalEmprestimos; i++) {
+            int base = inicioEmprestimos + i * TAMANHO_EMPRESTIMO;
+            int id = buffer.getInt(base);
+            Usuario usuario = resolver(usuarios, usuariosRemovidos, buffer.getInt(base + 4));
+            EPI epi = resolver(epis, episRemovidos, buffer.getInt(base + 8));
+            LocalDate dataEmprestimo = LocalDate.ofEpochDay(buffer.getInt(base + 12));
+            LocalDate dataPrevista = LocalDate.ofEpochDay(buffer.getInt(base + 16));
+            if (id >= 0) {
+                emprestimos.inserirEm(id, usuario, epi, dataEmprestimo, dataPrevista);
+            } else {
+                emprestimosRemovidos.add(emprestimos.arquivar(usuario, epi, dataEmprestimo, dataPrevista));
+            }
+        }
+
+        for (int i = 0; i < totalDevolucoes; i++) {
+            int base = inicioDevolucoes + i * TAMANHO_DEVOLUCAO;
+            int referencia = buffer.getInt(base + 4);
+            devolucoes.inserirEm(buffer.getInt(base),
+                    referencia >= 0 ? emprestimos.obter(referencia) : emprestimosRemovidos.get(-referencia - 1),
+                    LocalDate.ofEpochDay(buffer.getInt(base + 8)), texto(inicioTextos, buffer.getInt(base + 12), textos));
+        }
+
+        ArrayList<HistoricoArquivado.Segmento> segmentos = new ArrayList<>(totalSegmentos);
+        for (int i = 0; i < totalSegmentos; i++) {
+            int base = inicioSegmentos + i * TAMANHO_SEGMENTO;
+            segmentos.add(new HistoricoArquivado.Segmento(buffer.getInt(base), buffer.getInt(base + 4), buffer.getInt(base + 8)));
+        }
+        historico.restaurar(segmentos);
+    }
+
+    /**
+     * Armazena a entidade no seu ID ou, se ela já havia sido removida (ID -1), na lista de removidas
+     */
+    private static <T extends Entidade> void adicionar(Slab<T> slab, List<T> removidos, int id, T entidade) {
+        if (id >= 0) {
+            slab.inserirEm(id, entidade);
+        } else {
+            entidade.setId(-1);
+            removidos.add(entidade);
+        }
+    }
+
+    /**
+     * Resolve uma referência gravada: ID ativo ou -(k + 1) para a k-ésima entidade removida
+     */
+    private static <T extends Entidade> T resolver(Repositorio<T> slab, List<T> removidos, int referencia) {
+        return referencia >= 0 ? slab.obter(referencia) : removidos.get(-referencia - 1);
+    }
+
+    /**
+     * Lê um texto da área de textos, reaproveitando a mesma String para deslocamentos repetidos
+     */
+    private String texto(int inicioTextos, int deslocamento, HashMap<Integer, String> cache) {
+        if (deslocamento < 0) return "";
+        String texto = cache.get(deslocamento);
+        if (texto == null) {
+            int posicao = inicioTextos + deslocamento;
+            byte[] bytes = new byte[buffer.getInt(posicao)];
+            buffer.get(posicao + 4, bytes);
+            texto = new String(bytes, StandardCharsets.UTF_8);
+            cache.put(deslocamento, texto);
+        }
+        return texto;
+    }
+
+    /**
+     * Grava o estado atual em um arquivo temporário e o move atomicamente para o destino
+     * @param arquivo Caminho do snapshot
+     * @param posicaoJournal Posição do journal correspondente ao estado gravado
+     */
+    public static void gravar(Path arquivo, Slab<Usuario> usuarios, Slab<EPI> epis, TabelaEmprestimos emprestimos,
+                              TabelaDevolucoes devolucoes, HistoricoArquivado historico,
+                              long posicaoJournal) throws IOException {
+        // Entidades removidas que ainda são referenciadas por outras
+        Removidos<Emprestimo> emprestimosRemovidos = new Removidos<>(emprestimos);
+        for (Devolucao dev : devolucoes) emprestimosRemovidos.referenciar(dev.getEmprestimo());
+        Removidos<Usuario> usuariosRemovidos = new Removidos<>(usuarios);
+        Removidos<EPI> episRemovidos = new Removidos<>(epis);
+        for (Emprestimo emp : emprestimos) {
+            usuariosRemovidos.referenciar(emp.getUsuario());
+            episRemovidos.referenciar(emp.getEpi());
+        }
+        for (Emprestimo emp : emprestimosRemovidos.lista) {
+            usuariosRemovidos.referenciar(emp.getUsuario());
+            episRemovidos.referenciar(emp.getEpi());
+        }
+
+        // Monta a área de textos primeiro para conhecer o tamanho final do arquivo
+        AreaTextos textos = new AreaTextos();
+        for (Usuario u : usuarios) { textos.adicionar(u.getNome()); textos.adicionar(u.getDepartamento()); }
+        for (Usuario u : usuariosRemovidos.lista) { textos.adicionar(u.getNome()); textos.adicionar(u.getDepartamento()); }
+        for (EPI e : epis) textos.adicionar(e.getNome());
+        for (EPI e : episRemovidos.lista) textos.adicionar(e.getNome());
+        for (Devolucao d : devolucoes) textos.adicionar(d.getObservacao());
+
+        int totalUsuarios = usuarios.tamanho() + usuariosRemovidos.lista.size();
+        int totalEpis = epis.tamanho() + episRemovidos.lista.size();
+        int totalEmprestimos = emprestimos.tamanho() + emprestimosRemovidos.lista.size();
+        List<HistoricoArquivado.Segmento> segmentos = historico.listar();
+        long tamanho = TAMANHO_CABECALHO + (long) totalUsuarios * TAMANHO_USUARIO + (long) totalEpis * TAMANHO_EPI
+                + (long) totalEmprestimos * TAMANHO_EMPRESTIMO + (long) devolucoes.tamanho() * TAMANHO_DEVOLUCAO
+                + (long) segmentos.size() * TAMANHO_SEGMENTO + textos.tamanho;
+        if (tamanho > Integer.MAX_VALUE) {
+            throw new IOException("snapshot excede o limite de 2 GB de um único mapeamento");
+        }
+
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer saida = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+            saida.position(TAMANHO_CABECALHO);
+
+            for (Usuario u : usuarios) gravarUsuario(saida, u.getId(), u, textos);
+            for (Usuario u : usuariosRemovidos.lista) gravarUsuario(saida, -1, u, textos);
+            for (EPI e : epis) gravarEpi(saida, e.getId(), e, textos);
+            for (EPI e : episRemovidos.lista) gravarEpi(saida, -1, e, textos);
+            for (Emprestimo emp : emprestimos) {
+                gravarEmprestimo(saida, emp.getId(), emp, usuariosRemovidos, episRemovidos);
+            }
+            for (Emprestimo emp : emprestimosRemovidos.lista) {
+                gravarEmprestimo(saida, -1, emp, usuariosRemovidos, episRemovidos);
+            }
+            for (Devolucao dev : devolucoes) {
+                saida.putInt(dev.getId()).putInt(emprestimosRemovidos.referencia(dev.getEmprestimo()))
+                        .putInt((int) dev.getDataDevolucao().toEpochDay())
+                        .putInt(textos.deslocamento(dev.getObservacao()));
+            }
+            for (HistoricoArquivado.Segmento segmento : segmentos) {
+                saida.putInt(segmento.getMes()).putInt(segmento.getVersao()).putInt(segmento.getRegistros());
+            }
+            saida.put(textos.dados, 0, textos.tamanho);
+
+            CRC32 crc = new CRC32();
+            crc.update(saida.slice(TAMANHO_CABECALHO, (int) tamanho - TAMANHO_CABECALHO));
+            saida.putInt(0, MAGICO).putInt(4, VERSAO).putLong(8, posicaoJournal)
+                    .putInt(16, totalUsuarios).putInt(20, totalEpis)
+                    .putInt(24, totalEmprestimos).putInt(28, devolucoes.tamanho())
+                    .putInt(32, textos.tamanho).putInt(36, (int) crc.getValue()).putInt(40, segmentos.size());
+            saida.force();
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void gravarUsuario(ByteBuffer saida, int id, Usuario u, AreaTextos textos) {
+        saida.putInt(id).putInt(u.getMatricula())
+                .putInt(textos.deslocamento(u.getNome())).putInt(textos.deslocamento(u.getDepartamento()));
+    }
+
+    private static void gravarEpi(ByteBuffer saida, int id, EPI e, AreaTextos textos) {
+        saida.putInt(id).putInt(e.getQuantidade())
+                .putInt(textos.deslocamento(e.getNome())).putInt(e.getDataValidade())
+                .putInt(e.getEstoqueMinimo()).putInt(e.getPontoReposicao());
+    }
+
+    private static void gravarEmprestimo(ByteBuffer saida, int id, Emprestimo emp,
+                                         Removidos<Usuario> usuariosRemovidos, Removidos<EPI> episRemovidos) {
+        saida.putInt(id).putInt(usuariosRemovidos.referencia(emp.getUsuario()))
+                .putInt(episRemovidos.referencia(emp.getEpi()))
+                .putInt((int) emp.getDataEmprestimo().toEpochDay())
+                .putInt((int) emp.getDataDevolucaoPrevista().toEpochDay());
+    }
+
+    /**
+     * Entidades referenciadas que não estão mais no armazenamento
+     * (uma entidade está ativa quando o repositório ainda a contém; visões de empréstimo
+     * usam equals, os objetos de usuário e EPI usam identidade)
+     */
+    private static class Removidos<T extends Entidade> {
+        private final Repositorio<T> slab;
+        private final ArrayList<T> lista = new ArrayList<>();
+        private final HashMap<T, Integer> posicoes = new HashMap<>();
+
+        Removidos(Repositorio<T> slab) {
+            this.slab = slab;
+        }
+
+        void referenciar(T entidade) {
+            if (!slab.contem(entidade) && !posicoes.containsKey(entidade)) {
+                posicoes.put(entidade, lista.size());
+                lista.add(entidade);
+            }
+        }
+
+        int referencia(T entidade) {
+            return slab.contem(entidade) ? entidade.getId() : -(posicoes.get(entidade) + 1);
+        }
+    }
+
+    /**
+     * Área de textos do snapshot, com cada texto distinto gravado uma única vez
+     */
+    private static class AreaTextos {
+        private final HashMap<String, Integer> deslocamentos = new HashMap<>();
+        private byte[] dados = new byte[1024];
+        private int tamanho;
+
+        void adicionar(String texto) {
+            if (texto.isEmpty() || deslocamentos.containsKey(texto)) return;
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            if (tamanho + 4 + bytes.length > dados.length) {
+                dados = Arrays.copyOf(dados, Math.max(dados.length * 2, tamanho + 4 + bytes.length));
+            }
+            deslocamentos.put(texto, tamanho);
+            ByteBuffer.wrap(dados, tamanho, 4).putInt(bytes.length);
+            System.arraycopy(bytes, 0, dados, tamanho + 4, bytes.length);
+            tamanho += 4 + bytes.length;
+        }
+
+        int deslocamento(String texto) {
+            return texto.isEmpty() ? -1 : deslocamentos.get(texto);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package golle;
+
+import java.util.Arrays;
+import java.time.LocalDate;
+
+/**
+ * Armazenamento colunar das devoluções (struct-of-arrays)
+ * Colunas indexadas pelo ID: empréstimo (referência da TabelaEmprestimos), data como dia epoch
+ * e a observação ("" = sem observação). A observação é texto livre, quase sempre diferente entre
+ * devoluções, então é guardada por linha e liberada junto com ela. Os objetos Devolucao são visões.
+ * A data é uma coluna versionada, lida pelos retratos da TabelaEmprestimos
+ */
+class TabelaDevolucoes extends Repositorio<Devolucao> {
+    private final TabelaEmprestimos emprestimos;
+
+    private int[] emprestimo = new int[CAPACIDADE_INICIAL];
+    private final ColunaVersionada dataDevolucao = new ColunaVersionada(0, CAPACIDADE_INICIAL);
+    private String[] observacao = new String[CAPACIDADE_INICIAL];
+    private int[] geracao = new int[CAPACIDADE_INICIAL];
+
+    /**
+     * Construtor da classe TabelaDevolucoes
+     * @param emprestimos Tabela dos empréstimos referenciados (as duas passam a se conhecer)
+     */
+    public TabelaDevolucoes(TabelaEmprestimos emprestimos) {
+        this.emprestimos = emprestimos;
+        emprestimos.ligar(this);
+    }
+
+    /**
+     * Armazena uma devolução em um ID específico
+     * @param id ID livre onde a devolução será armazenada
+     * @param emp Empréstimo devolvido (ativo ou removido)
+     * @return A visão da devolução criada
+     */
+    public Devolucao inserirEm(int id, Emprestimo emp, LocalDate dataDevolucao, String observacao) {
+        ocupar(id);
+        emprestimo[id] = emp.referencia();
+        this.dataDevolucao.gravar(id, (int) dataDevolucao.toEpochDay());
+        this.observacao[id] = observacao;
+        geracao[id]++;
+        return new Devolucao(this, id, geracao[id]);
+    }
+
+    @Override
+    public Devolucao obter(int id) {
+        return ocupado(id) ? new Devolucao(this, id, geracao[id]) : null;
+    }
+
+    @Override
+    public boolean contem(Devolucao dev) {
+        int id = dev.getId();
+        return dev.getTabela() == this && ocupado(id) && geracao[id] == dev.getGeracao();
+    }
+
+    /**
+     * Remove a devolução do ID informado, liberando a posição para reutilização
+     * @return A visão da devolução removida ou null se o ID estava livre
+     */
+    public Devolucao remover(int id) {
+        Devolucao dev = obter(id);
+        if (dev == null) return null;
+        if (emprestimo[id] < 0) emprestimos.descartar(emprestimo[id]);
+        observacao[id] = null;
+        liberar(id);
+        return dev;
+    }
+
+    /**
+     * Visão da devolução de um ID (mesmo que já liberado, para comparar com visões antigas)
+     */
+    Devolucao visao(int id) {
+        return new Devolucao(this, id, geracao[id]);
+    }
+
+    /**
+     * Troca a referência ao empréstimo sem passar pela visão (empréstimo que acabou de ser removido)
+     */
+    void apontarEmprestimo(int id, int referencia) {
+        emprestimo[id] = referencia;
+    }
+
+    // Acesso às colunas pelas visões
+
+    Emprestimo emprestimo(int id) {
+        return emprestimos.visao(emprestimo[id]);
+    }
+
+    void definirEmprestimo(int id, Emprestimo emp) {
+        int anterior = emprestimo[id];
+        if (anterior < 0 && anterior != emp.referencia()) emprestimos.descartar(anterior);
+        emprestimo[id] = emp.referencia();
+    }
+
+    int dataDevolucao(int id) { return dataDevolucao.ler(id); }
+
+    void definirDataDevolucao(int id, LocalDate data) { dataDevolucao.gravar(id, (int) data.toEpochDay()); }
+
+    String observacao(int id) { return observacao[id]; }
+
+    void definirObservacao(int id, String texto) { observacao[id] = texto; }
+
+    /**
+     * Versão da coluna de datas para um retrato (com as devoluções travadas para leitura)
+     */
+    ColunaVersionada.Versao versaoDatas() {
+        return dataDevolucao.versao();
+    }
+
+    @Override
+    protected void redimensionar(int capacidade) {
+        emprestimo = Arrays.copyOf(emprestimo, capacidade);
+        dataDevolucao.redimensionar(capacidade);
+        observacao = Arrays.copyOf(observacao, capacidade);
+        geracao = Arrays.copyOf(geracao, capacidade);
+    }
+}
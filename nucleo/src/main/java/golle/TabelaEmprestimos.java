@@ -0,0 +1,385 @@
+package golle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.time.LocalDate;
+
+/**
+ * Armazenamento colunar dos empréstimos (struct-of-arrays)
+ * Cada campo é uma coluna de int indexada pelo ID: usuário e EPI por ID, datas como dia epoch
+ * e o ID da devolução (-1 enquanto em aberto). São 24 bytes por empréstimo, sem nenhum
+ * objeto, contra um Emprestimo com dois LocalDate no slab; percorrer o histórico lê só arrays
+ * contíguos. Os objetos Emprestimo são apenas visões (ID + geração) criadas sob demanda.
+ *
+ * Referências negativas -(k + 1) apontam para entidades removidas que ainda precisam dos seus
+ * dados: usuários e EPIs removidos sem cascata (journals antigos) e empréstimos removidos
+ * cuja devolução ainda existe
+ *
+ * As colunas lidas pelos relatórios são versionadas (ColunaVersionada): retratar tira, com as
+ * travas de leitura, um retrato do instante que os relatórios percorrem sem trava enquanto
+ * empréstimos e devoluções continuam sendo feitos. Um mapa de bits versionado diz quais
+ * posições estavam em uso no instante do retrato
+ */
+class TabelaEmprestimos extends Repositorio<Emprestimo> {
+    private final Slab<Usuario> usuarios;
+    private final Slab<EPI> epis;
+    private TabelaDevolucoes devolucoes;
+
+    private final ColunaVersionada usuario = new ColunaVersionada(0, CAPACIDADE_INICIAL);
+    private final ColunaVersionada epi = new ColunaVersionada(0, CAPACIDADE_INICIAL);
+    private final ColunaVersionada dataEmprestimo = new ColunaVersionada(0, CAPACIDADE_INICIAL);
+    private final ColunaVersionada dataPrevista = new ColunaVersionada(0, CAPACIDADE_INICIAL);
+    private final ColunaVersionada devolucao = new ColunaVersionada(-1, CAPACIDADE_INICIAL);
+    private int[] geracao = new int[CAPACIDADE_INICIAL]; // Muda a cada reutilização do ID
+    private final ColunaVersionada emUso = new ColunaVersionada(0, bits(CAPACIDADE_INICIAL)); // Bit por ID
+
+    // Entidades removidas ainda referenciadas (raras; só em históricos antigos ou durante uma cascata)
+    private final ArrayList<Usuario> usuariosRemovidos = new ArrayList<>();
+    private final IdentityHashMap<Usuario, Integer> posicaoUsuarioRemovido = new IdentityHashMap<>();
+    private final ArrayList<EPI> episRemovidos = new ArrayList<>();
+    private final IdentityHashMap<EPI, Integer> posicaoEpiRemovido = new IdentityHashMap<>();
+    private final ArrayList<Removido> removidos = new ArrayList<>();
+    private final ArrayDeque<Integer> removidosLivres = new ArrayDeque<>();
+
+    /**
+     * Dados de um empréstimo que saiu da tabela mas ainda é referenciado pela sua devolução
+     */
+    private static final class Removido {
+        Usuario usuario;
+        EPI epi;
+        int dataEmprestimo;
+        int dataPrevista;
+    }
+
+    /**
+     * Retrato dos empréstimos em memória num instante: versões das colunas e da data das
+     * devoluções, com os usuários e os códigos de nome de EPI e de departamento resolvidos no
+     * mesmo instante. É imutável e lido sem trava por várias threads
+     */
+    static final class Retrato {
+        private final int limite;
+        private final ColunaVersionada.Versao emUso, usuario, epi, dataEmprestimo, dataPrevista, devolucao, dataDevolucao;
+        private final Usuario[] usuarios; // Por ID
+        private final int[] departamentoUsuario, departamentoUsuarioRemovido; // Códigos por ID e por posição dos removidos
+        private final int[] nomeEpi, nomeEpiRemovido;
+
+        private Retrato(TabelaEmprestimos tabela) {
+            limite = tabela.limite();
+            emUso = tabela.emUso.versao();
+            usuario = tabela.usuario.versao();
+            epi = tabela.epi.versao();
+            dataEmprestimo = tabela.dataEmprestimo.versao();
+            dataPrevista = tabela.dataPrevista.versao();
+            devolucao = tabela.devolucao.versao();
+            dataDevolucao = tabela.devolucoes.versaoDatas();
+
+            usuarios = new Usuario[tabela.usuarios.limite()];
+            departamentoUsuario = new int[usuarios.length];
+            for (int id = 0; id < usuarios.length; id++) {
+                usuarios[id] = tabela.usuarios.obter(id);
+                if (usuarios[id] != null) departamentoUsuario[id] = usuarios[id].getCodigoDepartamento();
+            }
+            departamentoUsuarioRemovido = tabela.usuariosRemovidos.stream().mapToInt(Usuario::getCodigoDepartamento).toArray();
+            nomeEpi = new int[tabela.epis.limite()];
+            for (int id = 0; id < nomeEpi.length; id++) {
+                EPI e = tabela.epis.obter(id);
+                if (e != null) nomeEpi[id] = e.getCodigoNome();
+            }
+            nomeEpiRemovido = tabela.episRemovidos.stream().mapToInt(EPI::getCodigoNome).toArray();
+        }
+
+        /**
+         * @return Limite superior (exclusivo) dos IDs de empréstimo no instante do retrato
+         */
+        public int limite() { return limite; }
+
+        public boolean ocupado(int id) { return id < limite && (emUso.ler(id >>> 5) & 1 << id) != 0; }
+
+        public int dataEmprestimo(int id) { return dataEmprestimo.ler(id); }
+
+        public int dataPrevista(int id) { return dataPrevista.ler(id); }
+
+        /**
+         * @return O ID do usuário do empréstimo ou uma referência negativa se o usuário foi removido
+         */
+        public int referenciaUsuario(int id) { return usuario.ler(id); }
+
+        /**
+         * @return O ID da devolução do empréstimo ou -1 se ele está em aberto
+         */
+        public int idDevolucao(int id) { return devolucao.ler(id); }
+
+        /**
+         * @param devolucao ID de devolução lido de idDevolucao
+         * @return A data da devolução como dia epoch
+         */
+        public int dataDevolucao(int devolucao) { return dataDevolucao.ler(devolucao); }
+
+        public int codigoNome(int id) {
+            int referencia = epi.ler(id);
+            return referencia >= 0 ? nomeEpi[referencia] : nomeEpiRemovido[-referencia - 1];
+        }
+
+        public int codigoDepartamento(int id) {
+            int referencia = usuario.ler(id);
+            return referencia >= 0 ? departamentoUsuario[referencia] : departamentoUsuarioRemovido[-referencia - 1];
+        }
+
+        /**
+         * @return Limite superior (exclusivo) dos IDs de usuário no instante do retrato
+         */
+        public int limiteUsuarios() { return usuarios.length; }
+
+        /**
+         * @return O usuário que tinha o ID no instante do retrato ou null se o ID estava livre
+         * (o objeto é o atual: nome e matrícula devem ser lidos com os usuários travados)
+         */
+        public Usuario usuario(int id) { return usuarios[id]; }
+    }
+
+    /**
+     * Construtor da classe TabelaEmprestimos
+     * @param usuarios Repositório usado para resolver os IDs de usuário
+     * @param epis Repositório usado para resolver os IDs de EPI
+     */
+    public TabelaEmprestimos(Slab<Usuario> usuarios, Slab<EPI> epis) {
+        this.usuarios = usuarios;
+        this.epis = epis;
+    }
+
+    /**
+     * Liga a tabela de devoluções referenciada pela coluna de devolução
+     */
+    void ligar(TabelaDevolucoes devolucoes) {
+        this.devolucoes = devolucoes;
+    }
+
+    /**
+     * Armazena um empréstimo em aberto em um ID específico
+     * @param id ID livre onde o empréstimo será armazenado
+     * @return A visão do empréstimo criado
+     */
+    public Emprestimo inserirEm(int id, Usuario usuario, EPI epi, LocalDate dataEmprestimo,
+                                LocalDate dataDevolucaoPrevista) {
+        ocupar(id);
+        this.usuario.gravar(id, referencia(usuario));
+        this.epi.gravar(id, referencia(epi));
+        this.dataEmprestimo.gravar(id, (int) dataEmprestimo.toEpochDay());
+        this.dataPrevista.gravar(id, (int) dataDevolucaoPrevista.toEpochDay());
+        this.devolucao.gravar(id, -1);
+        emUso.gravar(id >>> 5, emUso.ler(id >>> 5) | 1 << id);
+        geracao[id]++;
+        return new Emprestimo(this, id, geracao[id]);
+    }
+
+    /**
+     * Guarda os dados de um empréstimo já removido que a devolução ainda referencia
+     * (usado na carga do snapshot)
+     * @return A visão do empréstimo removido
+     */
+    public Emprestimo arquivar(Usuario usuario, EPI epi, LocalDate dataEmprestimo, LocalDate dataDevolucaoPrevista) {
+        Removido removido = new Removido();
+        removido.usuario = usuario;
+        removido.epi = epi;
+        removido.dataEmprestimo = (int) dataEmprestimo.toEpochDay();
+        removido.dataPrevista = (int) dataDevolucaoPrevista.toEpochDay();
+        return new Emprestimo(this, -guardar(removido) - 1, 0);
+    }
+
+    @Override
+    public Emprestimo obter(int id) {
+        return ocupado(id) ? new Emprestimo(this, id, geracao[id]) : null;
+    }
+
+    @Override
+    public boolean contem(Emprestimo emp) {
+        int id = emp.referencia();
+        return emp.getTabela() == this && ocupado(id) && geracao[id] == emp.getGeracao();
+    }
+
+    /**
+     * Remove o empréstimo do ID informado, liberando a posição para reutilização
+     * Se ele já tem devolução, os dados vão para a área de removidos e a devolução passa a
+     * apontar para lá; a visão devolvida continua legível até o fim da operação
+     * @return A visão do empréstimo removido ou null se o ID estava livre
+     */
+    public Emprestimo remover(int id) {
+        Emprestimo emp = obter(id);
+        if (emp == null) return null;
+        if (devolucao.ler(id) >= 0) {
+            Removido removido = new Removido();
+            removido.usuario = usuarioDe(id);
+            removido.epi = epiDe(id);
+            removido.dataEmprestimo = dataEmprestimo.ler(id);
+            removido.dataPrevista = dataPrevista.ler(id);
+            devolucoes.apontarEmprestimo(devolucao.ler(id), -guardar(removido) - 1);
+        }
+        liberar(id);
+        emUso.gravar(id >>> 5, emUso.ler(id >>> 5) & ~(1 << id));
+        return emp;
+    }
+
+    /**
+     * Passa as referências de um usuário que acabou de ser removido para a área de removidos
+     * @param emprestimosDoUsuario Empréstimos que ainda apontam para o ID do usuário
+     */
+    public void desligarUsuario(Usuario removido, List<Emprestimo> emprestimosDoUsuario) {
+        int referencia = referencia(removido);
+        for (Emprestimo emp : emprestimosDoUsuario) usuario.gravar(emp.referencia(), referencia);
+    }
+
+    /**
+     * Passa as referências de um EPI que acabou de ser removido para a área de removidos
+     * @param emprestimosDoEpi Empréstimos que ainda apontam para o ID do EPI
+     */
+    public void desligarEpi(EPI removido, List<Emprestimo> emprestimosDoEpi) {
+        int referencia = referencia(removido);
+        for (Emprestimo emp : emprestimosDoEpi) epi.gravar(emp.referencia(), referencia);
+    }
+
+    /**
+     * Descarta um empréstimo removido que deixou de ser referenciado pela sua devolução
+     * @param referencia Referência negativa do empréstimo removido
+     */
+    void descartar(int referencia) {
+        int posicao = -referencia - 1;
+        removidos.set(posicao, null);
+        removidosLivres.push(posicao);
+    }
+
+    /**
+     * Visão do empréstimo de uma referência (ID ativo ou removido)
+     */
+    Emprestimo visao(int referencia) {
+        if (referencia < 0) return new Emprestimo(this, referencia, 0);
+        return new Emprestimo(this, referencia, geracao[referencia]);
+    }
+
+    // Acesso às colunas pelas visões; referência negativa lê a área de removidos
+
+    Usuario usuario(int referencia) {
+        return referencia >= 0 ? usuarioDe(referencia) : removido(referencia).usuario;
+    }
+
+    void definirUsuario(int referencia, Usuario usuario) {
+        if (referencia >= 0) this.usuario.gravar(referencia, referencia(usuario)); else removido(referencia).usuario = usuario;
+    }
+
+    EPI epi(int referencia) {
+        return referencia >= 0 ? epiDe(referencia) : removido(referencia).epi;
+    }
+
+    void definirEpi(int referencia, EPI epi) {
+        if (referencia >= 0) this.epi.gravar(referencia, referencia(epi)); else removido(referencia).epi = epi;
+    }
+
+    int dataEmprestimo(int referencia) {
+        return referencia >= 0 ? dataEmprestimo.ler(referencia) : removido(referencia).dataEmprestimo;
+    }
+
+    void definirDataEmprestimo(int referencia, LocalDate data) {
+        if (referencia >= 0) dataEmprestimo.gravar(referencia, (int) data.toEpochDay());
+        else removido(referencia).dataEmprestimo = (int) data.toEpochDay();
+    }
+
+    int dataPrevista(int referencia) {
+        return referencia >= 0 ? dataPrevista.ler(referencia) : removido(referencia).dataPrevista;
+    }
+
+    void definirDataPrevista(int referencia, LocalDate data) {
+        if (referencia >= 0) dataPrevista.gravar(referencia, (int) data.toEpochDay());
+        else removido(referencia).dataPrevista = (int) data.toEpochDay();
+    }
+
+    /**
+     * Devolução do empréstimo; um empréstimo removido não guarda a sua devolução
+     */
+    Devolucao devolucao(int referencia) {
+        return referencia >= 0 && devolucao.ler(referencia) >= 0 ? devolucoes.visao(devolucao.ler(referencia)) : null;
+    }
+
+    void definirDevolucao(int referencia, Devolucao dev) {
+        if (referencia >= 0) devolucao.gravar(referencia, dev == null ? -1 : dev.getId());
+    }
+
+    /**
+     * @return O ID da devolução do empréstimo ou -1 se ele está em aberto (só IDs ocupados)
+     */
+    int idDevolucao(int id) { return devolucao.ler(id); }
+
+    /**
+     * Tira um retrato dos empréstimos em memória para leitura sem trava
+     * Deve ser chamado com usuários, EPIs, empréstimos e devoluções travados para leitura; custa
+     * O(usuários + EPIs) e as escritas seguintes copiam cada página tocada uma vez
+     */
+    Retrato retratar() {
+        return new Retrato(this);
+    }
+
+    private Usuario usuarioDe(int id) {
+        int referencia = usuario.ler(id);
+        return referencia >= 0 ? usuarios.obter(referencia) : usuariosRemovidos.get(-referencia - 1);
+    }
+
+    private EPI epiDe(int id) {
+        int referencia = epi.ler(id);
+        return referencia >= 0 ? epis.obter(referencia) : episRemovidos.get(-referencia - 1);
+    }
+
+    private Removido removido(int referencia) {
+        return removidos.get(-referencia - 1);
+    }
+
+    private int guardar(Removido removido) {
+        Integer livre = removidosLivres.poll();
+        if (livre != null) {
+            removidos.set(livre, removido);
+            return livre;
+        }
+        removidos.add(removido);
+        return removidos.size() - 1;
+    }
+
+    /**
+     * ID do usuário ativo ou referência negativa para um usuário já removido
+     */
+    private int referencia(Usuario u) {
+        if (usuarios.contem(u)) return u.getId();
+        return -posicaoUsuarioRemovido.computeIfAbsent(u, chave -> {
+            usuariosRemovidos.add(chave);
+            return usuariosRemovidos.size() - 1;
+        }) - 1;
+    }
+
+    /**
+     * ID do EPI ativo ou referência negativa para um EPI já removido
+     */
+    private int referencia(EPI e) {
+        if (epis.contem(e)) return e.getId();
+        return -posicaoEpiRemovido.computeIfAbsent(e, chave -> {
+            episRemovidos.add(chave);
+            return episRemovidos.size() - 1;
+        }) - 1;
+    }
+
+    /**
+     * Quantidade de int do mapa de bits para uma capacidade
+     */
+    private static int bits(int capacidade) {
+        return (capacidade + 31) >>> 5;
+    }
+
+    @Override
+    protected void redimensionar(int capacidade) {
+        usuario.redimensionar(capacidade);
+        epi.redimensionar(capacidade);
+        dataEmprestimo.redimensionar(capacidade);
+        dataPrevista.redimensionar(capacidade);
+        devolucao.redimensionar(capacidade);
+        emUso.redimensionar(bits(capacidade));
+        geracao = Arrays.copyOf(geracao, capacidade);
+    }
+}
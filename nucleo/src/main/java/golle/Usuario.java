@@ -0,0 +1,65 @@
+package golle;
+
+/**
+ * Classe que representa um usuário do sistema
+ */
+class Usuario implements Entidade {
+    // Departamentos distintos, digitados à mão por usuário
+    public static final Dicionario DEPARTAMENTOS = new Dicionario();
+
+    private int id;
+    private String nome;
+    private int departamento; // Código em DEPARTAMENTOS
+    private int matricula;
+
+    /**
+     * Construtor da classe Usuario
+     * @param nome Nome completo do usuário
+     * @param departamento Departamento ao qual o usuário pertence
+     * @param matricula Número de matrícula do usuário
+     */
+    public Usuario(String nome, String departamento, int matricula) {
+        this.nome = nome;
+        this.departamento = DEPARTAMENTOS.codificar(departamento);
+        this.matricula = matricula;
+    }
+
+    // Métodos getters e setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public String getDepartamento() { return DEPARTAMENTOS.texto(departamento); }
+    public void setDepartamento(String departamento) { this.departamento = DEPARTAMENTOS.corrigir(departamento); }
+
+    public int getCodigoDepartamento() { return departamento; }
+
+    public int getMatricula() { return matricula; }
+    public void setMatricula(int matricula) { this.matricula = matricula; }
+
+    /**
+     * Escreve "Usuário: nome | Depto: departamento | Matrícula: 000000" em colunas fixas
+     */
+    @Override
+    public void renderizar(StringBuilder destino) {
+        destino.append("Usuário: ");
+        Colunas.esquerda(destino, nome, 20);
+        destino.append(" | Depto: ");
+        Colunas.esquerda(destino, getDepartamento(), 15);
+        destino.append(" | Matrícula: ");
+        Colunas.zeros(destino, matricula, 6);
+    }
+
+    /**
+     * Retorna uma representação em string do usuário
+     * @return String formatada com os dados do usuário
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(80);
+        renderizar(texto);
+        return texto.toString();
+    }
+}
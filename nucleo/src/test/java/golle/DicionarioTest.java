@@ -0,0 +1,42 @@
+package golle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Códigos e grafias do dicionário de textos repetidos
+ */
+class DicionarioTest {
+
+    @Test
+    void variantesDeDigitacaoRecebemOMesmoCodigo() {
+        Dicionario dicionario = new Dicionario();
+        int codigo = dicionario.codificar("Manutenção");
+        assertEquals(codigo, dicionario.codificar("  MANUTENCAO "));
+        assertEquals(codigo, dicionario.codificar("manutenção"));
+        assertEquals(1, dicionario.tamanho());
+        assertEquals("Manutenção", dicionario.texto(codigo)); // Vale a primeira grafia
+    }
+
+    @Test
+    void corrigirTrocaAGrafiaExibida() {
+        Dicionario dicionario = new Dicionario();
+        int codigo = dicionario.codificar("almoxarifado  central");
+        assertEquals(codigo, dicionario.corrigir("Almoxarifado Central"));
+        assertEquals("Almoxarifado Central", dicionario.texto(codigo));
+        assertEquals(1, dicionario.tamanho());
+
+        // A codificação de um texto lido (snapshot, segmentos) não desfaz a correção
+        dicionario.codificar("ALMOXARIFADO CENTRAL");
+        assertEquals("Almoxarifado Central", dicionario.texto(codigo));
+    }
+
+    @Test
+    void corrigirIncluiTextoNovo() {
+        Dicionario dicionario = new Dicionario();
+        int codigo = dicionario.corrigir("Luva  nitrílica");
+        assertEquals("Luva nitrílica", dicionario.texto(codigo));
+        assertNotEquals(codigo, dicionario.codificar("Luva de raspa"));
+    }
+}
@@ -0,0 +1,186 @@
+package golle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Várias threads disputam o mesmo EPI e, ao final, o estoque deve fechar exatamente:
+ * nenhuma unidade reservada além do disponível e nenhuma atualização perdida.
+ * Os casos com empréstimos passam pelas operações do núcleo, com o journal desligado
+ */
+class EstoqueConcorrenteTest {
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int OPERACOES = 200_000; // Reservas/liberações por thread
+
+    @TempDir
+    Path diretorio;
+
+    /**
+     * Todas as threads reservam até o estoque acabar: o total reservado deve ser o estoque inicial
+     */
+    @Test
+    void esgotamentoReservaExatamenteOEstoque() throws InterruptedException {
+        int estoque = 100_000;
+        EPI epi = new EPI("Capacete", estoque, EPI.SEM_VALIDADE);
+        long[] reservas = new long[THREADS];
+
+        rodar(THREADS, t -> {
+            long minhas = 0;
+            while (epi.reservar()) minhas++;
+            reservas[t] = minhas;
+        });
+
+        assertEquals(estoque, Arrays.stream(reservas).sum());
+        assertEquals(0, epi.getQuantidade());
+        assertFalse(epi.reservar());
+    }
+
+    /**
+     * Cada thread alterna reservas e liberações aleatórias e devolve tudo no fim:
+     * o estoque deve voltar ao valor inicial e nunca ficar negativo
+     */
+    @Test
+    void reservasELiberacoesNaoPerdemAtualizacoes() throws InterruptedException {
+        int estoque = THREADS * 4;
+        EPI epi = new EPI("Capacete", estoque, EPI.SEM_VALIDADE);
+        boolean[] negativo = new boolean[THREADS];
+
+        rodar(THREADS, t -> {
+            long semente = 0x9E3779B97F4A7C15L * (t + 1);
+            int emMaos = 0;
+            for (int i = 0; i < OPERACOES; i++) {
+                semente ^= semente << 13; semente ^= semente >>> 7; semente ^= semente << 17;
+                if ((semente & 1) == 0 || emMaos == 0) {
+                    if (epi.reservar()) emMaos++;
+                } else {
+                    epi.liberar();
+                    emMaos--;
+                }
+                if (epi.getQuantidade() < 0) negativo[t] = true;
+            }
+            while (emMaos-- > 0) epi.liberar();
+        });
+
+        assertEquals(estoque, epi.getQuantidade());
+        for (boolean n : negativo) assertFalse(n, "o estoque ficou negativo");
+    }
+
+    /**
+     * Uma thread corrige o estoque (ajustar) enquanto as outras reservam e liberam: a correção
+     * soma a sua variação sem desfazer as reservas e liberações concorrentes
+     */
+    @Test
+    void correcaoNaoDesfazReservasConcorrentes() throws InterruptedException {
+        int estoque = THREADS * 4;
+        int correcoes = 10_000;
+        EPI epi = new EPI("Capacete", estoque, EPI.SEM_VALIDADE);
+
+        rodar(THREADS, t -> {
+            if (t == 0) {
+                for (int i = 0; i < correcoes; i++) epi.ajustar(i % 2 == 0 ? 3 : -2);
+                return;
+            }
+            for (int i = 0; i < OPERACOES; i++) {
+                if (epi.reservar()) epi.liberar();
+            }
+        });
+
+        assertEquals(estoque + correcoes / 2, epi.getQuantidade());
+    }
+
+    /**
+     * Cada thread empresta o mesmo EPI pelas operações do núcleo e fecha os seus empréstimos mais
+     * antigos, alternando devolução e remoção; o estoque comporta todos os empréstimos em aberto,
+     * então nenhum pode ser recusado, e no fim ele é o inicial menos os que ficaram em aberto
+     */
+    @Test
+    void emprestimosEDevolucoesConcorrentesFechamOEstoque() throws InterruptedException {
+        int abertosPorThread = 3;
+        int emprestimosPorThread = 2_000;
+        int estoque = THREADS * abertosPorThread;
+        EPI epi = NucleoEPI.aplicarCadastroEPI(NucleoEPI.NOVO, "Capacete", estoque, EPI.SEM_VALIDADE);
+        Usuario[] usuarios = new Usuario[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            usuarios[t] = NucleoEPI.aplicarCadastroUsuario(NucleoEPI.NOVO, "Operador " + t, "Obras", 910_000 + t);
+        }
+        int[] emAberto = new int[THREADS];
+        LocalDate hoje = LocalDate.now();
+
+        rodar(THREADS, t -> {
+            ArrayDeque<Emprestimo> meus = new ArrayDeque<>();
+            for (int i = 0; i < emprestimosPorThread; i++) {
+                if (meus.size() == abertosPorThread) {
+                    Emprestimo antigo = meus.removeFirst();
+                    if (i % 2 == 0) {
+                        assertNotNull(NucleoEPI.aplicarCadastroDevolucao(NucleoEPI.NOVO, antigo, hoje, ""));
+                    } else {
+                        assertTrue(NucleoEPI.aplicarRemocaoEmprestimo(antigo));
+                    }
+                }
+                meus.addLast(NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, usuarios[t], epi, hoje, hoje.plusDays(7)));
+            }
+            emAberto[t] = meus.size();
+        });
+
+        int abertos = Arrays.stream(emAberto).sum();
+        assertEquals(abertos, NucleoEPI.abertos.totalPorEpi(epi.getId()));
+        assertEquals(estoque - abertos, epi.getQuantidade());
+    }
+
+    /**
+     * Um empréstimo que não chega ao journal não fica com a unidade reservada
+     */
+    @Test
+    void falhaNoJournalLiberaAReserva() throws IOException {
+        Usuario usuario = NucleoEPI.aplicarCadastroUsuario(NucleoEPI.NOVO, "Ana", "Obras", 900_001);
+        EPI epi = NucleoEPI.aplicarCadastroEPI(NucleoEPI.NOVO, "Capacete", 1, EPI.SEM_VALIDADE);
+        Journal journal = Journal.abrir(diretorio.resolve("golle.journal"), Journal.PoliticaSync.OPERACAO, 0, 0, r -> {});
+        journal.close(); // Toda gravação passa a falhar
+        NucleoEPI.journal = journal;
+        try {
+            LocalDate hoje = LocalDate.now();
+            assertThrows(UncheckedIOException.class,
+                    () -> NucleoEPI.aplicarCadastroEmprestimo(NucleoEPI.NOVO, usuario, epi, hoje, hoje.plusDays(7)));
+        } finally {
+            NucleoEPI.journal = null;
+        }
+        assertEquals(1, epi.getQuantidade());
+    }
+
+    /**
+     * Executa a tarefa em todas as threads, liberando-as ao mesmo tempo para maximizar a disputa
+     */
+    private static void rodar(int threads, IntConsumer tarefa) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        Thread[] trabalhadores = new Thread[threads];
+        Throwable[] falhas = new Throwable[threads];
+        for (int t = 0; t < threads; t++) {
+            int indice = t;
+            trabalhadores[t] = new Thread(() -> {
+                try {
+                    largada.await();
+                    tarefa.accept(indice);
+                } catch (Throwable e) {
+                    falhas[indice] = e;
+                }
+            }, "estoque-" + t);
+            trabalhadores[t].start();
+        }
+        largada.countDown();
+        for (Thread trabalhador : trabalhadores) trabalhador.join();
+        for (Throwable falha : falhas) {
+            if (falha != null) throw new AssertionError("falha em uma das threads", falha);
+        }
+    }
+}
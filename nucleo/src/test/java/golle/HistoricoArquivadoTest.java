@@ -0,0 +1,139 @@
+package golle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Gravação e leitura dos segmentos mensais do histórico arquivado
+ */
+class HistoricoArquivadoTest {
+    private static final int MES = HistoricoArquivado.mes(LocalDate.of(2024, 2, 1));
+
+    @TempDir
+    Path diretorio;
+
+    private final Slab<Usuario> usuarios = new Slab<>();
+    private final Slab<EPI> epis = new Slab<>();
+    private final TabelaEmprestimos emprestimos = new TabelaEmprestimos(usuarios, epis);
+    private final TabelaDevolucoes devolucoes = new TabelaDevolucoes(emprestimos);
+
+    private Devolucao devolver(int id, Usuario usuario, EPI epi, LocalDate data, String observacao) {
+        Emprestimo emp = emprestimos.inserirEm(id, usuario, epi, data, data.plusDays(7));
+        Devolucao dev = devolucoes.inserirEm(id, emp, data.plusDays(3), observacao);
+        emp.setDevolucao(dev);
+        return dev;
+    }
+
+    private static List<EmprestimoArquivado> registros(HistoricoArquivado.Particao particao) {
+        List<EmprestimoArquivado> lista = new ArrayList<>();
+        for (EmprestimoArquivado arquivado : particao) lista.add(arquivado);
+        return lista;
+    }
+
+    @Test
+    void leOsRegistrosGravadosNoSegmento() throws IOException {
+        Usuario ana = new Usuario("Ana", "Manutenção", 101);
+        usuarios.inserir(ana);
+        EPI luva = new EPI("Luva", 10, EPI.SEM_VALIDADE);
+        epis.inserir(luva);
+        Devolucao primeira = devolver(0, ana, luva, LocalDate.of(2024, 2, 5), "Costura solta");
+        Devolucao segunda = devolver(1, ana, luva, LocalDate.of(2024, 2, 20), "");
+
+        HistoricoArquivado historico = new HistoricoArquivado(diretorio);
+        HistoricoArquivado.Montagem montagem = historico.montagem(MES);
+        montagem.adicionar(primeira.getEmprestimo(), primeira);
+        montagem.adicionar(segunda.getEmprestimo(), segunda);
+        HistoricoArquivado.Segmento segmento = historico.gravar(montagem);
+        assertEquals(1, segmento.getVersao());
+        assertEquals(2, segmento.getRegistros());
+        assertNull(historico.carregar(MES)); // Só passa a valer depois de registrado
+        historico.registrar(segmento);
+
+        List<EmprestimoArquivado> lidos = registros(historico.carregar(MES));
+        assertEquals(2, lidos.size());
+        EmprestimoArquivado arquivado = lidos.get(0);
+        assertEquals(0, arquivado.getId());
+        assertEquals(0, arquivado.getIdDevolucao());
+        assertEquals(101, arquivado.getMatricula());
+        assertEquals("Ana", arquivado.getNomeUsuario());
+        assertEquals("Manutenção", arquivado.getDepartamento());
+        assertEquals("Luva", arquivado.getNomeEpi());
+        assertEquals(LocalDate.of(2024, 2, 5), arquivado.getDataEmprestimo());
+        assertEquals(LocalDate.of(2024, 2, 12), arquivado.getDataDevolucaoPrevista());
+        assertEquals(LocalDate.of(2024, 2, 8), arquivado.getDataDevolucao());
+        assertEquals("Costura solta", arquivado.getObservacao());
+        assertEquals("", lidos.get(1).getObservacao());
+        assertEquals(LocalDate.of(2024, 2, 20), lidos.get(1).getDataEmprestimo());
+    }
+
+    @Test
+    void novaVersaoIncluiOsRegistrosDaAnterior() throws IOException {
+        Usuario bruno = new Usuario("Bruno", "Obras", 102);
+        usuarios.inserir(bruno);
+        EPI bota = new EPI("Bota", 4, EPI.SEM_VALIDADE);
+        epis.inserir(bota);
+        Devolucao primeira = devolver(0, bruno, bota, LocalDate.of(2024, 2, 1), "primeira");
+        Devolucao segunda = devolver(1, bruno, bota, LocalDate.of(2024, 2, 29), "segunda");
+
+        HistoricoArquivado historico = new HistoricoArquivado(diretorio);
+        HistoricoArquivado.Montagem montagem = historico.montagem(MES);
+        montagem.adicionar(primeira.getEmprestimo(), primeira);
+        historico.registrar(historico.gravar(montagem));
+
+        montagem = historico.montagem(MES);
+        montagem.adicionar(segunda.getEmprestimo(), segunda);
+        HistoricoArquivado.Segmento segmento = historico.gravar(montagem);
+        historico.registrar(segmento);
+        assertEquals(2, segmento.getVersao());
+        assertEquals(2, historico.registros(MES));
+
+        // Um histórico novo, restaurado com a lista de segmentos (como na carga do snapshot)
+        HistoricoArquivado restaurado = new HistoricoArquivado(diretorio);
+        restaurado.restaurar(historico.listar());
+        List<EmprestimoArquivado> lidos = registros(restaurado.carregar(MES));
+        assertEquals(2, lidos.size());
+        assertEquals("primeira", lidos.get(0).getObservacao());
+        assertEquals("segunda", lidos.get(1).getObservacao());
+        assertEquals("Bruno", lidos.get(1).getNomeUsuario());
+    }
+
+    @Test
+    void recusaSegmentoCorrompido() throws IOException {
+        Usuario carla = new Usuario("Carla", "Qualidade", 103);
+        usuarios.inserir(carla);
+        EPI oculos = new EPI("Óculos", 3, EPI.SEM_VALIDADE);
+        epis.inserir(oculos);
+        Devolucao dev = devolver(0, carla, oculos, LocalDate.of(2024, 2, 10), "Lente riscada");
+
+        HistoricoArquivado historico = new HistoricoArquivado(diretorio);
+        HistoricoArquivado.Montagem montagem = historico.montagem(MES);
+        montagem.adicionar(dev.getEmprestimo(), dev);
+        HistoricoArquivado.Segmento segmento = historico.gravar(montagem);
+
+        Path arquivo;
+        try (var arquivos = Files.list(diretorio)) {
+            arquivo = arquivos.findFirst().orElseThrow();
+        }
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer byteLido = ByteBuffer.allocate(1);
+            long posicao = canal.size() - 1;
+            canal.read(byteLido, posicao);
+            canal.write(ByteBuffer.wrap(new byte[] {(byte) (byteLido.get(0) ^ 0x5A)}), posicao);
+        }
+
+        historico.registrar(segmento);
+        assertThrows(IOException.class, () -> historico.carregar(MES));
+    }
+}
@@ -0,0 +1,164 @@
+package golle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Gravação e reprodução do journal, inclusive a recuperação de um final incompleto ou corrompido
+ */
+class JournalTest {
+    private static final byte OPERACAO = 7;
+
+    @TempDir
+    Path diretorio;
+
+    /**
+     * Campos de um registro reproduzido
+     */
+    private record Lido(byte operacao, int numero, LocalDate data, String texto) {}
+
+    private static void gravar(Journal journal, int numero, String texto) throws IOException {
+        journal.gravar(journal.iniciar(OPERACAO).inteiro(numero).data(LocalDate.of(2024, 3, numero)).texto(texto));
+    }
+
+    private static List<Lido> reproduzir(Path arquivo, long inicio) throws IOException {
+        List<Lido> lidos = new ArrayList<>();
+        Journal journal = Journal.abrir(arquivo, Journal.PoliticaSync.OPERACAO, 0, inicio,
+                r -> lidos.add(new Lido(r.operacao(), r.inteiro(), r.data(), r.texto())));
+        assertEquals(lidos.size(), journal.getOperacoesReproduzidas());
+        journal.close();
+        return lidos;
+    }
+
+    @Test
+    void reproduzOsRegistrosGravadosEmOrdem() throws IOException {
+        Path arquivo = diretorio.resolve("journal.bin");
+        Journal journal = Journal.abrir(arquivo, Journal.PoliticaSync.OPERACAO, 0, 0, r -> fail("journal novo"));
+        gravar(journal, 1, "Capacete");
+        gravar(journal, 2, "Luva de proteção");
+        gravar(journal, 3, "");
+        journal.close();
+
+        List<Lido> lidos = reproduzir(arquivo, 0);
+        assertEquals(List.of(
+                new Lido(OPERACAO, 1, LocalDate.of(2024, 3, 1), "Capacete"),
+                new Lido(OPERACAO, 2, LocalDate.of(2024, 3, 2), "Luva de proteção"),
+                new Lido(OPERACAO, 3, LocalDate.of(2024, 3, 3), "")), lidos);
+    }
+
+    @Test
+    void reproduzApenasOsRegistrosAposAPosicaoDoSnapshot() throws IOException {
+        Path arquivo = diretorio.resolve("journal.bin");
+        Journal journal = Journal.abrir(arquivo, Journal.PoliticaSync.GRUPO, 50, 0, r -> fail("journal novo"));
+        gravar(journal, 1, "antes");
+        journal.sincronizar();
+        long posicao = journal.posicao();
+        gravar(journal, 2, "depois");
+        journal.close();
+
+        List<Lido> lidos = reproduzir(arquivo, posicao);
+        assertEquals(1, lidos.size());
+        assertEquals("depois", lidos.get(0).texto());
+    }
+
+    @Test
+    void descartaOFinalIncompletoEContinuaGravandoAposOUltimoRegistroValido() throws IOException {
+        Path arquivo = diretorio.resolve("journal.bin");
+        Journal journal = Journal.abrir(arquivo, Journal.PoliticaSync.OPERACAO, 0, 0, r -> fail("journal novo"));
+        gravar(journal, 1, "primeiro");
+        gravar(journal, 2, "segundo");
+        journal.close();
+        long tamanhoValido = Files.size(arquivo);
+
+        // Registro interrompido no meio: o tamanho anuncia mais bytes do que os gravados
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.allocate(10).putInt(40).put(OPERACAO).flip());
+        }
+
+        assertEquals(2, reproduzir(arquivo, 0).size());
+        assertEquals(tamanhoValido, Files.size(arquivo));
+
+        journal = Journal.abrir(arquivo, Journal.PoliticaSync.OPERACAO, 0, 0, r -> {});
+        gravar(journal, 3, "terceiro");
+        journal.close();
+
+        List<Lido> lidos = reproduzir(arquivo, 0);
+        assertEquals(3, lidos.size());
+        assertEquals("terceiro", lidos.get(2).texto());
+    }
+
+    @Test
+    void descartaORegistroComCrcInvalido() throws IOException {
+        Path arquivo = diretorio.resolve("journal.bin");
+        Journal journal = Journal.abrir(arquivo, Journal.PoliticaSync.OPERACAO, 0, 0, r -> fail("journal novo"));
+        gravar(journal, 1, "íntegro");
+        long fimPrimeiro = journal.posicao();
+        gravar(journal, 2, "corrompido");
+        journal.close();
+
+        // Troca um byte do texto do segundo registro
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer byteLido = ByteBuffer.allocate(1);
+            long posicao = Files.size(arquivo) - 6;
+            canal.read(byteLido, posicao);
+            canal.write(ByteBuffer.wrap(new byte[] {(byte) (byteLido.get(0) ^ 0x5A)}), posicao);
+        }
+
+        List<Lido> lidos = reproduzir(arquivo, 0);
+        assertEquals(1, lidos.size());
+        assertEquals("íntegro", lidos.get(0).texto());
+        assertEquals(fimPrimeiro, Files.size(arquivo));
+    }
+
+    @Test
+    void confirmacoesConcorrentesPreservamTodosOsRegistros() throws Exception {
+        Path arquivo = diretorio.resolve("journal.bin");
+        Journal journal = Journal.abrir(arquivo, Journal.PoliticaSync.OPERACAO, 0, 0, r -> fail("journal novo"));
+        int threads = 8, porThread = 200;
+        Thread[] gravadores = new Thread[threads];
+        Throwable[] falhas = new Throwable[threads];
+        for (int t = 0; t < threads; t++) {
+            int indice = t;
+            gravadores[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < porThread; i++) {
+                        gravar(journal, 1 + i % 28, "t" + indice);
+                        journal.confirmar();
+                    }
+                } catch (Throwable e) {
+                    falhas[indice] = e;
+                }
+            });
+            gravadores[t].start();
+        }
+        for (Thread gravador : gravadores) gravador.join();
+        for (Throwable falha : falhas) assertNull(falha);
+        journal.close();
+
+        List<Lido> lidos = reproduzir(arquivo, 0);
+        assertEquals(threads * porThread, lidos.size());
+        for (int t = 0; t < threads; t++) {
+            String texto = "t" + t;
+            assertEquals(porThread, lidos.stream().filter(l -> l.texto().equals(texto)).count());
+        }
+    }
+
+    @Test
+    void recusaArquivoQueNaoEJournal() throws IOException {
+        Path arquivo = diretorio.resolve("journal.bin");
+        Files.write(arquivo, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IOException.class, () -> reproduzir(arquivo, 0));
+    }
+}
@@ -0,0 +1,159 @@
+package golle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Gravação e carga do snapshot, inclusive entidades removidas que ainda são referenciadas
+ */
+class SnapshotTest {
+    @TempDir
+    Path diretorio;
+
+    /**
+     * Estado completo de um núcleo, como o montado por NucleoEPI
+     */
+    private final class Estado {
+        final Slab<Usuario> usuarios = new Slab<>();
+        final Slab<EPI> epis = new Slab<>();
+        final TabelaEmprestimos emprestimos = new TabelaEmprestimos(usuarios, epis);
+        final TabelaDevolucoes devolucoes = new TabelaDevolucoes(emprestimos);
+        final HistoricoArquivado historico = new HistoricoArquivado(diretorio.resolve("historico"));
+
+        void gravar(Path arquivo, long posicaoJournal) throws IOException {
+            Snapshot.gravar(arquivo, usuarios, epis, emprestimos, devolucoes, historico, posicaoJournal);
+        }
+
+        void carregar(Path arquivo) throws IOException {
+            Snapshot.mapear(arquivo).materializar(usuarios, epis, emprestimos, devolucoes, historico);
+            for (Devolucao dev : devolucoes) dev.getEmprestimo().setDevolucao(dev);
+        }
+    }
+
+    @Test
+    void recriaAsEntidadesNosMesmosIds() throws IOException {
+        Estado original = new Estado();
+        int ana = original.usuarios.inserir(new Usuario("Ana", "Manutenção", 101));
+        int bruno = original.usuarios.inserir(new Usuario("Bruno", "Almoxarifado", 102));
+        EPI capacete = new EPI("Capacete", 8, (int) LocalDate.of(2030, 1, 31).toEpochDay());
+        capacete.setLimites(2, 4);
+        int idCapacete = original.epis.inserir(capacete);
+        int idLuva = original.epis.inserir(new EPI("Luva", 20, EPI.SEM_VALIDADE));
+
+        Emprestimo aberto = original.emprestimos.inserirEm(0, original.usuarios.obter(ana), capacete,
+                LocalDate.of(2024, 5, 2), LocalDate.of(2024, 5, 9));
+        Emprestimo devolvido = original.emprestimos.inserirEm(1, original.usuarios.obter(bruno),
+                original.epis.obter(idLuva), LocalDate.of(2024, 5, 3), LocalDate.of(2024, 5, 10));
+        Devolucao dev = original.devolucoes.inserirEm(0, devolvido, LocalDate.of(2024, 5, 8), "Sem avarias");
+        devolvido.setDevolucao(dev);
+        original.historico.registrar(new HistoricoArquivado.Segmento(HistoricoArquivado.mes(LocalDate.of(2024, 4, 1)), 2, 37));
+
+        Path arquivo = diretorio.resolve("snapshot.bin");
+        original.gravar(arquivo, 1234);
+
+        Estado carregado = new Estado();
+        assertEquals(1234, Snapshot.mapear(arquivo).getPosicaoJournal());
+        carregado.carregar(arquivo);
+
+        Usuario usuario = carregado.usuarios.obter(ana);
+        assertEquals("Ana", usuario.getNome());
+        assertEquals("Manutenção", usuario.getDepartamento());
+        assertEquals(101, usuario.getMatricula());
+        assertEquals("Bruno", carregado.usuarios.obter(bruno).getNome());
+
+        EPI epi = carregado.epis.obter(idCapacete);
+        assertEquals("Capacete", epi.getNome());
+        assertEquals(8, epi.getQuantidade());
+        assertEquals(capacete.getDataValidade(), epi.getDataValidade());
+        assertEquals(2, epi.getEstoqueMinimo());
+        assertEquals(4, epi.getPontoReposicao());
+        assertEquals(EPI.SEM_VALIDADE, carregado.epis.obter(idLuva).getDataValidade());
+
+        Emprestimo emp = carregado.emprestimos.obter(aberto.getId());
+        assertSame(usuario, emp.getUsuario());
+        assertSame(epi, emp.getEpi());
+        assertEquals(LocalDate.of(2024, 5, 2), emp.getDataEmprestimo());
+        assertEquals(LocalDate.of(2024, 5, 9), emp.getDataDevolucaoPrevista());
+        assertNull(emp.getDevolucao());
+
+        Devolucao devCarregada = carregado.devolucoes.obter(0);
+        assertEquals(devolvido.getId(), devCarregada.getEmprestimo().getId());
+        assertEquals(LocalDate.of(2024, 5, 8), devCarregada.getDataDevolucao());
+        assertEquals("Sem avarias", devCarregada.getObservacao());
+        assertEquals(devCarregada, carregado.emprestimos.obter(devolvido.getId()).getDevolucao());
+
+        List<HistoricoArquivado.Segmento> segmentos = carregado.historico.listar();
+        assertEquals(1, segmentos.size());
+        assertEquals(2, segmentos.get(0).getVersao());
+        assertEquals(37, segmentos.get(0).getRegistros());
+    }
+
+    @Test
+    void mantemAsEntidadesRemovidasQueAindaSaoReferenciadas() throws IOException {
+        Estado original = new Estado();
+        Usuario carla = new Usuario("Carla", "Obras", 103);
+        original.usuarios.inserir(carla);
+        EPI bota = new EPI("Bota", 5, EPI.SEM_VALIDADE);
+        original.epis.inserir(bota);
+
+        // Empréstimo em aberto de um usuário e de um EPI já removidos
+        Emprestimo aberto = original.emprestimos.inserirEm(0, carla, bota,
+                LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 8));
+        // Devolução de um empréstimo já removido
+        Emprestimo devolvido = original.emprestimos.inserirEm(1, carla, bota,
+                LocalDate.of(2024, 6, 2), LocalDate.of(2024, 6, 9));
+        devolvido.setDevolucao(original.devolucoes.inserirEm(0, devolvido, LocalDate.of(2024, 6, 5), ""));
+        original.emprestimos.remover(devolvido.getId());
+        original.usuarios.remover(carla.getId());
+        original.emprestimos.desligarUsuario(carla, List.of(aberto));
+        original.epis.remover(bota.getId());
+        original.emprestimos.desligarEpi(bota, List.of(aberto));
+
+        Path arquivo = diretorio.resolve("snapshot.bin");
+        original.gravar(arquivo, 0);
+        Estado carregado = new Estado();
+        carregado.carregar(arquivo);
+
+        assertNull(carregado.usuarios.obter(0));
+        assertNull(carregado.epis.obter(0));
+        assertNull(carregado.emprestimos.obter(1));
+
+        Emprestimo emp = carregado.emprestimos.obter(aberto.getId());
+        assertEquals("Carla", emp.getUsuario().getNome());
+        assertEquals(-1, emp.getUsuario().getId());
+        assertEquals("Bota", emp.getEpi().getNome());
+
+        Devolucao dev = carregado.devolucoes.obter(0);
+        assertEquals(-1, dev.getEmprestimo().getId());
+        assertSame(emp.getUsuario(), dev.getEmprestimo().getUsuario());
+        assertEquals(LocalDate.of(2024, 6, 2), dev.getEmprestimo().getDataEmprestimo());
+        assertEquals("", dev.getObservacao());
+    }
+
+    @Test
+    void recusaSnapshotCorrompido() throws IOException {
+        Estado original = new Estado();
+        original.usuarios.inserir(new Usuario("Davi", "Qualidade", 104));
+        Path arquivo = diretorio.resolve("snapshot.bin");
+        original.gravar(arquivo, 0);
+
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer byteLido = ByteBuffer.allocate(1);
+            long posicao = canal.size() - 1;
+            canal.read(byteLido, posicao);
+            canal.write(ByteBuffer.wrap(new byte[] {(byte) (byteLido.get(0) ^ 0x5A)}), posicao);
+        }
+
+        assertThrows(IOException.class, () -> new Estado().carregar(arquivo));
+    }
+}